@@ -0,0 +1,103 @@
+package com.jahndigital.expressive.benchmarks;
+
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.extensibility.HelloWorldFunction;
+import com.jahndigital.expressive.extensibility.Schema;
+import com.jahndigital.expressive.vm.Program;
+import com.jahndigital.expressive.vm.ProgramCatalog;
+import com.jahndigital.expressive.vm.ProgramCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time taken to compile a set of rules from their text with the time taken to load the same rules from a
+ * {@link ProgramCatalog} that they were written to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogBenchmark
+{
+    static {
+        FunctionRepository.DefaultFunctionRepository.add(new HelloWorldFunction());
+    }
+
+    @Param({"1000", "10000"})
+    public int rules;
+
+    private final FunctionRepository _functions = FunctionRepository.DefaultFunctionRepository;
+    private final Schema _schema = new Schema();
+    private String[] _texts;
+    private Path _path;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        _schema.declare("x", Integer.class);
+        _schema.declare("y", Boolean.class);
+        _texts = new String[rules];
+
+        for (int i = 0; i < rules; i++) {
+            _texts[i] = String.format("y && (x * %d + hello(x) > %d || x / %d.5 < %d)", i, i * 3, i % 7 + 1, i);
+        }
+
+        _path = Files.createTempFile("catalog", ".expc");
+        ProgramCatalog.write(_path, compile());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        Files.deleteIfExists(_path);
+    }
+
+    /**
+     * Compiles every rule from its text.
+     */
+    @Benchmark
+    public LinkedHashMap<String, Program> compile() throws Exception
+    {
+        LinkedHashMap<String, Program> programs = new LinkedHashMap<>();
+
+        for (int i = 0; i < rules; i++) {
+            BoundSyntaxTree tree = BoundSyntaxTree.compile(_texts[i], _functions, _schema, NumericMode.Exact);
+            programs.put("rule" + i, ProgramCompiler.compile(tree));
+        }
+
+        return programs;
+    }
+
+    /**
+     * Opens the catalog, which only reads its index.
+     */
+    @Benchmark
+    public ProgramCatalog open() throws Exception
+    {
+        return ProgramCatalog.open(_path, _functions, _schema);
+    }
+
+    /**
+     * Opens the catalog and loads every rule from it.
+     */
+    @Benchmark
+    public Program[] load() throws Exception
+    {
+        ProgramCatalog catalog = ProgramCatalog.open(_path, _functions, _schema);
+        Program[] programs = new Program[rules];
+
+        for (int i = 0; i < rules; i++) {
+            programs[i] = catalog.get("rule" + i);
+        }
+
+        return programs;
+    }
+}
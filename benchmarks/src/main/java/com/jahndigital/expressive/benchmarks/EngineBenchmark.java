@@ -0,0 +1,80 @@
+package com.jahndigital.expressive.benchmarks;
+
+import com.jahndigital.expressive.ClosureCompiler;
+import com.jahndigital.expressive.CompiledExpression;
+import com.jahndigital.expressive.Evaluator;
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.codegen.BytecodeCompiler;
+import com.jahndigital.expressive.extensibility.HelloWorldFunction;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import com.jahndigital.expressive.vm.ProgramCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time taken by each execution engine to evaluate an already bound expression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark
+{
+    static {
+        FunctionRepository.DefaultFunctionRepository.add(new HelloWorldFunction());
+    }
+
+    @Param({
+        "1 + 2 * 3 - 4 / 2",
+        "(1 < 2 && 3 >= 3) || !(4 == 5)",
+        "1.5 * 2 + 0.25",
+        "HELLO(1 + 2) * HELLO(3)"
+    })
+    public String expression;
+
+    private final HashMap<String, Object> _context = new HashMap<>();
+    private Evaluator _evaluator;
+    private CompiledExpression _closure;
+    private CompiledExpression _bytecode;
+    private CompiledExpression _program;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        BoundSyntaxTree tree = SyntaxTree.parse(expression).bind();
+
+        _evaluator = new Evaluator(tree.getRoot());
+        _closure = ClosureCompiler.compile(tree);
+        _bytecode = BytecodeCompiler.compile(tree);
+        _program = ProgramCompiler.compile(tree);
+    }
+
+    @Benchmark
+    public Object evaluator() throws Exception
+    {
+        return _evaluator.evaluate(_context);
+    }
+
+    @Benchmark
+    public Object closure() throws Exception
+    {
+        return _closure.evaluate(_context);
+    }
+
+    @Benchmark
+    public Object bytecode() throws Exception
+    {
+        return _bytecode.evaluate(_context);
+    }
+
+    @Benchmark
+    public Object program() throws Exception
+    {
+        return _program.evaluate(_context);
+    }
+}
@@ -0,0 +1,82 @@
+package com.jahndigital.expressive.benchmarks;
+
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.Schema;
+import com.jahndigital.expressive.extensibility.SlotContext;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the time taken to compile and evaluate an expression grows with its size, for long chains and deeply
+ * nested expressions.  Each size is ten times the last, so the time should grow about tenfold too.
+ *
+ * The benchmark runs with a 256KB thread stack, which is far too small to walk the largest expressions by recursing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+public class ScalingBenchmark
+{
+    @Param({"1000", "10000", "100000"})
+    public int terms;
+
+    @Param({"chain", "nested"})
+    public String shape;
+
+    private final Schema _schema = new Schema();
+    private final ContextKey<Integer> _x = _schema.declare("x", Integer.class);
+    private String _text;
+    private SlotContext _context;
+    private BoundSyntaxTree _tree;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        // x + x + x ... or x + (x + (x ...))
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i < terms; i++) {
+            text.append(shape.equals("chain") ? "x + " : "x + (");
+        }
+
+        text.append('x');
+        for (int i = 1; i < terms && shape.equals("nested"); i++) {
+            text.append(')');
+        }
+
+        _text = text.toString();
+        _context = _schema.newContext().set(_x, 1);
+        _tree = compile();
+    }
+
+    /**
+     * Parses and binds the text in a single pass, as {@link com.jahndigital.expressive.Expression} does.
+     */
+    @Benchmark
+    public BoundSyntaxTree compile() throws Exception
+    {
+        return BoundSyntaxTree.compile(_text, FunctionRepository.DefaultFunctionRepository, _schema, NumericMode.Exact);
+    }
+
+    /**
+     * Parses the text into a syntax tree and then binds it.
+     */
+    @Benchmark
+    public BoundSyntaxTree parseAndBind() throws Exception
+    {
+        return SyntaxTree.parse(_text).bind(_schema);
+    }
+
+    @Benchmark
+    public Object evaluate() throws Exception
+    {
+        return _tree.evaluate(_context);
+    }
+}
@@ -0,0 +1,24 @@
+package com.jahndigital.expressive.extensibility;
+
+import java.util.Map;
+
+/**
+ * The values an expression is evaluated with.  Variables in the expression are read through their {@link ContextKey},
+ * and the context is passed to every {@link IFunction} that's called.
+ */
+public interface Context
+{
+    /**
+     * Gets the value of a variable.
+     *
+     * @param key The key of the variable.
+     * @param <T> The type of the variable.
+     * @return The value, or null if it hasn't been set.
+     */
+    <T> T get(ContextKey<T> key);
+
+    /**
+     * Gets a read only view of the context keyed by variable name, for functions that look values up by name.
+     */
+    Map<String, Object> asMap();
+}
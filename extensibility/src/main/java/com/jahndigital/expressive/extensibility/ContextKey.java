@@ -0,0 +1,69 @@
+package com.jahndigital.expressive.extensibility;
+
+/**
+ * A typed handle to a variable declared in a {@link Schema}.  Keys are resolved once, so reading a variable through a
+ * key is an array access instead of a lookup by name.
+ *
+ * @param <T> The type of the variable.
+ */
+public final class ContextKey<T>
+{
+    private final Schema _schema;
+    private final String _name;
+    private final Class<T> _type;
+    private final int _slot;
+
+    /**
+     * Init
+     *
+     * @param schema The schema that declared the variable.
+     * @param name The name of the variable.
+     * @param type The type of the variable.
+     * @param slot The index of the variable in a {@link SlotContext}.
+     */
+    ContextKey(Schema schema, String name, Class<T> type, int slot)
+    {
+        _schema = schema;
+        _name = name;
+        _type = type;
+        _slot = slot;
+    }
+
+    /**
+     * Gets the schema that declared the variable.
+     */
+    public Schema getSchema()
+    {
+        return _schema;
+    }
+
+    /**
+     * Gets the name of the variable as it was declared.
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * Gets the type of the variable.
+     */
+    public Class<T> getType()
+    {
+        return _type;
+    }
+
+    /**
+     * Gets the index of the variable in a {@link SlotContext}.
+     */
+    public int getSlot()
+    {
+        return _slot;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: %s", _name, _type.getSimpleName());
+    }
+}
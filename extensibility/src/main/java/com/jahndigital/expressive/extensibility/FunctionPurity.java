@@ -0,0 +1,25 @@
+package com.jahndigital.expressive.extensibility;
+
+/**
+ * Describes what the result of an {@link IFunction} depends on, which determines how often expressive needs to call it.
+ */
+public enum FunctionPurity
+{
+    /**
+     * The function may return a different result every time it's called or has side effects.  It's called every time it
+     * appears in an expression.
+     */
+    Impure,
+
+    /**
+     * The function has no side effects and always returns the same result for the same arguments and execution context.
+     * Identical calls within an expression are only executed once per evaluation.
+     */
+    Deterministic,
+
+    /**
+     * The function has no side effects, doesn't read the execution context, and always returns the same result for the
+     * same arguments.  Calls with literal arguments are executed once while binding and replaced with their result.
+     */
+    Pure
+}
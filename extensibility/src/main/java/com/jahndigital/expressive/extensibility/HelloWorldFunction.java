@@ -29,6 +29,12 @@ public class HelloWorldFunction implements IFunction {
         );
     }
 
+    @Override
+    public FunctionPurity getPurity()
+    {
+        return FunctionPurity.Pure;
+    }
+
     @Override
     public Object execute(List<Object> args, Map<String, Object> ctx)
     {
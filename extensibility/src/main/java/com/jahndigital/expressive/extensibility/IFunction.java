@@ -32,6 +32,16 @@ public interface IFunction
      */
     List<ArgumentDefinition> getArguments();
 
+    /**
+     * Gets what the result of the execute function depends on.  Functions are assumed to be impure unless they opt in.
+     *
+     * @return The {@link FunctionPurity} of the function.
+     */
+    default FunctionPurity getPurity()
+    {
+        return FunctionPurity.Impure;
+    }
+
     /**
      * Execute the function with the provided arguments and execution context.
      *
@@ -40,4 +50,17 @@ public interface IFunction
      * @return The result of the function.
      */
     Object execute(List<Object> args, Map<String, Object> ctx);
+
+    /**
+     * Execute the function with the provided arguments and execution context.  Override this method to read variables
+     * through their {@link ContextKey} instead of by name.
+     *
+     * @param args An ordered list of arguments.
+     * @param ctx The execution context.
+     * @return The result of the function.
+     */
+    default Object execute(List<Object> args, Context ctx)
+    {
+        return execute(args, ctx.asMap());
+    }
 }
@@ -0,0 +1,38 @@
+package com.jahndigital.expressive.extensibility;
+
+import java.util.Map;
+
+/**
+ * A {@link Context} backed by a map of names to values.  Variables are looked up by name on every read, so prefer a
+ * {@link SlotContext} when evaluating expressions that reference variables.
+ */
+public final class MapContext implements Context
+{
+    private final Map<String, Object> _values;
+
+    /**
+     * Init
+     *
+     * @param values The map to read variables from.  Names must match the declared names exactly.
+     */
+    public MapContext(Map<String, Object> values)
+    {
+        _values = values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(ContextKey<T> key)
+    {
+        return (T)_values.get(key.getName());
+    }
+
+    /**
+     * Gets the map this context was created with.
+     */
+    @Override
+    public Map<String, Object> asMap()
+    {
+        return _values;
+    }
+}
@@ -0,0 +1,87 @@
+package com.jahndigital.expressive.extensibility;
+
+import java.util.*;
+
+/**
+ * Declares the variables that may be referenced by name in an expression.  Each variable is assigned a slot when it's
+ * declared, and expressions bound against the schema read variables from a {@link Context} by slot.
+ *
+ * Variables should be declared before expressions are compiled against the schema.  Declaring variables isn't
+ * thread-safe, but once declarations are finished a schema may be shared by any number of threads.
+ */
+public final class Schema
+{
+    private final List<ContextKey<?>> _keys = new ArrayList<>();
+    private final Map<String, ContextKey<?>> _keysByName = new HashMap<>();
+
+    /**
+     * Declares a variable, or returns the existing key if a variable with the same name and type was already declared.
+     * Names are case-insensitive, like function names.
+     *
+     * @param name The name of the variable.
+     * @param type The type of the variable.
+     * @param <T> The type of the variable.
+     * @return The key used to set and read the variable.
+     * @throws IllegalArgumentException If a variable with the same name but a different type was already declared.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ContextKey<T> declare(String name, Class<T> type)
+    {
+        String normalized = normalize(name);
+        ContextKey<?> existing = _keysByName.get(normalized);
+
+        if (existing != null) {
+            if (existing.getType() != type) {
+                throw new IllegalArgumentException(
+                    String.format("Variable %s was already declared as %s.", name, existing.getType().getSimpleName())
+                );
+            }
+
+            return (ContextKey<T>)existing;
+        }
+
+        ContextKey<T> key = new ContextKey<>(this, name, type, _keys.size());
+        _keys.add(key);
+        _keysByName.put(normalized, key);
+        return key;
+    }
+
+    /**
+     * Gets the key of a declared variable, or null if no variable with the name exists.
+     *
+     * @param name The case-insensitive name of the variable.
+     */
+    public ContextKey<?> find(String name)
+    {
+        return _keysByName.get(normalize(name));
+    }
+
+    /**
+     * Gets a read only list of the declared variables, ordered by slot.
+     */
+    public List<ContextKey<?>> getKeys()
+    {
+        return Collections.unmodifiableList(_keys);
+    }
+
+    /**
+     * Gets the number of declared variables.
+     */
+    public int size()
+    {
+        return _keys.size();
+    }
+
+    /**
+     * Creates an empty context with a slot for every declared variable.
+     */
+    public SlotContext newContext()
+    {
+        return new SlotContext(this);
+    }
+
+    private static String normalize(String name)
+    {
+        return name.toUpperCase(Locale.ROOT);
+    }
+}
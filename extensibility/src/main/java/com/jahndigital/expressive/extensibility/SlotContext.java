@@ -0,0 +1,132 @@
+package com.jahndigital.expressive.extensibility;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Context} that stores the value of each variable in an array, indexed by the slot the {@link Schema} assigned
+ * it.  Contexts are cheap to create and may be reused between evaluations, but not shared between threads while values
+ * are being set.
+ */
+public final class SlotContext implements Context
+{
+    private final Schema _schema;
+    private final Object[] _values;
+    private Map<String, Object> _map;
+
+    /**
+     * Init with a slot for every variable the schema has declared so far.
+     *
+     * @param schema The schema to create the context for.
+     */
+    public SlotContext(Schema schema)
+    {
+        _schema = schema;
+        _values = new Object[schema.size()];
+    }
+
+    /**
+     * Sets the value of a variable.
+     *
+     * @param key The key of the variable.
+     * @param value The value.
+     * @param <T> The type of the variable.
+     * @return This context, so calls may be chained.
+     */
+    public <T> SlotContext set(ContextKey<T> key, T value)
+    {
+        _values[slotOf(key)] = value;
+        return this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(ContextKey<T> key)
+    {
+        return (T)_values[slotOf(key)];
+    }
+
+    /**
+     * Sets every variable back to null.
+     */
+    public void clear()
+    {
+        Arrays.fill(_values, null);
+    }
+
+    @Override
+    public Map<String, Object> asMap()
+    {
+        if (_map == null) {
+            _map = new AbstractMap<String, Object>()
+            {
+                @Override
+                public Set<Entry<String, Object>> entrySet()
+                {
+                    return new AbstractSet<Entry<String, Object>>()
+                    {
+                        @Override
+                        public Iterator<Entry<String, Object>> iterator()
+                        {
+                            Iterator<ContextKey<?>> keys = _schema.getKeys().subList(0, _values.length).iterator();
+
+                            return new Iterator<Entry<String, Object>>()
+                            {
+                                @Override
+                                public boolean hasNext()
+                                {
+                                    return keys.hasNext();
+                                }
+
+                                @Override
+                                public Entry<String, Object> next()
+                                {
+                                    ContextKey<?> key = keys.next();
+                                    return new SimpleImmutableEntry<>(key.getName(), _values[key.getSlot()]);
+                                }
+                            };
+                        }
+
+                        @Override
+                        public int size()
+                        {
+                            return _values.length;
+                        }
+                    };
+                }
+
+                @Override
+                public Object get(Object name)
+                {
+                    ContextKey<?> key = name instanceof String ? _schema.find((String)name) : null;
+                    return key == null || key.getSlot() >= _values.length ? null : _values[key.getSlot()];
+                }
+
+                @Override
+                public boolean containsKey(Object name)
+                {
+                    ContextKey<?> key = name instanceof String ? _schema.find((String)name) : null;
+                    return key != null && key.getSlot() < _values.length;
+                }
+            };
+        }
+
+        return _map;
+    }
+
+    /**
+     * Gets the slot of a key, ensuring it belongs to this context's schema.
+     */
+    private int slotOf(ContextKey<?> key)
+    {
+        if (key.getSchema() != _schema || key.getSlot() >= _values.length) {
+            throw new IllegalArgumentException(String.format("Variable %s isn't part of this context.", key.getName()));
+        }
+
+        return key.getSlot();
+    }
+}
@@ -0,0 +1,339 @@
+package com.jahndigital.expressive;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic shared by the compiled forms of an expression.  Classes generated by the
+ * {@link com.jahndigital.expressive.codegen.BytecodeCompiler} call into this class, so everything here must be public.
+ *
+ * The primitive forms throw an {@link ArithmeticException} when a result overflows.  The boxed forms never overflow:
+ * an int result that doesn't fit is promoted to a {@link Long}, and a long result that doesn't fit is promoted to a
+ * {@link BigDecimal} with a scale of zero.  Engines evaluate on primitives and redo an evaluation that overflowed with
+ * the boxed forms, so integers only pay for promotion when they need it.
+ */
+public final class Arithmetic
+{
+    private static final int INT = 0;
+    private static final int LONG = 1;
+    private static final int DECIMAL = 2;
+    private static final int DOUBLE = 3;
+
+    private Arithmetic() { }
+
+    /**
+     * Divides two integers, rounding the quotient half-even to match {@link java.math.RoundingMode#HALF_EVEN}.
+     *
+     * @param dividend The left operand.
+     * @param divisor The right operand.
+     * @return The rounded quotient.
+     * @throws ArithmeticException If the divisor is zero or the quotient overflows.
+     */
+    public static int divide(int dividend, int divisor)
+    {
+        if (divisor == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+
+        // Widen so that Integer.MIN_VALUE / -1 is caught rather than wrapping.
+        long left = dividend;
+        long right = divisor;
+        long quotient = left / right;
+        long remainder = left % right;
+
+        if (remainder != 0) {
+            int compare = Long.compare(Math.abs(remainder) * 2, Math.abs(right));
+
+            if (compare > 0 || (compare == 0 && (quotient & 1) != 0)) {
+                quotient += (left < 0) == (right < 0) ? 1 : -1;
+            }
+        }
+
+        return Math.toIntExact(quotient);
+    }
+
+    /**
+     * Divides two longs, rounding the quotient half-even to match {@link java.math.RoundingMode#HALF_EVEN}.
+     *
+     * @param dividend The left operand.
+     * @param divisor The right operand.
+     * @return The rounded quotient.
+     * @throws ArithmeticException If the divisor is zero or the quotient overflows.
+     */
+    public static long divide(long dividend, long divisor)
+    {
+        if (divisor == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+
+        if (dividend == Long.MIN_VALUE && divisor == -1) {
+            throw new ArithmeticException("long overflow");
+        }
+
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+
+        if (remainder != 0) {
+            // Doubling the remainder could overflow, so compare it against what's left of the divisor instead.  The
+            // magnitudes are compared unsigned, which keeps Long.MIN_VALUE correct.
+            long absRemainder = remainder < 0 ? -remainder : remainder;
+            long absDivisor = divisor < 0 ? -divisor : divisor;
+            int compare = Long.compareUnsigned(absRemainder, absDivisor - absRemainder);
+
+            if (compare > 0 || (compare == 0 && (quotient & 1) != 0)) {
+                quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+            }
+        }
+
+        return quotient;
+    }
+
+    /**
+     * Adds two numbers, promoting the sum if it doesn't fit.
+     *
+     * @param left An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @param right An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @return The sum, in the wider type of the two operands or wider.
+     */
+    public static Object add(Object left, Object right)
+    {
+        switch (Math.max(rank(left), rank(right))) {
+            case INT:
+                return valueOf((long)(int)left + (int)right);
+            case LONG: {
+                long a = ((Number)left).longValue();
+                long b = ((Number)right).longValue();
+                long sum = a + b;
+
+                if (((a ^ sum) & (b ^ sum)) < 0) {
+                    return BigDecimal.valueOf(a).add(BigDecimal.valueOf(b));
+                }
+
+                return sum;
+            }
+            case DECIMAL:
+                return toDecimal(left).add(toDecimal(right));
+            default:
+                return ((Number)left).doubleValue() + ((Number)right).doubleValue();
+        }
+    }
+
+    /**
+     * Subtracts two numbers, promoting the difference if it doesn't fit.
+     *
+     * @param left An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @param right An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @return The difference, in the wider type of the two operands or wider.
+     */
+    public static Object subtract(Object left, Object right)
+    {
+        switch (Math.max(rank(left), rank(right))) {
+            case INT:
+                return valueOf((long)(int)left - (int)right);
+            case LONG: {
+                long a = ((Number)left).longValue();
+                long b = ((Number)right).longValue();
+                long difference = a - b;
+
+                if (((a ^ b) & (a ^ difference)) < 0) {
+                    return BigDecimal.valueOf(a).subtract(BigDecimal.valueOf(b));
+                }
+
+                return difference;
+            }
+            case DECIMAL:
+                return toDecimal(left).subtract(toDecimal(right));
+            default:
+                return ((Number)left).doubleValue() - ((Number)right).doubleValue();
+        }
+    }
+
+    /**
+     * Multiplies two numbers, promoting the product if it doesn't fit.
+     *
+     * @param left An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @param right An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @return The product, in the wider type of the two operands or wider.
+     */
+    public static Object multiply(Object left, Object right)
+    {
+        switch (Math.max(rank(left), rank(right))) {
+            case INT:
+                return valueOf((long)(int)left * (int)right);
+            case LONG: {
+                long a = ((Number)left).longValue();
+                long b = ((Number)right).longValue();
+                long product = a * b;
+
+                if (((Math.abs(a) | Math.abs(b)) >>> 31 != 0)
+                        && ((b != 0 && product / b != a) || (a == Long.MIN_VALUE && b == -1))) {
+                    return BigDecimal.valueOf(a).multiply(BigDecimal.valueOf(b));
+                }
+
+                return product;
+            }
+            case DECIMAL:
+                return toDecimal(left).multiply(toDecimal(right));
+            default:
+                return ((Number)left).doubleValue() * ((Number)right).doubleValue();
+        }
+    }
+
+    /**
+     * Divides two numbers, promoting the quotient if it doesn't fit.  Integers and longs round half-even like
+     * {@link #divide(int, int)}, and decimals keep the scale of the dividend.
+     *
+     * @param left An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @param right An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @return The quotient, in the wider type of the two operands or wider.
+     * @throws ArithmeticException If an integer, long, or decimal divisor is zero.
+     */
+    public static Object divide(Object left, Object right)
+    {
+        switch (Math.max(rank(left), rank(right))) {
+            case INT:
+                return valueOf(divide((long)(int)left, (int)right));
+            case LONG: {
+                long a = ((Number)left).longValue();
+                long b = ((Number)right).longValue();
+
+                if (a == Long.MIN_VALUE && b == -1) {
+                    return BigDecimal.valueOf(a).negate();
+                }
+
+                return divide(a, b);
+            }
+            case DECIMAL:
+                return toDecimal(left).divide(toDecimal(right), RoundingMode.HALF_EVEN);
+            default:
+                return ((Number)left).doubleValue() / ((Number)right).doubleValue();
+        }
+    }
+
+    /**
+     * Negates a number, promoting the result if it doesn't fit.
+     *
+     * @param value An {@link Integer}, {@link Long}, {@link BigDecimal}, or {@link Double}.
+     * @return The negated value, in the type of the operand or wider.
+     */
+    public static Object negate(Object value)
+    {
+        switch (rank(value)) {
+            case INT:
+                return valueOf(-(long)(int)value);
+            case LONG:
+                return (long)value == Long.MIN_VALUE ? BigDecimal.valueOf((long)value).negate() : -(long)value;
+            case DECIMAL:
+                return ((BigDecimal)value).negate();
+            default:
+                return -(double)value;
+        }
+    }
+
+    /**
+     * Compares two integers, longs, or decimals by their values.
+     *
+     * @param left An {@link Integer}, {@link Long}, or {@link BigDecimal}.
+     * @param right An {@link Integer}, {@link Long}, or {@link BigDecimal}.
+     * @return A negative number, zero, or a positive number as the left operand is less than, equal to, or greater than
+     *         the right.
+     */
+    public static int compare(Object left, Object right)
+    {
+        if (Math.max(rank(left), rank(right)) < DECIMAL) {
+            return Long.compare(((Number)left).longValue(), ((Number)right).longValue());
+        }
+
+        return toDecimal(left).compareTo(toDecimal(right));
+    }
+
+    /**
+     * Converts an integer, long, or decimal to a {@link BigDecimal}.
+     */
+    public static BigDecimal toDecimal(Object value)
+    {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal)value;
+        }
+
+        return BigDecimal.valueOf(((Number)value).longValue());
+    }
+
+    /**
+     * Converts a value that was promoted past its bound type back to that type if it fits again.  Values of any other
+     * type are returned as is.
+     *
+     * @param value The value to narrow.
+     * @param type The bound type of the value.
+     * @return The narrowest of the value and the bound type that holds the value.
+     */
+    public static Object narrow(Object value, Type type)
+    {
+        if (type == Integer.class || type == Long.class) {
+            if (value instanceof BigDecimal && ((BigDecimal)value).unscaledValue().bitLength() < 64) {
+                value = ((BigDecimal)value).longValueExact();
+            }
+
+            if (type == Integer.class && value instanceof Long && (long)value == (int)(long)value) {
+                value = (int)(long)value;
+            } else if (type == Long.class && value instanceof Integer) {
+                value = (long)(int)value;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Converts a value that was promoted past its bound type back to that type, for values that leave the expression
+     * (E.g. function arguments) and must have the type they were bound to.
+     *
+     * @param value The value to convert.
+     * @param type The bound type of the value.
+     * @return The value as the bound type.
+     * @throws ArithmeticException If the value doesn't fit in the bound type.
+     */
+    public static Object exact(Object value, Type type)
+    {
+        value = narrow(value, type);
+
+        if ((type == Integer.class || type == Long.class) && value != null && value.getClass() != type) {
+            throw new ArithmeticException(type == Integer.class ? "integer overflow" : "long overflow");
+        }
+
+        return value;
+    }
+
+    /**
+     * Gets the narrowest of an {@link Integer} or a {@link Long} that holds the value.
+     */
+    private static Object valueOf(long value)
+    {
+        if (value == (int)value) {
+            return (int)value;
+        }
+
+        return value;
+    }
+
+    /**
+     * Gets the position of a number's type in the order that operands are promoted in.
+     */
+    private static int rank(Object value)
+    {
+        if (value instanceof Integer) {
+            return INT;
+        }
+
+        if (value instanceof Long) {
+            return LONG;
+        }
+
+        if (value instanceof BigDecimal) {
+            return DECIMAL;
+        }
+
+        return DOUBLE;
+    }
+}
@@ -0,0 +1,650 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.*;
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.IFunction;
+import com.jahndigital.expressive.vm.ProgramCompiler;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Converts a {@link BoundExpression} tree into a tree of pre-specialized closures.  Each node is compiled once, choosing
+ * a closure from its bound operator kind and operand types, so evaluation doesn't need to inspect the node or the type
+ * of its operands.  Unlike the {@link com.jahndigital.expressive.codegen.BytecodeCompiler}, no classes are generated at
+ * runtime.
+ *
+ * Closures are passed an array that holds the results of shared calls (See {@link BoundFunctionExpression#isShared()})
+ * that have already been executed.  A new array is created for every evaluation, so each shared call is executed at
+ * most once per evaluation.
+ *
+ * Trees deeper than {@link BoundExpression#MAX_RECURSION_DEPTH} are compiled by the {@link ProgramCompiler} instead.
+ */
+public final class ClosureCompiler
+{
+    /**
+     * A compiled node whose value is boxed.
+     */
+    @FunctionalInterface
+    private interface ObjectClosure
+    {
+        Object evaluate(Context context, Object[] shared) throws Exception;
+    }
+
+    /**
+     * A compiled node whose bound type is {@link Integer}.
+     */
+    @FunctionalInterface
+    private interface IntClosure
+    {
+        int evaluate(Context context, Object[] shared) throws Exception;
+    }
+
+    /**
+     * A compiled node whose bound type is {@link Boolean}.
+     */
+    @FunctionalInterface
+    private interface BooleanClosure
+    {
+        boolean evaluate(Context context, Object[] shared) throws Exception;
+    }
+
+    /**
+     * A compiled node whose value is a {@link BigDecimal}.
+     */
+    @FunctionalInterface
+    private interface DecimalClosure
+    {
+        BigDecimal evaluate(Context context, Object[] shared) throws Exception;
+    }
+
+    /**
+     * A compiled node whose bound type is {@link Long}.
+     */
+    @FunctionalInterface
+    private interface LongClosure
+    {
+        long evaluate(Context context, Object[] shared) throws Exception;
+    }
+
+    /**
+     * A compiled node whose value is a double.
+     */
+    @FunctionalInterface
+    private interface DoubleClosure
+    {
+        double evaluate(Context context, Object[] shared) throws Exception;
+    }
+
+    /**
+     * The index of each shared call in the array of results that's created for every evaluation.
+     */
+    private final IdentityHashMap<BoundFunctionExpression, Integer> _sharedSlots = new IdentityHashMap<>();
+
+    private ClosureCompiler() { }
+
+    /**
+     * Compiles the provided {@link BoundSyntaxTree}.
+     *
+     * @param tree The tree to compile.
+     * @return An object that evaluates the expression.
+     * @throws Exception If the tree has errors or could not be compiled.
+     */
+    public static CompiledExpression compile(BoundSyntaxTree tree) throws Exception
+    {
+        List<Diagnostic> errors = tree.getErrors();
+        if (!errors.isEmpty()) {
+            throw new Exception(
+                String.format("Unable to compile expression: %d errors encountered during parsing.", errors.size())
+            );
+        }
+
+        if (tree.getRoot() == null) {
+            return context -> null;
+        }
+
+        return compile(tree.getRoot());
+    }
+
+    /**
+     * Compiles the provided {@link BoundExpression}.
+     *
+     * @param root The root of the tree to compile.
+     * @return An object that evaluates the expression.
+     * @throws Exception If the expression could not be compiled.
+     */
+    public static CompiledExpression compile(BoundExpression root) throws Exception
+    {
+        // Both compiling and evaluating closures recurse once per level of the tree.
+        if (root.isDeeperThan(BoundExpression.MAX_RECURSION_DEPTH)) {
+            return ProgramCompiler.compile(root);
+        }
+
+        ClosureCompiler compiler = new ClosureCompiler();
+        ObjectClosure closure = compiler.compileObject(root);
+        int sharedSlots = compiler._sharedSlots.size();
+
+        // Closures check integer and long math for overflow, and an evaluation that overflows is redone by an evaluator
+        // that promotes the result instead.
+        Evaluator evaluator = new Evaluator(root);
+
+        return context -> {
+            try {
+                return closure.evaluate(context, sharedSlots == 0 ? null : new Object[sharedSlots]);
+            } catch (ArithmeticException e) {
+                return evaluator.evaluateWidened(context);
+            }
+        };
+    }
+
+    /**
+     * Compiles a node of any type into a closure that returns its boxed value.
+     */
+    private ObjectClosure compileObject(BoundExpression root) throws Exception
+    {
+        if (root.getType() == Integer.class) {
+            IntClosure operand = compileInt(root);
+            return (context, shared) -> operand.evaluate(context, shared);
+        }
+
+        if (root.getType() == Boolean.class) {
+            BooleanClosure operand = compileBoolean(root);
+            return (context, shared) -> operand.evaluate(context, shared);
+        }
+
+        if (root.getType() == BigDecimal.class) {
+            DecimalClosure operand = compileDecimal(root);
+            return operand::evaluate;
+        }
+
+        if (root.getType() == Long.class) {
+            LongClosure operand = compileLong(root);
+            return (context, shared) -> operand.evaluate(context, shared);
+        }
+
+        if (root.getType() == Double.class) {
+            DoubleClosure operand = compileDouble(root);
+            return (context, shared) -> operand.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return compileFunction((BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (context, shared) -> context.get(key);
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            Object value = ((BoundLiteralExpression)root).getValue();
+            return (context, shared) -> value;
+        }
+
+        // Mirrors the interpreter, which evaluates unknown expressions to zero.
+        return (context, shared) -> 0;
+    }
+
+    /**
+     * Compiles a call to an {@link IFunction}, wrapping any exception it throws in a
+     * {@link FunctionExecutionFailedException}.
+     */
+    private ObjectClosure compileFunction(BoundFunctionExpression root) throws Exception
+    {
+        IFunction function = root.getFunction();
+        List<BoundExpression> boundArguments = root.getArguments();
+        ObjectClosure[] arguments = new ObjectClosure[boundArguments.size()];
+
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compileObject(boundArguments.get(i));
+        }
+
+        ObjectClosure call = (context, shared) -> {
+            List<Object> args = new ArrayList<>(arguments.length);
+            for (ObjectClosure argument : arguments) {
+                args.add(argument.evaluate(context, shared));
+            }
+
+            try {
+                return function.execute(args, context);
+            } catch (Exception e) {
+                throw new FunctionExecutionFailedException(e, function, args, context.asMap());
+            }
+        };
+
+        if (!root.isShared()) {
+            return call;
+        }
+
+        int slot = _sharedSlots.computeIfAbsent(root, f -> _sharedSlots.size());
+
+        // A null result is executed again, which is safe because shared calls are deterministic.
+        return (context, shared) -> {
+            Object result = shared[slot];
+
+            if (result == null) {
+                result = call.evaluate(context, shared);
+                shared[slot] = result;
+            }
+
+            return result;
+        };
+    }
+
+    private IntClosure compileInt(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            int value = (int)((BoundLiteralExpression)root).getValue();
+            return (context, shared) -> value;
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectClosure function = compileFunction((BoundFunctionExpression)root);
+            return (context, shared) -> (int)function.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (context, shared) -> (Integer)Evaluator.requireVariable(context, key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            IntClosure operand = compileInt(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (context, shared) -> Math.negateExact(operand.evaluate(context, shared));
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            IntClosure left = compileInt(b.getLeft());
+            IntClosure right = compileInt(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return (context, shared) -> Math.addExact(left.evaluate(context, shared), right.evaluate(context, shared));
+                case Subtraction:
+                    return (context, shared) -> Math.subtractExact(left.evaluate(context, shared), right.evaluate(context, shared));
+                case Multiplication:
+                    return (context, shared) -> Math.multiplyExact(left.evaluate(context, shared), right.evaluate(context, shared));
+                case Division:
+                    return (context, shared) -> Arithmetic.divide(left.evaluate(context, shared), right.evaluate(context, shared));
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as an integer.", root.getClass().getSimpleName()));
+    }
+
+    private BooleanClosure compileBoolean(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            boolean value = (boolean)((BoundLiteralExpression)root).getValue();
+            return (context, shared) -> value;
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectClosure function = compileFunction((BoundFunctionExpression)root);
+            return (context, shared) -> (boolean)function.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (context, shared) -> (Boolean)Evaluator.requireVariable(context, key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            BooleanClosure operand = compileBoolean(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            if (kind != BoundUnaryOperationKind.LogicalNegation) {
+                throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+
+            return (context, shared) -> !operand.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            return compileBooleanBinary((BoundBinaryExpression)root);
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a boolean.", root.getClass().getSimpleName()));
+    }
+
+    private BooleanClosure compileBooleanBinary(BoundBinaryExpression b) throws Exception
+    {
+        BoundBinaryOperationKind operation = b.getOperatorKind();
+        BoundExpression boundLeft = b.getLeft();
+        BoundExpression boundRight = b.getRight();
+
+        Type operandType = boundLeft.getType();
+
+        // Logical operators and boolean equality
+        if (operandType == Boolean.class) {
+            BooleanClosure left = compileBoolean(boundLeft);
+            BooleanClosure right = compileBoolean(boundRight);
+
+            switch (operation) {
+                case LogicalAnd:
+                    return (context, shared) -> left.evaluate(context, shared) && right.evaluate(context, shared);
+                case LogicalOr:
+                    return (context, shared) -> left.evaluate(context, shared) || right.evaluate(context, shared);
+                case Equals:
+                    return (context, shared) -> left.evaluate(context, shared) == right.evaluate(context, shared);
+                case NotEquals:
+                    return (context, shared) -> left.evaluate(context, shared) != right.evaluate(context, shared);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Integer comparisons
+        if (operandType == Integer.class) {
+            IntClosure left = compileInt(boundLeft);
+            IntClosure right = compileInt(boundRight);
+
+            switch (operation) {
+                case Equals:
+                    return (context, shared) -> left.evaluate(context, shared) == right.evaluate(context, shared);
+                case NotEquals:
+                    return (context, shared) -> left.evaluate(context, shared) != right.evaluate(context, shared);
+                case GreaterThan:
+                    return (context, shared) -> left.evaluate(context, shared) > right.evaluate(context, shared);
+                case GreaterThanOrEqualTo:
+                    return (context, shared) -> left.evaluate(context, shared) >= right.evaluate(context, shared);
+                case LessThan:
+                    return (context, shared) -> left.evaluate(context, shared) < right.evaluate(context, shared);
+                case LessThanOrEqualTo:
+                    return (context, shared) -> left.evaluate(context, shared) <= right.evaluate(context, shared);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Double comparisons.  These use the primitive operators so that NaN is unordered.
+        if (operandType == Double.class) {
+            DoubleClosure left = compileDouble(boundLeft);
+            DoubleClosure right = compileDouble(boundRight);
+
+            switch (operation) {
+                case Equals:
+                    return (context, shared) -> left.evaluate(context, shared) == right.evaluate(context, shared);
+                case NotEquals:
+                    return (context, shared) -> left.evaluate(context, shared) != right.evaluate(context, shared);
+                case GreaterThan:
+                    return (context, shared) -> left.evaluate(context, shared) > right.evaluate(context, shared);
+                case GreaterThanOrEqualTo:
+                    return (context, shared) -> left.evaluate(context, shared) >= right.evaluate(context, shared);
+                case LessThan:
+                    return (context, shared) -> left.evaluate(context, shared) < right.evaluate(context, shared);
+                case LessThanOrEqualTo:
+                    return (context, shared) -> left.evaluate(context, shared) <= right.evaluate(context, shared);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Long comparisons
+        if (operandType == Long.class) {
+            LongClosure left = compileLong(boundLeft);
+            LongClosure right = compileLong(boundRight);
+
+            switch (operation) {
+                case Equals:
+                    return (context, shared) -> left.evaluate(context, shared) == right.evaluate(context, shared);
+                case NotEquals:
+                    return (context, shared) -> left.evaluate(context, shared) != right.evaluate(context, shared);
+                case GreaterThan:
+                    return (context, shared) -> left.evaluate(context, shared) > right.evaluate(context, shared);
+                case GreaterThanOrEqualTo:
+                    return (context, shared) -> left.evaluate(context, shared) >= right.evaluate(context, shared);
+                case LessThan:
+                    return (context, shared) -> left.evaluate(context, shared) < right.evaluate(context, shared);
+                case LessThanOrEqualTo:
+                    return (context, shared) -> left.evaluate(context, shared) <= right.evaluate(context, shared);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Decimal comparisons
+        DecimalClosure left = compileDecimal(boundLeft);
+        DecimalClosure right = compileDecimal(boundRight);
+
+        switch (operation) {
+            case Equals:
+                return (context, shared) -> left.evaluate(context, shared).compareTo(right.evaluate(context, shared)) == 0;
+            case NotEquals:
+                return (context, shared) -> left.evaluate(context, shared).compareTo(right.evaluate(context, shared)) != 0;
+            case GreaterThan:
+                return (context, shared) -> left.evaluate(context, shared).compareTo(right.evaluate(context, shared)) > 0;
+            case GreaterThanOrEqualTo:
+                return (context, shared) -> left.evaluate(context, shared).compareTo(right.evaluate(context, shared)) >= 0;
+            case LessThan:
+                return (context, shared) -> left.evaluate(context, shared).compareTo(right.evaluate(context, shared)) < 0;
+            case LessThanOrEqualTo:
+                return (context, shared) -> left.evaluate(context, shared).compareTo(right.evaluate(context, shared)) <= 0;
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
+        }
+    }
+
+    /**
+     * Compiles a node into a closure that returns a {@link BigDecimal}.
+     */
+    private DecimalClosure compileDecimal(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression converted = ((BoundConversionExpression)root).getOperand();
+
+            if (converted.getType() == Integer.class) {
+                IntClosure operand = compileInt(converted);
+                return (context, shared) -> BigDecimal.valueOf(operand.evaluate(context, shared));
+            }
+
+            LongClosure operand = compileLong(converted);
+            return (context, shared) -> BigDecimal.valueOf(operand.evaluate(context, shared));
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            BigDecimal value = (BigDecimal)((BoundLiteralExpression)root).getValue();
+            return (context, shared) -> value;
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectClosure function = compileFunction((BoundFunctionExpression)root);
+            return (context, shared) -> (BigDecimal)function.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (context, shared) -> (BigDecimal)context.get(key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            DecimalClosure operand = compileDecimal(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (context, shared) -> operand.evaluate(context, shared).negate();
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            DecimalClosure left = compileDecimal(b.getLeft());
+            DecimalClosure right = compileDecimal(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return (context, shared) -> left.evaluate(context, shared).add(right.evaluate(context, shared));
+                case Subtraction:
+                    return (context, shared) -> left.evaluate(context, shared).subtract(right.evaluate(context, shared));
+                case Multiplication:
+                    return (context, shared) -> left.evaluate(context, shared).multiply(right.evaluate(context, shared));
+                case Division:
+                    return (context, shared) -> left.evaluate(context, shared).divide(right.evaluate(context, shared), RoundingMode.HALF_EVEN);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a decimal.", root.getClass().getSimpleName()));
+    }
+
+    /**
+     * Compiles a node whose bound type is {@link Long} into a closure that returns a long.
+     */
+    private LongClosure compileLong(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundConversionExpression) {
+            IntClosure operand = compileInt(((BoundConversionExpression)root).getOperand());
+            return operand::evaluate;
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            long value = (long)((BoundLiteralExpression)root).getValue();
+            return (context, shared) -> value;
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectClosure function = compileFunction((BoundFunctionExpression)root);
+            return (context, shared) -> (long)function.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (context, shared) -> (Long)Evaluator.requireVariable(context, key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            LongClosure operand = compileLong(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (context, shared) -> Math.negateExact(operand.evaluate(context, shared));
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            LongClosure left = compileLong(b.getLeft());
+            LongClosure right = compileLong(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return (context, shared) -> Math.addExact(left.evaluate(context, shared), right.evaluate(context, shared));
+                case Subtraction:
+                    return (context, shared) -> Math.subtractExact(left.evaluate(context, shared), right.evaluate(context, shared));
+                case Multiplication:
+                    return (context, shared) -> Math.multiplyExact(left.evaluate(context, shared), right.evaluate(context, shared));
+                case Division:
+                    return (context, shared) -> Arithmetic.divide(left.evaluate(context, shared), right.evaluate(context, shared));
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a long.", root.getClass().getSimpleName()));
+    }
+
+    /**
+     * Compiles a node whose bound type is {@link Double} into a closure that returns a double.
+     */
+    private DoubleClosure compileDouble(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression converted = ((BoundConversionExpression)root).getOperand();
+
+            if (converted.getType() == Integer.class) {
+                IntClosure operand = compileInt(converted);
+                return operand::evaluate;
+            }
+
+            LongClosure operand = compileLong(converted);
+            return operand::evaluate;
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            double value = (double)((BoundLiteralExpression)root).getValue();
+            return (context, shared) -> value;
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectClosure function = compileFunction((BoundFunctionExpression)root);
+            return (context, shared) -> (double)function.evaluate(context, shared);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (context, shared) -> (Double)Evaluator.requireVariable(context, key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            DoubleClosure operand = compileDouble(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (context, shared) -> -operand.evaluate(context, shared);
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            DoubleClosure left = compileDouble(b.getLeft());
+            DoubleClosure right = compileDouble(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return (context, shared) -> left.evaluate(context, shared) + right.evaluate(context, shared);
+                case Subtraction:
+                    return (context, shared) -> left.evaluate(context, shared) - right.evaluate(context, shared);
+                case Multiplication:
+                    return (context, shared) -> left.evaluate(context, shared) * right.evaluate(context, shared);
+                case Division:
+                    return (context, shared) -> left.evaluate(context, shared) / right.evaluate(context, shared);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a double.", root.getClass().getSimpleName()));
+    }
+}
@@ -0,0 +1,45 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.MapContext;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents an expression that has been compiled ahead of time so that it can be evaluated repeatedly without walking
+ * the {@link com.jahndigital.expressive.binding.BoundExpression} tree.
+ */
+public interface CompiledExpression
+{
+    /**
+     * Evaluates the expression with an empty runtime context, returning the result as an object.
+     *
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    default Object evaluate() throws Exception
+    {
+        return evaluate(new HashMap<>());
+    }
+
+    /**
+     * Evaluates the expression, returning the result as an object.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    default Object evaluate(Map<String, Object> runtimeContext) throws Exception
+    {
+        return evaluate(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates the expression, returning the result as an object.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    Object evaluate(Context context) throws Exception;
+}
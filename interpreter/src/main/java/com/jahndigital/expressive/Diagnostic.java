@@ -6,8 +6,15 @@ package com.jahndigital.expressive;
 public final class Diagnostic
 {
     private final TextSpan _span;
-    private final String _message;
     private final DiagnosticLevel _level;
+    private final String _format;
+    private final Object[] _args;
+
+    /**
+     * The formatted message, or null if it hasn't been formatted yet.  Formatting is idempotent, so threads that race to
+     * format the message produce equal strings.
+     */
+    private volatile String _message;
 
     public TextSpan getSpan()
     {
@@ -21,7 +28,15 @@ public final class Diagnostic
      */
     public String getMessage()
     {
-        return _message;
+        String message = _message;
+
+        // Diagnostics created with a message don't have a format, so a null message stays null.
+        if (message == null && _format != null) {
+            message = String.format(_format, _args);
+            _message = message;
+        }
+
+        return message;
     }
 
     /**
@@ -37,13 +52,31 @@ public final class Diagnostic
     public Diagnostic(TextSpan span, String message, DiagnosticLevel level)
     {
         _span = span;
+        _level = level;
+        _format = null;
+        _args = null;
         _message = message;
+    }
+
+    /**
+     * Init with a message that is formatted when it's first read.
+     *
+     * @param span The span of the syntax string the diagnostic refers to.
+     * @param level The severity of the diagnostic.
+     * @param format A {@link String#format(String, Object...)} format string.
+     * @param args The arguments referenced by the format string.
+     */
+    Diagnostic(TextSpan span, DiagnosticLevel level, String format, Object... args)
+    {
+        _span = span;
         _level = level;
+        _format = format;
+        _args = args;
     }
 
     @Override
     public String toString()
     {
-        return String.format("%s: %s", _level, _message);
+        return String.format("%s: %s", _level, getMessage());
     }
 }
@@ -1,5 +1,6 @@
 package com.jahndigital.expressive;
 
+import com.jahndigital.expressive.binding.BoundBinaryOperationKind;
 import com.jahndigital.expressive.binding.BoundExpression;
 import com.jahndigital.expressive.extensibility.IFunction;
 import com.jahndigital.expressive.syntax.*;
@@ -10,12 +11,23 @@ import java.util.stream.Collectors;
 
 /**
  * Holds a list of diagnostic information about the parsing, lexing, binding, and evaluation of a syntax string.
+ *
+ * Each compilation uses its own repository, so repositories aren't thread-safe.  Messages are only formatted when they
+ * are read, which keeps reporting cheap for diagnostics that are never displayed.
  */
 public class DiagnosticRepository implements Iterable<Diagnostic>
 {
+    /**
+     * A repository shared by every caller.
+     *
+     * @deprecated Each compilation now reports to its own repository (See {@link SyntaxTree#parse(String)}), so nothing
+     *             reports to this one.  It will be removed in the next release.
+     */
+    @Deprecated
     public static final DiagnosticRepository DefaultDiagnosticRepository = new DiagnosticRepository();
 
     private final ArrayList<Diagnostic> _diagnostics = new ArrayList<>();
+    private int _errorCount = 0;
 
     @Override
     public Iterator<Diagnostic> iterator()
@@ -33,10 +45,51 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
 
     /**
      * Clears the diagnostic repository.
+     *
+     * @deprecated Repositories are no longer shared between compilations, so there's no need to clear one.  Create a new
+     *             repository instead.  This will be removed in the next release.
      */
+    @Deprecated
     public void reset()
     {
         _diagnostics.clear();
+        _errorCount = 0;
+    }
+
+    /**
+     * Adds every diagnostic from another repository after the ones in this repository.
+     *
+     * @param other The repository to copy diagnostics from.
+     */
+    public void addAll(DiagnosticRepository other)
+    {
+        _diagnostics.addAll(other._diagnostics);
+        _errorCount += other._errorCount;
+    }
+
+    /**
+     * Returns true if any diagnostic at the {@link DiagnosticLevel#ERROR} or {@link DiagnosticLevel#CRIT} level exists.
+     */
+    public boolean hasErrors()
+    {
+        return _errorCount > 0;
+    }
+
+    /**
+     * Adds a diagnostic whose message is formatted when it's first read.
+     *
+     * @param span The span of the syntax string the diagnostic refers to.
+     * @param level The severity of the diagnostic.
+     * @param format A {@link String#format(String, Object...)} format string.
+     * @param args The arguments referenced by the format string.
+     */
+    private void add(TextSpan span, DiagnosticLevel level, String format, Object... args)
+    {
+        if (level == DiagnosticLevel.ERROR || level == DiagnosticLevel.CRIT) {
+            _errorCount++;
+        }
+
+        _diagnostics.add(new Diagnostic(span, level, format, args));
     }
 
     /**
@@ -47,12 +100,12 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addBadCharacterInput(char current, int position)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                new TextSpan(position, 1),
-                String.format("Bad character '%s' detected during lexing at position %d.", current, position),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            new TextSpan(position, 1),
+            DiagnosticLevel.ERROR,
+            "Bad character '%s' detected during lexing at position %d.",
+            current,
+            position
         );
     }
 
@@ -64,12 +117,12 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addInvalidCastToInt32(String text, int position)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                new TextSpan(position, text.length()),
-                String.format("Unable to cast '%s' as a valid Int32 at position %d.", text, position),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            new TextSpan(position, text.length()),
+            DiagnosticLevel.ERROR,
+            "Unable to cast '%s' as a valid Int32 at position %d.",
+            text,
+            position
         );
     }
 
@@ -81,12 +134,12 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addInvalidCastToDecimal(String text, int position)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                new TextSpan(position, text.length()),
-                String.format("Unable to cast '%s' as a valid Decimal at position %d.", text, position),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            new TextSpan(position, text.length()),
+            DiagnosticLevel.ERROR,
+            "Unable to cast '%s' as a valid Decimal at position %d.",
+            text,
+            position
         );
     }
 
@@ -99,12 +152,13 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addUnexpectedToken(SyntaxToken currentToken, SyntaxKind expectedKind)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                currentToken.getTextSpan(),
-                String.format("Unexpected token <%s> during parsing at position %d. Expected <%s>.", currentToken.getKind(), currentToken.getPosition(), expectedKind),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            currentToken.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Unexpected token <%s> during parsing at position %d. Expected <%s>.",
+            currentToken.getKind(),
+            currentToken.getPosition(),
+            expectedKind
         );
     }
 
@@ -115,12 +169,11 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addMissingClosingParentheses(TextSpan length)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                length,
-                String.format("Missing closing parentheses beginning at position %d.", length.getStart()),
-                DiagnosticLevel.CRIT
-            )
+        add(
+            length,
+            DiagnosticLevel.CRIT,
+            "Missing closing parentheses beginning at position %d.",
+            length.getStart()
         );
     }
 
@@ -131,12 +184,27 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addUnregisteredFunction(SyntaxToken currentToken)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                currentToken.getTextSpan(),
-                String.format("Call to unregistered function <%s> during parsing at position %d.", currentToken.getValue(), currentToken.getPosition()),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            currentToken.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Call to unregistered function <%s> during parsing at position %d.",
+            currentToken.getValue(), currentToken.getPosition()
+        );
+    }
+
+    /**
+     * Tell the user that a name used in the expression isn't a registered function or a declared variable.
+     *
+     * @param identifierToken The {@link SyntaxToken} containing the name.
+     */
+    public void addUndeclaredVariable(SyntaxToken identifierToken)
+    {
+        add(
+            identifierToken.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Reference to undeclared variable <%s> during binding at position %d.",
+            identifierToken.getText(),
+            identifierToken.getPosition()
         );
     }
 
@@ -147,12 +215,11 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addException(Exception e)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                new TextSpan(0, -1),
-                e.getMessage(),
-                DiagnosticLevel.CRIT
-            )
+        add(
+            new TextSpan(0, -1),
+            DiagnosticLevel.CRIT,
+            "%s",
+            e.getMessage()
         );
     }
 
@@ -164,12 +231,11 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addUnknownExpression(ExpressionSyntaxNode syntax)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                new TextSpan(0, 0),
-                String.format("Attempt to bind an unknown expression <%s>.", syntax.getKind()),
-                DiagnosticLevel.CRIT
-            )
+        add(
+            new TextSpan(0, 0),
+            DiagnosticLevel.CRIT,
+            "Attempt to bind an unknown expression <%s>.",
+            syntax.getKind()
         );
     }
 
@@ -181,12 +247,22 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addInvalidUnaryOperator(UnaryExpressionSyntaxNode syntax, BoundExpression boundOperand)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                syntax.getOperator().getTextSpan(),
-                String.format("Unary Operator '%s' is not defined for type %s.", syntax.getOperator().getText(), boundOperand.getType()),
-                DiagnosticLevel.ERROR
-            )
+        addInvalidUnaryOperator(syntax.getOperator(), boundOperand);
+    }
+
+    /**
+     * Tell the user that the unary operation they are attempting to perform isn't supported.
+     *
+     * @param operator The operator of the unary operation that failed.
+     * @param boundOperand The operand that failed the type check.
+     */
+    public void addInvalidUnaryOperator(SyntaxToken operator, BoundExpression boundOperand)
+    {
+        add(
+            operator.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Unary Operator '%s' is not defined for type %s.",
+            operator.getText(), boundOperand.getType()
         );
     }
 
@@ -199,12 +275,25 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addInvalidBinaryOperation(BinaryExpressionSyntaxNode syntax, BoundExpression boundLeft, BoundExpression boundRight)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                syntax.getOperator().getTextSpan(),
-                String.format("Binary Operator '%s' is not defined for types %s and %s.", syntax.getOperator().getText(), boundLeft.getType(), boundRight.getType()),
-                DiagnosticLevel.ERROR
-            )
+        addInvalidBinaryOperation(syntax.getOperator(), boundLeft, boundRight);
+    }
+
+    /**
+     * Tell the user that the binary operation they attempted to perform is unsupported.
+     *
+     * @param operator The operator of the binary operation that failed.
+     * @param boundLeft The left operand.
+     * @param boundRight The right operand.
+     */
+    public void addInvalidBinaryOperation(SyntaxToken operator, BoundExpression boundLeft, BoundExpression boundRight)
+    {
+        add(
+            operator.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Binary Operator '%s' is not defined for types %s and %s.",
+            operator.getText(),
+            boundLeft.getType(),
+            boundRight.getType()
         );
     }
 
@@ -218,17 +307,13 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addInvalidArgumentLength(SyntaxToken syntax, int providedArguments, IFunction function)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                syntax.getTextSpan(),
-                String.format(
-                    "Invalid number of arguments provided for function %s. The function accepts %d arguments, but %d were provided.",
-                    function.getName(),
-                    function.getArguments().size(),
-                    providedArguments
-                ),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            syntax.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Invalid number of arguments provided for function %s. The function accepts %d arguments, but %d were provided.",
+            function.getName(),
+            function.getArguments().size(),
+            providedArguments
         );
     }
 
@@ -241,17 +326,13 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
      */
     public void addInvalidArgumentAtIndex(SyntaxToken syntax, int index, IFunction function)
     {
-        _diagnostics.add(
-            new Diagnostic(
-                syntax.getTextSpan(),
-                String.format(
-                    "Invalid number of arguments provided for function %s at index %d. The function only accepts %d arguments.",
-                    function.getName(),
-                    index,
-                    function.getArguments().size()
-                ),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            syntax.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Invalid number of arguments provided for function %s at index %d. The function only accepts %d arguments.",
+            function.getName(),
+            index,
+            function.getArguments().size()
         );
     }
 
@@ -271,18 +352,75 @@ public class DiagnosticRepository implements Iterable<Diagnostic>
             return;
         }
 
-        _diagnostics.add(
-            new Diagnostic(
-                syntax.getTextSpan(),
-                String.format(
-                    "Invalid argument at index %d for function %s.  Type provided was %s, but expected one of %s",
-                    index,
-                    function.getName(),
-                    receivedType,
-                    function.getArguments().get(index).getTypes().stream().map(Type::getTypeName).collect(Collectors.joining(", ", "[", "]"))
-                ),
-                DiagnosticLevel.ERROR
-            )
+        add(
+            syntax.getTextSpan(),
+            DiagnosticLevel.ERROR,
+            "Invalid argument at index %d for function %s.  Type provided was %s, but expected one of %s",
+            index,
+            function.getName(),
+            receivedType,
+            function.getArguments().get(index).getTypes().stream().map(Type::getTypeName).collect(Collectors.joining(", ", "[", "]"))
+        );
+    }
+
+    /**
+     * Tell the user that a subtree made up only of literals was evaluated during binding.
+     *
+     * @param value The value the subtree was replaced with.
+     */
+    public void addFoldedConstant(Object value)
+    {
+        add(
+            new TextSpan(0, 0),
+            DiagnosticLevel.INFO,
+            "Folded constant expression to %s.",
+            value
+        );
+    }
+
+    /**
+     * Tell the user that an operation was removed because it can't change the value of its operand.
+     *
+     * @param identity A description of the identity that was applied (E.g. "x * 1").
+     */
+    public void addSimplifiedIdentity(String identity)
+    {
+        add(
+            new TextSpan(0, 0),
+            DiagnosticLevel.INFO,
+            "Simplified '%s' to 'x'.",
+            identity
+        );
+    }
+
+    /**
+     * Tell the user that the right side of a logical operation was removed because the left side decides the result.
+     *
+     * @param kind The logical operation.
+     * @param value The value of the left operand and the result of the operation.
+     */
+    public void addPrunedBranch(BoundBinaryOperationKind kind, boolean value)
+    {
+        add(
+            new TextSpan(0, 0),
+            DiagnosticLevel.INFO,
+            "Removed the right operand of %s because the left operand is always %s.",
+            kind, value
+        );
+    }
+
+    /**
+     * Tell the user that identical calls to a deterministic function will only be executed once per evaluation.
+     *
+     * @param function The function being called.
+     */
+    public void addSharedCall(IFunction function)
+    {
+        add(
+            new TextSpan(0, 0),
+            DiagnosticLevel.INFO,
+            "Identical calls to %s will only be executed once per evaluation.",
+            function.getName()
         );
     }
 }
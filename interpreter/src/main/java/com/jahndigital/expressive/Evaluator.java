@@ -1,21 +1,74 @@
 package com.jahndigital.expressive;
 
 import com.jahndigital.expressive.binding.*;
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.MapContext;
+import com.jahndigital.expressive.vm.Program;
+import com.jahndigital.expressive.vm.ProgramCompiler;
 
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * Walks the AST and evaluates the expression into an integer.
+ * Walks the bound tree and evaluates the expression, keeping integers, booleans, longs, and doubles on primitives and
+ * decimals on {@link ScaledDecimal}s wherever the types of the nodes allow.
+ *
+ * Integer and long math that overflows isn't an error.  The evaluation is redone on boxed values with
+ * {@link #evaluateWidened(Context)}, where a result that doesn't fit its bound type is promoted to a {@link Long} or a
+ * {@link BigDecimal}, and is narrowed back again wherever it fits.  Functions called before the overflow are called
+ * again when that happens.
+ *
+ * Evaluators hold no state between evaluations and may be used from any number of threads at once.  Trees that are
+ * too deep to walk by recursing are compiled into a {@link Program} the first time they're evaluated, which evaluates
+ * them with an explicit stack instead.
  */
 public final class Evaluator
 {
     private final BoundExpression _root;
-    private Map<String, Object> _runtimeContext;
+    private final boolean _isDeep;
+
+    /**
+     * The compiled tree, if it's too deep to evaluate by recursing.  Created on first use.
+     */
+    private volatile Program _program;
+
+    /**
+     * The state of a single evaluation, which is passed down the tree instead of being stored on the evaluator so that
+     * the same evaluator may be used from any number of threads at once.
+     */
+    private static final class Frame
+    {
+        private final Context _context;
+
+        /**
+         * Results of calls marked as shared that have already been executed.  Created on first use.
+         */
+        private Map<BoundFunctionExpression, Object> _sharedResults;
+
+        /**
+         * The result of the last scaled decimal evaluation that didn't fit.  See
+         * {@link #evaluateScaledExpression(Frame, BoundExpression)}.
+         */
+        private BigDecimal _overflow;
+
+        /**
+         * If every node is evaluated on boxed values so that integers and longs are promoted rather than overflowing.
+         */
+        private final boolean _widen;
+
+        Frame(Context context, boolean widen)
+        {
+            _context = context;
+            _widen = widen;
+        }
+    }
 
     /**
      * Init
@@ -25,6 +78,7 @@ public final class Evaluator
     public Evaluator(BoundExpression root)
     {
         this._root = root;
+        this._isDeep = root.isDeeperThan(BoundExpression.MAX_RECURSION_DEPTH);
     }
 
     /**
@@ -46,53 +100,384 @@ public final class Evaluator
      */
     public Object evaluate(HashMap<String, Object> runtimeContext) throws Exception
     {
-        _runtimeContext = runtimeContext;
-        return evaluateExpression(_root);
+        return evaluate(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates the expression, returning the result as an object.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    public Object evaluate(Context context) throws Exception
+    {
+        if (!_isDeep) {
+            try {
+                return evaluateExpression(new Frame(context, false), _root);
+            } catch (ArithmeticException e) {
+                // Redone below on boxed values.
+            }
+        }
+
+        return evaluateWidened(context);
+    }
+
+    /**
+     * Evaluates the expression on boxed values, promoting integer and long results that overflow instead of throwing.
+     * The other engines call this to redo an evaluation that overflowed on primitives.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @return The result of the evaluation, which may be wider than the bound type of the expression.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    public Object evaluateWidened(Context context) throws Exception
+    {
+        // The program promotes overflowing results the same way.
+        if (_isDeep) {
+            return getProgram().evaluate(context);
+        }
+
+        return evaluateExpression(new Frame(context, true), _root);
+    }
+
+    /**
+     * Evaluates an expression bound as an {@link Integer} without boxing intermediate results.
+     *
+     * @throws Exception If the expression isn't an integer or an unrecoverable error was encountered during evaluation.
+     */
+    public int evaluateInt() throws Exception
+    {
+        return evaluateInt(new HashMap<>());
+    }
+
+    /**
+     * Evaluates an expression bound as an {@link Integer} without boxing intermediate results.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't an integer or an unrecoverable error was encountered during evaluation.
+     */
+    public int evaluateInt(HashMap<String, Object> runtimeContext) throws Exception
+    {
+        return evaluateInt(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates an expression bound as an {@link Integer} without boxing intermediate results.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't an integer or an unrecoverable error was encountered during evaluation.
+     * @throws ArithmeticException If the result doesn't fit in an integer.
+     */
+    public int evaluateInt(Context context) throws Exception
+    {
+        _ensureType(Integer.class);
+
+        if (!_isDeep) {
+            try {
+                return evaluateIntExpression(new Frame(context, false), _root);
+            } catch (ArithmeticException e) {
+                // Redone below on boxed values.
+            }
+        }
+
+        Object value = evaluateWidened(context);
+
+        if (!(value instanceof Integer)) {
+            throw new ArithmeticException("integer overflow");
+        }
+
+        return (int)value;
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Boolean} without boxing intermediate results.
+     *
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public boolean evaluateBoolean() throws Exception
+    {
+        return evaluateBoolean(new HashMap<>());
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Boolean} without boxing intermediate results.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public boolean evaluateBoolean(HashMap<String, Object> runtimeContext) throws Exception
+    {
+        return evaluateBoolean(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Boolean} without boxing intermediate results.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public boolean evaluateBoolean(Context context) throws Exception
+    {
+        _ensureType(Boolean.class);
+
+        if (!_isDeep) {
+            try {
+                return evaluateBooleanExpression(new Frame(context, false), _root);
+            } catch (ArithmeticException e) {
+                // Redone below on boxed values.
+            }
+        }
+
+        return (boolean)evaluateWidened(context);
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link BigDecimal}, {@link Integer}, or {@link Long}, returning the result as
+     * a decimal.
+     *
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public BigDecimal evaluateDecimal() throws Exception
+    {
+        return evaluateDecimal(new HashMap<>());
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link BigDecimal}, {@link Integer}, or {@link Long}, returning the result as
+     * a decimal.  Integer subtrees are evaluated on primitives and only widened where they meet a decimal.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public BigDecimal evaluateDecimal(HashMap<String, Object> runtimeContext) throws Exception
+    {
+        return evaluateDecimal(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link BigDecimal}, {@link Integer}, or {@link Long}, returning the result as
+     * a decimal.  Integer subtrees are evaluated on primitives and only widened where they meet a decimal.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public BigDecimal evaluateDecimal(Context context) throws Exception
+    {
+        Type type = _root.getType();
+
+        if (type != Integer.class && type != Long.class) {
+            _ensureType(BigDecimal.class);
+        }
+
+        if (!_isDeep) {
+            try {
+                if (type == Integer.class) {
+                    return BigDecimal.valueOf(evaluateIntExpression(new Frame(context, false), _root));
+                }
+
+                if (type == Long.class) {
+                    return BigDecimal.valueOf(evaluateLongExpression(new Frame(context, false), _root));
+                }
+
+                return evaluateDecimalExpression(new Frame(context, false), _root);
+            } catch (ArithmeticException e) {
+                // Redone below on boxed values.
+            }
+        }
+
+        return Arithmetic.toDecimal(evaluateWidened(context));
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Long} or {@link Integer} without boxing intermediate results.
+     *
+     * @throws Exception If the expression isn't a long or an unrecoverable error was encountered during evaluation.
+     * @throws ArithmeticException If the result doesn't fit in a long.
+     */
+    public long evaluateLong() throws Exception
+    {
+        return evaluateLong(new HashMap<>());
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Long} or {@link Integer} without boxing intermediate results.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't a long or an unrecoverable error was encountered during evaluation.
+     * @throws ArithmeticException If the result doesn't fit in a long.
+     */
+    public long evaluateLong(HashMap<String, Object> runtimeContext) throws Exception
+    {
+        return evaluateLong(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Long} or {@link Integer} without boxing intermediate results.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't a long or an unrecoverable error was encountered during evaluation.
+     * @throws ArithmeticException If the result doesn't fit in a long.
+     */
+    public long evaluateLong(Context context) throws Exception
+    {
+        if (_root.getType() != Integer.class) {
+            _ensureType(Long.class);
+        }
+
+        if (!_isDeep) {
+            try {
+                if (_root.getType() == Integer.class) {
+                    return evaluateIntExpression(new Frame(context, false), _root);
+                }
+
+                return evaluateLongExpression(new Frame(context, false), _root);
+            } catch (ArithmeticException e) {
+                // Redone below on boxed values.
+            }
+        }
+
+        Object value = Arithmetic.narrow(evaluateWidened(context), Long.class);
+
+        if (!(value instanceof Long)) {
+            throw new ArithmeticException("long overflow");
+        }
+
+        return (long)value;
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Double} or {@link Long}, returning the result as a double.
+     *
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public double evaluateDouble() throws Exception
+    {
+        return evaluateDouble(new HashMap<>());
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Double} or {@link Long}, returning the result as a double.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public double evaluateDouble(HashMap<String, Object> runtimeContext) throws Exception
+    {
+        return evaluateDouble(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates an expression bound as a {@link Double} or {@link Long}, returning the result as a double.  Long
+     * subtrees are evaluated on primitives and only widened where they meet a double.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public double evaluateDouble(Context context) throws Exception
+    {
+        if (_root.getType() != Long.class) {
+            _ensureType(Double.class);
+        }
+
+        if (!_isDeep) {
+            try {
+                if (_root.getType() == Long.class) {
+                    return evaluateLongExpression(new Frame(context, false), _root);
+                }
+
+                return evaluateDoubleExpression(new Frame(context, false), _root);
+            } catch (ArithmeticException e) {
+                // Redone below on boxed values.
+            }
+        }
+
+        return ((Number)evaluateWidened(context)).doubleValue();
     }
 
     /**
      * Recursively evaluates the provided expression based on its type.
      *
+     * @param frame The state of the current evaluation.
      * @param root The {@link BoundNode} to evaluate.
      * @return The result of the evaluation.
      * @throws Exception If an unrecoverable error was encountered during evaluation.
      */
-    private Object evaluateExpression(BoundExpression root) throws Exception
+    private Object evaluateExpression(Frame frame, BoundExpression root) throws Exception
     {
         if (root instanceof BoundLiteralExpression) {
             return ((BoundLiteralExpression) root).getValue();
         }
 
+        if (root instanceof BoundVariableExpression) {
+            return frame._context.get(((BoundVariableExpression)root).getKey());
+        }
+
         if (root instanceof BoundFunctionExpression) {
-            BoundFunctionExpression funcExpression = (BoundFunctionExpression)root;
+            return evaluateFunction(frame, (BoundFunctionExpression)root);
+        }
 
-            List<Object> args = new ArrayList<>();
-            for (BoundExpression boundArgs : funcExpression.getArguments()) {
-                args.add(evaluateExpression(boundArgs));
+        // Operations are evaluated on primitives (or scaled decimals) for their bound type, and only the result is
+        // boxed.  A widened evaluation keeps everything boxed so that it can promote.
+        if (!frame._widen && (root instanceof BoundUnaryExpression || root instanceof BoundBinaryExpression || root instanceof BoundConversionExpression)) {
+            Type type = root.getType();
+
+            if (type == Integer.class) {
+                return evaluateIntExpression(frame, root);
             }
 
-            try {
-                return funcExpression.getFunction().execute(args, _runtimeContext);
-            } catch (Exception e) {
-                throw new FunctionExecutionFailedException(
-                    e,
-                    funcExpression.getFunction(),
-                    args,
-                    _runtimeContext
-                );
+            if (type == Boolean.class) {
+                return evaluateBooleanExpression(frame, root);
+            }
+
+            if (type == BigDecimal.class) {
+                return evaluateDecimalExpression(frame, root);
+            }
+
+            if (type == Long.class) {
+                return evaluateLongExpression(frame, root);
+            }
+
+            if (type == Double.class) {
+                return evaluateDoubleExpression(frame, root);
             }
         }
 
+        if (root instanceof BoundConversionExpression) {
+            Object operand = evaluateExpression(frame, ((BoundConversionExpression)root).getOperand());
+
+            if (root.getType() == Double.class) {
+                return ((Number)operand).doubleValue();
+            }
+
+            if (root.getType() == BigDecimal.class) {
+                return Arithmetic.toDecimal(operand);
+            }
+
+            return Arithmetic.narrow(operand, root.getType());
+        }
+
         if (root instanceof BoundUnaryExpression) {
             BoundUnaryExpression u = (BoundUnaryExpression)root;
-            Object operand = evaluateExpression(u.getOperand());
+            Object operand = evaluateExpression(frame, u.getOperand());
             BoundUnaryOperationKind kind = u.getOperatorKind();
 
             switch (kind) {
                 case Identity:
                     return operand;
                 case Negation:
-                    return _negate(operand);
+                    return Arithmetic.narrow(Arithmetic.negate(operand), root.getType());
                 case LogicalNegation:
                     return !((boolean)operand);
                 default:
@@ -103,7 +488,7 @@ public final class Evaluator
         if (root instanceof BoundBinaryExpression) {
             BoundBinaryExpression b = (BoundBinaryExpression)root;
             BoundBinaryOperationKind operation = b.getOperatorKind();
-            Object left = evaluateExpression(b.getLeft());
+            Object left = evaluateExpression(frame, b.getLeft());
 
             // Support short-circuiting
             if (operation == BoundBinaryOperationKind.LogicalAnd && left.equals(false)) {
@@ -114,205 +499,688 @@ public final class Evaluator
                 return left;
             }
 
-            Object right = evaluateExpression(b.getRight());
+            Object right = evaluateExpression(frame, b.getRight());
 
             switch (operation) {
                 case Addition:
-                    return _evaluateAddition(left, right);
+                    return Arithmetic.narrow(Arithmetic.add(left, right), root.getType());
                 case Subtraction:
-                    return _evaluateSubtraction(left, right);
+                    return Arithmetic.narrow(Arithmetic.subtract(left, right), root.getType());
                 case Multiplication:
-                    return _evaluateMultiplication(left, right);
+                    return Arithmetic.narrow(Arithmetic.multiply(left, right), root.getType());
                 case Division:
-                    return _evaluateDivision(left, right);
+                    return Arithmetic.narrow(Arithmetic.divide(left, right), root.getType());
                 case LogicalAnd:
                     return (boolean)left && (boolean)right;
                 case LogicalOr:
                     return (boolean)left || (boolean)right;
+                default:
+                    return _evaluateComparison(operation, left, right);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Calls the {@link com.jahndigital.expressive.extensibility.IFunction} of the provided expression with its evaluated
+     * arguments.
+     *
+     * @param frame The state of the current evaluation.
+     * @param funcExpression The function to call.
+     * @return The result of the function.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    private Object evaluateFunction(Frame frame, BoundFunctionExpression funcExpression) throws Exception
+    {
+        if (funcExpression.isShared() && frame._sharedResults != null && frame._sharedResults.containsKey(funcExpression)) {
+            return frame._sharedResults.get(funcExpression);
+        }
+
+        List<Object> args = new ArrayList<>();
+        for (BoundExpression boundArgs : funcExpression.getArguments()) {
+            Object arg = evaluateExpression(frame, boundArgs);
+
+            // Functions are given the types they were bound with, even if an argument was promoted along the way.
+            args.add(frame._widen ? Arithmetic.exact(arg, boundArgs.getType()) : arg);
+        }
+
+        Object result;
+        try {
+            result = funcExpression.getFunction().execute(args, frame._context);
+        } catch (Exception e) {
+            throw new FunctionExecutionFailedException(
+                e,
+                funcExpression.getFunction(),
+                args,
+                frame._context.asMap()
+            );
+        }
+
+        if (funcExpression.isShared()) {
+            if (frame._sharedResults == null) {
+                frame._sharedResults = new IdentityHashMap<>();
+            }
+
+            frame._sharedResults.put(funcExpression, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Recursively evaluates an expression whose bound type is {@link Integer} on primitives.
+     *
+     * @param frame The state of the current evaluation.
+     * @param root The {@link BoundNode} to evaluate.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    private int evaluateIntExpression(Frame frame, BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            return (int)((BoundLiteralExpression)root).getValue();
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return (Integer)requireVariable(frame._context, ((BoundVariableExpression)root).getKey());
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return (int)evaluateFunction(frame, (BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            int operand = evaluateIntExpression(frame, u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return Math.negateExact(operand);
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+            int left = evaluateIntExpression(frame, b.getLeft());
+            int right = evaluateIntExpression(frame, b.getRight());
+
+            switch (operation) {
+                case Addition:
+                    return Math.addExact(left, right);
+                case Subtraction:
+                    return Math.subtractExact(left, right);
+                case Multiplication:
+                    return Math.multiplyExact(left, right);
+                case Division:
+                    return Arithmetic.divide(left, right);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to evaluate %s as an integer.", root.getClass().getSimpleName()));
+    }
+
+    /**
+     * Recursively evaluates an expression whose bound type is {@link Boolean} on primitives.
+     *
+     * @param frame The state of the current evaluation.
+     * @param root The {@link BoundNode} to evaluate.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
+     */
+    private boolean evaluateBooleanExpression(Frame frame, BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            return (boolean)((BoundLiteralExpression)root).getValue();
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return (Boolean)requireVariable(frame._context, ((BoundVariableExpression)root).getKey());
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return (boolean)evaluateFunction(frame, (BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            if (kind != BoundUnaryOperationKind.LogicalNegation) {
+                throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+
+            return !evaluateBooleanExpression(frame, u.getOperand());
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+            Type operandType = b.getLeft().getType();
+
+            if (operandType == Boolean.class) {
+                boolean left = evaluateBooleanExpression(frame, b.getLeft());
+
+                switch (operation) {
+                    case LogicalAnd:
+                        return left && evaluateBooleanExpression(frame, b.getRight());
+                    case LogicalOr:
+                        return left || evaluateBooleanExpression(frame, b.getRight());
+                    case Equals:
+                        return left == evaluateBooleanExpression(frame, b.getRight());
+                    case NotEquals:
+                        return left != evaluateBooleanExpression(frame, b.getRight());
+                    default:
+                        throw new Exception(String.format("Unexpected binary operator %s", operation));
+                }
+            }
+
+            // Doubles are compared with the primitive operators rather than a three-way compare, so that NaN is
+            // unordered and -0.0 equals 0.0.
+            if (operandType == Double.class) {
+                double left = evaluateDoubleExpression(frame, b.getLeft());
+                double right = evaluateDoubleExpression(frame, b.getRight());
+
+                switch (operation) {
+                    case Equals:
+                        return left == right;
+                    case NotEquals:
+                        return left != right;
+                    case GreaterThan:
+                        return left > right;
+                    case GreaterThanOrEqualTo:
+                        return left >= right;
+                    case LessThan:
+                        return left < right;
+                    case LessThanOrEqualTo:
+                        return left <= right;
+                    default:
+                        throw new Exception(String.format("Unexpected binary operator %s", operation));
+                }
+            }
+
+            int check;
+            if (operandType == Integer.class) {
+                check = Integer.compare(evaluateIntExpression(frame, b.getLeft()), evaluateIntExpression(frame, b.getRight()));
+            } else if (operandType == Long.class) {
+                check = Long.compare(evaluateLongExpression(frame, b.getLeft()), evaluateLongExpression(frame, b.getRight()));
+            } else {
+                check = compareDecimalExpressions(frame, b.getLeft(), b.getRight());
+            }
+
+            switch (operation) {
                 case Equals:
-                    return _evaluateEquality(left, right);
+                    return check == 0;
                 case NotEquals:
-                    return !_evaluateEquality(left, right);
+                    return check != 0;
                 case GreaterThan:
-                    return _compareNumbers(left, right, 1, false);
+                    return check > 0;
                 case GreaterThanOrEqualTo:
-                    return _compareNumbers(left, right, 1, true);
+                    return check >= 0;
                 case LessThan:
-                    return _compareNumbers(left, right, -1, false);
+                    return check < 0;
                 case LessThanOrEqualTo:
-                    return _compareNumbers(left, right, -1, true);
+                    return check <= 0;
                 default:
                     throw new Exception(String.format("Unexpected binary operator %s", operation));
             }
         }
 
-        return 0;
+        throw new Exception(String.format("Unable to evaluate %s as a boolean.", root.getClass().getSimpleName()));
     }
 
     /**
-     * Negate an {@link Integer} or {@link BigDecimal}.
+     * Recursively evaluates an expression whose bound type is {@link Long} on primitives.
      *
-     * @param num The number to negate.
-     * @return The negated number
-     * @throws Exception If an attempt was made to negate an unsupported type.
+     * @param frame The state of the current evaluation.
+     * @param root The {@link BoundNode} to evaluate.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
      */
-    private static Object _negate(Object num) throws Exception
+    private long evaluateLongExpression(Frame frame, BoundExpression root) throws Exception
     {
-        if (num instanceof Integer) {
-            return -((int)num);
+        if (root instanceof BoundConversionExpression) {
+            return evaluateIntExpression(frame, ((BoundConversionExpression)root).getOperand());
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            return (long)((BoundLiteralExpression)root).getValue();
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return (Long)frame._context.get(((BoundVariableExpression)root).getKey());
         }
 
-        if (num instanceof BigDecimal) {
-            return ((BigDecimal)num).negate();
+        if (root instanceof BoundFunctionExpression) {
+            return (long)evaluateFunction(frame, (BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            long operand = evaluateLongExpression(frame, u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return Math.negateExact(operand);
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
         }
 
-        throw new Exception(String.format("Invalid negation on type %s.", num.getClass()));
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+            long left = evaluateLongExpression(frame, b.getLeft());
+            long right = evaluateLongExpression(frame, b.getRight());
+
+            switch (operation) {
+                case Addition:
+                    return Math.addExact(left, right);
+                case Subtraction:
+                    return Math.subtractExact(left, right);
+                case Multiplication:
+                    return Math.multiplyExact(left, right);
+                case Division:
+                    return Arithmetic.divide(left, right);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to evaluate %s as a long.", root.getClass().getSimpleName()));
     }
 
     /**
-     * Returns the provided object as a {@link BigDecimal} or throws an exception.
+     * Recursively evaluates an expression whose bound type is {@link Double} on primitives.
      *
-     * @param num An {@link Integer} or {@link BigDecimal} object.
-     * @return A {@link BigDecimal} representing the provided value.
-     * @throws Exception If the conversion failed or an invalid type is provided.
+     * @param frame The state of the current evaluation.
+     * @param root The {@link BoundNode} to evaluate.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
      */
-    private static BigDecimal _getNumberAsDecimal(Object num) throws Exception
+    private double evaluateDoubleExpression(Frame frame, BoundExpression root) throws Exception
     {
-        if (num instanceof BigDecimal) {
-            return (BigDecimal)num;
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression operand = ((BoundConversionExpression)root).getOperand();
+
+            if (operand.getType() == Integer.class) {
+                return evaluateIntExpression(frame, operand);
+            }
+
+            return evaluateLongExpression(frame, operand);
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            return (double)((BoundLiteralExpression)root).getValue();
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return (Double)frame._context.get(((BoundVariableExpression)root).getKey());
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return (double)evaluateFunction(frame, (BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            double operand = evaluateDoubleExpression(frame, u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return -operand;
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
         }
 
-        if (num instanceof Integer) {
-            return new BigDecimal((int)num);
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+            double left = evaluateDoubleExpression(frame, b.getLeft());
+            double right = evaluateDoubleExpression(frame, b.getRight());
+
+            switch (operation) {
+                case Addition:
+                    return left + right;
+                case Subtraction:
+                    return left - right;
+                case Multiplication:
+                    return left * right;
+                case Division:
+                    return left / right;
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
         }
 
-        throw new Exception(String.format("Invalid conversion from type %s to decimal.", num.getClass()));
+        throw new Exception(String.format("Unable to evaluate %s as a double.", root.getClass().getSimpleName()));
     }
 
     /**
-     * Converts the provided objects to {@link BigDecimal} objects.
+     * Recursively evaluates a numeric expression as a {@link BigDecimal}, keeping integer subtrees on primitives.
      *
-     * @param left The left operand
-     * @param right The right operand
-     * @return An array of two values where index 0 is the left operand and 1 is the right.
-     * @throws Exception If an error occurred parsing the arguments to decimals.
+     * @param frame The state of the current evaluation.
+     * @param root The {@link BoundNode} to evaluate.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
      */
-    private static BigDecimal[] _getNumbersAsDecimal(Object left, Object right) throws Exception
+    private BigDecimal evaluateDecimalExpression(Frame frame, BoundExpression root) throws Exception
     {
-        return new BigDecimal[] { _getNumberAsDecimal(left), _getNumberAsDecimal(right) };
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression operand = ((BoundConversionExpression)root).getOperand();
+
+            if (operand.getType() == Integer.class) {
+                return BigDecimal.valueOf(evaluateIntExpression(frame, operand));
+            }
+
+            return BigDecimal.valueOf(evaluateLongExpression(frame, operand));
+        }
+
+        if (root instanceof BoundUnaryExpression || root instanceof BoundBinaryExpression) {
+            long value = evaluateScaledExpression(frame, root);
+            return value == ScaledDecimal.OVERFLOW ? frame._overflow : ScaledDecimal.toBigDecimal(value);
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            return (BigDecimal)((BoundLiteralExpression)root).getValue();
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return (BigDecimal)frame._context.get(((BoundVariableExpression)root).getKey());
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return (BigDecimal)evaluateFunction(frame, (BoundFunctionExpression)root);
+        }
+
+        throw new Exception(String.format("Unable to evaluate %s as a decimal.", root.getClass().getSimpleName()));
     }
 
     /**
-     * Add two numeric values together.
+     * Recursively evaluates a numeric expression as a {@link ScaledDecimal}, keeping integer subtrees on primitives.
+     * Anything that doesn't fit is computed with {@link BigDecimal} instead, in which case the result is left in
+     * {@link Frame#_overflow} and {@link ScaledDecimal#OVERFLOW} is returned, so nothing is evaluated twice.
      *
-     * @param left The left operand
-     * @param right The right operand
-     * @return The sum of the two operands.
-     * @throws Exception If an error occurred parsing the arguments to decimals.
+     * @param frame The state of the current evaluation.
+     * @param root The {@link BoundNode} to evaluate.
+     * @return The packed result, or {@link ScaledDecimal#OVERFLOW}.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
      */
-    private static Object _evaluateAddition(Object left, Object right) throws Exception
+    private long evaluateScaledExpression(Frame frame, BoundExpression root) throws Exception
     {
-        if (left instanceof Integer && right instanceof Integer) {
-            return (int)left + (int)right;
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression operand = ((BoundConversionExpression)root).getOperand();
+
+            if (operand.getType() == Integer.class) {
+                return ScaledDecimal.valueOf(evaluateIntExpression(frame, operand));
+            }
+
+            long value = evaluateLongExpression(frame, operand);
+            long packed = ScaledDecimal.valueOf(value);
+
+            if (packed == ScaledDecimal.OVERFLOW) {
+                frame._overflow = BigDecimal.valueOf(value);
+            }
+
+            return packed;
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            BoundLiteralExpression literal = (BoundLiteralExpression)root;
+            long value = literal.getScaledValue();
+
+            if (value == ScaledDecimal.OVERFLOW) {
+                frame._overflow = (BigDecimal)literal.getValue();
+            }
+
+            return value;
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return _pack(frame, frame._context.get(((BoundVariableExpression)root).getKey()));
         }
 
-        BigDecimal[] values = _getNumbersAsDecimal(left, right);
-        return values[0].add(values[1]);
+        if (root instanceof BoundFunctionExpression) {
+            return _pack(frame, evaluateFunction(frame, (BoundFunctionExpression)root));
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            long operand = evaluateScaledExpression(frame, u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    if (operand == ScaledDecimal.OVERFLOW) {
+                        frame._overflow = frame._overflow.negate();
+                        return ScaledDecimal.OVERFLOW;
+                    }
+
+                    return ScaledDecimal.negate(operand);
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+            long left = evaluateScaledExpression(frame, b.getLeft());
+            BigDecimal bigLeft = left == ScaledDecimal.OVERFLOW ? frame._overflow : null;
+            long right = evaluateScaledExpression(frame, b.getRight());
+            BigDecimal bigRight = right == ScaledDecimal.OVERFLOW ? frame._overflow : null;
+
+            if (bigLeft == null && bigRight == null) {
+                long result;
+
+                switch (operation) {
+                    case Addition:
+                        result = ScaledDecimal.add(left, right);
+                        break;
+                    case Subtraction:
+                        result = ScaledDecimal.subtract(left, right);
+                        break;
+                    case Multiplication:
+                        result = ScaledDecimal.multiply(left, right);
+                        break;
+                    case Division:
+                        result = ScaledDecimal.divide(left, right);
+                        break;
+                    default:
+                        throw new Exception(String.format("Unexpected binary operator %s", operation));
+                }
+
+                if (result != ScaledDecimal.OVERFLOW) {
+                    return result;
+                }
+            }
+
+            // The operands or the result don't fit, so fall back to BigDecimal.
+            if (bigLeft == null) {
+                bigLeft = ScaledDecimal.toBigDecimal(left);
+            }
+
+            if (bigRight == null) {
+                bigRight = ScaledDecimal.toBigDecimal(right);
+            }
+
+            switch (operation) {
+                case Addition:
+                    frame._overflow = bigLeft.add(bigRight);
+                    break;
+                case Subtraction:
+                    frame._overflow = bigLeft.subtract(bigRight);
+                    break;
+                case Multiplication:
+                    frame._overflow = bigLeft.multiply(bigRight);
+                    break;
+                case Division:
+                    frame._overflow = bigLeft.divide(bigRight, RoundingMode.HALF_EVEN);
+                    break;
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+
+            return ScaledDecimal.OVERFLOW;
+        }
+
+        throw new Exception(String.format("Unable to evaluate %s as a decimal.", root.getClass().getSimpleName()));
     }
 
     /**
-     * Subtract two numeric values.
+     * Compares two numeric expressions as decimals, on scaled decimals where they fit.
      *
-     * @param left The left operand
-     * @param right The right operand
-     * @return The difference of the two operands.
-     * @throws Exception If an error occurred parsing the arguments to decimals.
+     * @return The result of {@link BigDecimal#compareTo(BigDecimal)}.
+     * @throws Exception If an unrecoverable error was encountered during evaluation.
      */
-    private static Object _evaluateSubtraction(Object left, Object right) throws Exception
+    private int compareDecimalExpressions(Frame frame, BoundExpression left, BoundExpression right) throws Exception
     {
-        if (left instanceof Integer && right instanceof Integer) {
-            return (int)left - (int)right;
+        long a = evaluateScaledExpression(frame, left);
+        BigDecimal bigLeft = a == ScaledDecimal.OVERFLOW ? frame._overflow : null;
+        long b = evaluateScaledExpression(frame, right);
+
+        if (bigLeft == null && b != ScaledDecimal.OVERFLOW) {
+            return ScaledDecimal.compare(a, b);
         }
 
-        BigDecimal[] values = _getNumbersAsDecimal(left, right);
-        return values[0].subtract(values[1]);
+        BigDecimal bigRight = b == ScaledDecimal.OVERFLOW ? frame._overflow : ScaledDecimal.toBigDecimal(b);
+        return (bigLeft == null ? ScaledDecimal.toBigDecimal(a) : bigLeft).compareTo(bigRight);
     }
 
     /**
-     * Multiply two numeric values.
-     *
-     * @param left The left operand
-     * @param right The right operand
-     * @return The product of the two operands.
-     * @throws Exception If an error occurred parsing the arguments to decimals.
+     * Packs the value of a variable or function as a {@link ScaledDecimal}, leaving it in {@link Frame#_overflow} if it
+     * doesn't fit.
      */
-    private static Object _evaluateMultiplication(Object left, Object right) throws Exception
+    private static long _pack(Frame frame, Object value)
     {
-        if (left instanceof Integer && right instanceof Integer) {
-            return (int)left * (int)right;
+        BigDecimal decimal = (BigDecimal)value;
+        long packed = ScaledDecimal.valueOf(decimal);
+
+        if (packed == ScaledDecimal.OVERFLOW) {
+            frame._overflow = decimal;
         }
 
-        BigDecimal[] values = _getNumbersAsDecimal(left, right);
-        return values[0].multiply(values[1]);
+        return packed;
     }
 
     /**
-     * Divide two numeric values.
-     *
-     * @param left The left operand
-     * @param right The right operand
-     * @return The quotient of the two operands.
-     * @throws Exception If an error occurred parsing the arguments to decimals.
+     * Gets the compiled form of a tree that's too deep to evaluate by recursing, compiling it on first use.  Programs
+     * are immutable, so compiling more than once when called from several threads at once is harmless.
      */
-    private static Object _evaluateDivision(Object left, Object right) throws Exception
+    private Program getProgram() throws Exception
     {
-        BigDecimal[] values = _getNumbersAsDecimal(left, right);
-        return values[0].divide(values[1], RoundingMode.HALF_EVEN);
+        Program program = _program;
+
+        if (program == null) {
+            program = _program = ProgramCompiler.compile(_root);
+        }
+
+        return program;
     }
 
     /**
-     * Determine if the left and right values are equal to each other.
+     * Ensures the root of the tree was bound to the provided type before a typed evaluation.
      *
-     * @param left The left operand
-     * @param right The right operand
-     * @return true if the two values are equal
-     * @throws Exception If an error occurred parsing the arguments to decimals.
+     * @param type The expected type.
+     * @throws Exception If the root is bound to another type.
      */
-    private static Boolean _evaluateEquality(Object left, Object right) throws Exception
+    private void _ensureType(Type type) throws Exception
     {
-        // Comparing int and decimal types requires conversion
-        if (left instanceof BigDecimal || right instanceof BigDecimal) {
-            return _compareNumbers(left, right, 0, false);
+        if (_root.getType() != type) {
+            throw new Exception(String.format("Expression of type %s cannot be evaluated as %s.", _root.getType().getTypeName(), type.getTypeName()));
         }
-
-        return left.equals(right);
     }
 
     /**
-     * Compares two numbers using Comparable.
+     * Compares two boxed values.  Doubles are compared with the primitive operators so that NaN is unordered, other
+     * numbers by value whatever their types, and anything else only for equality.
      *
+     * @param operation The comparison to perform.
      * @param left The left operand.
      * @param right The right operand.
-     * @param compare The integer to compare to.  -1 is less than, 0 is equal, and 1 is greater than.
-     * @param equality If the comparison should also be true if the values are equal.
-     * @return The result of the comparison as a {@link Boolean}.
-     * @throws Exception If a failure occurred during type conversion.
+     * @return The result of the comparison.
+     * @throws Exception If the operation isn't a comparison.
      */
-    private static Boolean _compareNumbers(Object left, Object right, int compare, boolean equality) throws Exception
+    private static boolean _evaluateComparison(BoundBinaryOperationKind operation, Object left, Object right) throws Exception
     {
         int check;
 
-        if (left instanceof Integer && right instanceof Integer) {
-            check = Integer.compare((int)left, (int)right);
+        if (left instanceof Double || right instanceof Double) {
+            double a = ((Number)left).doubleValue();
+            double b = ((Number)right).doubleValue();
+
+            switch (operation) {
+                case Equals:
+                    return a == b;
+                case NotEquals:
+                    return a != b;
+                case GreaterThan:
+                    return a > b;
+                case GreaterThanOrEqualTo:
+                    return a >= b;
+                case LessThan:
+                    return a < b;
+                case LessThanOrEqualTo:
+                    return a <= b;
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        if (left instanceof Number && right instanceof Number) {
+            check = Arithmetic.compare(left, right);
         } else {
-            BigDecimal[] values = _getNumbersAsDecimal(left, right);
-            check = values[0].compareTo(values[1]);
+            check = left.equals(right) ? 0 : 1;
+        }
+
+        switch (operation) {
+            case Equals:
+                return check == 0;
+            case NotEquals:
+                return check != 0;
+            case GreaterThan:
+                return check > 0;
+            case GreaterThanOrEqualTo:
+                return check >= 0;
+            case LessThan:
+                return check < 0;
+            case LessThanOrEqualTo:
+                return check <= 0;
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
         }
+    }
+
+    /**
+     * Reads a variable that's about to be unboxed, which can't be done if it hasn't been set.
+     *
+     * @throws IllegalStateException If the variable has no value in the context.
+     */
+    static Object requireVariable(Context context, ContextKey<?> key)
+    {
+        Object value = context.get(key);
 
-        if (equality) {
-            return check == compare || check == 0;
+        if (value == null) {
+            throw new IllegalStateException(String.format("No value was provided for variable %s.", key.getName()));
         }
 
-        return check == compare;
+        return value;
     }
 }
@@ -0,0 +1,142 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.Schema;
+import com.jahndigital.expressive.vm.Program;
+import com.jahndigital.expressive.vm.ProgramCompiler;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * An expression that has been lexed, parsed, bound, and compiled once and may then be evaluated any number of times.
+ *
+ * Expressions are immutable and hold no state between evaluations, so a single instance may be evaluated from any
+ * number of threads at once, each with its own runtime context.  Errors are reported when the expression is compiled,
+ * so evaluation doesn't need to check for them.
+ */
+public final class Expression implements CompiledExpression
+{
+    private final String _text;
+    private final List<Diagnostic> _diagnostics;
+    private final Type _type;
+    private final Program _program;
+
+    /**
+     * Compiles the provided text, resolving functions from the default {@link FunctionRepository}.
+     *
+     * @param text The expression to compile.
+     * @throws Exception If the expression has errors.
+     */
+    public static Expression compile(String text) throws Exception
+    {
+        return compile(text, FunctionRepository.DefaultFunctionRepository);
+    }
+
+    /**
+     * Compiles the provided text.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to resolve functions from.
+     * @throws Exception If the expression has errors.
+     */
+    public static Expression compile(String text, FunctionRepository functions) throws Exception
+    {
+        return compile(text, functions, new Schema());
+    }
+
+    /**
+     * Compiles the provided text, resolving variables against the provided schema.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables that may be referenced by name.
+     * @throws Exception If the expression has errors.
+     */
+    public static Expression compile(String text, FunctionRepository functions, Schema schema) throws Exception
+    {
+        return compile(text, functions, schema, NumericMode.Exact);
+    }
+
+    /**
+     * Compiles the provided text, resolving variables against the provided schema and typing numbers with the provided
+     * mode.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables that may be referenced by name.
+     * @param mode How numeric literals and the operations between them are typed.
+     * @throws Exception If the expression has errors.
+     */
+    public static Expression compile(String text, FunctionRepository functions, Schema schema, NumericMode mode)
+        throws Exception
+    {
+        BoundSyntaxTree tree = BoundSyntaxTree.compile(text, functions, schema, mode);
+        Program program = ProgramCompiler.compile(tree);
+        Type type = tree.getRoot() == null ? null : tree.getRoot().getType();
+
+        return new Expression(text, tree.getDiagnostics(), type, program);
+    }
+
+    /**
+     * Init
+     *
+     * @param text The source of the expression.
+     * @param diagnostics Read only diagnostics from compiling the expression.
+     * @param type The type the expression was bound to.
+     * @param program The compiled expression.
+     */
+    private Expression(String text, List<Diagnostic> diagnostics, Type type, Program program)
+    {
+        _text = text;
+        _diagnostics = diagnostics;
+        _type = type;
+        _program = program;
+    }
+
+    /**
+     * Gets the source of the expression.
+     */
+    public String getText()
+    {
+        return _text;
+    }
+
+    /**
+     * Gets a read only list of the non-error diagnostics from compiling the expression (E.g. optimizations).
+     */
+    public List<Diagnostic> getDiagnostics()
+    {
+        return _diagnostics;
+    }
+
+    /**
+     * Gets the type of the value the expression evaluates to.
+     */
+    public Type getType()
+    {
+        return _type;
+    }
+
+    /**
+     * Gets the program the expression was compiled to.
+     */
+    Program getProgram()
+    {
+        return _program;
+    }
+
+    @Override
+    public Object evaluate(Context context) throws Exception
+    {
+        return _program.evaluate(context);
+    }
+
+    @Override
+    public String toString()
+    {
+        return _text;
+    }
+}
@@ -0,0 +1,367 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.extensibility.Schema;
+import com.jahndigital.expressive.vm.Program;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of {@link Expression} objects keyed by their source text, {@link FunctionRepository},
+ * {@link Schema}, and {@link NumericMode}, so that the same expression is only lexed, parsed, and bound once.  May be
+ * used from any number of threads at once.
+ *
+ * The cache is bounded by both the number of expressions and their estimated size in bytes.  When it's full, the least
+ * recently used expression is evicted, unless the new expression has been requested less often than it; in that case
+ * the new expression is returned without being cached.  Request frequency is estimated with a {@link FrequencySketch},
+ * which also remembers expressions that were rejected or evicted.
+ *
+ * Functions and variables are resolved when an expression is first compiled.  Clear the cache after replacing a
+ * function in a repository.
+ */
+public final class ExpressionCache
+{
+    /**
+     * The number of keys the {@link FrequencySketch} is sized for at first.  It's widened as the cache fills, so a large
+     * bound (E.g. a cache limited only by weight) doesn't allocate a large sketch up front.
+     */
+    private static final int INITIAL_SKETCH_SIZE = 64;
+
+    /**
+     * Used for expressions without variables.  Never declares anything, so it can be shared by every cache.
+     */
+    private static final Schema EMPTY_SCHEMA = new Schema();
+
+    private final int _maximumSize;
+    private final long _maximumWeight;
+    private final ConcurrentHashMap<Key, Entry> _entries = new ConcurrentHashMap<>();
+
+    /**
+     * Guards {@link #_order}, {@link #_sketch}, and {@link #_weight}.  Lookups only update recency and frequency if the
+     * lock is free, so a hit never waits on another thread.
+     */
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final LinkedHashMap<Key, Entry> _order = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch _sketch;
+    private long _weight = 0;
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+
+    /**
+     * Init without a limit on the estimated size of the cached expressions.
+     *
+     * @param maximumSize The maximum number of expressions to cache.
+     */
+    public ExpressionCache(int maximumSize)
+    {
+        this(maximumSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * Init
+     *
+     * @param maximumSize The maximum number of expressions to cache.
+     * @param maximumWeight The maximum estimated size of the cached expressions in bytes.
+     */
+    public ExpressionCache(int maximumSize, long maximumWeight)
+    {
+        if (maximumSize <= 0 || maximumWeight <= 0) {
+            throw new IllegalArgumentException("The maximum size and weight of the cache must be positive.");
+        }
+
+        _maximumSize = maximumSize;
+        _maximumWeight = maximumWeight;
+        _sketch = new FrequencySketch(Math.min(maximumSize, INITIAL_SKETCH_SIZE));
+    }
+
+    /**
+     * Gets the compiled expression for the provided text, resolving functions from the default
+     * {@link FunctionRepository}.
+     *
+     * @param text The expression to compile.
+     * @throws Exception If the expression has errors.
+     */
+    public Expression get(String text) throws Exception
+    {
+        return get(text, FunctionRepository.DefaultFunctionRepository);
+    }
+
+    /**
+     * Gets the compiled expression for the provided text, compiling and caching it if required.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to resolve functions from.
+     * @throws Exception If the expression has errors.
+     */
+    public Expression get(String text, FunctionRepository functions) throws Exception
+    {
+        return get(text, functions, EMPTY_SCHEMA);
+    }
+
+    /**
+     * Gets the compiled expression for the provided text and variables, compiling and caching it if required.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables that may be referenced by name.
+     * @throws Exception If the expression has errors.
+     */
+    public Expression get(String text, FunctionRepository functions, Schema schema) throws Exception
+    {
+        return get(text, functions, schema, NumericMode.Exact);
+    }
+
+    /**
+     * Gets the compiled expression for the provided text, variables, and numeric mode, compiling and caching it if
+     * required.  The same text compiled in different modes is cached separately.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables that may be referenced by name.
+     * @param mode How numeric literals and the operations between them are typed.
+     * @throws Exception If the expression has errors.
+     */
+    public Expression get(String text, FunctionRepository functions, Schema schema, NumericMode mode) throws Exception
+    {
+        Key key = new Key(text, functions, schema, mode);
+        Entry entry = _entries.get(key);
+
+        if (entry != null) {
+            _hits.increment();
+
+            if (_lock.tryLock()) {
+                try {
+                    _sketch.increment(key);
+                    _order.get(key);
+                } finally {
+                    _lock.unlock();
+                }
+            }
+
+            return entry._expression;
+        }
+
+        _misses.increment();
+        Expression expression = Expression.compile(text, functions, schema, mode);
+        entry = new Entry(expression, estimateWeight(expression));
+
+        Entry existing = _entries.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing._expression;
+        }
+
+        _lock.lock();
+        try {
+            _sketch.ensureCapacity(Math.min(_order.size() + 1, _maximumSize));
+            _sketch.increment(key);
+
+            // The cache may have been cleared since the entry was added.
+            if (_entries.get(key) != entry) {
+                return expression;
+            }
+
+            _order.put(key, entry);
+            _weight += entry._weight;
+            evict(key);
+        } finally {
+            _lock.unlock();
+        }
+
+        return expression;
+    }
+
+    /**
+     * Removes every expression from the cache.  Statistics aren't reset.
+     */
+    public void clear()
+    {
+        _lock.lock();
+        try {
+            _entries.clear();
+            _order.clear();
+            _weight = 0;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of cached expressions.
+     */
+    public int size()
+    {
+        return _entries.size();
+    }
+
+    /**
+     * Gets the estimated size of the cached expressions in bytes.
+     */
+    public long getWeight()
+    {
+        _lock.lock();
+        try {
+            return _weight;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests that were served from the cache.
+     */
+    public long getHitCount()
+    {
+        return _hits.sum();
+    }
+
+    /**
+     * Gets the number of requests that required an expression to be compiled.
+     */
+    public long getMissCount()
+    {
+        return _misses.sum();
+    }
+
+    /**
+     * Gets the number of expressions that were removed or rejected to keep the cache within its bounds.
+     */
+    public long getEvictionCount()
+    {
+        return _evictions.sum();
+    }
+
+    /**
+     * Gets the ratio of requests that were served from the cache, or 1 if nothing has been requested.
+     */
+    public double getHitRate()
+    {
+        long hits = _hits.sum();
+        long requests = hits + _misses.sum();
+        return requests == 0 ? 1.0 : (double)hits / requests;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+            "ExpressionCache{size=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.3f}",
+            size(),
+            getHitCount(),
+            getMissCount(),
+            getEvictionCount(),
+            getHitRate()
+        );
+    }
+
+    /**
+     * Removes entries until the cache is within its bounds.  The candidate that was just added competes with the least
+     * recently used entry, and whichever has been requested less often is removed.  Must hold the lock.
+     *
+     * @param candidate The key that was just added.
+     */
+    private void evict(Key candidate)
+    {
+        while (_order.size() > _maximumSize || _weight > _maximumWeight) {
+            Iterator<Key> iterator = _order.keySet().iterator();
+            Key victim = iterator.next();
+
+            if (victim.equals(candidate)) {
+                // The candidate is the only entry left, so it's too heavy to cache on its own.
+                remove(candidate);
+                continue;
+            }
+
+            if (_sketch.frequency(candidate) <= _sketch.frequency(victim)) {
+                remove(candidate);
+                return;
+            }
+
+            remove(victim);
+        }
+    }
+
+    /**
+     * Removes an entry as an eviction.  Must hold the lock.
+     */
+    private void remove(Key key)
+    {
+        Entry entry = _order.remove(key);
+        _entries.remove(key, entry);
+        _weight -= entry._weight;
+        _evictions.increment();
+    }
+
+    /**
+     * Estimates the memory retained by a cached expression in bytes, including its key.
+     */
+    private static long estimateWeight(Expression expression)
+    {
+        String text = expression.getText();
+        Program program = expression.getProgram();
+
+        return 96L                                      // Key, entry, and map nodes
+            + 40L + 2L * text.length()                  // Source text
+            + 80L + 4L * program.getCode().length       // Expression, program, and instructions
+            + 16L + 24L * program.getConstants().size();
+    }
+
+    /**
+     * Identifies an expression by its text and the repositories its functions and variables are resolved from.
+     */
+    private static final class Key
+    {
+        private final String _text;
+        private final FunctionRepository _functions;
+        private final Schema _schema;
+        private final NumericMode _mode;
+        private final int _hash;
+
+        Key(String text, FunctionRepository functions, Schema schema, NumericMode mode)
+        {
+            _text = text;
+            _functions = functions;
+            _schema = schema;
+            _mode = mode;
+            _hash = 31 * (31 * (31 * text.hashCode() + System.identityHashCode(functions)) + System.identityHashCode(schema))
+                + mode.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key)o;
+            return _functions == other._functions
+                && _schema == other._schema
+                && _mode == other._mode
+                && _text.equals(other._text);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hash;
+        }
+    }
+
+    private static final class Entry
+    {
+        private final Expression _expression;
+        private final long _weight;
+
+        Entry(Expression expression, long weight)
+        {
+            _expression = expression;
+            _weight = weight;
+        }
+    }
+}
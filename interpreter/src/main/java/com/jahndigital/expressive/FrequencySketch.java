@@ -0,0 +1,134 @@
+package com.jahndigital.expressive;
+
+/**
+ * A count-min sketch of 4-bit counters that estimates how often a key has been seen recently.  Counters are halved once
+ * enough increments have been recorded, so keys that used to be popular age out.  Not thread-safe.
+ */
+final class FrequencySketch
+{
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * The widest the sketch gets, in longs (8 MB).  Larger caches share counters, which only makes the estimates
+     * slightly less accurate.
+     */
+    private static final int MAX_LENGTH = 1 << 20;
+
+    private long[] _table;
+    private int _sampleSize;
+    private int _size = 0;
+
+    /**
+     * Init
+     *
+     * @param expectedSize The number of keys the owner expects to hold, which decides the width of the sketch.  Sizes
+     *                     are clamped between 16 and {@link #MAX_LENGTH}.
+     */
+    FrequencySketch(int expectedSize)
+    {
+        resize(expectedSize);
+    }
+
+    /**
+     * Widens the sketch if it's narrower than the provided number of keys.  The width is at least doubled, and the
+     * counters are cleared since they can't be redistributed, so owners should grow it as they fill rather than size
+     * it for their maximum up front.
+     *
+     * @param expectedSize The number of keys the owner now holds.
+     */
+    void ensureCapacity(int expectedSize)
+    {
+        if (expectedSize > _table.length && _table.length < MAX_LENGTH) {
+            resize(expectedSize);
+        }
+    }
+
+    /**
+     * Gets the estimated number of times the key was seen, between 0 and 15.
+     */
+    int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, counter(hash, i));
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records an occurrence of the key.
+     */
+    void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int offset = offsetOf(hash, i);
+
+            if (((_table[index] >>> offset) & MAX_COUNT) != MAX_COUNT) {
+                _table[index] += 1L << offset;
+                added = true;
+            }
+        }
+
+        if (added && ++_size == _sampleSize) {
+            reset();
+        }
+    }
+
+    private void resize(int expectedSize)
+    {
+        int size = Math.min(Math.max(expectedSize, 16), MAX_LENGTH);
+        _table = new long[Integer.highestOneBit(size - 1) << 1];
+        _sampleSize = _table.length * 10;
+        _size = 0;
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset()
+    {
+        for (int i = 0; i < _table.length; i++) {
+            _table[i] = (_table[i] >>> 1) & RESET_MASK;
+        }
+
+        _size /= 2;
+    }
+
+    private int counter(int hash, int i)
+    {
+        return (int)((_table[indexOf(hash, i)] >>> offsetOf(hash, i)) & MAX_COUNT);
+    }
+
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int)h & (_table.length - 1);
+    }
+
+    /**
+     * Each long holds sixteen counters, and each hash function uses a different one.
+     */
+    private static int offsetOf(int hash, int i)
+    {
+        return (((hash >>> (i << 3)) & 3) << 2) + (i << 4);
+    }
+
+    private static int spread(int hash)
+    {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
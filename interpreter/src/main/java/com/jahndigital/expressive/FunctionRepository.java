@@ -1,28 +1,129 @@
 package com.jahndigital.expressive;
 
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
 import com.jahndigital.expressive.extensibility.IFunction;
 
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.*;
 
 /**
  * A repository built-in functions as {@link IFunction}s.
+ *
+ * Functions are indexed by their case-insensitive name, and several functions with the same name may be registered as
+ * overloads as long as they accept different arguments.  The index is an immutable snapshot that's replaced whenever a
+ * function is added or removed, so lookups never wait on registration and may happen from any number of threads at
+ * once.  Expressions that were already compiled keep calling the functions they were compiled with.
  */
 public final class FunctionRepository implements Iterable<IFunction>
 {
     public static final FunctionRepository DefaultFunctionRepository = new FunctionRepository();
 
-    private final HashSet<IFunction> _functions = new HashSet<>();
+    /**
+     * The overloads of every function keyed by their normalized name.  Never modified once published.
+     */
+    private volatile Map<String, List<IFunction>> _functions = Collections.emptyMap();
 
     @Override
     public Iterator<IFunction> iterator()
     {
-        return _functions.iterator();
+        ArrayList<IFunction> functions = new ArrayList<>();
+        for (List<IFunction> overloads : _functions.values()) {
+            functions.addAll(overloads);
+        }
+
+        return Collections.unmodifiableList(functions).iterator();
     }
 
+    /**
+     * Adds a function.  A function that has the same name and accepts the same arguments is replaced, otherwise the
+     * function is added as an overload.
+     *
+     * @param function The function to add.
+     * @return This repository.
+     */
     public FunctionRepository add(IFunction function)
     {
-        _functions.add(function);
+        synchronized (this) {
+            String name = normalize(function.getName());
+            ArrayList<IFunction> overloads = new ArrayList<>(find(name));
+            overloads.removeIf(x -> hasSameArguments(x, function));
+            overloads.add(function);
+
+            publish(name, overloads);
+        }
+
         return this;
     }
+
+    /**
+     * Removes every overload of a function.
+     *
+     * @param name The case-insensitive name of the function.
+     * @return True if the function was registered.
+     */
+    public boolean remove(String name)
+    {
+        synchronized (this) {
+            String key = normalize(name);
+            if (!_functions.containsKey(key)) {
+                return false;
+            }
+
+            publish(key, Collections.emptyList());
+            return true;
+        }
+    }
+
+    /**
+     * Gets every overload of a function, in the order they were added.
+     *
+     * @param name The case-insensitive name of the function.
+     * @return A read only list that's empty if no function has the provided name.
+     */
+    public List<IFunction> find(String name)
+    {
+        List<IFunction> overloads = _functions.get(normalize(name));
+        return overloads == null ? Collections.emptyList() : overloads;
+    }
+
+    /**
+     * Replaces the overloads of a function and publishes a new snapshot.  Must be synchronized on this repository.
+     */
+    private void publish(String name, List<IFunction> overloads)
+    {
+        HashMap<String, List<IFunction>> functions = new HashMap<>(_functions);
+
+        if (overloads.isEmpty()) {
+            functions.remove(name);
+        } else {
+            functions.put(name, Collections.unmodifiableList(overloads));
+        }
+
+        _functions = Collections.unmodifiableMap(functions);
+    }
+
+    private static String normalize(String name)
+    {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns true if both functions accept the same number of arguments, and the same types for every argument.
+     */
+    private static boolean hasSameArguments(IFunction left, IFunction right)
+    {
+        List<ArgumentDefinition> a = left.getArguments();
+        List<ArgumentDefinition> b = right.getArguments();
+
+        if (a.size() != b.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < a.size(); i++) {
+            if (!new HashSet<>(a.get(i).getTypes()).equals(new HashSet<>(b.get(i).getTypes()))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
 }
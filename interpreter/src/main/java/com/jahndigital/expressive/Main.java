@@ -13,6 +13,7 @@ public class Main
         FunctionRepository.DefaultFunctionRepository.add(new HelloWorldFunction());
 
         boolean showTree = false;
+        boolean showInfo = false;
         Scanner scanner = new Scanner(System.in);
 
         while (true) {
@@ -29,6 +30,12 @@ public class Main
                 continue;
             }
 
+            if (line.equals("#info")) {
+                showInfo = !showInfo;
+                System.out.println("Toggled info diagnostics.");
+                continue;
+            }
+
             SyntaxTree tree = SyntaxTree.parse(line);
 
             if (showTree) {
@@ -44,9 +51,14 @@ public class Main
                 try {
                     boundTree = tree.bind();
 
-                    // Print binding diagnostics if available
-                    if (boundTree.getDiagnostics().iterator().hasNext()) {
-                        boundTree.getDiagnostics().forEach(System.out::println);
+                    // Print binding diagnostics if available, only stopping if there are errors.  Info diagnostics
+                    // (E.g. folded constants) are reported for most input, so they're hidden unless asked for.
+                    for (Diagnostic diagnostic : boundTree.getDiagnostics()) {
+                        if (showInfo || diagnostic.getLevel() != DiagnosticLevel.INFO) {
+                            System.out.println(diagnostic);
+                        }
+                    }
+                    if (!boundTree.getErrors().isEmpty()) {
                         continue;
                     }
                 } catch (Exception e) {
@@ -0,0 +1,248 @@
+package com.jahndigital.expressive;
+
+import java.math.BigDecimal;
+
+/**
+ * Decimal arithmetic on values packed into a single long, so that typical amounts (E.g. money) can be added, multiplied,
+ * and compared without allocating a {@link BigDecimal} for every intermediate result.
+ *
+ * A packed value holds an unscaled value in its upper 56 bits and a scale from 0 to {@link #MAX_SCALE} in its lower 8
+ * bits, and represents unscaled * 10^-scale exactly like a {@link BigDecimal}.  Every operation produces the same value
+ * and scale that the equivalent {@link BigDecimal} operation would.  When a value or result doesn't fit, operations
+ * return {@link #OVERFLOW} and the caller is expected to redo the operation with {@link BigDecimal}.
+ */
+public final class ScaledDecimal
+{
+    /**
+     * Returned instead of a packed value when the result doesn't fit.  Never a valid packed value.
+     */
+    public static final long OVERFLOW = Long.MIN_VALUE;
+
+    /**
+     * The largest scale that can be packed.
+     */
+    public static final int MAX_SCALE = 18;
+
+    private static final int SCALE_BITS = 8;
+    private static final long SCALE_MASK = (1L << SCALE_BITS) - 1;
+    private static final long MAX_UNSCALED = (1L << (63 - SCALE_BITS)) - 1;
+    private static final long MIN_UNSCALED = -MAX_UNSCALED;
+
+    /**
+     * Values with at most this many digits always fit, regardless of their scale.
+     */
+    private static final int SAFE_PRECISION = 16;
+
+    private static final long[] POWERS_OF_TEN = {
+        1L,
+        10L,
+        100L,
+        1_000L,
+        10_000L,
+        100_000L,
+        1_000_000L,
+        10_000_000L,
+        100_000_000L,
+        1_000_000_000L,
+        10_000_000_000L,
+        100_000_000_000L,
+        1_000_000_000_000L,
+        10_000_000_000_000L,
+        100_000_000_000_000L,
+        1_000_000_000_000_000L,
+        10_000_000_000_000_000L,
+        100_000_000_000_000_000L,
+        1_000_000_000_000_000_000L,
+    };
+
+    private ScaledDecimal() { }
+
+    /**
+     * Packs an integer with a scale of zero.  Always fits.
+     */
+    public static long valueOf(int value)
+    {
+        return (long)value << SCALE_BITS;
+    }
+
+    /**
+     * Packs a long with a scale of zero.
+     *
+     * @return The packed value, or {@link #OVERFLOW} if it doesn't fit.
+     */
+    public static long valueOf(long value)
+    {
+        return pack(value, 0);
+    }
+
+    /**
+     * Packs a {@link BigDecimal}.
+     *
+     * @return The packed value, or {@link #OVERFLOW} if it doesn't fit.
+     */
+    public static long valueOf(BigDecimal value)
+    {
+        int scale = value.scale();
+
+        if (scale < 0 || scale > MAX_SCALE || value.precision() > SAFE_PRECISION) {
+            return OVERFLOW;
+        }
+
+        return pack(scale == 0 ? value.longValue() : value.unscaledValue().longValue(), scale);
+    }
+
+    /**
+     * Unpacks a value into a {@link BigDecimal}.
+     */
+    public static BigDecimal toBigDecimal(long value)
+    {
+        return BigDecimal.valueOf(unscaled(value), scale(value));
+    }
+
+    /**
+     * Adds two packed values, returning {@link #OVERFLOW} if the sum doesn't fit.
+     */
+    public static long add(long left, long right)
+    {
+        int scale = Math.max(scale(left), scale(right));
+        long a = rescale(unscaled(left), scale - scale(left));
+        long b = rescale(unscaled(right), scale - scale(right));
+
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return OVERFLOW;
+        }
+
+        long sum = a + b;
+
+        // The sum overflowed if both operands have a different sign than the result.
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return OVERFLOW;
+        }
+
+        return pack(sum, scale);
+    }
+
+    /**
+     * Subtracts two packed values, returning {@link #OVERFLOW} if the difference doesn't fit.
+     */
+    public static long subtract(long left, long right)
+    {
+        return add(left, negate(right));
+    }
+
+    /**
+     * Multiplies two packed values, returning {@link #OVERFLOW} if the product doesn't fit.
+     */
+    public static long multiply(long left, long right)
+    {
+        long a = unscaled(left);
+        long b = unscaled(right);
+        long product = a * b;
+
+        // Same check as Math.multiplyExact, without the cost of an exception.  Unscaled values never hold
+        // Long.MIN_VALUE, so the division can't trap.
+        if (((Math.abs(a) | Math.abs(b)) >>> 31) != 0 && a != 0 && product / a != b) {
+            return OVERFLOW;
+        }
+
+        return pack(product, scale(left) + scale(right));
+    }
+
+    /**
+     * Divides two packed values like {@link BigDecimal#divide(BigDecimal, java.math.RoundingMode)} with
+     * {@link java.math.RoundingMode#HALF_EVEN}: the quotient keeps the scale of the dividend.  Returns
+     * {@link #OVERFLOW} if the quotient doesn't fit or the divisor is zero, so that {@link BigDecimal} reports the
+     * error.
+     */
+    public static long divide(long left, long right)
+    {
+        long divisor = unscaled(right);
+
+        if (divisor == 0) {
+            return OVERFLOW;
+        }
+
+        long dividend = rescale(unscaled(left), scale(right));
+        if (dividend == OVERFLOW) {
+            return OVERFLOW;
+        }
+
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+
+        if (remainder != 0) {
+            int compare = Long.compare(Math.abs(remainder) * 2, Math.abs(divisor));
+
+            if (compare > 0 || (compare == 0 && (quotient & 1) != 0)) {
+                quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+            }
+        }
+
+        return pack(quotient, scale(left));
+    }
+
+    /**
+     * Negates a packed value.  Always fits.
+     */
+    public static long negate(long value)
+    {
+        return (-unscaled(value) << SCALE_BITS) | scale(value);
+    }
+
+    /**
+     * Compares two packed values like {@link BigDecimal#compareTo(BigDecimal)}, ignoring their scales.
+     */
+    public static int compare(long left, long right)
+    {
+        int scale = Math.max(scale(left), scale(right));
+        long a = rescale(unscaled(left), scale - scale(left));
+        long b = rescale(unscaled(right), scale - scale(right));
+
+        if (a == OVERFLOW || b == OVERFLOW) {
+            return toBigDecimal(left).compareTo(toBigDecimal(right));
+        }
+
+        return Long.compare(a, b);
+    }
+
+    private static long unscaled(long value)
+    {
+        return value >> SCALE_BITS;
+    }
+
+    private static int scale(long value)
+    {
+        return (int)(value & SCALE_MASK);
+    }
+
+    /**
+     * Packs an unscaled value and scale, returning {@link #OVERFLOW} if either is out of range.
+     */
+    private static long pack(long unscaled, int scale)
+    {
+        if (unscaled > MAX_UNSCALED || unscaled < MIN_UNSCALED || scale > MAX_SCALE) {
+            return OVERFLOW;
+        }
+
+        return (unscaled << SCALE_BITS) | scale;
+    }
+
+    /**
+     * Multiplies an unscaled value by a power of ten, returning {@link #OVERFLOW} if the result doesn't fit in a long.
+     */
+    private static long rescale(long unscaled, int digits)
+    {
+        if (digits == 0) {
+            return unscaled;
+        }
+
+        long factor = POWERS_OF_TEN[digits];
+        long result = unscaled * factor;
+
+        if (Math.abs(unscaled) > Long.MAX_VALUE / factor) {
+            return OVERFLOW;
+        }
+
+        return result;
+    }
+}
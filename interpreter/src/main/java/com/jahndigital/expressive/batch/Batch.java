@@ -0,0 +1,246 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.Schema;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * A set of rows stored as one column per variable, where each column is an array indexed by row.  Columns are
+ * referenced rather than copied, so they must not be modified while the batch is being evaluated.
+ */
+public final class Batch
+{
+    private final Schema _schema;
+    private final int _size;
+    private final Object[] _columns;
+
+    /**
+     * Init
+     *
+     * @param schema The schema that declares the variables stored in the batch.
+     * @param size The number of rows in the batch.
+     */
+    public Batch(Schema schema, int size)
+    {
+        if (size < 0) {
+            throw new IllegalArgumentException("The size of a batch can't be negative.");
+        }
+
+        _schema = schema;
+        _size = size;
+        _columns = new Object[schema.size()];
+    }
+
+    /**
+     * Gets the schema that declares the variables stored in the batch.
+     */
+    public Schema getSchema()
+    {
+        return _schema;
+    }
+
+    /**
+     * Gets the number of rows in the batch.
+     */
+    public int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Sets the column of an integer variable.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setInts(ContextKey<Integer> key, int[] values)
+    {
+        return set(key, values, values.length);
+    }
+
+    /**
+     * Sets the column of a boolean variable.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setBooleans(ContextKey<Boolean> key, boolean[] values)
+    {
+        return set(key, values, values.length);
+    }
+
+    /**
+     * Sets the column of a decimal variable.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setDecimals(ContextKey<BigDecimal> key, BigDecimal[] values)
+    {
+        return set(key, values, values.length);
+    }
+
+    /**
+     * Sets the column of a decimal variable from doubles, which are converted with {@link BigDecimal#valueOf(double)}.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setDecimals(ContextKey<BigDecimal> key, double[] values)
+    {
+        BigDecimal[] decimals = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            decimals[i] = BigDecimal.valueOf(values[i]);
+        }
+
+        return setDecimals(key, decimals);
+    }
+
+    /**
+     * Sets the column of a decimal variable from longs.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setDecimals(ContextKey<BigDecimal> key, long[] values)
+    {
+        BigDecimal[] decimals = new BigDecimal[values.length];
+        for (int i = 0; i < values.length; i++) {
+            decimals[i] = BigDecimal.valueOf(values[i]);
+        }
+
+        return setDecimals(key, decimals);
+    }
+
+    /**
+     * Sets the column of a long variable.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setLongs(ContextKey<Long> key, long[] values)
+    {
+        return set(key, values, values.length);
+    }
+
+    /**
+     * Sets the column of a double variable.
+     *
+     * @param key The key of the variable.
+     * @param values One value per row.
+     * @return This batch, so calls may be chained.
+     */
+    public Batch setDoubles(ContextKey<Double> key, double[] values)
+    {
+        return set(key, values, values.length);
+    }
+
+    /**
+     * Gets the column of a variable, which is an int[], boolean[], long[], double[], or BigDecimal[] depending on its
+     * type.
+     *
+     * @param key The key of the variable.
+     * @throws IllegalStateException If the column hasn't been set.
+     */
+    Object getColumn(ContextKey<?> key)
+    {
+        Object column = _columns[slotOf(key)];
+
+        if (column == null) {
+            throw new IllegalStateException(String.format("No column was provided for variable %s.", key.getName()));
+        }
+
+        return column;
+    }
+
+    /**
+     * Gets the boxed value of a variable in a single row, or null if its column hasn't been set.
+     */
+    Object getValue(ContextKey<?> key, int row)
+    {
+        Object column = _columns[slotOf(key)];
+
+        if (column instanceof int[]) {
+            return ((int[])column)[row];
+        }
+
+        if (column instanceof boolean[]) {
+            return ((boolean[])column)[row];
+        }
+
+        if (column instanceof long[]) {
+            return ((long[])column)[row];
+        }
+
+        if (column instanceof double[]) {
+            return ((double[])column)[row];
+        }
+
+        if (column instanceof Object[]) {
+            return ((Object[])column)[row];
+        }
+
+        return null;
+    }
+
+    /**
+     * Copies a range of rows into a new batch with the same schema.
+     *
+     * @param from The first row to copy.
+     * @param to The row after the last row to copy.
+     */
+    Batch slice(int from, int to)
+    {
+        Batch slice = new Batch(_schema, to - from);
+
+        for (int slot = 0; slot < _columns.length; slot++) {
+            Object column = _columns[slot];
+
+            if (column instanceof int[]) {
+                slice._columns[slot] = Arrays.copyOfRange((int[])column, from, to);
+            } else if (column instanceof boolean[]) {
+                slice._columns[slot] = Arrays.copyOfRange((boolean[])column, from, to);
+            } else if (column instanceof long[]) {
+                slice._columns[slot] = Arrays.copyOfRange((long[])column, from, to);
+            } else if (column instanceof double[]) {
+                slice._columns[slot] = Arrays.copyOfRange((double[])column, from, to);
+            } else if (column instanceof Object[]) {
+                slice._columns[slot] = Arrays.copyOfRange((Object[])column, from, to);
+            }
+        }
+
+        return slice;
+    }
+
+    private Batch set(ContextKey<?> key, Object values, int length)
+    {
+        if (length != _size) {
+            throw new IllegalArgumentException(
+                String.format("Column %s has %d values, but the batch has %d rows.", key.getName(), length, _size)
+            );
+        }
+
+        _columns[slotOf(key)] = values;
+        return this;
+    }
+
+    /**
+     * Gets the slot of a key, ensuring it belongs to this batch's schema.
+     */
+    private int slotOf(ContextKey<?> key)
+    {
+        if (key.getSchema() != _schema || key.getSlot() >= _columns.length) {
+            throw new IllegalArgumentException(String.format("Variable %s isn't part of this batch.", key.getName()));
+        }
+
+        return key.getSlot();
+    }
+}
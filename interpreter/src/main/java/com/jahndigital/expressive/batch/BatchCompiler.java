@@ -0,0 +1,1222 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.Diagnostic;
+import com.jahndigital.expressive.Evaluator;
+import com.jahndigital.expressive.FunctionExecutionFailedException;
+import com.jahndigital.expressive.binding.*;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.IFunction;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Converts a {@link BoundExpression} tree into a {@link BatchExpression}.  Each node is compiled once into a kernel
+ * that evaluates the node for every selected row of a {@link Batch}, choosing the loop from its bound operator kind and
+ * operand types, so evaluation doesn't inspect the tree per row.
+ *
+ * Kernels may return a column of the batch itself (E.g. for a variable), so a kernel never writes into the result of
+ * another kernel.
+ */
+public final class BatchCompiler
+{
+    /**
+     * A compiled node whose bound type is {@link Integer}.
+     */
+    @FunctionalInterface
+    private interface IntKernel
+    {
+        int[] evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * A compiled node whose bound type is {@link Boolean}.
+     */
+    @FunctionalInterface
+    private interface BooleanKernel
+    {
+        boolean[] evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * A compiled node whose value is a {@link BigDecimal}.
+     */
+    @FunctionalInterface
+    private interface DecimalKernel
+    {
+        BigDecimal[] evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * A compiled node whose bound type is {@link Long}.
+     */
+    @FunctionalInterface
+    private interface LongKernel
+    {
+        long[] evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * A compiled node whose values are doubles.
+     */
+    @FunctionalInterface
+    private interface DoubleKernel
+    {
+        double[] evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * A compiled node of any type, whose values are boxed.
+     */
+    @FunctionalInterface
+    private interface ObjectKernel
+    {
+        Object[] evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * A compiled boolean node that narrows a selection to the rows where it's true.
+     */
+    @FunctionalInterface
+    private interface FilterKernel
+    {
+        Selection evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * Narrows a selection to the rows where a comparison from {@link Kernels} holds.
+     */
+    @FunctionalInterface
+    private interface Predicate
+    {
+        Selection apply(int[] left, int[] right, Selection selection);
+    }
+
+    /**
+     * Narrows a selection to the rows where a comparison from {@link Kernels} with a constant holds.
+     */
+    @FunctionalInterface
+    private interface ScalarPredicate
+    {
+        Selection apply(int[] left, int right, Selection selection);
+    }
+
+    /**
+     * Applies a binary operator from {@link Kernels} to a column and a constant.
+     */
+    @FunctionalInterface
+    private interface ScalarOperator<R>
+    {
+        void apply(int[] left, int right, R out, Selection selection);
+    }
+
+    /**
+     * Applies a binary operator from {@link Kernels} to two columns.
+     */
+    @FunctionalInterface
+    private interface Operator<T, R>
+    {
+        void apply(T left, T right, R out, Selection selection);
+    }
+
+    private BatchCompiler() { }
+
+    /**
+     * Compiles the provided {@link BoundSyntaxTree}.
+     *
+     * @param tree The tree to compile.
+     * @return An object that evaluates the expression over batches.
+     * @throws Exception If the tree has errors or could not be compiled.
+     */
+    public static BatchExpression compile(BoundSyntaxTree tree) throws Exception
+    {
+        List<Diagnostic> errors = tree.getErrors();
+        if (!errors.isEmpty()) {
+            throw new Exception(
+                String.format("Unable to compile expression: %d errors encountered during parsing.", errors.size())
+            );
+        }
+
+        if (tree.getRoot() == null) {
+            return new BatchExpression(null, (batch, selection) -> new Object[batch.size()], null, null);
+        }
+
+        return compile(tree.getRoot());
+    }
+
+    /**
+     * Compiles the provided {@link BoundExpression}.
+     *
+     * @param root The root of the tree to compile.
+     * @return An object that evaluates the expression over batches.
+     * @throws Exception If the expression could not be compiled.
+     */
+    public static BatchExpression compile(BoundExpression root) throws Exception
+    {
+        Evaluator evaluator = new Evaluator(root);
+
+        // Compiling kernels recurses once per level of the tree, so deeper trees are evaluated one row at a time.
+        if (root.isDeeperThan(BoundExpression.MAX_RECURSION_DEPTH)) {
+            return new BatchExpression(root.getType(), null, null, evaluator);
+        }
+
+        if (root.getType() == Integer.class) {
+            return new BatchExpression(root.getType(), compileInt(root)::evaluate, null, evaluator);
+        }
+
+        if (root.getType() == Boolean.class) {
+            return new BatchExpression(root.getType(), compileBoolean(root)::evaluate, compileFilter(root)::evaluate, evaluator);
+        }
+
+        if (root.getType() == BigDecimal.class) {
+            return new BatchExpression(root.getType(), compileDecimal(root)::evaluate, null, evaluator);
+        }
+
+        if (root.getType() == Long.class) {
+            return new BatchExpression(root.getType(), compileLong(root)::evaluate, null, evaluator);
+        }
+
+        if (root.getType() == Double.class) {
+            return new BatchExpression(root.getType(), compileDouble(root)::evaluate, null, evaluator);
+        }
+
+        return new BatchExpression(root.getType(), compileObject(root)::evaluate, null, evaluator);
+    }
+
+    /**
+     * Compiles a node of any type into a kernel that returns its boxed values.
+     */
+    private static ObjectKernel compileObject(BoundExpression root) throws Exception
+    {
+        if (root.getType() == Integer.class) {
+            IntKernel operand = compileInt(root);
+            return (batch, selection) -> {
+                int[] values = operand.evaluate(batch, selection);
+                Object[] out = new Object[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root.getType() == Boolean.class) {
+            BooleanKernel operand = compileBoolean(root);
+            return (batch, selection) -> {
+                boolean[] values = operand.evaluate(batch, selection);
+                Object[] out = new Object[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root.getType() == BigDecimal.class) {
+            DecimalKernel operand = compileDecimal(root);
+            return operand::evaluate;
+        }
+
+        if (root.getType() == Long.class) {
+            LongKernel operand = compileLong(root);
+            return (batch, selection) -> {
+                long[] values = operand.evaluate(batch, selection);
+                Object[] out = new Object[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root.getType() == Double.class) {
+            DoubleKernel operand = compileDouble(root);
+            return (batch, selection) -> {
+                double[] values = operand.evaluate(batch, selection);
+                Object[] out = new Object[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return compileFunction((BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (batch, selection) -> (Object[])batch.getColumn(key);
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            Object value = ((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> fill(new Object[batch.size()], value, selection);
+        }
+
+        // Mirrors the interpreter, which evaluates unknown expressions to zero.
+        return (batch, selection) -> fill(new Object[batch.size()], 0, selection);
+    }
+
+    /**
+     * Compiles a call to an {@link IFunction}, which is executed once per selected row.  Any exception it throws is
+     * wrapped in a {@link FunctionExecutionFailedException}.
+     */
+    private static ObjectKernel compileFunction(BoundFunctionExpression root) throws Exception
+    {
+        IFunction function = root.getFunction();
+        List<BoundExpression> boundArguments = root.getArguments();
+        ObjectKernel[] arguments = new ObjectKernel[boundArguments.size()];
+
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compileObject(boundArguments.get(i));
+        }
+
+        return (batch, selection) -> {
+            Object[][] columns = new Object[arguments.length][];
+            for (int a = 0; a < arguments.length; a++) {
+                columns[a] = arguments[a].evaluate(batch, selection);
+            }
+
+            Object[] out = new Object[batch.size()];
+            RowContext context = new RowContext(batch);
+
+            for (int j = 0, size = selection.size(); j < size; j++) {
+                int i = selection.get(j);
+                List<Object> args = new ArrayList<>(columns.length);
+                for (Object[] column : columns) {
+                    args.add(column[i]);
+                }
+
+                context.setRow(i);
+
+                try {
+                    out[i] = function.execute(args, context);
+                } catch (Exception e) {
+                    throw new FunctionExecutionFailedException(e, function, args, new HashMap<>(context.asMap()));
+                }
+            }
+
+            return out;
+        };
+    }
+
+    private static IntKernel compileInt(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            int value = (int)((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> {
+                int[] out = new int[batch.size()];
+                if (value != 0) {
+                    Arrays.fill(out, value);
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectKernel function = compileFunction((BoundFunctionExpression)root);
+            return (batch, selection) -> {
+                Object[] values = function.evaluate(batch, selection);
+                int[] out = new int[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = (int)values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (batch, selection) -> (int[])batch.getColumn(key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            IntKernel operand = compileInt(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (batch, selection) -> {
+                        int[] out = new int[batch.size()];
+                        Kernels.negate(operand.evaluate(batch, selection), out, selection);
+                        return out;
+                    };
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return intBinary(b, Kernels::add, Kernels::add, true);
+                case Subtraction:
+                    return intBinary(b, Kernels::subtract, Kernels::subtract, false);
+                case Multiplication:
+                    return intBinary(b, Kernels::multiply, Kernels::multiply, true);
+                case Division:
+                    return intBinary(b, Kernels::divide, Kernels::divide, false);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as an integer.", root.getClass().getSimpleName()));
+    }
+
+    /**
+     * Compiles integer math, using the scalar form of the operator when an operand is a constant.
+     *
+     * @param commutative True if the operands may be swapped to move a constant to the right.
+     */
+    private static IntKernel intBinary(
+        BoundBinaryExpression b,
+        Operator<int[], int[]> operator,
+        ScalarOperator<int[]> scalar,
+        boolean commutative
+    ) throws Exception
+    {
+        BoundExpression boundLeft = b.getLeft();
+        BoundExpression boundRight = b.getRight();
+
+        if (commutative && constantOf(boundLeft) != null && constantOf(boundRight) == null) {
+            boundLeft = b.getRight();
+            boundRight = b.getLeft();
+        }
+
+        IntKernel left = compileInt(boundLeft);
+        Integer constant = constantOf(boundRight);
+
+        if (constant != null) {
+            int right = constant;
+            return (batch, selection) -> {
+                int[] out = new int[batch.size()];
+                scalar.apply(left.evaluate(batch, selection), right, out, selection);
+                return out;
+            };
+        }
+
+        IntKernel right = compileInt(boundRight);
+        return (batch, selection) -> {
+            int[] out = new int[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    private static BooleanKernel compileBoolean(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            boolean value = (boolean)((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> {
+                boolean[] out = new boolean[batch.size()];
+                if (value) {
+                    Arrays.fill(out, true);
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectKernel function = compileFunction((BoundFunctionExpression)root);
+            return (batch, selection) -> {
+                Object[] values = function.evaluate(batch, selection);
+                boolean[] out = new boolean[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = (boolean)values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (batch, selection) -> (boolean[])batch.getColumn(key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            BooleanKernel operand = compileBoolean(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            if (kind != BoundUnaryOperationKind.LogicalNegation) {
+                throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+
+            return (batch, selection) -> {
+                boolean[] out = new boolean[batch.size()];
+                Kernels.not(operand.evaluate(batch, selection), out, selection);
+                return out;
+            };
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            return compileBooleanBinary((BoundBinaryExpression)root);
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a boolean.", root.getClass().getSimpleName()));
+    }
+
+    private static BooleanKernel compileBooleanBinary(BoundBinaryExpression b) throws Exception
+    {
+        BoundBinaryOperationKind operation = b.getOperatorKind();
+        BoundExpression boundLeft = b.getLeft();
+        BoundExpression boundRight = b.getRight();
+
+        // Both operands have the same type, since the binder converts mixed operands.
+        Type operandType = boundLeft.getType();
+
+        // Logical operators and boolean equality
+        if (operandType == Boolean.class) {
+            BooleanKernel left = compileBoolean(boundLeft);
+            BooleanKernel right = compileBoolean(boundRight);
+
+            switch (operation) {
+                case LogicalAnd:
+                    return logical(left, right, true);
+                case LogicalOr:
+                    return logical(left, right, false);
+                case Equals:
+                    return booleanBinary(left, right, Kernels::equal);
+                case NotEquals:
+                    return booleanBinary(left, right, Kernels::notEqual);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Integer comparisons
+        if (operandType == Integer.class) {
+            return compileIntComparison(b);
+        }
+
+        // Double comparisons
+        if (operandType == Double.class) {
+            DoubleKernel left = compileDouble(boundLeft);
+            DoubleKernel right = compileDouble(boundRight);
+
+            switch (operation) {
+                case Equals:
+                    return doubleComparison(left, right, Kernels::equal);
+                case NotEquals:
+                    return doubleComparison(left, right, Kernels::notEqual);
+                case GreaterThan:
+                    return doubleComparison(left, right, Kernels::greaterThan);
+                case GreaterThanOrEqualTo:
+                    return doubleComparison(left, right, Kernels::greaterThanOrEqual);
+                case LessThan:
+                    return doubleComparison(left, right, Kernels::lessThan);
+                case LessThanOrEqualTo:
+                    return doubleComparison(left, right, Kernels::lessThanOrEqual);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Long comparisons
+        if (operandType == Long.class) {
+            LongKernel left = compileLong(boundLeft);
+            LongKernel right = compileLong(boundRight);
+
+            switch (operation) {
+                case Equals:
+                    return longComparison(left, right, Kernels::equal);
+                case NotEquals:
+                    return longComparison(left, right, Kernels::notEqual);
+                case GreaterThan:
+                    return longComparison(left, right, Kernels::greaterThan);
+                case GreaterThanOrEqualTo:
+                    return longComparison(left, right, Kernels::greaterThanOrEqual);
+                case LessThan:
+                    return longComparison(left, right, Kernels::lessThan);
+                case LessThanOrEqualTo:
+                    return longComparison(left, right, Kernels::lessThanOrEqual);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        // Decimal comparisons
+        DecimalKernel left = compileDecimal(boundLeft);
+        DecimalKernel right = compileDecimal(boundRight);
+
+        switch (operation) {
+            case Equals:
+            case NotEquals:
+            case GreaterThan:
+            case GreaterThanOrEqualTo:
+            case LessThan:
+            case LessThanOrEqualTo:
+                return (batch, selection) -> {
+                    boolean[] out = new boolean[batch.size()];
+                    Kernels.compare(operation, left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+                    return out;
+                };
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
+        }
+    }
+
+    /**
+     * Compiles a short circuiting operator.  The right operand is only evaluated for the rows where the left operand
+     * doesn't decide the result on its own.
+     *
+     * @param isAnd True for {@link BoundBinaryOperationKind#LogicalAnd}, false for
+     *              {@link BoundBinaryOperationKind#LogicalOr}.
+     */
+    private static BooleanKernel logical(BooleanKernel left, BooleanKernel right, boolean isAnd)
+    {
+        return (batch, selection) -> {
+            boolean[] values = left.evaluate(batch, selection);
+            Selection remaining = selection.where(values, isAnd);
+
+            if (remaining.size() == 0) {
+                return values;
+            }
+
+            boolean[] out = values.clone();
+            boolean[] rightValues = right.evaluate(batch, remaining);
+
+            for (int j = 0, size = remaining.size(); j < size; j++) {
+                int i = remaining.get(j);
+                out[i] = rightValues[i];
+            }
+
+            return out;
+        };
+    }
+
+    private static BooleanKernel booleanBinary(
+        BooleanKernel left,
+        BooleanKernel right,
+        Operator<boolean[], boolean[]> operator
+    )
+    {
+        return (batch, selection) -> {
+            boolean[] out = new boolean[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    /**
+     * Compiles an integer comparison, using the scalar form of the operator when an operand is a constant.
+     */
+    private static BooleanKernel compileIntComparison(BoundBinaryExpression b) throws Exception
+    {
+        BoundBinaryOperationKind operation = b.getOperatorKind();
+        BoundExpression boundLeft = b.getLeft();
+        BoundExpression boundRight = b.getRight();
+
+        if (constantOf(boundLeft) != null && constantOf(boundRight) == null) {
+            boundLeft = b.getRight();
+            boundRight = b.getLeft();
+            operation = mirror(operation);
+        }
+
+        IntKernel left = compileInt(boundLeft);
+        Integer constant = constantOf(boundRight);
+
+        if (constant != null) {
+            int right = constant;
+            ScalarOperator<boolean[]> operator;
+
+            switch (operation) {
+                case Equals:
+                    operator = Kernels::equal;
+                    break;
+                case NotEquals:
+                    operator = Kernels::notEqual;
+                    break;
+                case GreaterThan:
+                    operator = Kernels::greaterThan;
+                    break;
+                case GreaterThanOrEqualTo:
+                    operator = Kernels::greaterThanOrEqual;
+                    break;
+                case LessThan:
+                    operator = Kernels::lessThan;
+                    break;
+                case LessThanOrEqualTo:
+                    operator = Kernels::lessThanOrEqual;
+                    break;
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+
+            return (batch, selection) -> {
+                boolean[] out = new boolean[batch.size()];
+                operator.apply(left.evaluate(batch, selection), right, out, selection);
+                return out;
+            };
+        }
+
+        IntKernel right = compileInt(boundRight);
+        Operator<int[], boolean[]> operator;
+
+        switch (operation) {
+            case Equals:
+                operator = Kernels::equal;
+                break;
+            case NotEquals:
+                operator = Kernels::notEqual;
+                break;
+            case GreaterThan:
+                operator = Kernels::greaterThan;
+                break;
+            case GreaterThanOrEqualTo:
+                operator = Kernels::greaterThanOrEqual;
+                break;
+            case LessThan:
+                operator = Kernels::lessThan;
+                break;
+            case LessThanOrEqualTo:
+                operator = Kernels::lessThanOrEqual;
+                break;
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
+        }
+
+        return (batch, selection) -> {
+            boolean[] out = new boolean[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    /**
+     * Compiles a boolean node into a kernel that returns the selected rows where it's true.  Logical operators and
+     * integer comparisons narrow the selection directly, so the right operand of && only sees the rows the left
+     * operand kept, and the right operand of || only sees the rows the left operand rejected.  Anything else is
+     * evaluated into a column first.
+     */
+    private static FilterKernel compileFilter(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundLiteralExpression) {
+            boolean value = (boolean)((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> value ? selection : Selection.all(0);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+
+            if (u.getOperatorKind() == BoundUnaryOperationKind.LogicalNegation) {
+                FilterKernel operand = compileFilter(u.getOperand());
+                return (batch, selection) -> selection.minus(operand.evaluate(batch, selection));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            if (operation == BoundBinaryOperationKind.LogicalAnd) {
+                FilterKernel left = compileFilter(b.getLeft());
+                FilterKernel right = compileFilter(b.getRight());
+
+                return (batch, selection) -> {
+                    Selection matches = left.evaluate(batch, selection);
+                    return matches.size() == 0 ? matches : right.evaluate(batch, matches);
+                };
+            }
+
+            if (operation == BoundBinaryOperationKind.LogicalOr) {
+                FilterKernel left = compileFilter(b.getLeft());
+                FilterKernel right = compileFilter(b.getRight());
+
+                return (batch, selection) -> {
+                    Selection matches = left.evaluate(batch, selection);
+                    Selection remaining = selection.minus(matches);
+                    return remaining.size() == 0 ? matches : Selection.union(matches, right.evaluate(batch, remaining));
+                };
+            }
+
+            if (b.getLeft().getType() == Integer.class) {
+                return compileIntFilter(b);
+            }
+        }
+
+        BooleanKernel values = compileBoolean(root);
+        return (batch, selection) -> selection.where(values.evaluate(batch, selection), true);
+    }
+
+    /**
+     * Compiles an integer comparison as a filter, using the scalar form of the predicate when an operand is a constant.
+     */
+    private static FilterKernel compileIntFilter(BoundBinaryExpression b) throws Exception
+    {
+        BoundBinaryOperationKind operation = b.getOperatorKind();
+        BoundExpression boundLeft = b.getLeft();
+        BoundExpression boundRight = b.getRight();
+
+        if (constantOf(boundLeft) != null && constantOf(boundRight) == null) {
+            boundLeft = b.getRight();
+            boundRight = b.getLeft();
+            operation = mirror(operation);
+        }
+
+        IntKernel left = compileInt(boundLeft);
+        Integer constant = constantOf(boundRight);
+
+        if (constant != null) {
+            int right = constant;
+            ScalarPredicate predicate;
+
+            switch (operation) {
+                case Equals:
+                    predicate = Kernels::selectEqual;
+                    break;
+                case NotEquals:
+                    predicate = Kernels::selectNotEqual;
+                    break;
+                case GreaterThan:
+                    predicate = Kernels::selectGreaterThan;
+                    break;
+                case GreaterThanOrEqualTo:
+                    predicate = Kernels::selectGreaterThanOrEqual;
+                    break;
+                case LessThan:
+                    predicate = Kernels::selectLessThan;
+                    break;
+                case LessThanOrEqualTo:
+                    predicate = Kernels::selectLessThanOrEqual;
+                    break;
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+
+            return (batch, selection) -> predicate.apply(left.evaluate(batch, selection), right, selection);
+        }
+
+        IntKernel right = compileInt(boundRight);
+        Predicate predicate;
+
+        switch (operation) {
+            case Equals:
+                predicate = Kernels::selectEqual;
+                break;
+            case NotEquals:
+                predicate = Kernels::selectNotEqual;
+                break;
+            case GreaterThan:
+                predicate = Kernels::selectGreaterThan;
+                break;
+            case GreaterThanOrEqualTo:
+                predicate = Kernels::selectGreaterThanOrEqual;
+                break;
+            case LessThan:
+                predicate = Kernels::selectLessThan;
+                break;
+            case LessThanOrEqualTo:
+                predicate = Kernels::selectLessThanOrEqual;
+                break;
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
+        }
+
+        return (batch, selection) -> predicate.apply(
+            left.evaluate(batch, selection),
+            right.evaluate(batch, selection),
+            selection
+        );
+    }
+
+    /**
+     * Gets the value of an integer literal, or null if the node isn't one.
+     */
+    private static Integer constantOf(BoundExpression node)
+    {
+        if (node instanceof BoundLiteralExpression && node.getType() == Integer.class) {
+            return (Integer)((BoundLiteralExpression)node).getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Gets the comparison that gives the same result when its operands are swapped.
+     */
+    private static BoundBinaryOperationKind mirror(BoundBinaryOperationKind operation)
+    {
+        switch (operation) {
+            case GreaterThan:
+                return BoundBinaryOperationKind.LessThan;
+            case GreaterThanOrEqualTo:
+                return BoundBinaryOperationKind.LessThanOrEqualTo;
+            case LessThan:
+                return BoundBinaryOperationKind.GreaterThan;
+            case LessThanOrEqualTo:
+                return BoundBinaryOperationKind.GreaterThanOrEqualTo;
+            default:
+                return operation;
+        }
+    }
+
+    /**
+     * Compiles a node into a kernel that returns {@link BigDecimal} values.
+     */
+    private static DecimalKernel compileDecimal(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression boundOperand = ((BoundConversionExpression)root).getOperand();
+
+            if (boundOperand.getType() == Integer.class) {
+                IntKernel operand = compileInt(boundOperand);
+                return (batch, selection) -> {
+                    BigDecimal[] out = new BigDecimal[batch.size()];
+                    Kernels.toDecimal(operand.evaluate(batch, selection), out, selection);
+                    return out;
+                };
+            }
+
+            LongKernel operand = compileLong(boundOperand);
+            return (batch, selection) -> {
+                BigDecimal[] out = new BigDecimal[batch.size()];
+                Kernels.toDecimal(operand.evaluate(batch, selection), out, selection);
+                return out;
+            };
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            BigDecimal value = (BigDecimal)((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> fill(new BigDecimal[batch.size()], value, selection);
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectKernel function = compileFunction((BoundFunctionExpression)root);
+            return (batch, selection) -> {
+                Object[] values = function.evaluate(batch, selection);
+                BigDecimal[] out = new BigDecimal[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = (BigDecimal)values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (batch, selection) -> (BigDecimal[])batch.getColumn(key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            DecimalKernel operand = compileDecimal(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (batch, selection) -> {
+                        BigDecimal[] out = new BigDecimal[batch.size()];
+                        Kernels.negate(operand.evaluate(batch, selection), out, selection);
+                        return out;
+                    };
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            DecimalKernel left = compileDecimal(b.getLeft());
+            DecimalKernel right = compileDecimal(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return decimalBinary(left, right, Kernels::add);
+                case Subtraction:
+                    return decimalBinary(left, right, Kernels::subtract);
+                case Multiplication:
+                    return decimalBinary(left, right, Kernels::multiply);
+                case Division:
+                    return decimalBinary(left, right, Kernels::divide);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a decimal.", root.getClass().getSimpleName()));
+    }
+
+    private static DecimalKernel decimalBinary(
+        DecimalKernel left,
+        DecimalKernel right,
+        Operator<BigDecimal[], BigDecimal[]> operator
+    )
+    {
+        return (batch, selection) -> {
+            BigDecimal[] out = new BigDecimal[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    /**
+     * Compiles a node into a kernel that returns longs.
+     */
+    private static LongKernel compileLong(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundConversionExpression) {
+            IntKernel operand = compileInt(((BoundConversionExpression)root).getOperand());
+            return (batch, selection) -> {
+                long[] out = new long[batch.size()];
+                Kernels.toLong(operand.evaluate(batch, selection), out, selection);
+                return out;
+            };
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            long value = (long)((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> {
+                long[] out = new long[batch.size()];
+                if (value != 0) {
+                    Arrays.fill(out, value);
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectKernel function = compileFunction((BoundFunctionExpression)root);
+            return (batch, selection) -> {
+                Object[] values = function.evaluate(batch, selection);
+                long[] out = new long[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = (long)values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (batch, selection) -> (long[])batch.getColumn(key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            LongKernel operand = compileLong(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (batch, selection) -> {
+                        long[] out = new long[batch.size()];
+                        Kernels.negate(operand.evaluate(batch, selection), out, selection);
+                        return out;
+                    };
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            LongKernel left = compileLong(b.getLeft());
+            LongKernel right = compileLong(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return longBinary(left, right, Kernels::add);
+                case Subtraction:
+                    return longBinary(left, right, Kernels::subtract);
+                case Multiplication:
+                    return longBinary(left, right, Kernels::multiply);
+                case Division:
+                    return longBinary(left, right, Kernels::divide);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a long.", root.getClass().getSimpleName()));
+    }
+
+    private static LongKernel longBinary(LongKernel left, LongKernel right, Operator<long[], long[]> operator)
+    {
+        return (batch, selection) -> {
+            long[] out = new long[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    private static BooleanKernel longComparison(LongKernel left, LongKernel right, Operator<long[], boolean[]> operator)
+    {
+        return (batch, selection) -> {
+            boolean[] out = new boolean[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    /**
+     * Compiles a node into a kernel that returns doubles.
+     */
+    private static DoubleKernel compileDouble(BoundExpression root) throws Exception
+    {
+        if (root instanceof BoundConversionExpression) {
+            BoundExpression boundOperand = ((BoundConversionExpression)root).getOperand();
+
+            if (boundOperand.getType() == Integer.class) {
+                IntKernel operand = compileInt(boundOperand);
+                return (batch, selection) -> {
+                    double[] out = new double[batch.size()];
+                    Kernels.toDouble(operand.evaluate(batch, selection), out, selection);
+                    return out;
+                };
+            }
+
+            LongKernel operand = compileLong(boundOperand);
+            return (batch, selection) -> {
+                double[] out = new double[batch.size()];
+                Kernels.toDouble(operand.evaluate(batch, selection), out, selection);
+                return out;
+            };
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            double value = (double)((BoundLiteralExpression)root).getValue();
+            return (batch, selection) -> {
+                double[] out = new double[batch.size()];
+                Arrays.fill(out, value);
+                return out;
+            };
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            ObjectKernel function = compileFunction((BoundFunctionExpression)root);
+            return (batch, selection) -> {
+                Object[] values = function.evaluate(batch, selection);
+                double[] out = new double[batch.size()];
+                for (int j = 0, size = selection.size(); j < size; j++) {
+                    int i = selection.get(j);
+                    out[i] = (double)values[i];
+                }
+
+                return out;
+            };
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            ContextKey<?> key = ((BoundVariableExpression)root).getKey();
+            return (batch, selection) -> (double[])batch.getColumn(key);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            DoubleKernel operand = compileDouble(u.getOperand());
+            BoundUnaryOperationKind kind = u.getOperatorKind();
+
+            switch (kind) {
+                case Identity:
+                    return operand;
+                case Negation:
+                    return (batch, selection) -> {
+                        double[] out = new double[batch.size()];
+                        Kernels.negate(operand.evaluate(batch, selection), out, selection);
+                        return out;
+                    };
+                default:
+                    throw new Exception(String.format("Unexpected unary operator %s", kind));
+            }
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            DoubleKernel left = compileDouble(b.getLeft());
+            DoubleKernel right = compileDouble(b.getRight());
+            BoundBinaryOperationKind operation = b.getOperatorKind();
+
+            switch (operation) {
+                case Addition:
+                    return doubleBinary(left, right, Kernels::add);
+                case Subtraction:
+                    return doubleBinary(left, right, Kernels::subtract);
+                case Multiplication:
+                    return doubleBinary(left, right, Kernels::multiply);
+                case Division:
+                    return doubleBinary(left, right, Kernels::divide);
+                default:
+                    throw new Exception(String.format("Unexpected binary operator %s", operation));
+            }
+        }
+
+        throw new Exception(String.format("Unable to compile %s as a double.", root.getClass().getSimpleName()));
+    }
+
+    private static DoubleKernel doubleBinary(DoubleKernel left, DoubleKernel right, Operator<double[], double[]> operator)
+    {
+        return (batch, selection) -> {
+            double[] out = new double[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    private static BooleanKernel doubleComparison(
+        DoubleKernel left,
+        DoubleKernel right,
+        Operator<double[], boolean[]> operator
+    )
+    {
+        return (batch, selection) -> {
+            boolean[] out = new boolean[batch.size()];
+            operator.apply(left.evaluate(batch, selection), right.evaluate(batch, selection), out, selection);
+            return out;
+        };
+    }
+
+    /**
+     * Sets the selected rows of a column to a single value.
+     */
+    private static <T> T[] fill(T[] out, T value, Selection selection)
+    {
+        if (selection.isDense()) {
+            Arrays.fill(out, 0, selection.size(), value);
+        } else {
+            for (int j = 0, size = selection.size(); j < size; j++) {
+                out[selection.get(j)] = value;
+            }
+        }
+
+        return out;
+    }
+}
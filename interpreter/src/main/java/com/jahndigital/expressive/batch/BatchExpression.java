@@ -0,0 +1,442 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.Arithmetic;
+import com.jahndigital.expressive.Evaluator;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * An expression compiled by the {@link BatchCompiler}, which evaluates every row of a {@link Batch} in one call.  Each
+ * operator runs as a loop over whole columns instead of walking the tree once per row.
+ *
+ * The result is a column with one value per row: an int[] for {@link Integer} expressions, a boolean[] for
+ * {@link Boolean} expressions, a BigDecimal[] for {@link BigDecimal} expressions, a long[] for {@link Long} expressions,
+ * a double[] for {@link Double} expressions, and an Object[] otherwise.  Logical
+ * operators short circuit per row, so the right operand is only evaluated for the rows that require it.
+ *
+ * Integer and long math that overflows in any row isn't an error.  The batch is evaluated again one row at a time with
+ * {@link Evaluator#evaluateWidened(com.jahndigital.expressive.extensibility.Context)}, and the column is widened to
+ * hold every result: a long[] if an integer overflowed, or a BigDecimal[] if a long did.  Trees deeper than
+ * {@link com.jahndigital.expressive.binding.BoundExpression#MAX_RECURSION_DEPTH} are always evaluated one row at a time
+ * this way, since compiling them into kernels would recurse once per level.
+ *
+ * Boolean expressions may also be evaluated as a filter, which returns the rows where the expression is true without
+ * materializing a boolean for every row of every comparison.
+ *
+ * Every evaluation method has an overload that accepts an {@link Executor} (E.g.
+ * {@link java.util.concurrent.ForkJoinPool#commonPool()}), which splits large batches into ranges of rows that are
+ * evaluated in parallel.  The result is the same as evaluating the whole batch on the calling thread.
+ *
+ * Batch expressions are immutable and may be evaluated from any number of threads at once.
+ */
+public final class BatchExpression
+{
+    /**
+     * Evaluates the selected rows of a batch into a column.
+     */
+    @FunctionalInterface
+    interface Kernel
+    {
+        Object evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    /**
+     * Narrows a selection of a batch to the rows where a boolean expression is true.
+     */
+    @FunctionalInterface
+    interface Filter
+    {
+        Selection evaluate(Batch batch, Selection selection) throws Exception;
+    }
+
+    private final Type _type;
+    private final Kernel _kernel;
+    private final Filter _filter;
+    private final Evaluator _evaluator;
+
+    /**
+     * Init
+     *
+     * @param type The bound type of the expression.
+     * @param kernel Evaluates the expression into a column, or null to evaluate each row with the evaluator.
+     * @param filter Evaluates the expression as a filter, or null if it isn't boolean or has no kernel.
+     * @param evaluator Evaluates a row of the expression when the kernel overflows, or null if the expression is empty.
+     */
+    BatchExpression(Type type, Kernel kernel, Filter filter, Evaluator evaluator)
+    {
+        _type = type;
+        _kernel = kernel;
+        _filter = filter;
+        _evaluator = evaluator;
+    }
+
+    /**
+     * Gets the bound type of the expression.
+     */
+    public Type getType()
+    {
+        return _type;
+    }
+
+    /**
+     * Evaluates every row of the provided batch.
+     *
+     * @param batch The rows to evaluate.
+     * @return A column with one value per row.  See {@link BatchExpression} for the type of array returned.
+     * @throws Exception If an unrecoverable error was encountered while evaluating any row.
+     */
+    public Object evaluate(Batch batch) throws Exception
+    {
+        if (_kernel == null) {
+            return _evaluateWidened(batch);
+        }
+
+        try {
+            return _kernel.evaluate(batch, Selection.all(batch.size()));
+        } catch (ArithmeticException e) {
+            return _evaluateWidened(batch);
+        }
+    }
+
+    /**
+     * Evaluates every row of the provided batch, splitting it into ranges that are evaluated in parallel.
+     *
+     * @param batch The rows to evaluate.
+     * @param executor Runs the ranges of rows.
+     * @return A column with one value per row.  See {@link BatchExpression} for the type of array returned.
+     * @throws Exception If an unrecoverable error was encountered while evaluating any row.
+     */
+    public Object evaluate(Batch batch, Executor executor) throws Exception
+    {
+        int[] bounds = Partitioner.bounds(batch.size());
+        List<Object> columns = Partitioner.map(
+            batch,
+            bounds,
+            executor,
+            (slice, from) -> evaluate(slice)
+        );
+
+        if (columns.size() == 1) {
+            return columns.get(0);
+        }
+
+        // A range that overflowed may have been widened, in which case every range is widened to match.
+        Class<?> component = int.class;
+        for (Object column : columns) {
+            component = _wider(component, column.getClass().getComponentType());
+        }
+
+        Object out = Array.newInstance(component, batch.size());
+        for (int n = 0; n < columns.size(); n++) {
+            System.arraycopy(_widen(columns.get(n), component), 0, out, bounds[n], bounds[n + 1] - bounds[n]);
+        }
+
+        return out;
+    }
+
+    /**
+     * Evaluates every row of the provided batch as an {@link Integer} expression.
+     *
+     * @param batch The rows to evaluate.
+     * @throws Exception If the expression isn't an integer or an unrecoverable error was encountered during evaluation.
+     * @throws ArithmeticException If the result of any row doesn't fit in an integer.
+     */
+    public int[] evaluateInts(Batch batch) throws Exception
+    {
+        _ensureType(Integer.class);
+        Object column = evaluate(batch);
+
+        if (!(column instanceof int[])) {
+            throw new ArithmeticException("integer overflow");
+        }
+
+        return (int[])column;
+    }
+
+    /**
+     * Evaluates every row of the provided batch as a {@link Boolean} expression.
+     *
+     * @param batch The rows to evaluate.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public boolean[] evaluateBooleans(Batch batch) throws Exception
+    {
+        _ensureType(Boolean.class);
+        return (boolean[])evaluate(batch);
+    }
+
+    /**
+     * Evaluates every row of the provided batch as a {@link BigDecimal}, {@link Integer}, or {@link Long} expression.
+     *
+     * @param batch The rows to evaluate.
+     * @throws Exception If the expression isn't numeric or an unrecoverable error was encountered during evaluation.
+     */
+    public BigDecimal[] evaluateDecimals(Batch batch) throws Exception
+    {
+        if (_type != Integer.class && _type != Long.class) {
+            _ensureType(BigDecimal.class);
+        }
+
+        return (BigDecimal[])_widen(evaluate(batch), BigDecimal.class);
+    }
+
+    /**
+     * Evaluates every row of the provided batch as a {@link Long} or {@link Integer} expression.
+     *
+     * @param batch The rows to evaluate.
+     * @throws Exception If the expression isn't a long or an unrecoverable error was encountered during evaluation.
+     * @throws ArithmeticException If the result of any row doesn't fit in a long.
+     */
+    public long[] evaluateLongs(Batch batch) throws Exception
+    {
+        if (_type != Integer.class) {
+            _ensureType(Long.class);
+        }
+
+        Object column = evaluate(batch);
+
+        if (column instanceof BigDecimal[]) {
+            throw new ArithmeticException("long overflow");
+        }
+
+        return (long[])_widen(column, long.class);
+    }
+
+    /**
+     * Evaluates every row of the provided batch as a {@link Double} expression.
+     *
+     * @param batch The rows to evaluate.
+     * @throws Exception If the expression isn't a double or an unrecoverable error was encountered during evaluation.
+     */
+    public double[] evaluateDoubles(Batch batch) throws Exception
+    {
+        _ensureType(Double.class);
+        return (double[])evaluate(batch);
+    }
+
+    /**
+     * Evaluates a boolean expression as a filter over the provided batch.
+     *
+     * @param batch The rows to filter.
+     * @return The indexes of the rows where the expression is true, in ascending order.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public int[] select(Batch batch) throws Exception
+    {
+        _ensureType(Boolean.class);
+        return _selectRows(batch);
+    }
+
+    /**
+     * Evaluates a boolean expression as a filter over the provided batch, splitting it into ranges that are evaluated in
+     * parallel.
+     *
+     * @param batch The rows to filter.
+     * @param executor Runs the ranges of rows.
+     * @return The indexes of the rows where the expression is true, in ascending order.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public int[] select(Batch batch, Executor executor) throws Exception
+    {
+        _ensureType(Boolean.class);
+        List<int[]> ranges = _select(batch, executor);
+
+        if (ranges.size() == 1) {
+            return ranges.get(0);
+        }
+
+        int size = 0;
+        for (int[] rows : ranges) {
+            size += rows.length;
+        }
+
+        int[] out = new int[size];
+        int offset = 0;
+
+        for (int[] rows : ranges) {
+            System.arraycopy(rows, 0, out, offset, rows.length);
+            offset += rows.length;
+        }
+
+        return out;
+    }
+
+    /**
+     * Evaluates a boolean expression as a filter over the provided batch.
+     *
+     * @param batch The rows to filter.
+     * @return A set with a bit for each row where the expression is true.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public BitSet filter(Batch batch) throws Exception
+    {
+        _ensureType(Boolean.class);
+        BitSet bits = new BitSet(batch.size());
+
+        for (int row : _selectRows(batch)) {
+            bits.set(row);
+        }
+
+        return bits;
+    }
+
+    /**
+     * Evaluates a boolean expression as a filter over the provided batch, splitting it into ranges that are evaluated in
+     * parallel.
+     *
+     * @param batch The rows to filter.
+     * @param executor Runs the ranges of rows.
+     * @return A set with a bit for each row where the expression is true.
+     * @throws Exception If the expression isn't a boolean or an unrecoverable error was encountered during evaluation.
+     */
+    public BitSet filter(Batch batch, Executor executor) throws Exception
+    {
+        _ensureType(Boolean.class);
+        BitSet bits = new BitSet(batch.size());
+
+        for (int[] rows : _select(batch, executor)) {
+            for (int row : rows) {
+                bits.set(row);
+            }
+        }
+
+        return bits;
+    }
+
+    /**
+     * Filters each range of a batch in parallel.
+     *
+     * @return The matching rows of each range in order, as indexes into the original batch.
+     */
+    private List<int[]> _select(Batch batch, Executor executor) throws Exception
+    {
+        return Partitioner.map(batch, Partitioner.bounds(batch.size()), executor, (slice, from) -> {
+            int[] rows = _selectRows(slice);
+
+            if (from != 0) {
+                for (int j = 0; j < rows.length; j++) {
+                    rows[j] += from;
+                }
+            }
+
+            return rows;
+        });
+    }
+
+    /**
+     * Filters a batch, falling back to evaluating each row when the filter overflows or there is no filter.
+     *
+     * @return The indexes of the rows where the expression is true, in ascending order.
+     */
+    private int[] _selectRows(Batch batch) throws Exception
+    {
+        if (_filter != null) {
+            try {
+                return _filter.evaluate(batch, Selection.all(batch.size())).toArray();
+            } catch (ArithmeticException e) {
+                // Evaluated below one row at a time.
+            }
+        }
+
+        boolean[] values = (boolean[])_evaluateWidened(batch);
+        int[] rows = new int[values.length];
+        int size = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i]) {
+                rows[size++] = i;
+            }
+        }
+
+        return Arrays.copyOf(rows, size);
+    }
+
+    /**
+     * Evaluates each row of a batch on its own, promoting integers and longs that overflow.
+     *
+     * @return A column in the narrowest type that holds every row.  See {@link BatchExpression}.
+     */
+    private Object _evaluateWidened(Batch batch) throws Exception
+    {
+        RowContext context = new RowContext(batch);
+        Object[] values = new Object[batch.size()];
+        Class<?> component = _type == Integer.class ? int.class : _type == Long.class ? long.class : null;
+
+        for (int i = 0; i < values.length; i++) {
+            context.setRow(i);
+            values[i] = _evaluator.evaluateWidened(context);
+
+            if (component != null) {
+                component = _wider(component, values[i] instanceof Integer ? int.class : values[i] instanceof Long ? long.class : BigDecimal.class);
+            }
+        }
+
+        if (_type == Boolean.class) {
+            component = boolean.class;
+        } else if (_type == Double.class) {
+            component = double.class;
+        } else if (_type == BigDecimal.class) {
+            component = BigDecimal.class;
+        } else if (component == null) {
+            return values;
+        }
+
+        Object out = Array.newInstance(component, values.length);
+        for (int i = 0; i < values.length; i++) {
+            Array.set(out, i, component == BigDecimal.class ? Arithmetic.toDecimal(values[i]) : values[i]);
+        }
+
+        return out;
+    }
+
+    /**
+     * Gets the wider of two integral column types, in the order int, long, and {@link BigDecimal}.  Any other type is
+     * returned as is, since columns of other types are never widened.
+     */
+    private static Class<?> _wider(Class<?> left, Class<?> right)
+    {
+        if (left == BigDecimal.class || right == BigDecimal.class) {
+            return BigDecimal.class;
+        }
+
+        if (left == long.class || right == long.class) {
+            return long.class;
+        }
+
+        return left == int.class ? right : left;
+    }
+
+    /**
+     * Copies an int[] or long[] column into a wider column type, or returns the column as is if it's already that type.
+     */
+    private static Object _widen(Object column, Class<?> component)
+    {
+        if (column.getClass().getComponentType() == component) {
+            return column;
+        }
+
+        int size = Array.getLength(column);
+        Object out = Array.newInstance(component, size);
+
+        for (int i = 0; i < size; i++) {
+            long value = Array.getLong(column, i);
+            Array.set(out, i, component == long.class ? (Object)value : BigDecimal.valueOf(value));
+        }
+
+        return out;
+    }
+
+    private void _ensureType(Type type) throws Exception
+    {
+        if (_type != type) {
+            String name = _type == null ? "null" : _type.getTypeName();
+            throw new Exception(String.format("Expression of type %s cannot be evaluated as %s.", name, type.getTypeName()));
+        }
+    }
+}
@@ -0,0 +1,1360 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.Arithmetic;
+import com.jahndigital.expressive.binding.BoundBinaryOperationKind;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Applies a single operator to whole columns.  Every kernel reads its operands and writes its result at the selected
+ * rows only, so rows that aren't selected keep whatever value the output already had.
+ *
+ * Dense selections are handled by a plain counted loop over the arrays with no calls or branches in its body, which is
+ * the shape the JIT compiler unrolls and turns into SIMD instructions on its own.  Kernels for a constant operand
+ * compare or combine a column with a scalar, so constants never have to be copied into a column of their own.
+ *
+ * Integer and long math throws an {@link ArithmeticException} on overflow.  Rather than branching on every row, the
+ * math kernels fold each row's overflow bit into a flag and check it once the loop is done.
+ *
+ * Filter kernels narrow a selection to the rows where a comparison holds.  Every row is written to the output and only
+ * kept by advancing the count, so the loop doesn't branch on the result of the comparison.
+ */
+final class Kernels
+{
+    private Kernels() { }
+
+    //
+    // Integer math
+    //
+
+    static void add(int[] left, int[] right, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        int overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                int a = left[i];
+                int b = right[i];
+                int r = a + b;
+                out[i] = r;
+                overflow |= (a ^ r) & (b ^ r);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                int a = left[i];
+                int b = right[i];
+                int r = a + b;
+                out[i] = r;
+                overflow |= (a ^ r) & (b ^ r);
+            }
+        }
+
+        checkOverflow(overflow < 0, "integer overflow");
+    }
+
+    static void subtract(int[] left, int[] right, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        int overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                int a = left[i];
+                int b = right[i];
+                int r = a - b;
+                out[i] = r;
+                overflow |= (a ^ b) & (a ^ r);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                int a = left[i];
+                int b = right[i];
+                int r = a - b;
+                out[i] = r;
+                overflow |= (a ^ b) & (a ^ r);
+            }
+        }
+
+        checkOverflow(overflow < 0, "integer overflow");
+    }
+
+    static void multiply(int[] left, int[] right, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        long overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                long r = (long)left[i] * right[i];
+                out[i] = (int)r;
+                overflow |= (r >> 31) ^ (r >> 63);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                long r = (long)left[i] * right[i];
+                out[i] = (int)r;
+                overflow |= (r >> 31) ^ (r >> 63);
+            }
+        }
+
+        checkOverflow(overflow != 0, "integer overflow");
+    }
+
+    static void divide(int[] left, int[] right, int[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = Arithmetic.divide(left[i], right[i]);
+        }
+    }
+
+    static void negate(int[] operand, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        int overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                int x = operand[i];
+                out[i] = -x;
+                overflow |= x & -x;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                int x = operand[i];
+                out[i] = -x;
+                overflow |= x & -x;
+            }
+        }
+
+        checkOverflow(overflow < 0, "integer overflow");
+    }
+
+    //
+    // Integer math with a constant right operand
+    //
+
+    static void add(int[] left, int right, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        int overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                int a = left[i];
+                int b = right;
+                int r = a + b;
+                out[i] = r;
+                overflow |= (a ^ r) & (b ^ r);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                int a = left[i];
+                int b = right;
+                int r = a + b;
+                out[i] = r;
+                overflow |= (a ^ r) & (b ^ r);
+            }
+        }
+
+        checkOverflow(overflow < 0, "integer overflow");
+    }
+
+    static void subtract(int[] left, int right, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        int overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                int a = left[i];
+                int b = right;
+                int r = a - b;
+                out[i] = r;
+                overflow |= (a ^ b) & (a ^ r);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                int a = left[i];
+                int b = right;
+                int r = a - b;
+                out[i] = r;
+                overflow |= (a ^ b) & (a ^ r);
+            }
+        }
+
+        checkOverflow(overflow < 0, "integer overflow");
+    }
+
+    static void multiply(int[] left, int right, int[] out, Selection selection)
+    {
+        int size = selection.size();
+        long overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                long r = (long)left[i] * right;
+                out[i] = (int)r;
+                overflow |= (r >> 31) ^ (r >> 63);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                long r = (long)left[i] * right;
+                out[i] = (int)r;
+                overflow |= (r >> 31) ^ (r >> 63);
+            }
+        }
+
+        checkOverflow(overflow != 0, "integer overflow");
+    }
+
+    static void divide(int[] left, int right, int[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = Arithmetic.divide(left[i], right);
+        }
+    }
+
+    //
+    // Integer comparisons
+    //
+
+    static void equal(int[] left, int[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] == right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] == right[i];
+            }
+        }
+    }
+
+    static void notEqual(int[] left, int[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] != right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] != right[i];
+            }
+        }
+    }
+
+    static void greaterThan(int[] left, int[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] > right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] > right[i];
+            }
+        }
+    }
+
+    static void greaterThanOrEqual(int[] left, int[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] >= right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] >= right[i];
+            }
+        }
+    }
+
+    static void lessThan(int[] left, int[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] < right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] < right[i];
+            }
+        }
+    }
+
+    static void lessThanOrEqual(int[] left, int[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] <= right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] <= right[i];
+            }
+        }
+    }
+
+    //
+    // Integer comparisons with a constant right operand
+    //
+
+    static void equal(int[] left, int right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] == right;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] == right;
+            }
+        }
+    }
+
+    static void notEqual(int[] left, int right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] != right;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] != right;
+            }
+        }
+    }
+
+    static void greaterThan(int[] left, int right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] > right;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] > right;
+            }
+        }
+    }
+
+    static void greaterThanOrEqual(int[] left, int right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] >= right;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] >= right;
+            }
+        }
+    }
+
+    static void lessThan(int[] left, int right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] < right;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] < right;
+            }
+        }
+    }
+
+    static void lessThanOrEqual(int[] left, int right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] <= right;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] <= right;
+            }
+        }
+    }
+
+    //
+    // Integer filters
+    //
+
+    static Selection selectEqual(int[] left, int[] right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] == right[i] ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] == right[i] ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectNotEqual(int[] left, int[] right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] != right[i] ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] != right[i] ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectGreaterThan(int[] left, int[] right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] > right[i] ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] > right[i] ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectGreaterThanOrEqual(int[] left, int[] right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] >= right[i] ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] >= right[i] ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectLessThan(int[] left, int[] right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] < right[i] ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] < right[i] ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectLessThanOrEqual(int[] left, int[] right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] <= right[i] ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] <= right[i] ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    //
+    // Integer filters with a constant right operand
+    //
+
+    static Selection selectEqual(int[] left, int right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] == right ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] == right ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectNotEqual(int[] left, int right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] != right ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] != right ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectGreaterThan(int[] left, int right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] > right ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] > right ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectGreaterThanOrEqual(int[] left, int right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] >= right ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] >= right ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectLessThan(int[] left, int right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] < right ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] < right ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    static Selection selectLessThanOrEqual(int[] left, int right, Selection selection)
+    {
+        int size = selection.size();
+        int[] out = new int[size];
+        int count = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[count] = i;
+                count += left[i] <= right ? 1 : 0;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[count] = i;
+                count += left[i] <= right ? 1 : 0;
+            }
+        }
+
+        return count == size ? selection : new Selection(out, count);
+    }
+
+    //
+    // Logic
+    //
+
+    static void equal(boolean[] left, boolean[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] == right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] == right[i];
+            }
+        }
+    }
+
+    static void notEqual(boolean[] left, boolean[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] != right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] != right[i];
+            }
+        }
+    }
+
+    static void not(boolean[] operand, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = !operand[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = !operand[i];
+            }
+        }
+    }
+
+    //
+    // Decimals
+    //
+
+    static void add(BigDecimal[] left, BigDecimal[] right, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = left[i].add(right[i]);
+        }
+    }
+
+    static void subtract(BigDecimal[] left, BigDecimal[] right, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = left[i].subtract(right[i]);
+        }
+    }
+
+    static void multiply(BigDecimal[] left, BigDecimal[] right, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = left[i].multiply(right[i]);
+        }
+    }
+
+    static void divide(BigDecimal[] left, BigDecimal[] right, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = left[i].divide(right[i], RoundingMode.HALF_EVEN);
+        }
+    }
+
+    static void negate(BigDecimal[] operand, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = operand[i].negate();
+        }
+    }
+
+    /**
+     * Applies a comparison operator to decimal columns.
+     */
+    static void compare(
+        BoundBinaryOperationKind operation,
+        BigDecimal[] left,
+        BigDecimal[] right,
+        boolean[] out,
+        Selection selection
+    )
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            int check = left[i].compareTo(right[i]);
+
+            switch (operation) {
+                case Equals:
+                    out[i] = check == 0;
+                    break;
+                case NotEquals:
+                    out[i] = check != 0;
+                    break;
+                case GreaterThan:
+                    out[i] = check > 0;
+                    break;
+                case GreaterThanOrEqualTo:
+                    out[i] = check >= 0;
+                    break;
+                case LessThan:
+                    out[i] = check < 0;
+                    break;
+                default:
+                    out[i] = check <= 0;
+                    break;
+            }
+        }
+    }
+
+    //
+    // Long math
+    //
+
+    static void add(long[] left, long[] right, long[] out, Selection selection)
+    {
+        int size = selection.size();
+        long overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                long a = left[i];
+                long b = right[i];
+                long r = a + b;
+                out[i] = r;
+                overflow |= (a ^ r) & (b ^ r);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                long a = left[i];
+                long b = right[i];
+                long r = a + b;
+                out[i] = r;
+                overflow |= (a ^ r) & (b ^ r);
+            }
+        }
+
+        checkOverflow(overflow < 0, "long overflow");
+    }
+
+    static void subtract(long[] left, long[] right, long[] out, Selection selection)
+    {
+        int size = selection.size();
+        long overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                long a = left[i];
+                long b = right[i];
+                long r = a - b;
+                out[i] = r;
+                overflow |= (a ^ b) & (a ^ r);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                long a = left[i];
+                long b = right[i];
+                long r = a - b;
+                out[i] = r;
+                overflow |= (a ^ b) & (a ^ r);
+            }
+        }
+
+        checkOverflow(overflow < 0, "long overflow");
+    }
+
+    static void multiply(long[] left, long[] right, long[] out, Selection selection)
+    {
+        // There's no cheap branch-free overflow check for a 64-bit product without Math.multiplyHigh (Java 9), so this
+        // loop keeps the check in its body.
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = Math.multiplyExact(left[i], right[i]);
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = Math.multiplyExact(left[i], right[i]);
+            }
+        }
+    }
+
+    static void divide(long[] left, long[] right, long[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = Arithmetic.divide(left[i], right[i]);
+        }
+    }
+
+    static void negate(long[] operand, long[] out, Selection selection)
+    {
+        int size = selection.size();
+        long overflow = 0;
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                long x = operand[i];
+                out[i] = -x;
+                overflow |= x & -x;
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                long x = operand[i];
+                out[i] = -x;
+                overflow |= x & -x;
+            }
+        }
+
+        checkOverflow(overflow < 0, "long overflow");
+    }
+
+    //
+    // Double math
+    //
+
+    static void add(double[] left, double[] right, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] + right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] + right[i];
+            }
+        }
+    }
+
+    static void subtract(double[] left, double[] right, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] - right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] - right[i];
+            }
+        }
+    }
+
+    static void multiply(double[] left, double[] right, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] * right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] * right[i];
+            }
+        }
+    }
+
+    static void divide(double[] left, double[] right, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] / right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] / right[i];
+            }
+        }
+    }
+
+    static void negate(double[] operand, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = -operand[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = -operand[i];
+            }
+        }
+    }
+
+    //
+    // Long comparisons
+    //
+
+    static void equal(long[] left, long[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] == right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] == right[i];
+            }
+        }
+    }
+
+    static void notEqual(long[] left, long[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] != right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] != right[i];
+            }
+        }
+    }
+
+    static void greaterThan(long[] left, long[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] > right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] > right[i];
+            }
+        }
+    }
+
+    static void greaterThanOrEqual(long[] left, long[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] >= right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] >= right[i];
+            }
+        }
+    }
+
+    static void lessThan(long[] left, long[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] < right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] < right[i];
+            }
+        }
+    }
+
+    static void lessThanOrEqual(long[] left, long[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] <= right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] <= right[i];
+            }
+        }
+    }
+
+    //
+    // Double comparisons.  NaN is unordered, so every comparison with it is false except notEqual.
+    //
+
+    static void equal(double[] left, double[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] == right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] == right[i];
+            }
+        }
+    }
+
+    static void notEqual(double[] left, double[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] != right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] != right[i];
+            }
+        }
+    }
+
+    static void greaterThan(double[] left, double[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] > right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] > right[i];
+            }
+        }
+    }
+
+    static void greaterThanOrEqual(double[] left, double[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] >= right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] >= right[i];
+            }
+        }
+    }
+
+    static void lessThan(double[] left, double[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] < right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] < right[i];
+            }
+        }
+    }
+
+    static void lessThanOrEqual(double[] left, double[] right, boolean[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = left[i] <= right[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = left[i] <= right[i];
+            }
+        }
+    }
+
+    //
+    // Conversions
+    //
+
+    static void toDecimal(int[] operand, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = BigDecimal.valueOf(operand[i]);
+        }
+    }
+
+    static void toDecimal(long[] operand, BigDecimal[] out, Selection selection)
+    {
+        for (int j = 0, size = selection.size(); j < size; j++) {
+            int i = selection.get(j);
+            out[i] = BigDecimal.valueOf(operand[i]);
+        }
+    }
+
+    static void toLong(int[] operand, long[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = operand[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = operand[i];
+            }
+        }
+    }
+
+    static void toDouble(int[] operand, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = operand[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = operand[i];
+            }
+        }
+    }
+
+    static void toDouble(long[] operand, double[] out, Selection selection)
+    {
+        int size = selection.size();
+
+        if (selection.isDense()) {
+            for (int i = 0; i < size; i++) {
+                out[i] = operand[i];
+            }
+        } else {
+            int[] rows = selection.getRows();
+            for (int j = 0; j < size; j++) {
+                int i = rows[j];
+                out[i] = operand[i];
+            }
+        }
+    }
+
+    /**
+     * Throws once a kernel has finished if any selected row overflowed.
+     */
+    private static void checkOverflow(boolean overflowed, String message)
+    {
+        if (overflowed) {
+            throw new ArithmeticException(message);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.jahndigital.expressive.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Splits a {@link Batch} into contiguous ranges of rows and evaluates each range as a separate task.  Every task works
+ * on its own copy of its rows, so the columns it allocates while evaluating belong to a single worker, and the results
+ * are returned in the order of the ranges regardless of which task finishes first.
+ */
+final class Partitioner
+{
+    /**
+     * The smallest number of rows worth handing to another thread.
+     */
+    static final int MINIMUM_RANGE = 16384;
+
+    /**
+     * Evaluates a range of rows.
+     */
+    @FunctionalInterface
+    interface Task<T>
+    {
+        /**
+         * @param slice A batch holding only the rows of the range.
+         * @param from The index of the first row of the range in the original batch.
+         */
+        T evaluate(Batch slice, int from) throws Exception;
+    }
+
+    private Partitioner() { }
+
+    /**
+     * Gets the boundaries of the ranges a batch is split into.  Range n covers rows bounds[n] up to bounds[n + 1].
+     *
+     * @param size The number of rows in the batch.
+     */
+    static int[] bounds(int size)
+    {
+        int ranges = Math.max(1, Math.min(size / MINIMUM_RANGE, Runtime.getRuntime().availableProcessors() * 4));
+        int[] bounds = new int[ranges + 1];
+
+        for (int n = 0; n <= ranges; n++) {
+            bounds[n] = (int)((long)size * n / ranges);
+        }
+
+        return bounds;
+    }
+
+    /**
+     * Evaluates every range of a batch, running all but the last range on the provided executor.
+     *
+     * @param batch The batch to split.
+     * @param bounds The boundaries of the ranges.  See {@link #bounds(int)}.
+     * @param executor Runs the tasks.
+     * @param task Evaluates a single range.
+     * @return The result of each range, in order.
+     * @throws Exception The exception thrown by the first range that failed.
+     */
+    static <T> List<T> map(Batch batch, int[] bounds, Executor executor, Task<T> task) throws Exception
+    {
+        int ranges = bounds.length - 1;
+
+        if (ranges == 1) {
+            List<T> results = new ArrayList<>(1);
+            results.add(task.evaluate(batch, 0));
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(ranges);
+        for (int n = 0; n < ranges - 1; n++) {
+            int from = bounds[n];
+            int to = bounds[n + 1];
+            futures.add(submit(executor, () -> task.evaluate(batch.slice(from, to), from)));
+        }
+
+        // The calling thread would otherwise sit idle, so it takes the last range itself.
+        Exception failure = null;
+        T last = null;
+        try {
+            last = task.evaluate(batch.slice(bounds[ranges - 1], bounds[ranges]), bounds[ranges - 1]);
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        List<T> results = new ArrayList<>(ranges);
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof Error) {
+                    throw (Error)cause;
+                }
+
+                throw cause instanceof Exception ? (Exception)cause : e;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        results.add(last);
+        return results;
+    }
+
+    /**
+     * Schedules a task.  Tasks on a {@link ForkJoinPool} are submitted as fork/join tasks, so a worker of the same pool
+     * that waits for them helps to run them instead of blocking.
+     */
+    private static <T> Future<T> submit(Executor executor, Callable<T> callable)
+    {
+        if (executor instanceof ForkJoinPool) {
+            ForkJoinTask<T> task = ForkJoinTask.adapt(callable);
+            ((ForkJoinPool)executor).execute(task);
+            return task;
+        }
+
+        FutureTask<T> task = new FutureTask<>(callable);
+        executor.execute(task);
+        return task;
+    }
+}
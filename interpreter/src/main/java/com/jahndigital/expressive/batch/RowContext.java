@@ -0,0 +1,121 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.ContextKey;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Presents a single row of a {@link Batch} as a {@link Context}, so functions can be called once per row.  The row is
+ * moved rather than allocating a context per row, so it must not be retained by the function.
+ */
+final class RowContext implements Context
+{
+    private final Batch _batch;
+    private int _row;
+    private Map<String, Object> _map;
+
+    /**
+     * Init
+     *
+     * @param batch The batch to read values from.
+     */
+    RowContext(Batch batch)
+    {
+        _batch = batch;
+    }
+
+    /**
+     * Moves the context to another row.
+     */
+    void setRow(int row)
+    {
+        _row = row;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(ContextKey<T> key)
+    {
+        return (T)_batch.getValue(key, _row);
+    }
+
+    /**
+     * Gets a read only view of the current row.  The view follows the context as it moves between rows.
+     */
+    @Override
+    public Map<String, Object> asMap()
+    {
+        if (_map == null) {
+            List<ContextKey<?>> keys = _batch.getSchema().getKeys();
+
+            _map = new AbstractMap<String, Object>()
+            {
+                @Override
+                public Set<Entry<String, Object>> entrySet()
+                {
+                    return new AbstractSet<Entry<String, Object>>()
+                    {
+                        @Override
+                        public Iterator<Entry<String, Object>> iterator()
+                        {
+                            return new Iterator<Entry<String, Object>>()
+                            {
+                                private int _index = _advance(0);
+
+                                @Override
+                                public boolean hasNext()
+                                {
+                                    return _index < keys.size();
+                                }
+
+                                @Override
+                                public Entry<String, Object> next()
+                                {
+                                    if (!hasNext()) {
+                                        throw new NoSuchElementException();
+                                    }
+
+                                    ContextKey<?> key = keys.get(_index);
+                                    _index = _advance(_index + 1);
+                                    return new SimpleImmutableEntry<>(key.getName(), _batch.getValue(key, _row));
+                                }
+
+                                /**
+                                 * Skips variables without a column.
+                                 */
+                                private int _advance(int index)
+                                {
+                                    while (index < keys.size() && _batch.getValue(keys.get(index), _row) == null) {
+                                        index++;
+                                    }
+
+                                    return index;
+                                }
+                            };
+                        }
+
+                        @Override
+                        public int size()
+                        {
+                            int size = 0;
+                            for (Iterator<Entry<String, Object>> i = iterator(); i.hasNext(); i.next()) {
+                                size++;
+                            }
+
+                            return size;
+                        }
+                    };
+                }
+            };
+        }
+
+        return _map;
+    }
+}
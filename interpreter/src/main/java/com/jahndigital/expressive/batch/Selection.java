@@ -0,0 +1,175 @@
+package com.jahndigital.expressive.batch;
+
+/**
+ * The rows of a {@link Batch} that an operation is applied to, in ascending order.  A dense selection covers every row
+ * and lets kernels loop over the arrays directly, without going through a list of row indexes.
+ */
+final class Selection
+{
+    private final int[] _rows;
+    private final int _size;
+
+    /**
+     * Init
+     *
+     * @param rows The selected rows in ascending order, or null if every row up to size is selected.
+     * @param size The number of selected rows.
+     */
+    Selection(int[] rows, int size)
+    {
+        _rows = rows;
+        _size = size;
+    }
+
+    /**
+     * Creates a selection of every row in a batch.
+     */
+    static Selection all(int size)
+    {
+        return new Selection(null, size);
+    }
+
+    /**
+     * Returns true if every row is selected, in which case the nth selected row is n.
+     */
+    boolean isDense()
+    {
+        return _rows == null;
+    }
+
+    /**
+     * Gets the number of selected rows.
+     */
+    int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Gets the selected rows.  Only valid if the selection isn't dense, and may be longer than {@link #size()}.
+     */
+    int[] getRows()
+    {
+        return _rows;
+    }
+
+    /**
+     * Gets the nth selected row.
+     */
+    int get(int n)
+    {
+        return _rows == null ? n : _rows[n];
+    }
+
+    /**
+     * Narrows the selection to the rows where the provided column has the provided value.
+     *
+     * @param values A value for every row in the batch.
+     * @param value The value to keep.
+     */
+    Selection where(boolean[] values, boolean value)
+    {
+        int[] rows = new int[_size];
+        int size = 0;
+
+        if (_rows == null) {
+            for (int i = 0; i < _size; i++) {
+                if (values[i] == value) {
+                    rows[size++] = i;
+                }
+            }
+        } else {
+            for (int j = 0; j < _size; j++) {
+                int i = _rows[j];
+                if (values[i] == value) {
+                    rows[size++] = i;
+                }
+            }
+        }
+
+        return size == _size ? this : new Selection(rows, size);
+    }
+
+    /**
+     * Removes the rows of another selection from this one.
+     *
+     * @param other A subset of this selection.
+     */
+    Selection minus(Selection other)
+    {
+        if (other._size == 0) {
+            return this;
+        }
+
+        int[] rows = new int[_size - other._size];
+        int size = 0;
+        int k = 0;
+
+        for (int j = 0; j < _size; j++) {
+            int i = get(j);
+
+            if (k < other._size && other.get(k) == i) {
+                k++;
+            } else {
+                rows[size++] = i;
+            }
+        }
+
+        return new Selection(rows, size);
+    }
+
+    /**
+     * Merges two selections that don't share any rows, keeping the rows in ascending order.
+     */
+    static Selection union(Selection left, Selection right)
+    {
+        if (left._size == 0) {
+            return right;
+        }
+
+        if (right._size == 0) {
+            return left;
+        }
+
+        int[] rows = new int[left._size + right._size];
+        int size = 0;
+        int l = 0;
+        int r = 0;
+
+        while (l < left._size && r < right._size) {
+            int a = left.get(l);
+            int b = right.get(r);
+
+            if (a < b) {
+                rows[size++] = a;
+                l++;
+            } else {
+                rows[size++] = b;
+                r++;
+            }
+        }
+
+        while (l < left._size) {
+            rows[size++] = left.get(l++);
+        }
+
+        while (r < right._size) {
+            rows[size++] = right.get(r++);
+        }
+
+        return new Selection(rows, size);
+    }
+
+    /**
+     * Copies the selected rows into an array of exactly {@link #size()} elements.
+     */
+    int[] toArray()
+    {
+        int[] rows = new int[_size];
+        for (int j = 0; j < _size; j++) {
+            rows[j] = get(j);
+        }
+
+        return rows;
+    }
+}
@@ -1,30 +1,65 @@
 package com.jahndigital.expressive.binding;
 
 import com.jahndigital.expressive.DiagnosticRepository;
+import com.jahndigital.expressive.FunctionRepository;
 import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.IFunction;
+import com.jahndigital.expressive.extensibility.Schema;
 import com.jahndigital.expressive.syntax.*;
 
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Walks a {@link ExpressionSyntaxNode} and generates a type-safe tree of {@link BoundExpression} objects that can be evaluated.
+ * Also binds each expression as it's parsed when used as the parser's {@link ExpressionBuilder}, so that text can be
+ * compiled without building a syntax tree.
  */
-final class Binder
+final class Binder implements ExpressionBuilder<BoundExpression>
 {
     /**
      * A list of error messages that occurred when parsing the {@link ExpressionSyntaxNode}(s).
      */
     private final DiagnosticRepository _diagnostics;
 
+    /**
+     * The variables that may be referenced by name.
+     */
+    private final Schema _schema;
+
+    /**
+     * How numeric literals and the operations between them are typed.
+     */
+    private final NumericMode _mode;
+
+    /**
+     * Init
+     *
+     * @param diagnostics The repository to use when reporting issues with binding.
+     * @param schema The variables that may be referenced by name.
+     */
+    Binder(DiagnosticRepository diagnostics, Schema schema)
+    {
+        this(diagnostics, schema, NumericMode.Exact);
+    }
+
     /**
      * Init
      *
      * @param diagnostics The repository to use when reporting issues with binding.
+     * @param schema The variables that may be referenced by name.
+     * @param mode How numeric literals and the operations between them are typed.
      */
-    Binder(DiagnosticRepository diagnostics)
+    Binder(DiagnosticRepository diagnostics, Schema schema, NumericMode mode)
     {
         _diagnostics = diagnostics;
+        _schema = schema;
+        _mode = mode;
     }
 
     /**
@@ -33,32 +68,180 @@ final class Binder
     BoundSyntaxTree bind(SyntaxTree tree)
     {
         try {
-            BoundExpression bound = bindExpression(tree.getRoot());
-            return new BoundSyntaxTree(_diagnostics, bound);
+            return complete(_diagnostics, bindExpression(tree.getRoot()));
         } catch (Exception e) {
             _diagnostics.addException(e);
             return new BoundSyntaxTree(_diagnostics, null);
         }
     }
 
+    /**
+     * Parses and binds the provided text in a single pass, without building a {@link SyntaxTree}.  Reports the same
+     * diagnostics in the same order as parsing the text and then binding the tree.
+     *
+     * @param text The expression to parse.
+     * @param functions The repository to use when resolving functions.
+     * @exception Exception If the text has lexer or parser errors.
+     */
+    BoundSyntaxTree compile(CharSequence text, FunctionRepository functions) throws Exception
+    {
+        // Lexer and parser diagnostics come first, so they're reported separately from the ones raised while binding.
+        DiagnosticRepository diagnostics = new DiagnosticRepository();
+        BoundExpression bound;
+
+        try {
+            bound = SyntaxTree.parse(text, functions, diagnostics, this);
+        } catch (Exception e) {
+            diagnostics.addAll(_diagnostics);
+            diagnostics.addException(e);
+            return new BoundSyntaxTree(diagnostics, null);
+        }
+
+        if (diagnostics.hasErrors()) {
+            throw new Exception("Cannot bind a syntax tree with lexer or parser errors.");
+        }
+
+        try {
+            return complete(diagnostics, bound);
+        } catch (Exception e) {
+            diagnostics.addAll(_diagnostics);
+            diagnostics.addException(e);
+            return new BoundSyntaxTree(diagnostics, null);
+        }
+    }
+
+    /**
+     * Optimizes a bound tree if it has no errors and returns it.
+     *
+     * @param diagnostics The repository that holds the lexer and parser diagnostics, which binder diagnostics are
+     *                    added after.
+     * @param bound The root of the bound tree.
+     */
+    private BoundSyntaxTree complete(DiagnosticRepository diagnostics, BoundExpression bound)
+    {
+        if (!_diagnostics.hasErrors()) {
+            bound = new Optimizer(_diagnostics).optimize(bound);
+        }
+
+        if (diagnostics != _diagnostics) {
+            diagnostics.addAll(_diagnostics);
+        }
+
+        return new BoundSyntaxTree(diagnostics, bound);
+    }
+
     /**
      * Generate a typed tree and return it.
      *
-     * @param syntax The syntax node(s) to walk.
+     * The syntax tree is walked with an explicit stack instead of by recursing, so the depth of the expression is only
+     * limited by memory.  Operands are bound in order, before the expressions that contain them.
+     *
+     * @param root The syntax node(s) to walk.
+     */
+    private BoundExpression bindExpression(ExpressionSyntaxNode root)
+    {
+        ExpressionSyntaxNode[] nodes = new ExpressionSyntaxNode[16];
+        int[] next = new int[nodes.length];
+        int depth = 0;
+        BoundExpression[] bound = new BoundExpression[16];
+        int count = 0;
+
+        nodes[depth++] = root;
+
+        while (depth > 0) {
+            int top = depth - 1;
+            ExpressionSyntaxNode syntax = nodes[top];
+            int operands = getOperandCount(syntax);
+            int index = next[top];
+
+            if (index < operands) {
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+
+                next[top]++;
+                nodes[depth] = getOperand(syntax, index);
+                next[depth++] = 0;
+                continue;
+            }
+
+            nodes[--depth] = null;
+            count -= operands;
+
+            BoundExpression result = bindOperation(syntax, bound, count);
+            if (count == bound.length) {
+                bound = Arrays.copyOf(bound, count * 2);
+            }
+
+            bound[count++] = result;
+        }
+
+        return bound[0];
+    }
+
+    /**
+     * Gets the number of expressions that a syntax node is made of.
+     */
+    private static int getOperandCount(ExpressionSyntaxNode syntax)
+    {
+        switch (syntax.getKind()) {
+            case UnaryExpression:
+            case ParenthesisedExpression:
+                return 1;
+            case BinaryExpression:
+                return 2;
+            case FunctionExpression:
+                return ((FunctionExpressionSyntaxNode)syntax).getArguments().size();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Gets an expression that a syntax node is made of, in the order they're bound.
+     */
+    private static ExpressionSyntaxNode getOperand(ExpressionSyntaxNode syntax, int index)
+    {
+        switch (syntax.getKind()) {
+            case UnaryExpression:
+                return ((UnaryExpressionSyntaxNode)syntax).getOperand();
+            case ParenthesisedExpression:
+                return ((ParenthesisedExpressionSyntax)syntax).getExpression();
+            case BinaryExpression:
+                return index == 0 ? ((BinaryExpressionSyntaxNode)syntax).getLeft() : ((BinaryExpressionSyntaxNode)syntax).getRight();
+            default:
+                return ((FunctionExpressionSyntaxNode)syntax).getArguments().get(index);
+        }
+    }
+
+    /**
+     * Binds a syntax node whose operands have already been bound.
+     *
+     * @param syntax The {@link SyntaxNode} to bind.
+     * @param operands Holds the bound operands of the node, in order.
+     * @param offset The index of the first operand in operands.
      */
-    private BoundExpression bindExpression(ExpressionSyntaxNode syntax)
+    private BoundExpression bindOperation(ExpressionSyntaxNode syntax, BoundExpression[] operands, int offset)
     {
         switch (syntax.getKind()) {
             case LiteralExpression:
-                return bindLiteralExpression((LiteralExpressionSyntaxNode)syntax);
+                return literal(((LiteralExpressionSyntaxNode)syntax).getToken(), ((LiteralExpressionSyntaxNode)syntax).getValue());
             case UnaryExpression:
-                return bindUnaryExpression((UnaryExpressionSyntaxNode)syntax);
+                return unary(((UnaryExpressionSyntaxNode)syntax).getOperator(), operands[offset]);
             case BinaryExpression:
-                return bindBinaryExpression((BinaryExpressionSyntaxNode)syntax);
+                return binary(operands[offset], ((BinaryExpressionSyntaxNode)syntax).getOperator(), operands[offset + 1]);
             case ParenthesisedExpression:
-                return bindExpression(((ParenthesisedExpressionSyntax)syntax).getExpression());
+                return operands[offset];
             case FunctionExpression:
-                return bindFunctionExpression((FunctionExpressionSyntaxNode)syntax);
+            {
+                FunctionExpressionSyntaxNode function = (FunctionExpressionSyntaxNode)syntax;
+                int size = function.getArguments().size();
+                ArrayList<BoundExpression> arguments = new ArrayList<>(Arrays.asList(operands).subList(offset, offset + size));
+                return function(function.getFunctionName(), function.getOverloads(), arguments);
+            }
+            case NameExpression:
+                return name(((NameExpressionSyntaxNode)syntax).getIdentifier());
             default:
                 _diagnostics.addUnknownExpression(syntax);
                 return new BoundUnknownExpression();
@@ -67,83 +250,319 @@ final class Binder
 
     /**
      * Binds a token literal (E.g., true, 1, "hello")
-     *
-     * @param syntax The {@link SyntaxNode} to bind
      */
-    private BoundExpression bindLiteralExpression(LiteralExpressionSyntaxNode syntax)
+    @Override
+    public BoundExpression literal(SyntaxToken token)
+    {
+        return literal(token, token.getValue());
+    }
+
+    /**
+     * Binds a literal with the provided value.
+     */
+    @Override
+    public BoundExpression literal(SyntaxToken token, Object tokenValue)
     {
         Object value = 0;
 
-        Object tokenValue = syntax.getValue();
         if (tokenValue != null) {
             value = tokenValue;
         }
 
+        if (_mode == NumericMode.Floating) {
+            if (value instanceof Integer) {
+                value = ((Integer)value).longValue();
+            } else if (value instanceof BigDecimal) {
+                value = ((BigDecimal)value).doubleValue();
+            }
+        }
+
         return new BoundLiteralExpression(value);
     }
 
+    /**
+     * Binds a variable to its slot in the schema.
+     */
+    @Override
+    public BoundExpression name(SyntaxToken identifier)
+    {
+        ContextKey<?> key = _schema.find(identifier.getText());
+
+        if (key == null) {
+            _diagnostics.addUndeclaredVariable(identifier);
+            return new BoundUnknownExpression();
+        }
+
+        return new BoundVariableExpression(key);
+    }
+
     /**
      * Binds a function that's called during evaluation.
+     */
+    @Override
+    public BoundExpression function(SyntaxToken name, List<IFunction> overloads, List<BoundExpression> arguments)
+    {
+        // The parser has already reported the function as unregistered.
+        if (overloads.isEmpty()) {
+            return new BoundUnknownExpression();
+        }
+
+        IFunction function = resolveOverload(overloads, arguments);
+        List<ArgumentDefinition> functionArguments = function.getArguments();
+
+        if (arguments.size() != functionArguments.size()) {
+            _diagnostics.addInvalidArgumentLength(name, arguments.size(), function);
+        }
+
+        for (int i = 0; i < arguments.size() && i < functionArguments.size(); i++) {
+            BoundExpression accepted = accept(functionArguments.get(i), arguments.get(i));
+
+            if (accepted == null) {
+                _diagnostics.addInvalidArgumentType(name, i, function, arguments.get(i).getType());
+            } else {
+                arguments.set(i, accepted);
+            }
+        }
+
+        return new BoundFunctionExpression(function, arguments);
+    }
+
+    /**
+     * Picks the first overload of a function that accepts the bound arguments.  If none do, the first overload that
+     * accepts the number of arguments is returned (or the first overload) so that the mismatch is reported against it.
+     */
+    private IFunction resolveOverload(List<IFunction> overloads, List<BoundExpression> arguments)
+    {
+        IFunction fallback = overloads.get(0);
+
+        for (IFunction function : overloads) {
+            List<ArgumentDefinition> functionArguments = function.getArguments();
+
+            if (functionArguments.size() != arguments.size()) {
+                continue;
+            }
+
+            boolean accepted = true;
+            for (int i = 0; i < arguments.size() && accepted; i++) {
+                accepted = accept(functionArguments.get(i), arguments.get(i)) != null;
+            }
+
+            if (accepted) {
+                return function;
+            }
+
+            if (fallback.getArguments().size() != arguments.size()) {
+                fallback = function;
+            }
+        }
+
+        return fallback;
+    }
+
+    /**
+     * Gets an argument as a type the parameter accepts, or null if it can't be passed to the parameter.
      *
-     * @param syntax The {@link SyntaxNode} to bind.
+     * In {@link NumericMode#Floating} literals bind to longs and doubles, which would keep them from being passed to
+     * functions that declare integer or decimal parameters.  A literal (or a negated literal) is narrowed back to the
+     * integer or decimal it binds to in {@link NumericMode#Exact} when that's what the parameter accepts, so
+     * {@code HELLO(1)} binds in either mode.  Fractional literals are narrowed from their double value, so digits past
+     * a double's precision are lost.  Other expressions are never narrowed.
      */
-    private BoundExpression bindFunctionExpression(FunctionExpressionSyntaxNode syntax)
+    private BoundExpression accept(ArgumentDefinition parameter, BoundExpression argument)
     {
-        List<ExpressionSyntaxNode> expressionSyntaxArguments = syntax.getArguments();
-        List<ArgumentDefinition> functionArguments = syntax.getFunction().getArguments();
+        Collection<Type> types = parameter.getTypes();
 
-        if (expressionSyntaxArguments.size() != functionArguments.size()) {
-            _diagnostics.addInvalidArgumentLength(syntax.getFunctionName(), expressionSyntaxArguments.size(), syntax.getFunction());
+        if (types.contains(argument.getType())) {
+            return argument;
         }
 
-        ArrayList<BoundExpression> arguments = new ArrayList<>();
-        for (int i = 0; i < expressionSyntaxArguments.size(); i++) {
-            BoundExpression arg = bindExpression(expressionSyntaxArguments.get(i));
+        if (_mode != NumericMode.Floating) {
+            return null;
+        }
 
-            if (functionArguments.size() > i && !functionArguments.get(i).getTypes().contains(arg.getType())) {
-                _diagnostics.addInvalidArgumentType(syntax.getFunctionName(), i, syntax.getFunction(), arg.getType());
+        if (argument instanceof BoundUnaryExpression) {
+            BoundUnaryExpression unary = (BoundUnaryExpression)argument;
+            BoundExpression operand = narrowLiteral(unary.getOperand(), types);
+
+            if (operand == null) {
+                return null;
             }
 
-            arguments.add(arg);
+            BoundUnaryOperation operator = BoundUnaryOperation.bind(
+                unary.getOperator().getSyntaxKind(),
+                operand.getType()
+            );
+
+            if (operator == null || !types.contains(operator.getResultType())) {
+                return null;
+            }
+
+            return new BoundUnaryExpression(operator, operand);
         }
 
-        return new BoundFunctionExpression(syntax.getFunction(), arguments);
+        return narrowLiteral(argument, types);
+    }
+
+    /**
+     * Narrows a long or double literal to the integer or decimal it binds to in {@link NumericMode#Exact}, if that's
+     * one of the provided types.  Returns null if the expression isn't such a literal.
+     */
+    private static BoundExpression narrowLiteral(BoundExpression expression, Collection<Type> types)
+    {
+        if (!(expression instanceof BoundLiteralExpression)) {
+            return null;
+        }
+
+        Object value = ((BoundLiteralExpression)expression).getValue();
+
+        if (value instanceof Long && types.contains(Integer.class)) {
+            long integral = (Long)value;
+
+            if (integral >= Integer.MIN_VALUE && integral <= Integer.MAX_VALUE) {
+                return new BoundLiteralExpression((int)integral);
+            }
+        }
+
+        if (value instanceof Double && types.contains(BigDecimal.class) && Double.isFinite((Double)value)) {
+            return new BoundLiteralExpression(BigDecimal.valueOf((Double)value));
+        }
+
+        return null;
     }
 
     /**
      * Binds a unary operation (E.g., -1)
-     *
-     * @param syntax The {@link SyntaxNode} to bind.
      */
-    private BoundExpression bindUnaryExpression(UnaryExpressionSyntaxNode syntax)
+    @Override
+    public BoundExpression unary(SyntaxToken operator, BoundExpression boundOperand)
     {
-        BoundExpression boundOperand = bindExpression(syntax.getOperand());
-        BoundUnaryOperation boundOperator = BoundUnaryOperation.bind(syntax.getOperator().getKind(), boundOperand.getType());
+        BoundUnaryOperation boundOperator = BoundUnaryOperation.bind(operator.getKind(), boundOperand.getType());
 
         if (boundOperator == null) {
-            _diagnostics.addInvalidUnaryOperator(syntax, boundOperand);
+            _diagnostics.addInvalidUnaryOperator(operator, boundOperand);
             return boundOperand;
         }
 
+        if (boundOperator.getFunction() != null) {
+            ArrayList<BoundExpression> arguments = new ArrayList<>();
+            arguments.add(boundOperand);
+            return new BoundFunctionExpression(boundOperator.getFunction(), arguments);
+        }
+
         return new BoundUnaryExpression(boundOperator, boundOperand);
     }
 
     /**
      * Binds a binary operation (E.g, 1 + 1, true AND false)
-     *
-     * @param syntax The {@link SyntaxNode} to bind.
      */
-    private BoundExpression bindBinaryExpression(BinaryExpressionSyntaxNode syntax)
+    @Override
+    public BoundExpression binary(BoundExpression boundLeft, SyntaxToken operator, BoundExpression boundRight)
     {
-        BoundExpression boundLeft = bindExpression(syntax.getLeft());
-        BoundExpression boundRight = bindExpression(syntax.getRight());
-        BoundBinaryOperation boundOperator = BoundBinaryOperation.bind(syntax.getOperator().getKind(), boundLeft.getType(), boundRight.getType());
+        SyntaxKind kind = operator.getKind();
+        BoundBinaryOperation boundOperator = BoundBinaryOperation.bind(kind, boundLeft.getType(), boundRight.getType(), _mode);
 
+        // Operands of different numeric types are converted to a common type, unless an operation was registered for
+        // the exact types.
         if (boundOperator == null) {
-            _diagnostics.addInvalidBinaryOperation(syntax, boundLeft, boundRight);
-            return boundLeft;
+            Type operandType = widen(boundLeft.getType(), boundRight.getType());
+
+            if (operandType != null) {
+                boundOperator = BoundBinaryOperation.bind(kind, operandType, operandType, _mode);
+            }
+
+            if (boundOperator == null) {
+                _diagnostics.addInvalidBinaryOperation(operator, boundLeft, boundRight);
+                return boundLeft;
+            }
+
+            boundLeft = convert(boundLeft, operandType);
+            boundRight = convert(boundRight, operandType);
+        }
+
+        if (boundOperator.getFunction() != null) {
+            ArrayList<BoundExpression> arguments = new ArrayList<>();
+            arguments.add(boundLeft);
+            arguments.add(boundRight);
+            return new BoundFunctionExpression(boundOperator.getFunction(), arguments);
         }
 
         return new BoundBinaryExpression(boundLeft, boundOperator, boundRight);
     }
+
+    /**
+     * Binds an expression wrapped in parentheses, which is the expression itself.
+     */
+    @Override
+    public BoundExpression parenthesised(SyntaxToken open, BoundExpression expression, SyntaxToken close)
+    {
+        return expression;
+    }
+
+    /**
+     * Gets the type that both operands of a binary operation are converted to, or null if neither operand can be
+     * widened to the type of the other.
+     */
+    private Type widen(Type left, Type right)
+    {
+        if (left == right) {
+            return left;
+        }
+
+        if (widensTo(left, right)) {
+            return right;
+        }
+
+        if (widensTo(right, left)) {
+            return left;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns true if a value of one numeric type can be converted to another without losing its meaning.  Integers
+     * widen to longs and decimals, and in {@link NumericMode#Floating} both widen to doubles as well.
+     */
+    private boolean widensTo(Type from, Type to)
+    {
+        if (to == Double.class) {
+            return _mode == NumericMode.Floating && (from == Integer.class || from == Long.class);
+        }
+
+        if (from == Integer.class) {
+            return to == Long.class || to == BigDecimal.class;
+        }
+
+        return from == Long.class && to == BigDecimal.class;
+    }
+
+    /**
+     * Converts an operand to the provided type.  Literals are converted here, once, rather than during every
+     * evaluation.
+     *
+     * @param operand The operand to convert.
+     * @param type The type returned by {@link #widen(Type, Type)}.
+     */
+    private static BoundExpression convert(BoundExpression operand, Type type)
+    {
+        if (operand.getType() == type) {
+            return operand;
+        }
+
+        if (!(operand instanceof BoundLiteralExpression)) {
+            return new BoundConversionExpression(operand, type);
+        }
+
+        Number value = (Number)((BoundLiteralExpression)operand).getValue();
+
+        if (type == Long.class) {
+            return new BoundLiteralExpression(value.longValue());
+        }
+
+        if (type == Double.class) {
+            return new BoundLiteralExpression(value.doubleValue());
+        }
+
+        return new BoundLiteralExpression(BigDecimal.valueOf(value.longValue()));
+    }
 }
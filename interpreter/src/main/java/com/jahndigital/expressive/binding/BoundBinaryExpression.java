@@ -19,6 +19,14 @@ public final class BoundBinaryExpression extends BoundExpression
         return _left;
     }
 
+    /**
+     * Gets the operation that should occur.
+     */
+    BoundBinaryOperation getOperator()
+    {
+        return _operator;
+    }
+
     /**
      * Gets the kind of operation that should occur.
      */
@@ -60,4 +68,23 @@ public final class BoundBinaryExpression extends BoundExpression
     {
         return BoundNodeKind.BinaryExpression;
     }
+
+    @Override
+    public int getChildCount()
+    {
+        return 2;
+    }
+
+    @Override
+    public BoundExpression getChild(int index)
+    {
+        switch (index) {
+            case 0:
+                return _left;
+            case 1:
+                return _right;
+            default:
+                return super.getChild(index);
+        }
+    }
 }
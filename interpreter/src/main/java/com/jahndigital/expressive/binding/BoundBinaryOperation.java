@@ -1,13 +1,22 @@
 package com.jahndigital.expressive.binding;
 
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.IFunction;
 import com.jahndigital.expressive.syntax.SyntaxKind;
 
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * An instance of this object represents a typed binary operation. If two incompatible types are found in a binary
  * operation, the error handler may decide what to do.
+ *
+ * Operations are resolved through a table indexed by the {@link SyntaxKind} and the ids of both operand types, so
+ * binding an operation takes the same time no matter how many operations are defined.  Operations on other types may
+ * be added with {@link #register(SyntaxKind, Type, Type, IFunction)}.
  */
 public final class BoundBinaryOperation
 {
@@ -16,6 +25,7 @@ public final class BoundBinaryOperation
     private final Type _leftType;
     private final Type _rightType;
     private final Type _resultType;
+    private final IFunction _function;
 
     /**
      * Returns a {@link BoundBinaryOperation} if a compatible one is found based on the provided {@link SyntaxKind} and types.
@@ -27,13 +37,95 @@ public final class BoundBinaryOperation
      */
     static BoundBinaryOperation bind(SyntaxKind kind, Type leftType, Type rightType)
     {
-        for (BoundBinaryOperation op : _operators) {
-            if (op.getSyntaxKind() == kind && op.getLeftType() == leftType && op.getRightType() == rightType) {
-                return op;
-            }
+        return bind(kind, leftType, rightType, NumericMode.Exact);
+    }
+
+    /**
+     * Returns a {@link BoundBinaryOperation} if a compatible one is found based on the provided {@link SyntaxKind},
+     * types, and {@link NumericMode}.  The floating operators are only considered in {@link NumericMode#Floating}.
+     *
+     * @param kind  The SyntaxKind that represents the operation.
+     * @param leftType The type of the left operand.
+     * @param rightType The type of the right operand.
+     * @param mode How numbers are typed.
+     * @return A compatible operation or null if one wasn't found.
+     */
+    static BoundBinaryOperation bind(SyntaxKind kind, Type leftType, Type rightType, NumericMode mode)
+    {
+        BoundBinaryOperation[][] operators = (mode == NumericMode.Floating ? _floatingTable : _exactTable)[kind.ordinal()];
+        int left = TypeIds.find(leftType);
+        int right = TypeIds.find(rightType);
+
+        // Types registered after the table was built have ids outside of it.
+        if (left < 0 || right < 0 || left >= operators.length || right >= operators.length) {
+            return null;
         }
 
-        return null;
+        return operators[left][right];
+    }
+
+    /**
+     * Registers an operation on types that the language doesn't support.  Operands of other types aren't converted to
+     * the registered types, and the operation is bound as a call to the provided function, so it's evaluated the same
+     * way by every engine.  Affects every tree that's bound afterwards.
+     *
+     * @param kind The SyntaxKind that represents the operation.  (E.g. {@link SyntaxKind#PlusToken})
+     * @param leftType The type of the left operand.
+     * @param rightType The type of the right operand.
+     * @param function The function that's called with both operands.  Its return type is the type of the result.
+     * @throws IllegalArgumentException If the function doesn't accept both operands, or an operation is already
+     * defined for the provided SyntaxKind and types.
+     */
+    public static synchronized void register(SyntaxKind kind, Type leftType, Type rightType, IFunction function)
+    {
+        List<ArgumentDefinition> arguments = function.getArguments();
+
+        if (arguments.size() != 2
+            || !arguments.get(0).getTypes().contains(leftType)
+            || !arguments.get(1).getTypes().contains(rightType)) {
+            throw new IllegalArgumentException(String.format(
+                "Function '%s' must accept a %s and a %s to implement %s.", function.getName(), leftType, rightType, kind
+            ));
+        }
+
+        if (bind(kind, leftType, rightType, NumericMode.Exact) != null || bind(kind, leftType, rightType, NumericMode.Floating) != null) {
+            throw new IllegalArgumentException(String.format(
+                "An operation is already defined for %s between a %s and a %s.", kind, leftType, rightType
+            ));
+        }
+
+        TypeIds.register(leftType);
+        TypeIds.register(rightType);
+        _overloads.add(new BoundBinaryOperation(kind, leftType, rightType, function));
+        buildTables();
+    }
+
+    /**
+     * Rebuilds the tables that operations are resolved from.  Operations later in the list replace earlier ones with
+     * the same SyntaxKind and types.
+     */
+    private static synchronized void buildTables()
+    {
+        List<BoundBinaryOperation> exact = new ArrayList<>(Arrays.asList(_operators));
+        exact.addAll(_overloads);
+
+        List<BoundBinaryOperation> floating = new ArrayList<>(exact);
+        floating.addAll(Arrays.asList(_floatingOperators));
+
+        _exactTable = buildTable(exact);
+        _floatingTable = buildTable(floating);
+    }
+
+    private static BoundBinaryOperation[][][] buildTable(List<BoundBinaryOperation> operators)
+    {
+        int types = TypeIds.count();
+        BoundBinaryOperation[][][] table = new BoundBinaryOperation[SyntaxKind.values().length][types][types];
+
+        for (BoundBinaryOperation op : operators) {
+            table[op._syntaxKind.ordinal()][TypeIds.find(op._leftType)][TypeIds.find(op._rightType)] = op;
+        }
+
+        return table;
     }
 
     /**
@@ -77,6 +169,25 @@ public final class BoundBinaryOperation
         _leftType = leftType;
         _rightType = rightType;
         _resultType = resultType;
+        _function = null;
+    }
+
+    /**
+     * Init with a registered function that implements the operation.
+     *
+     * @param syntaxKind The SyntaxKind object that represents this operation.
+     * @param leftType The type of the left operand.
+     * @param rightType The type of the right operand.
+     * @param function The function that's called with both operands.
+     */
+    private BoundBinaryOperation(SyntaxKind syntaxKind, Type leftType, Type rightType, IFunction function)
+    {
+        _syntaxKind = syntaxKind;
+        _operatorKind = null;
+        _leftType = leftType;
+        _rightType = rightType;
+        _resultType = function.getReturnType();
+        _function = function;
     }
 
     /**
@@ -89,6 +200,7 @@ public final class BoundBinaryOperation
 
     /**
      * Gets the type-inspected operation. (E.g. a '+' between two integers is {@link BoundBinaryOperationKind#Addition}).
+     * Null for registered operations, which are bound as function calls instead.
      */
     public BoundBinaryOperationKind getOperatorKind()
     {
@@ -120,7 +232,17 @@ public final class BoundBinaryOperation
     }
 
     /**
-     * An array that lists all the possible permutations of binary operations in the language.
+     * Gets the function that implements a registered operation, or null if the operation is built into the language.
+     */
+    public IFunction getFunction()
+    {
+        return _function;
+    }
+
+    /**
+     * An array that lists all the possible permutations of binary operations in the language.  Operands of different
+     * numeric types are converted to a common type by the {@link Binder} first, so both operands always have the same
+     * type.
      */
     private static final BoundBinaryOperation[] _operators = {
         // Mathematical Integers
@@ -135,15 +257,11 @@ public final class BoundBinaryOperation
         new BoundBinaryOperation(SyntaxKind.StarToken, BoundBinaryOperationKind.Multiplication, BigDecimal.class),
         new BoundBinaryOperation(SyntaxKind.SlashToken, BoundBinaryOperationKind.Division, BigDecimal.class),
 
-        // Mathematical Decimal + Integer
-        new BoundBinaryOperation(SyntaxKind.PlusToken, BoundBinaryOperationKind.Addition, Integer.class, BigDecimal.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.PlusToken, BoundBinaryOperationKind.Addition, BigDecimal.class, Integer.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.MinusToken, BoundBinaryOperationKind.Subtraction, Integer.class, BigDecimal.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.MinusToken, BoundBinaryOperationKind.Subtraction, BigDecimal.class, Integer.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.StarToken, BoundBinaryOperationKind.Multiplication, Integer.class, BigDecimal.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.StarToken, BoundBinaryOperationKind.Multiplication, BigDecimal.class, Integer.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.SlashToken, BoundBinaryOperationKind.Division, Integer.class, BigDecimal.class, BigDecimal.class),
-        new BoundBinaryOperation(SyntaxKind.SlashToken, BoundBinaryOperationKind.Division, BigDecimal.class, Integer.class, BigDecimal.class),
+        // Mathematical Long
+        new BoundBinaryOperation(SyntaxKind.PlusToken, BoundBinaryOperationKind.Addition, Long.class),
+        new BoundBinaryOperation(SyntaxKind.MinusToken, BoundBinaryOperationKind.Subtraction, Long.class),
+        new BoundBinaryOperation(SyntaxKind.StarToken, BoundBinaryOperationKind.Multiplication, Long.class),
+        new BoundBinaryOperation(SyntaxKind.SlashToken, BoundBinaryOperationKind.Division, Long.class),
 
         // Logical Boolean
         new BoundBinaryOperation(SyntaxKind.AndToken, BoundBinaryOperationKind.LogicalAnd, Boolean.class),
@@ -167,18 +285,43 @@ public final class BoundBinaryOperation
         new BoundBinaryOperation(SyntaxKind.LessThanToken, BoundBinaryOperationKind.LessThan, BigDecimal.class, Boolean.class),
         new BoundBinaryOperation(SyntaxKind.LessThanEqualToken, BoundBinaryOperationKind.LessThanOrEqualTo, BigDecimal.class, Boolean.class),
 
-        // Logical Decimal + Integer
-        new BoundBinaryOperation(SyntaxKind.EqualityToken, BoundBinaryOperationKind.Equals, BigDecimal.class, Integer.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.NegatedEqualityToken, BoundBinaryOperationKind.NotEquals, BigDecimal.class, Integer.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.GreaterThanToken, BoundBinaryOperationKind.GreaterThan, BigDecimal.class, Integer.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.GreaterThanEqualToken, BoundBinaryOperationKind.GreaterThanOrEqualTo, BigDecimal.class, Integer.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.LessThanToken, BoundBinaryOperationKind.LessThan, BigDecimal.class, Integer.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.LessThanEqualToken, BoundBinaryOperationKind.LessThanOrEqualTo, BigDecimal.class, Integer.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.EqualityToken, BoundBinaryOperationKind.Equals, Integer.class, BigDecimal.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.NegatedEqualityToken, BoundBinaryOperationKind.NotEquals, Integer.class, BigDecimal.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.GreaterThanToken, BoundBinaryOperationKind.GreaterThan, Integer.class, BigDecimal.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.GreaterThanEqualToken, BoundBinaryOperationKind.GreaterThanOrEqualTo, Integer.class, BigDecimal.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.LessThanToken, BoundBinaryOperationKind.LessThan, Integer.class, BigDecimal.class, Boolean.class),
-        new BoundBinaryOperation(SyntaxKind.LessThanEqualToken, BoundBinaryOperationKind.LessThanOrEqualTo, Integer.class, BigDecimal.class, Boolean.class),
+        // Logical Long
+        new BoundBinaryOperation(SyntaxKind.EqualityToken, BoundBinaryOperationKind.Equals, Long.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.NegatedEqualityToken, BoundBinaryOperationKind.NotEquals, Long.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.GreaterThanToken, BoundBinaryOperationKind.GreaterThan, Long.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.GreaterThanEqualToken, BoundBinaryOperationKind.GreaterThanOrEqualTo, Long.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.LessThanToken, BoundBinaryOperationKind.LessThan, Long.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.LessThanEqualToken, BoundBinaryOperationKind.LessThanOrEqualTo, Long.class, Boolean.class),
+    };
+
+    /**
+     * The operations on doubles that are only available in {@link NumericMode#Floating}.
+     */
+    private static final BoundBinaryOperation[] _floatingOperators = {
+        // Mathematical Double
+        new BoundBinaryOperation(SyntaxKind.PlusToken, BoundBinaryOperationKind.Addition, Double.class),
+        new BoundBinaryOperation(SyntaxKind.MinusToken, BoundBinaryOperationKind.Subtraction, Double.class),
+        new BoundBinaryOperation(SyntaxKind.StarToken, BoundBinaryOperationKind.Multiplication, Double.class),
+        new BoundBinaryOperation(SyntaxKind.SlashToken, BoundBinaryOperationKind.Division, Double.class),
+
+        // Logical Double
+        new BoundBinaryOperation(SyntaxKind.EqualityToken, BoundBinaryOperationKind.Equals, Double.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.NegatedEqualityToken, BoundBinaryOperationKind.NotEquals, Double.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.GreaterThanToken, BoundBinaryOperationKind.GreaterThan, Double.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.GreaterThanEqualToken, BoundBinaryOperationKind.GreaterThanOrEqualTo, Double.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.LessThanToken, BoundBinaryOperationKind.LessThan, Double.class, Boolean.class),
+        new BoundBinaryOperation(SyntaxKind.LessThanEqualToken, BoundBinaryOperationKind.LessThanOrEqualTo, Double.class, Boolean.class),
     };
+
+    /**
+     * Operations added with {@link #register(SyntaxKind, Type, Type, IFunction)}.
+     */
+    private static final List<BoundBinaryOperation> _overloads = new ArrayList<>();
+
+    private static volatile BoundBinaryOperation[][][] _exactTable;
+    private static volatile BoundBinaryOperation[][][] _floatingTable;
+
+    static {
+        buildTables();
+    }
 }
@@ -0,0 +1,58 @@
+package com.jahndigital.expressive.binding;
+
+import java.lang.reflect.Type;
+
+/**
+ * Widens the value of a numeric expression to a wider numeric type (E.g. an {@link Integer} to a
+ * {@link java.math.BigDecimal}).  Inserted by the {@link Binder} so that both operands of every
+ * {@link BoundBinaryExpression} have the same type, and evaluation never has to inspect the type of an operand.
+ */
+public final class BoundConversionExpression extends BoundExpression
+{
+    private final BoundExpression _operand;
+    private final Type _type;
+
+    /**
+     * Init
+     *
+     * @param operand The expression to convert.
+     * @param type The type to convert to.
+     */
+    BoundConversionExpression(BoundExpression operand, Type type)
+    {
+        _operand = operand;
+        _type = type;
+    }
+
+    /**
+     * Gets the expression whose value is converted.
+     */
+    public BoundExpression getOperand()
+    {
+        return _operand;
+    }
+
+    @Override
+    public Type getType()
+    {
+        return _type;
+    }
+
+    @Override
+    public BoundNodeKind getKind()
+    {
+        return BoundNodeKind.ConversionExpression;
+    }
+
+    @Override
+    public int getChildCount()
+    {
+        return 1;
+    }
+
+    @Override
+    public BoundExpression getChild(int index)
+    {
+        return index == 0 ? _operand : super.getChild(index);
+    }
+}
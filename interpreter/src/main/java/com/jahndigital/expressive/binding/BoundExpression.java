@@ -1,11 +1,73 @@
 package com.jahndigital.expressive.binding;
 
 import java.lang.reflect.Type;
+import java.util.Arrays;
 
 /**
  * Represents an individual type-safe expression the tree.
  */
 public abstract class BoundExpression extends BoundNode
 {
+    /**
+     * The depth of the deepest tree that's walked by recursing.  The evaluator and the bytecode compiler hand deeper
+     * trees to a {@link com.jahndigital.expressive.vm.Program}, which walks them with an explicit stack instead.  See
+     * {@link #isDeeperThan(int)}.
+     */
+    public static final int MAX_RECURSION_DEPTH = 512;
+
     public abstract Type getType();
+
+    /**
+     * Gets the number of expressions this expression is made of.
+     */
+    public int getChildCount()
+    {
+        return 0;
+    }
+
+    /**
+     * Gets an expression this expression is made of, in the order they're evaluated.
+     *
+     * @param index The index of the child, which must be less than {@link #getChildCount()}.
+     */
+    public BoundExpression getChild(int index)
+    {
+        throw new IndexOutOfBoundsException(String.format("%s has no child %d.", getKind(), index));
+    }
+
+    /**
+     * Returns true if any path from this expression to its leaves is longer than the provided depth.  The tree is walked
+     * with an explicit stack, which stops as soon as such a path is found.
+     */
+    public boolean isDeeperThan(int depth)
+    {
+        BoundExpression[] nodes = new BoundExpression[16];
+        int[] depths = new int[nodes.length];
+        int count = 0;
+
+        nodes[count] = this;
+        depths[count++] = 1;
+
+        while (count > 0) {
+            BoundExpression node = nodes[--count];
+            int children = node.getChildCount();
+            int childDepth = depths[count] + 1;
+
+            if (children > 0 && childDepth > depth) {
+                return true;
+            }
+
+            if (count + children > nodes.length) {
+                nodes = Arrays.copyOf(nodes, (count + children) * 2);
+                depths = Arrays.copyOf(depths, nodes.length);
+            }
+
+            for (int i = 0; i < children; i++) {
+                nodes[count] = node.getChild(i);
+                depths[count++] = childDepth;
+            }
+        }
+
+        return false;
+    }
 }
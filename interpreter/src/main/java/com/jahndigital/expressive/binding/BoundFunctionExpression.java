@@ -16,6 +16,11 @@ public class BoundFunctionExpression extends BoundExpression
     private final IFunction _function;
     private final List<BoundExpression> _arguments;
 
+    /**
+     * True if this call appears more than once in the tree.  Set by the optimizer before the tree is returned.
+     */
+    private boolean _shared = false;
+
     /**
      * Init
      *
@@ -44,6 +49,24 @@ public class BoundFunctionExpression extends BoundExpression
         return Collections.unmodifiableList(_arguments);
     }
 
+    /**
+     * Returns true if this call appears more than once in the tree, in which case its result may be reused for the rest
+     * of an evaluation once it has been executed.  Only calls to deterministic functions with deterministic arguments
+     * are shared.
+     */
+    public boolean isShared()
+    {
+        return _shared;
+    }
+
+    /**
+     * Marks this call as appearing more than once in the tree.
+     */
+    void markShared()
+    {
+        _shared = true;
+    }
+
     /**
      * Get the return type of the function.
      */
@@ -61,4 +84,16 @@ public class BoundFunctionExpression extends BoundExpression
     {
         return BoundNodeKind.FunctionExpression;
     }
+
+    @Override
+    public int getChildCount()
+    {
+        return _arguments.size();
+    }
+
+    @Override
+    public BoundExpression getChild(int index)
+    {
+        return _arguments.get(index);
+    }
 }
@@ -1,6 +1,9 @@
 package com.jahndigital.expressive.binding;
 
+import com.jahndigital.expressive.ScaledDecimal;
+
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 
 /**
  * Represents a typed version of a {@link com.jahndigital.expressive.syntax.LiteralExpressionSyntaxNode}.
@@ -8,6 +11,7 @@ import java.lang.reflect.Type;
 public final class BoundLiteralExpression extends BoundExpression
 {
     private final Object _value;
+    private final long _scaledValue;
 
     /**
      * Get the raw value of the expression.
@@ -17,6 +21,15 @@ public final class BoundLiteralExpression extends BoundExpression
         return _value;
     }
 
+    /**
+     * Gets the value of a numeric literal packed as a {@link ScaledDecimal}, or {@link ScaledDecimal#OVERFLOW} if the
+     * literal isn't numeric or doesn't fit.  Packed once at bind time so evaluation doesn't have to convert it.
+     */
+    public long getScaledValue()
+    {
+        return _scaledValue;
+    }
+
     /**
      * Init
      *
@@ -25,6 +38,14 @@ public final class BoundLiteralExpression extends BoundExpression
     BoundLiteralExpression(Object value)
     {
         _value = value;
+
+        if (value instanceof Integer) {
+            _scaledValue = ScaledDecimal.valueOf((int)value);
+        } else if (value instanceof BigDecimal) {
+            _scaledValue = ScaledDecimal.valueOf((BigDecimal)value);
+        } else {
+            _scaledValue = ScaledDecimal.OVERFLOW;
+        }
     }
 
     @Override
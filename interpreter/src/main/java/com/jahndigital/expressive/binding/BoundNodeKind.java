@@ -7,7 +7,9 @@ enum BoundNodeKind
 {
     LiteralExpression,
     FunctionExpression,
+    VariableExpression,
     BinaryExpression,
     UnaryExpression,
+    ConversionExpression,
     UnknownExpression,
 }
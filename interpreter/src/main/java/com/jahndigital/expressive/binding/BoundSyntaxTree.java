@@ -4,18 +4,30 @@ import com.jahndigital.expressive.Diagnostic;
 import com.jahndigital.expressive.DiagnosticLevel;
 import com.jahndigital.expressive.DiagnosticRepository;
 import com.jahndigital.expressive.Evaluator;
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.MapContext;
+import com.jahndigital.expressive.extensibility.Schema;
 import com.jahndigital.expressive.syntax.SyntaxTree;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Represents a typed version of a {@link SyntaxTree}.
+ *
+ * Bound trees are immutable.  Diagnostics are copied when the tree is created, so later parsing with the same
+ * {@link DiagnosticRepository} doesn't affect them, and the tree may be evaluated from any number of threads at once.
  */
 public final class BoundSyntaxTree
 {
-    private final DiagnosticRepository _diagnostics;
+    private final List<Diagnostic> _diagnostics;
+    private final List<Diagnostic> _errors;
     private final BoundExpression _root;
+    private final Evaluator _evaluator;
 
     /**
      * Init
@@ -25,7 +37,48 @@ public final class BoundSyntaxTree
      */
     public static BoundSyntaxTree bind(SyntaxTree tree, DiagnosticRepository diagnostics)
     {
-        return new Binder(diagnostics).bind(tree);
+        return bind(tree, diagnostics, new Schema());
+    }
+
+    /**
+     * Init
+     *
+     * @param tree The {@link SyntaxTree} to walk and bind.
+     * @param diagnostics The repository to use when reporting issues with binding.
+     * @param schema The variables that may be referenced by name.
+     */
+    public static BoundSyntaxTree bind(SyntaxTree tree, DiagnosticRepository diagnostics, Schema schema)
+    {
+        return bind(tree, diagnostics, schema, NumericMode.Exact);
+    }
+
+    /**
+     * Init
+     *
+     * @param tree The {@link SyntaxTree} to walk and bind.
+     * @param diagnostics The repository to use when reporting issues with binding.
+     * @param schema The variables that may be referenced by name.
+     * @param mode How numeric literals and the operations between them are typed.
+     */
+    public static BoundSyntaxTree bind(SyntaxTree tree, DiagnosticRepository diagnostics, Schema schema, NumericMode mode)
+    {
+        return new Binder(diagnostics, schema, mode).bind(tree);
+    }
+
+    /**
+     * Parses and binds the provided text in a single pass, without building a {@link SyntaxTree} first.  The result
+     * and diagnostics are the same as parsing the text and binding the tree.
+     *
+     * @param text The expression to compile.
+     * @param functions The repository to use when resolving functions.
+     * @param schema The variables that may be referenced by name.
+     * @param mode How numeric literals and the operations between them are typed.
+     * @exception Exception If the text has lexer or parser errors.
+     */
+    public static BoundSyntaxTree compile(CharSequence text, FunctionRepository functions, Schema schema, NumericMode mode)
+        throws Exception
+    {
+        return new Binder(new DiagnosticRepository(), schema, mode).compile(text, functions);
     }
 
     /**
@@ -33,7 +86,15 @@ public final class BoundSyntaxTree
      */
     public List<Diagnostic> getDiagnostics()
     {
-        return _diagnostics.asReadOnly();
+        return _diagnostics;
+    }
+
+    /**
+     * Gets the diagnostics from the lexing, parsing, and binding process that prevent the tree from being evaluated.
+     */
+    public List<Diagnostic> getErrors()
+    {
+        return _errors;
     }
 
     /**
@@ -54,23 +115,43 @@ public final class BoundSyntaxTree
      */
     public Object evaluate() throws Exception
     {
-        List<Diagnostic> errors = getDiagnostics()
-                .stream()
-                .filter(x -> x.getLevel() == DiagnosticLevel.ERROR || x.getLevel() == DiagnosticLevel.CRIT)
-                .collect(Collectors.toList());
+        return evaluate(new HashMap<>());
+    }
 
-        if (!errors.isEmpty()) {
+    /**
+     * Evaluates this bound syntax tree.
+     *
+     * @param runtimeContext A map of strings to objects that are passed to
+     *                       {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error occurred during evaluation or there were errors during parsing.
+     */
+    public Object evaluate(HashMap<String, Object> runtimeContext) throws Exception
+    {
+        return evaluate(new MapContext(runtimeContext));
+    }
+
+    /**
+     * Evaluates this bound syntax tree.
+     *
+     * @param context The values of the variables in the expression, which is also passed to
+     *                {@link com.jahndigital.expressive.extensibility.IFunction} objects during evaluation.
+     * @return The result of the evaluation.
+     * @throws Exception If an unrecoverable error occurred during evaluation or there were errors during parsing.
+     */
+    public Object evaluate(Context context) throws Exception
+    {
+        if (!_errors.isEmpty()) {
             throw new Exception(
-                    String.format("Unable to evaluate expression: %d errors encountered during parsing.", errors.size())
+                    String.format("Unable to evaluate expression: %d errors encountered during parsing.", _errors.size())
             );
         }
 
-        if (getRoot() == null) {
+        if (_evaluator == null) {
             return null;
         }
 
-        Evaluator evaluator = new Evaluator(getRoot());
-        return evaluator.evaluate();
+        return _evaluator.evaluate(context);
     }
 
     /**
@@ -81,7 +162,14 @@ public final class BoundSyntaxTree
      */
     BoundSyntaxTree(DiagnosticRepository diagnostics, BoundExpression root)
     {
-        _diagnostics = diagnostics;
+        _diagnostics = Collections.unmodifiableList(new ArrayList<>(diagnostics.asReadOnly()));
+        _errors = !diagnostics.hasErrors() ? Collections.emptyList() : Collections.unmodifiableList(
+            _diagnostics
+                .stream()
+                .filter(x -> x.getLevel() == DiagnosticLevel.ERROR || x.getLevel() == DiagnosticLevel.CRIT)
+                .collect(Collectors.toList())
+        );
         _root = root;
+        _evaluator = root == null ? null : new Evaluator(root);
     }
 }
@@ -10,6 +10,14 @@ public final class BoundUnaryExpression extends BoundExpression
     private final BoundUnaryOperation _operator;
     private final BoundExpression _operand;
 
+    /**
+     * Gets the {@link BoundUnaryOperation} of this expression.
+     */
+    BoundUnaryOperation getOperator()
+    {
+        return _operator;
+    }
+
     /**
      * Gets the {@link BoundUnaryOperationKind} of this expression.
      */
@@ -49,4 +57,16 @@ public final class BoundUnaryExpression extends BoundExpression
     {
         return BoundNodeKind.UnaryExpression;
     }
+
+    @Override
+    public int getChildCount()
+    {
+        return 1;
+    }
+
+    @Override
+    public BoundExpression getChild(int index)
+    {
+        return index == 0 ? _operand : super.getChild(index);
+    }
 }
@@ -1,19 +1,28 @@
 package com.jahndigital.expressive.binding;
 
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.IFunction;
 import com.jahndigital.expressive.syntax.SyntaxKind;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * An instance of this object represents a typed unary operation. If an incompatible type is found in the operand, the
  * error handler may decide what to do.
+ *
+ * Operations are resolved through a table indexed by the {@link SyntaxKind} and the id of the operand type.  Operations
+ * on other types may be added with {@link #register(SyntaxKind, Type, IFunction)}.
  */
-final class BoundUnaryOperation
+public final class BoundUnaryOperation
 {
     private final SyntaxKind _syntaxKind;
     private final BoundUnaryOperationKind _operatorKind;
     private final Type _operandType;
     private final Type _resultType;
+    private final IFunction _function;
 
     /**
      * Returns a {@link BoundUnaryOperation} if a compatible one is found based on the provided {@link SyntaxKind} and type.
@@ -22,15 +31,64 @@ final class BoundUnaryOperation
      * @param operandType The type of the operand.
      * @return A compatible operation or null if one wasn't found.
      */
-    public static BoundUnaryOperation bind(SyntaxKind kind, Type operandType)
+    static BoundUnaryOperation bind(SyntaxKind kind, Type operandType)
     {
-        for (BoundUnaryOperation op : _operators) {
-            if (op.getSyntaxKind() == kind && op.getOperandType() == operandType) {
-                return op;
-            }
+        BoundUnaryOperation[] operators = _table[kind.ordinal()];
+        int operand = TypeIds.find(operandType);
+
+        // Types registered after the table was built have ids outside of it.
+        if (operand < 0 || operand >= operators.length) {
+            return null;
+        }
+
+        return operators[operand];
+    }
+
+    /**
+     * Registers an operation on a type that the language doesn't support.  The operation is bound as a call to the
+     * provided function, so it's evaluated the same way by every engine.  Affects every tree that's bound afterwards.
+     *
+     * @param kind The SyntaxKind that represents the operation.  (E.g. {@link SyntaxKind#MinusToken})
+     * @param operandType The type of the operand.
+     * @param function The function that's called with the operand.  Its return type is the type of the result.
+     * @throws IllegalArgumentException If the function doesn't accept the operand, or an operation is already defined
+     * for the provided SyntaxKind and type.
+     */
+    public static synchronized void register(SyntaxKind kind, Type operandType, IFunction function)
+    {
+        List<ArgumentDefinition> arguments = function.getArguments();
+
+        if (arguments.size() != 1 || !arguments.get(0).getTypes().contains(operandType)) {
+            throw new IllegalArgumentException(String.format(
+                "Function '%s' must accept a %s to implement %s.", function.getName(), operandType, kind
+            ));
         }
 
-        return null;
+        if (bind(kind, operandType) != null) {
+            throw new IllegalArgumentException(String.format(
+                "An operation is already defined for %s on a %s.", kind, operandType
+            ));
+        }
+
+        TypeIds.register(operandType);
+        _overloads.add(new BoundUnaryOperation(kind, operandType, function));
+        buildTable();
+    }
+
+    /**
+     * Rebuilds the table that operations are resolved from.
+     */
+    private static synchronized void buildTable()
+    {
+        List<BoundUnaryOperation> operators = new ArrayList<>(Arrays.asList(_operators));
+        operators.addAll(_overloads);
+
+        BoundUnaryOperation[][] table = new BoundUnaryOperation[SyntaxKind.values().length][TypeIds.count()];
+        for (BoundUnaryOperation op : operators) {
+            table[op._syntaxKind.ordinal()][TypeIds.find(op._operandType)] = op;
+        }
+
+        _table = table;
     }
 
     /**
@@ -59,6 +117,23 @@ final class BoundUnaryOperation
         this._operatorKind = operatorKind;
         this._operandType = operandType;
         this._resultType = resultType;
+        this._function = null;
+    }
+
+    /**
+     * Init with a registered function that implements the operation.
+     *
+     * @param syntaxKind The SyntaxKind object that represents this operation.
+     * @param operandType The type of the operand.
+     * @param function The function that's called with the operand.
+     */
+    private BoundUnaryOperation(SyntaxKind syntaxKind, Type operandType, IFunction function)
+    {
+        this._syntaxKind = syntaxKind;
+        this._operatorKind = null;
+        this._operandType = operandType;
+        this._resultType = function.getReturnType();
+        this._function = function;
     }
 
     /**
@@ -70,7 +145,8 @@ final class BoundUnaryOperation
     }
 
     /**
-     * Gets the type-inspected operation. (E.g. a '-' on an integer is {@link BoundUnaryOperationKind#Negation}).
+     * Gets the type-inspected operation. (E.g. a '-' on an integer is {@link BoundUnaryOperationKind#Negation}).  Null
+     * for registered operations, which are bound as function calls instead.
      */
     public BoundUnaryOperationKind getOperatorKind()
     {
@@ -93,6 +169,14 @@ final class BoundUnaryOperation
         return _resultType;
     }
 
+    /**
+     * Gets the function that implements a registered operation, or null if the operation is built into the language.
+     */
+    public IFunction getFunction()
+    {
+        return _function;
+    }
+
     /**
      * An array that lists all the possible permutations of unary operations in the language.
      */
@@ -104,7 +188,26 @@ final class BoundUnaryOperation
         new BoundUnaryOperation(SyntaxKind.PlusToken, BoundUnaryOperationKind.Identity, BigDecimal.class),
         new BoundUnaryOperation(SyntaxKind.MinusToken, BoundUnaryOperationKind.Negation, BigDecimal.class),
 
+        // Long
+        new BoundUnaryOperation(SyntaxKind.PlusToken, BoundUnaryOperationKind.Identity, Long.class),
+        new BoundUnaryOperation(SyntaxKind.MinusToken, BoundUnaryOperationKind.Negation, Long.class),
+
+        // Double
+        new BoundUnaryOperation(SyntaxKind.PlusToken, BoundUnaryOperationKind.Identity, Double.class),
+        new BoundUnaryOperation(SyntaxKind.MinusToken, BoundUnaryOperationKind.Negation, Double.class),
+
         // Logical
         new BoundUnaryOperation(SyntaxKind.ExclamationPointToken, BoundUnaryOperationKind.LogicalNegation, Boolean.class)
     };
+
+    /**
+     * Operations added with {@link #register(SyntaxKind, Type, IFunction)}.
+     */
+    private static final List<BoundUnaryOperation> _overloads = new ArrayList<>();
+
+    private static volatile BoundUnaryOperation[][] _table;
+
+    static {
+        buildTable();
+    }
 }
@@ -0,0 +1,44 @@
+package com.jahndigital.expressive.binding;
+
+import com.jahndigital.expressive.extensibility.ContextKey;
+
+import java.lang.reflect.Type;
+
+/**
+ * Represents a variable that was resolved against a {@link com.jahndigital.expressive.extensibility.Schema} during
+ * binding.  During evaluation, the value is read from the context through the variable's {@link ContextKey}.
+ */
+public final class BoundVariableExpression extends BoundExpression
+{
+    private final ContextKey<?> _key;
+
+    /**
+     * Init
+     *
+     * @param key The key of the variable.
+     */
+    BoundVariableExpression(ContextKey<?> key)
+    {
+        _key = key;
+    }
+
+    /**
+     * Gets the key used to read the variable from the context.
+     */
+    public ContextKey<?> getKey()
+    {
+        return _key;
+    }
+
+    @Override
+    public Type getType()
+    {
+        return _key.getType();
+    }
+
+    @Override
+    public BoundNodeKind getKind()
+    {
+        return BoundNodeKind.VariableExpression;
+    }
+}
@@ -0,0 +1,24 @@
+package com.jahndigital.expressive.binding;
+
+/**
+ * Values that represent how numbers are typed when a syntax tree is bound.
+ */
+public enum NumericMode
+{
+    /**
+     * Integral literals bind to the narrowest of {@link Integer}, {@link Long}, and {@link java.math.BigDecimal} that
+     * holds them, and fractional literals bind to {@link java.math.BigDecimal}, so decimal math is exact.  An integer
+     * result that overflows is promoted to a {@link Long}, and a long result to a {@link java.math.BigDecimal}, rather
+     * than wrapping.  The default.
+     */
+    Exact,
+
+    /**
+     * Integral literals bind to {@link Long} and fractional literals bind to {@link Double}, and math between them
+     * follows IEEE 754.  Much cheaper to evaluate when exact decimal results aren't required (E.g. analytics).
+     * Variables must be declared as {@link Long} or {@link Double} to take part in floating math.  Literals passed to
+     * functions that declare {@link Integer} or {@link java.math.BigDecimal} parameters are narrowed back to those
+     * types, so functions written for the exact mode may still be called with literals.
+     */
+    Floating,
+}
@@ -0,0 +1,575 @@
+package com.jahndigital.expressive.binding;
+
+import com.jahndigital.expressive.DiagnosticRepository;
+import com.jahndigital.expressive.Evaluator;
+import com.jahndigital.expressive.extensibility.FunctionPurity;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Rewrites a bound tree so that work which doesn't depend on the runtime context isn't repeated on every evaluation.
+ *
+ * Subtrees made up only of literals are folded into a single literal, operations that can't change their operand
+ * (E.g. x * 1, x + 0, --x, !!b) are removed, and logical operations whose left operand decides the result are pruned.
+ * Calls to {@link FunctionPurity#Pure} functions with literal arguments are folded as well, and identical calls to
+ * deterministic functions are merged into a single node that is marked as shared.  Every change is reported to the {@link DiagnosticRepository} at the INFO level.
+ */
+final class Optimizer
+{
+    private final DiagnosticRepository _diagnostics;
+
+    /**
+     * Literals created by folding that haven't been reported yet.  Folds are only reported once their parent is known
+     * not to fold as well, so a literal subtree is reported as a single change.  Kept in the order they were folded,
+     * which follows the source, so diagnostics come out in a stable order.
+     */
+    private final List<BoundLiteralExpression> _pendingFolds = new ArrayList<>();
+
+    /**
+     * The literals in {@link #_pendingFolds} that were absorbed by a fold of their parent.
+     */
+    private final Set<BoundNode> _absorbedFolds = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Deterministic subtrees keyed by their operation and (already merged) operands.
+     */
+    private final Map<List<Object>, BoundExpression> _deterministic = new HashMap<>();
+
+    /**
+     * The nodes stored in {@link #_deterministic}.
+     */
+    private final Set<BoundExpression> _merged = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Init
+     *
+     * @param diagnostics The repository to report optimizations to.
+     */
+    Optimizer(DiagnosticRepository diagnostics)
+    {
+        _diagnostics = diagnostics;
+    }
+
+    /**
+     * Optimizes the provided tree and returns the new root.
+     *
+     * @param root The root of a bound tree without errors.
+     */
+    BoundExpression optimize(BoundExpression root)
+    {
+        BoundExpression optimized = walk(root, new Pass()
+        {
+            @Override
+            public BoundExpression decide(BoundExpression node, BoundExpression first)
+            {
+                return node instanceof BoundBinaryExpression ? pruneBinary((BoundBinaryExpression)node, first) : null;
+            }
+
+            @Override
+            public BoundExpression rewrite(BoundExpression node, BoundExpression[] operands, int offset)
+            {
+                return optimizeExpression(node, operands, offset);
+            }
+        });
+
+        reportFolds();
+
+        return walk(optimized, new Pass()
+        {
+            @Override
+            public BoundExpression rewrite(BoundExpression node, BoundExpression[] operands, int offset)
+            {
+                return share(node, operands, offset);
+            }
+        });
+    }
+
+    /**
+     * A rewrite of every node in a tree, which is applied to a node once its operands have been rewritten.
+     */
+    private interface Pass
+    {
+        /**
+         * Decides the result of a node from its first rewritten operand, without visiting the rest of its operands.
+         *
+         * @return The result of the node, or null if the rest of the operands are needed.
+         */
+        default BoundExpression decide(BoundExpression node, BoundExpression first)
+        {
+            return null;
+        }
+
+        /**
+         * Rewrites a node.
+         *
+         * @param node The original node.
+         * @param operands Holds the rewritten children of the node, in order.
+         * @param offset The index of the first child in operands.
+         */
+        BoundExpression rewrite(BoundExpression node, BoundExpression[] operands, int offset);
+    }
+
+    /**
+     * Applies a pass to every node of a tree, operands first.  The tree is walked with an explicit stack instead of by
+     * recursing, so the depth of the tree is only limited by memory.
+     *
+     * @return The rewritten root.
+     */
+    private static BoundExpression walk(BoundExpression root, Pass pass)
+    {
+        BoundExpression[] nodes = new BoundExpression[16];
+        int[] next = new int[nodes.length];
+        int depth = 0;
+        BoundExpression[] results = new BoundExpression[16];
+        int count = 0;
+
+        nodes[depth++] = root;
+
+        while (depth > 0) {
+            int top = depth - 1;
+            BoundExpression node = nodes[top];
+            int children = node.getChildCount();
+            int index = next[top];
+
+            if (index == 1 && children > 1) {
+                BoundExpression decided = pass.decide(node, results[count - 1]);
+
+                if (decided != null) {
+                    results[count - 1] = decided;
+                    nodes[--depth] = null;
+                    continue;
+                }
+            }
+
+            if (index < children) {
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+
+                next[top]++;
+                nodes[depth] = node.getChild(index);
+                next[depth++] = 0;
+                continue;
+            }
+
+            nodes[--depth] = null;
+            count -= children;
+
+            BoundExpression result = pass.rewrite(node, results, count);
+            if (count == results.length) {
+                results = Arrays.copyOf(results, count * 2);
+            }
+
+            results[count++] = result;
+        }
+
+        return results[0];
+    }
+
+    /**
+     * Optimizes a node whose operands have already been optimized.
+     */
+    private BoundExpression optimizeExpression(BoundExpression root, BoundExpression[] operands, int offset)
+    {
+        if (root instanceof BoundUnaryExpression) {
+            return optimizeUnary((BoundUnaryExpression)root, operands[offset]);
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            return optimizeBinary((BoundBinaryExpression)root, operands[offset], operands[offset + 1]);
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return optimizeFunction((BoundFunctionExpression)root, operands, offset);
+        }
+
+        if (root instanceof BoundConversionExpression) {
+            return optimizeConversion((BoundConversionExpression)root, operands[offset]);
+        }
+
+        return root;
+    }
+
+    private BoundExpression optimizeConversion(BoundConversionExpression root, BoundExpression operand)
+    {
+        if (operand instanceof BoundLiteralExpression) {
+            BoundExpression folded = fold(new BoundConversionExpression(operand, root.getType()));
+
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        reportFolds();
+        return operand == root.getOperand() ? root : new BoundConversionExpression(operand, root.getType());
+    }
+
+    private BoundExpression optimizeFunction(BoundFunctionExpression root, BoundExpression[] operands, int offset)
+    {
+        List<BoundExpression> arguments = root.getArguments();
+        List<BoundExpression> optimized = new ArrayList<>(arguments.size());
+        boolean changed = false;
+
+        for (int i = 0; i < arguments.size(); i++) {
+            BoundExpression result = operands[offset + i];
+            changed |= result != arguments.get(i);
+            optimized.add(result);
+        }
+
+        BoundFunctionExpression function = changed ? new BoundFunctionExpression(root.getFunction(), optimized) : root;
+
+        if (root.getFunction().getPurity() == FunctionPurity.Pure && allLiterals(optimized)) {
+            BoundExpression folded = fold(function);
+
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        reportFolds();
+        return function;
+    }
+
+    private BoundExpression optimizeUnary(BoundUnaryExpression root, BoundExpression operand)
+    {
+        BoundUnaryOperationKind kind = root.getOperatorKind();
+
+        if (operand instanceof BoundLiteralExpression) {
+            BoundExpression folded = fold(new BoundUnaryExpression(root.getOperator(), operand));
+
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        reportFolds();
+
+        // +x
+        if (kind == BoundUnaryOperationKind.Identity) {
+            _diagnostics.addSimplifiedIdentity("+x");
+            return operand;
+        }
+
+        // --x and !!b
+        if (operand instanceof BoundUnaryExpression && ((BoundUnaryExpression)operand).getOperatorKind() == kind) {
+            if (kind == BoundUnaryOperationKind.Negation || kind == BoundUnaryOperationKind.LogicalNegation) {
+                _diagnostics.addSimplifiedIdentity(kind == BoundUnaryOperationKind.Negation ? "--x" : "!!x");
+                return ((BoundUnaryExpression)operand).getOperand();
+            }
+        }
+
+        return operand == root.getOperand() ? root : new BoundUnaryExpression(root.getOperator(), operand);
+    }
+
+    /**
+     * Prunes logical operations that the left side decides on its own, returning null if the right side is needed.
+     */
+    private BoundExpression pruneBinary(BoundBinaryExpression root, BoundExpression left)
+    {
+        BoundBinaryOperationKind operation = root.getOperatorKind();
+
+        if (left instanceof BoundLiteralExpression && (operation == BoundBinaryOperationKind.LogicalAnd || operation == BoundBinaryOperationKind.LogicalOr)) {
+            boolean value = (boolean)((BoundLiteralExpression)left).getValue();
+            boolean decides = operation == BoundBinaryOperationKind.LogicalAnd ? !value : value;
+
+            if (decides) {
+                _diagnostics.addPrunedBranch(operation, value);
+                return left;
+            }
+        }
+
+        return null;
+    }
+
+    private BoundExpression optimizeBinary(BoundBinaryExpression root, BoundExpression left, BoundExpression right)
+    {
+        BoundBinaryOperationKind operation = root.getOperatorKind();
+
+        if (left instanceof BoundLiteralExpression && right instanceof BoundLiteralExpression) {
+            BoundExpression folded = fold(new BoundBinaryExpression(left, root.getOperator(), right));
+
+            if (folded != null) {
+                return folded;
+            }
+        }
+
+        reportFolds();
+
+        BoundExpression simplified = simplifyBinary(operation, left, right, root.getType());
+        if (simplified != null) {
+            return simplified;
+        }
+
+        if (left == root.getLeft() && right == root.getRight()) {
+            return root;
+        }
+
+        return new BoundBinaryExpression(left, root.getOperator(), right);
+    }
+
+    /**
+     * Removes binary operations with an operand that can't change the result, returning null if none apply.  An
+     * identity is only applied when the remaining operand already has the result type of the operation.
+     */
+    private BoundExpression simplifyBinary(BoundBinaryOperationKind operation, BoundExpression left, BoundExpression right, Object resultType)
+    {
+        switch (operation) {
+            case LogicalAnd:
+                // true && b
+                if (isLiteral(left, true)) {
+                    _diagnostics.addSimplifiedIdentity("true && x");
+                    return right;
+                }
+
+                // b && true
+                if (isLiteral(right, true)) {
+                    _diagnostics.addSimplifiedIdentity("x && true");
+                    return left;
+                }
+
+                return null;
+            case LogicalOr:
+                // false || b
+                if (isLiteral(left, false)) {
+                    _diagnostics.addSimplifiedIdentity("false || x");
+                    return right;
+                }
+
+                // b || false
+                if (isLiteral(right, false)) {
+                    _diagnostics.addSimplifiedIdentity("x || false");
+                    return left;
+                }
+
+                return null;
+            case Addition:
+                // Adding zero to a decimal may change its scale, and adding zero to -0.0 changes its sign, so only
+                // integers and longs are simplified.
+                if (isLiteral(right, 0) && isIntegral(left.getType())) {
+                    _diagnostics.addSimplifiedIdentity("x + 0");
+                    return left;
+                }
+
+                if (isLiteral(left, 0) && isIntegral(right.getType())) {
+                    _diagnostics.addSimplifiedIdentity("0 + x");
+                    return right;
+                }
+
+                return null;
+            case Subtraction:
+                if (isLiteral(right, 0) && isIntegral(left.getType())) {
+                    _diagnostics.addSimplifiedIdentity("x - 0");
+                    return left;
+                }
+
+                return null;
+            case Multiplication:
+                // Multiplying or dividing a decimal by an unscaled one keeps its scale, so unlike zero, one is an
+                // identity for every type.
+                if (isLiteral(right, 1) && left.getType() == resultType) {
+                    _diagnostics.addSimplifiedIdentity("x * 1");
+                    return left;
+                }
+
+                if (isLiteral(left, 1) && right.getType() == resultType) {
+                    _diagnostics.addSimplifiedIdentity("1 * x");
+                    return right;
+                }
+
+                return null;
+            case Division:
+                if (isLiteral(right, 1) && left.getType() == resultType) {
+                    _diagnostics.addSimplifiedIdentity("x / 1");
+                    return left;
+                }
+
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Evaluates an operation whose operands are all literals, returning a new literal or null if evaluation fails.
+     * Failures (E.g. division by zero) are left in the tree so that they surface during evaluation.
+     */
+    private BoundExpression fold(BoundExpression expression)
+    {
+        Object value;
+
+        try {
+            value = new Evaluator(expression).evaluate();
+        } catch (Exception e) {
+            return null;
+        }
+
+        if (value == null || value.getClass() != expression.getType()) {
+            return null;
+        }
+
+        for (int i = 0; i < expression.getChildCount(); i++) {
+            _absorbedFolds.add(expression.getChild(i));
+        }
+
+        BoundLiteralExpression literal = new BoundLiteralExpression(value);
+        _pendingFolds.add(literal);
+        return literal;
+    }
+
+    /**
+     * Reports every fold that hasn't been absorbed by a fold of its parent.
+     */
+    private void reportFolds()
+    {
+        for (BoundLiteralExpression literal : _pendingFolds) {
+            if (!_absorbedFolds.contains(literal)) {
+                _diagnostics.addFoldedConstant(literal.getValue());
+            }
+        }
+
+        _pendingFolds.clear();
+        _absorbedFolds.clear();
+    }
+
+    /**
+     * Merges identical deterministic subtrees so that each is only represented by a single node, marking function calls
+     * that end up with more than one parent as shared.
+     *
+     * @param root The original node.
+     * @param operands Holds the merged children of the node, in order.
+     * @param offset The index of the first child in operands.
+     * @return The merged node, or the provided node if neither it nor its children changed.
+     */
+    private BoundExpression share(BoundExpression root, BoundExpression[] operands, int offset)
+    {
+        List<Object> key;
+        BoundExpression node;
+
+        if (root instanceof BoundLiteralExpression) {
+            node = root;
+            key = Arrays.asList(root.getKind(), ((BoundLiteralExpression)root).getValue());
+        } else if (root instanceof BoundVariableExpression) {
+            // Variables don't change during an evaluation.
+            node = root;
+            key = Arrays.asList(root.getKind(), ((BoundVariableExpression)root).getKey());
+        } else if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+            BoundExpression operand = operands[offset];
+
+            node = operand == u.getOperand() ? u : new BoundUnaryExpression(u.getOperator(), operand);
+            key = Arrays.asList(root.getKind(), u.getOperator(), operand);
+        } else if (root instanceof BoundConversionExpression) {
+            BoundConversionExpression c = (BoundConversionExpression)root;
+            BoundExpression operand = operands[offset];
+
+            node = operand == c.getOperand() ? c : new BoundConversionExpression(operand, c.getType());
+            key = Arrays.asList(root.getKind(), c.getType(), operand);
+        } else if (root instanceof BoundBinaryExpression) {
+            BoundBinaryExpression b = (BoundBinaryExpression)root;
+            BoundExpression left = operands[offset];
+            BoundExpression right = operands[offset + 1];
+
+            node = left == b.getLeft() && right == b.getRight() ? b : new BoundBinaryExpression(left, b.getOperator(), right);
+            key = Arrays.asList(root.getKind(), b.getOperator(), left, right);
+        } else if (root instanceof BoundFunctionExpression) {
+            BoundFunctionExpression f = (BoundFunctionExpression)root;
+            List<BoundExpression> arguments = new ArrayList<>(f.getChildCount());
+            boolean changed = false;
+
+            for (int i = 0; i < f.getChildCount(); i++) {
+                BoundExpression result = operands[offset + i];
+                changed |= result != f.getChild(i);
+                arguments.add(result);
+            }
+
+            node = changed ? new BoundFunctionExpression(f.getFunction(), arguments) : f;
+            key = new ArrayList<>(arguments.size() + 2);
+            key.add(root.getKind());
+            key.add(f.getFunction());
+            key.addAll(arguments);
+
+            if (f.getFunction().getPurity() == FunctionPurity.Impure) {
+                return node;
+            }
+        } else {
+            return root;
+        }
+
+        // Operands that aren't deterministic were never added to the map, so neither are their parents.
+        for (int i = 2; i < key.size(); i++) {
+            if (key.get(i) instanceof BoundExpression && !_merged.contains(key.get(i))) {
+                return node;
+            }
+        }
+
+        BoundExpression existing = _deterministic.putIfAbsent(key, node);
+        if (existing == null) {
+            _merged.add(node);
+            return node;
+        }
+
+        if (existing instanceof BoundFunctionExpression && !((BoundFunctionExpression)existing).isShared()) {
+            ((BoundFunctionExpression)existing).markShared();
+            _diagnostics.addSharedCall(((BoundFunctionExpression)existing).getFunction());
+        }
+
+        return existing;
+    }
+
+    /**
+     * Returns true if every expression is a literal.
+     */
+    private static boolean allLiterals(List<BoundExpression> expressions)
+    {
+        for (BoundExpression expression : expressions) {
+            if (!(expression instanceof BoundLiteralExpression)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the expression is a literal with the provided {@link Integer} or {@link Boolean} value.  Numeric
+     * literals of every type match, but decimals only match with a scale of zero.  (E.g. 1 matches 1, 1L, 1.0d, and
+     * a decimal 1, but not a decimal 1.0)
+     */
+    private static boolean isLiteral(BoundExpression expression, Object value)
+    {
+        if (!(expression instanceof BoundLiteralExpression)) {
+            return false;
+        }
+
+        Object literal = ((BoundLiteralExpression)expression).getValue();
+
+        if (value instanceof Integer) {
+            int expected = (int)value;
+
+            if (literal instanceof Long) {
+                return (long)literal == expected;
+            }
+
+            if (literal instanceof Double) {
+                return (double)literal == expected;
+            }
+
+            if (literal instanceof BigDecimal) {
+                return literal.equals(BigDecimal.valueOf(expected));
+            }
+        }
+
+        return literal.equals(value);
+    }
+
+    /**
+     * Returns true if the type is an integer type, where adding or subtracting zero never changes a value.
+     */
+    private static boolean isIntegral(Type type)
+    {
+        return type == Integer.class || type == Long.class;
+    }
+}
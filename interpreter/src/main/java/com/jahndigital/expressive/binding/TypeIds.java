@@ -0,0 +1,57 @@
+package com.jahndigital.expressive.binding;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each type that takes part in an operation a dense id, so that operations can be resolved by indexing into a
+ * table instead of searching a list.  The built-in types always have the lowest ids.
+ */
+final class TypeIds
+{
+    private static final ConcurrentHashMap<Type, Integer> _ids = new ConcurrentHashMap<>();
+    private static int _count = 0;
+
+    static {
+        register(Integer.class);
+        register(BigDecimal.class);
+        register(Long.class);
+        register(Double.class);
+        register(Boolean.class);
+    }
+
+    private TypeIds() { }
+
+    /**
+     * Gets the id of a type, or -1 if no operation has been defined on it.
+     */
+    static int find(Type type)
+    {
+        Integer id = type == null ? null : _ids.get(type);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the id of a type, assigning the next id if it doesn't have one yet.
+     */
+    static synchronized int register(Type type)
+    {
+        Integer id = _ids.get(type);
+
+        if (id == null) {
+            id = _count++;
+            _ids.put(type, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Gets the number of types that have an id.
+     */
+    static synchronized int count()
+    {
+        return _count;
+    }
+}
@@ -0,0 +1,731 @@
+package com.jahndigital.expressive.codegen;
+
+import com.jahndigital.expressive.CompiledExpression;
+import com.jahndigital.expressive.Diagnostic;
+import com.jahndigital.expressive.Evaluator;
+import com.jahndigital.expressive.binding.*;
+import com.jahndigital.expressive.extensibility.IFunction;
+import com.jahndigital.expressive.vm.Program;
+import com.jahndigital.expressive.vm.ProgramCompiler;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.jahndigital.expressive.codegen.Opcodes.*;
+
+/**
+ * Compiles a {@link BoundExpression} tree into a generated JVM class that implements {@link CompiledExpression}.
+ *
+ * Operators are emitted as straight-line bytecode over primitive ints, longs, doubles, and booleans where the bound
+ * types allow it, and {@link IFunction} calls are emitted as direct invocations against a field of the generated class,
+ * so each compiled expression presents the JIT with its own monomorphic call sites.
+ *
+ * The whole expression is emitted as a single method, which the JVM limits to 64KB of bytecode.  Expressions that are
+ * too large for one method, or deeper than {@link BoundExpression#MAX_RECURSION_DEPTH}, are compiled to a
+ * {@link Program} by the {@link ProgramCompiler} instead.
+ */
+public final class BytecodeCompiler
+{
+    private static final String PACKAGE = "com/jahndigital/expressive/codegen/";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String INTEGER = "java/lang/Integer";
+    private static final String BOOLEAN = "java/lang/Boolean";
+    private static final String DECIMAL = "java/math/BigDecimal";
+    private static final String LONG = "java/lang/Long";
+    private static final String DOUBLE = "java/lang/Double";
+    private static final String MATH = "java/lang/Math";
+    private static final String LIST = "java/util/List";
+    private static final String ARRAY_LIST = "java/util/ArrayList";
+    private static final String FUNCTION = "com/jahndigital/expressive/extensibility/IFunction";
+    private static final String FUNCTION_FAILED = "com/jahndigital/expressive/FunctionExecutionFailedException";
+    private static final String ARITHMETIC = "com/jahndigital/expressive/Arithmetic";
+    private static final String EVALUATOR = "com/jahndigital/expressive/Evaluator";
+    private static final String COMPILED_EXPRESSION = "com/jahndigital/expressive/CompiledExpression";
+    private static final String CONTEXT = "com/jahndigital/expressive/extensibility/Context";
+    private static final String CONTEXT_KEY = "com/jahndigital/expressive/extensibility/ContextKey";
+    private static final String EVALUATE_DESCRIPTOR = "(L" + CONTEXT + ";)Ljava/lang/Object;";
+
+    private static final AtomicLong _classCounter = new AtomicLong();
+
+    /**
+     * The JVM representation of a value left on the operand stack by an expression.
+     */
+    private enum ValueKind
+    {
+        Int,
+        Boolean,
+        Decimal,
+        Long,
+        Double,
+        Object,
+    }
+
+    private final String _className;
+    private final ClassFileWriter _writer;
+    private final CodeBuilder _code;
+    private final List<Object> _constants = new ArrayList<>();
+    private final List<String> _constantDescriptors = new ArrayList<>();
+    private final IdentityHashMap<Object, Integer> _constantIndexes = new IdentityHashMap<>();
+
+    /**
+     * The locals that hold the arguments of a call and the exception it threw.  A call's arguments are all evaluated
+     * before they're stored, and neither local is read after the call returns or throws, so every call site shares the
+     * same two.  Reserved by the first call.
+     */
+    private int _argumentsLocal = -1;
+    private int _exceptionLocal = -1;
+
+    /**
+     * The local that holds the result of each shared call, or null until the call has been executed.
+     */
+    private final IdentityHashMap<BoundFunctionExpression, Integer> _sharedLocals = new IdentityHashMap<>();
+
+    /**
+     * Compiles the provided {@link BoundSyntaxTree}.
+     *
+     * @param tree The tree to compile.
+     * @return An object that evaluates the expression.
+     * @throws Exception If the tree has errors or could not be compiled.
+     */
+    public static CompiledExpression compile(BoundSyntaxTree tree) throws Exception
+    {
+        List<Diagnostic> errors = tree.getErrors();
+        if (!errors.isEmpty()) {
+            throw new Exception(
+                String.format("Unable to compile expression: %d errors encountered during parsing.", errors.size())
+            );
+        }
+
+        if (tree.getRoot() == null) {
+            return context -> null;
+        }
+
+        return compile(tree.getRoot());
+    }
+
+    /**
+     * Compiles the provided {@link BoundExpression}.
+     *
+     * @param root The root of the tree to compile.
+     * @return An object that evaluates the expression.
+     * @throws Exception If the expression could not be compiled.
+     */
+    public static CompiledExpression compile(BoundExpression root) throws Exception
+    {
+        // Emitting recurses once per level of the tree, as does the evaluator the generated class falls back to.
+        if (root.isDeeperThan(BoundExpression.MAX_RECURSION_DEPTH)) {
+            return ProgramCompiler.compile(root);
+        }
+
+        CompiledExpression compiled = new BytecodeCompiler().generate(root);
+
+        if (compiled == null) {
+            return ProgramCompiler.compile(root);
+        }
+
+        return compiled;
+    }
+
+    /**
+     * Init
+     */
+    private BytecodeCompiler()
+    {
+        _className = PACKAGE + "GeneratedExpression$" + _classCounter.incrementAndGet();
+        _writer = new ClassFileWriter(_className, OBJECT, COMPILED_EXPRESSION);
+        _code = _writer.addMethod(ACC_PUBLIC, "evaluate", EVALUATE_DESCRIPTOR, 2);
+    }
+
+    /**
+     * Emits the generated class, defines it, and returns a new instance of it.
+     *
+     * @param root The expression to compile.
+     * @return A new instance of the generated class, or null if the class would exceed the limits of the JVM.
+     */
+    private CompiledExpression generate(BoundExpression root) throws Exception
+    {
+        Label start = new Label();
+        Label end = new Label();
+        Label overflow = new Label();
+
+        emitSharedLocals(root);
+        _code.mark(start);
+        emitExpression(root, ValueKind.Object);
+        _code.mark(end);
+        _code.op(ARETURN);
+
+        // Integer and long math is checked for overflow, and an evaluation that overflows is redone by an evaluator that
+        // promotes the result instead.  Registered last so that the handlers around calls are matched first.
+        _code.tryCatch(start, end, overflow, "java/lang/ArithmeticException");
+        _code.mark(overflow);
+        _code.op(POP);
+        emitConstant(new Evaluator(root), "L" + EVALUATOR + ";");
+        _code.load(1);
+        _code.methodInsn(INVOKEVIRTUAL, EVALUATOR, "evaluateWidened", EVALUATE_DESCRIPTOR);
+        _code.op(ARETURN);
+
+        if (!_code.fits()) {
+            return null;
+        }
+
+        emitConstructor();
+
+        if (!_writer.fits()) {
+            return null;
+        }
+
+        byte[] classFile = _writer.toByteArray();
+        ExpressionClassLoader loader = new ExpressionClassLoader(BytecodeCompiler.class.getClassLoader());
+        Class<?> generated = loader.define(_className.replace('/', '.'), classFile);
+
+        return (CompiledExpression)generated
+            .getConstructor(Object[].class)
+            .newInstance((Object)_constants.toArray());
+    }
+
+    /**
+     * Reserves a local for every shared call in the tree and clears it on entry, so each shared call is executed at
+     * most once per evaluation.  Locals are cleared up front since the first occurrence of a call isn't necessarily
+     * executed (E.g. it's behind a short circuit).
+     */
+    private void emitSharedLocals(BoundExpression root)
+    {
+        ArrayList<BoundExpression> pending = new ArrayList<>();
+        pending.add(root);
+
+        while (!pending.isEmpty()) {
+            BoundExpression node = pending.remove(pending.size() - 1);
+
+            if (node instanceof BoundFunctionExpression && ((BoundFunctionExpression)node).isShared()) {
+                if (_sharedLocals.containsKey(node)) {
+                    continue;
+                }
+
+                int local = _code.newLocal();
+                _sharedLocals.put((BoundFunctionExpression)node, local);
+                _code.op(ACONST_NULL);
+                _code.store(local);
+            }
+
+            if (node instanceof BoundUnaryExpression) {
+                pending.add(((BoundUnaryExpression)node).getOperand());
+            } else if (node instanceof BoundBinaryExpression) {
+                pending.add(((BoundBinaryExpression)node).getLeft());
+                pending.add(((BoundBinaryExpression)node).getRight());
+            } else if (node instanceof BoundFunctionExpression) {
+                pending.addAll(((BoundFunctionExpression)node).getArguments());
+            }
+        }
+    }
+
+    /**
+     * Emits a constructor that copies the constants array into individual final fields.
+     */
+    private void emitConstructor()
+    {
+        CodeBuilder code = _writer.addMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", 2);
+        code.load(0);
+        code.methodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V");
+
+        for (int i = 0; i < _constants.size(); i++) {
+            String descriptor = _constantDescriptors.get(i);
+
+            code.load(0);
+            code.load(1);
+            code.pushInt(i);
+            code.op(AALOAD);
+            code.typeInsn(CHECKCAST, descriptor.substring(1, descriptor.length() - 1));
+            code.fieldInsn(PUTFIELD, _className, "c" + i, descriptor);
+        }
+
+        code.op(RETURN);
+    }
+
+    /**
+     * Emits code that loads a constant stored on the generated class.
+     *
+     * @param value The constant.
+     * @param descriptor The type descriptor of the field that will hold it.
+     */
+    private void emitConstant(Object value, String descriptor)
+    {
+        Integer index = _constantIndexes.get(value);
+
+        if (index == null) {
+            index = _constants.size();
+            _constants.add(value);
+            _constantDescriptors.add(descriptor);
+            _constantIndexes.put(value, index);
+            _writer.addField(ACC_PRIVATE | ACC_FINAL, "c" + index, descriptor);
+        }
+
+        _code.load(0);
+        _code.fieldInsn(GETFIELD, _className, "c" + index, _constantDescriptors.get(index));
+    }
+
+    /**
+     * Emits the provided expression, converting the result into the requested representation.
+     *
+     * @param root The expression to emit.
+     * @param target The representation the caller expects on the stack.
+     */
+    private void emitExpression(BoundExpression root, ValueKind target) throws Exception
+    {
+        ValueKind kind = emitExpression(root);
+        emitConversion(kind, target);
+    }
+
+    /**
+     * Recursively emits the provided expression based on its type.
+     *
+     * @param root The {@link BoundExpression} to emit.
+     * @return The representation of the value left on the stack.
+     */
+    private ValueKind emitExpression(BoundExpression root) throws Exception
+    {
+        // Nothing more is emitted once the method is too large, since it will be discarded.
+        if (!_code.fits()) {
+            return kindOf(root.getType());
+        }
+
+        if (root instanceof BoundLiteralExpression) {
+            return emitLiteral(((BoundLiteralExpression)root).getValue());
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            return emitFunction((BoundFunctionExpression)root);
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            return emitVariable((BoundVariableExpression)root);
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            return emitUnary((BoundUnaryExpression)root);
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            return emitBinary((BoundBinaryExpression)root);
+        }
+
+        if (root instanceof BoundConversionExpression) {
+            ValueKind kind = kindOf(root.getType());
+            emitExpression(((BoundConversionExpression)root).getOperand(), kind);
+            return kind;
+        }
+
+        // Mirrors the interpreter, which evaluates unknown expressions to zero.
+        _code.pushInt(0);
+        return ValueKind.Int;
+    }
+
+    private ValueKind emitLiteral(Object value)
+    {
+        if (value instanceof Integer) {
+            _code.pushInt((int)value);
+            return ValueKind.Int;
+        }
+
+        if (value instanceof Boolean) {
+            _code.pushInt((boolean)value ? 1 : 0);
+            return ValueKind.Boolean;
+        }
+
+        if (value instanceof BigDecimal) {
+            emitConstant(value, "L" + DECIMAL + ";");
+            return ValueKind.Decimal;
+        }
+
+        if (value instanceof Long) {
+            _code.pushLong((long)value);
+            return ValueKind.Long;
+        }
+
+        if (value instanceof Double) {
+            _code.pushDouble((double)value);
+            return ValueKind.Double;
+        }
+
+        emitConstant(value, "L" + OBJECT + ";");
+        return ValueKind.Object;
+    }
+
+    /**
+     * Emits a call to an {@link IFunction}, wrapping any exception it throws in a
+     * {@link com.jahndigital.expressive.FunctionExecutionFailedException}.  Shared calls load their result from their
+     * local if they've already been executed, and store it there otherwise.
+     */
+    private ValueKind emitFunction(BoundFunctionExpression function) throws Exception
+    {
+        List<BoundExpression> arguments = function.getArguments();
+        Integer sharedLocal = _sharedLocals.get(function);
+        Label cached = new Label();
+
+        // A null result is executed again, which is safe because shared calls are deterministic.
+        if (sharedLocal != null) {
+            _code.load(sharedLocal);
+            _code.op(DUP);
+            _code.jump(IFNONNULL, cached);
+            _code.op(POP);
+        }
+
+        _code.typeInsn(NEW, ARRAY_LIST);
+        _code.op(DUP);
+        _code.pushInt(arguments.size());
+        _code.methodInsn(INVOKESPECIAL, ARRAY_LIST, "<init>", "(I)V");
+
+        for (BoundExpression argument : arguments) {
+            _code.op(DUP);
+            emitExpression(argument, ValueKind.Object);
+            _code.methodInsn(INVOKEINTERFACE, LIST, "add", "(Ljava/lang/Object;)Z");
+            _code.op(POP);
+        }
+
+        if (_argumentsLocal < 0) {
+            _argumentsLocal = _code.newLocal();
+            _exceptionLocal = _code.newLocal();
+        }
+
+        int argumentsLocal = _argumentsLocal;
+        int exceptionLocal = _exceptionLocal;
+        _code.store(argumentsLocal);
+
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        Label done = new Label();
+        ValueKind kind = kindOf(function.getType());
+
+        _code.mark(tryStart);
+        emitConstant(function.getFunction(), "L" + FUNCTION + ";");
+        _code.load(argumentsLocal);
+        _code.load(1);
+        _code.methodInsn(INVOKEINTERFACE, FUNCTION, "execute", "(Ljava/util/List;L" + CONTEXT + ";)Ljava/lang/Object;");
+
+        if (sharedLocal != null) {
+            _code.op(DUP);
+            _code.store(sharedLocal);
+        }
+
+        emitConversion(ValueKind.Object, kind);
+        _code.mark(tryEnd);
+        _code.jump(GOTO, done);
+
+        _code.tryCatch(tryStart, tryEnd, handler, "java/lang/Exception");
+        _code.mark(handler);
+        _code.store(exceptionLocal);
+        _code.typeInsn(NEW, FUNCTION_FAILED);
+        _code.op(DUP);
+        _code.load(exceptionLocal);
+        emitConstant(function.getFunction(), "L" + FUNCTION + ";");
+        _code.load(argumentsLocal);
+        _code.load(1);
+        _code.methodInsn(INVOKEINTERFACE, CONTEXT, "asMap", "()Ljava/util/Map;");
+        _code.methodInsn(
+            INVOKESPECIAL,
+            FUNCTION_FAILED,
+            "<init>",
+            "(Ljava/lang/Exception;L" + FUNCTION + ";Ljava/util/List;Ljava/util/Map;)V"
+        );
+        _code.op(ATHROW);
+
+        if (sharedLocal != null) {
+            _code.mark(cached);
+            emitConversion(ValueKind.Object, kind);
+        }
+
+        _code.mark(done);
+        return kind;
+    }
+
+    /**
+     * Emits a read of a variable from the context through its {@link com.jahndigital.expressive.extensibility.ContextKey}.
+     */
+    private ValueKind emitVariable(BoundVariableExpression variable)
+    {
+        ValueKind kind = kindOf(variable.getType());
+
+        _code.load(1);
+        emitConstant(variable.getKey(), "L" + CONTEXT_KEY + ";");
+        _code.methodInsn(INVOKEINTERFACE, CONTEXT, "get", "(L" + CONTEXT_KEY + ";)Ljava/lang/Object;");
+        emitConversion(ValueKind.Object, kind);
+        return kind;
+    }
+
+    private ValueKind emitUnary(BoundUnaryExpression unary) throws Exception
+    {
+        BoundUnaryOperationKind kind = unary.getOperatorKind();
+        ValueKind operand = emitExpression(unary.getOperand());
+
+        switch (kind) {
+            case Identity:
+                return operand;
+            case Negation:
+                if (operand == ValueKind.Int) {
+                    _code.methodInsn(INVOKESTATIC, MATH, "negateExact", "(I)I");
+                    return ValueKind.Int;
+                }
+
+                if (operand == ValueKind.Long) {
+                    _code.methodInsn(INVOKESTATIC, MATH, "negateExact", "(J)J");
+                    return ValueKind.Long;
+                }
+
+                if (operand == ValueKind.Double) {
+                    _code.op(DNEG);
+                    return ValueKind.Double;
+                }
+
+                emitConversion(operand, ValueKind.Decimal);
+                _code.methodInsn(INVOKEVIRTUAL, DECIMAL, "negate", "()L" + DECIMAL + ";");
+                return ValueKind.Decimal;
+            case LogicalNegation:
+                emitConversion(operand, ValueKind.Boolean);
+                _code.op(ICONST_1);
+                _code.op(IXOR);
+                return ValueKind.Boolean;
+            default:
+                throw new Exception(String.format("Unexpected unary operator %s", kind));
+        }
+    }
+
+    private ValueKind emitBinary(BoundBinaryExpression binary) throws Exception
+    {
+        BoundBinaryOperationKind operation = binary.getOperatorKind();
+
+        switch (operation) {
+            case LogicalAnd:
+            case LogicalOr:
+                return emitShortCircuit(binary, operation == BoundBinaryOperationKind.LogicalAnd);
+            default:
+                break;
+        }
+
+        // Both operands have the same type, since the binder converts mixed operands.
+        ValueKind operands = kindOf(binary.getLeft().getType());
+
+        emitExpression(binary.getLeft(), operands);
+        emitExpression(binary.getRight(), operands);
+
+        switch (operation) {
+            case Addition:
+                return emitArithmetic(operands, "addExact", DADD, "add");
+            case Subtraction:
+                return emitArithmetic(operands, "subtractExact", DSUB, "subtract");
+            case Multiplication:
+                return emitArithmetic(operands, "multiplyExact", DMUL, "multiply");
+            case Division:
+                if (operands == ValueKind.Int) {
+                    _code.methodInsn(INVOKESTATIC, ARITHMETIC, "divide", "(II)I");
+                    return ValueKind.Int;
+                }
+
+                if (operands == ValueKind.Long) {
+                    _code.methodInsn(INVOKESTATIC, ARITHMETIC, "divide", "(JJ)J");
+                    return ValueKind.Long;
+                }
+
+                if (operands == ValueKind.Double) {
+                    _code.op(DDIV);
+                    return ValueKind.Double;
+                }
+
+                _code.fieldInsn(GETSTATIC, "java/math/RoundingMode", "HALF_EVEN", "Ljava/math/RoundingMode;");
+                _code.methodInsn(
+                    INVOKEVIRTUAL,
+                    DECIMAL,
+                    "divide",
+                    "(L" + DECIMAL + ";Ljava/math/RoundingMode;)L" + DECIMAL + ";"
+                );
+                return ValueKind.Decimal;
+            case Equals:
+                return emitComparison(operands, IF_ICMPEQ, IFEQ);
+            case NotEquals:
+                return emitComparison(operands, IF_ICMPNE, IFNE);
+            case GreaterThan:
+                return emitComparison(operands, IF_ICMPGT, IFGT);
+            case GreaterThanOrEqualTo:
+                return emitComparison(operands, IF_ICMPGE, IFGE);
+            case LessThan:
+                return emitComparison(operands, IF_ICMPLT, IFLT);
+            case LessThanOrEqualTo:
+                return emitComparison(operands, IF_ICMPLE, IFLE);
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
+        }
+    }
+
+    /**
+     * Emits a logical AND or OR that only evaluates the right operand when required.
+     */
+    private ValueKind emitShortCircuit(BoundBinaryExpression binary, boolean isAnd) throws Exception
+    {
+        Label shortCircuit = new Label();
+        Label done = new Label();
+
+        emitExpression(binary.getLeft(), ValueKind.Boolean);
+        _code.jump(isAnd ? IFEQ : IFNE, shortCircuit);
+        emitExpression(binary.getRight(), ValueKind.Boolean);
+        _code.jump(GOTO, done);
+        _code.mark(shortCircuit);
+        _code.op(isAnd ? ICONST_0 : ICONST_1);
+        _code.mark(done);
+
+        return ValueKind.Boolean;
+    }
+
+    /**
+     * Emits an arithmetic operator.  Ints and longs go through the overflow-checked {@link Math} methods, which the JIT
+     * compiles down to the plain instruction and an overflow branch.
+     */
+    private ValueKind emitArithmetic(ValueKind operands, String exactMethod, int doubleOpcode, String decimalMethod)
+    {
+        switch (operands) {
+            case Int:
+                _code.methodInsn(INVOKESTATIC, MATH, exactMethod, "(II)I");
+                return ValueKind.Int;
+            case Long:
+                _code.methodInsn(INVOKESTATIC, MATH, exactMethod, "(JJ)J");
+                return ValueKind.Long;
+            case Double:
+                _code.op(doubleOpcode);
+                return ValueKind.Double;
+            default:
+                break;
+        }
+
+        _code.methodInsn(INVOKEVIRTUAL, DECIMAL, decimalMethod, "(L" + DECIMAL + ";)L" + DECIMAL + ";");
+        return ValueKind.Decimal;
+    }
+
+    /**
+     * Emits a comparison that leaves a boolean on the stack.
+     *
+     * @param operands The representation of both operands on the stack.
+     * @param intOpcode The branch to take when comparing two ints or booleans.
+     * @param compareOpcode The branch to take against the result of {@link BigDecimal#compareTo(BigDecimal)}, LCMP,
+     *                      or DCMPL/DCMPG.
+     */
+    private ValueKind emitComparison(ValueKind operands, int intOpcode, int compareOpcode)
+    {
+        Label isTrue = new Label();
+        Label done = new Label();
+
+        if (operands == ValueKind.Decimal) {
+            _code.methodInsn(INVOKEVIRTUAL, DECIMAL, "compareTo", "(L" + DECIMAL + ";)I");
+            _code.jump(compareOpcode, isTrue);
+        } else if (operands == ValueKind.Long) {
+            _code.op(LCMP);
+            _code.jump(compareOpcode, isTrue);
+        } else if (operands == ValueKind.Double) {
+            // NaN must fail every comparison but !=, so it compares as greater for < and <=, and as less otherwise.
+            _code.op(compareOpcode == IFLT || compareOpcode == IFLE ? DCMPG : DCMPL);
+            _code.jump(compareOpcode, isTrue);
+        } else {
+            _code.jump(intOpcode, isTrue);
+        }
+
+        _code.op(ICONST_0);
+        _code.jump(GOTO, done);
+        _code.mark(isTrue);
+        _code.op(ICONST_1);
+        _code.mark(done);
+
+        return ValueKind.Boolean;
+    }
+
+    /**
+     * Converts the value on top of the stack from one representation to another.
+     */
+    private void emitConversion(ValueKind from, ValueKind to)
+    {
+        if (from == to) {
+            return;
+        }
+
+        switch (to) {
+            case Object:
+                if (from == ValueKind.Int) {
+                    _code.methodInsn(INVOKESTATIC, INTEGER, "valueOf", "(I)Ljava/lang/Integer;");
+                } else if (from == ValueKind.Boolean) {
+                    _code.methodInsn(INVOKESTATIC, BOOLEAN, "valueOf", "(Z)Ljava/lang/Boolean;");
+                } else if (from == ValueKind.Long) {
+                    _code.methodInsn(INVOKESTATIC, LONG, "valueOf", "(J)Ljava/lang/Long;");
+                } else if (from == ValueKind.Double) {
+                    _code.methodInsn(INVOKESTATIC, DOUBLE, "valueOf", "(D)Ljava/lang/Double;");
+                }
+                return;
+            case Decimal:
+                if (from == ValueKind.Int || from == ValueKind.Long) {
+                    if (from == ValueKind.Int) {
+                        _code.op(I2L);
+                    }
+
+                    _code.methodInsn(INVOKESTATIC, DECIMAL, "valueOf", "(J)L" + DECIMAL + ";");
+                } else {
+                    _code.typeInsn(CHECKCAST, DECIMAL);
+                }
+                return;
+            case Int:
+                _code.typeInsn(CHECKCAST, INTEGER);
+                _code.methodInsn(INVOKEVIRTUAL, INTEGER, "intValue", "()I");
+                return;
+            case Boolean:
+                _code.typeInsn(CHECKCAST, BOOLEAN);
+                _code.methodInsn(INVOKEVIRTUAL, BOOLEAN, "booleanValue", "()Z");
+                return;
+            case Long:
+                if (from == ValueKind.Int) {
+                    _code.op(I2L);
+                } else {
+                    _code.typeInsn(CHECKCAST, LONG);
+                    _code.methodInsn(INVOKEVIRTUAL, LONG, "longValue", "()J");
+                }
+                return;
+            case Double:
+                if (from == ValueKind.Int) {
+                    _code.op(I2D);
+                } else if (from == ValueKind.Long) {
+                    _code.op(L2D);
+                } else {
+                    _code.typeInsn(CHECKCAST, DOUBLE);
+                    _code.methodInsn(INVOKEVIRTUAL, DOUBLE, "doubleValue", "()D");
+                }
+                return;
+            default:
+                throw new IllegalStateException(String.format("Unsupported conversion from %s to %s.", from, to));
+        }
+    }
+
+    /**
+     * Gets the JVM representation used for a bound type.
+     */
+    private static ValueKind kindOf(Type type)
+    {
+        if (type == Integer.class) {
+            return ValueKind.Int;
+        }
+
+        if (type == Boolean.class) {
+            return ValueKind.Boolean;
+        }
+
+        if (type == BigDecimal.class) {
+            return ValueKind.Decimal;
+        }
+
+        if (type == Long.class) {
+            return ValueKind.Long;
+        }
+
+        if (type == Double.class) {
+            return ValueKind.Double;
+        }
+
+        return ValueKind.Object;
+    }
+}
@@ -0,0 +1,141 @@
+package com.jahndigital.expressive.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jahndigital.expressive.codegen.Opcodes.*;
+
+/**
+ * Assembles a minimal JVM class file from fields and methods.
+ *
+ * Classes are written with version 49 (Java 5) so that no StackMapTable frames need to be computed; the JVM verifies
+ * them with the type-inferencing verifier instead.
+ */
+final class ClassFileWriter
+{
+    private static final int MAJOR_VERSION = 49;
+
+    private final ConstantPool _pool = new ConstantPool();
+    private final int _thisClass;
+    private final int _superClass;
+    private final int[] _interfaces;
+    private final List<int[]> _fields = new ArrayList<>();
+    private final List<Object[]> _methods = new ArrayList<>();
+
+    /**
+     * Init
+     *
+     * @param name The internal name of the class.
+     * @param superName The internal name of the super class.
+     * @param interfaces The internal names of the interfaces the class implements.
+     */
+    ClassFileWriter(String name, String superName, String... interfaces)
+    {
+        _thisClass = _pool.classRef(name);
+        _superClass = _pool.classRef(superName);
+        _interfaces = new int[interfaces.length];
+
+        for (int i = 0; i < interfaces.length; i++) {
+            _interfaces[i] = _pool.classRef(interfaces[i]);
+        }
+    }
+
+    /**
+     * Adds a field to the class.
+     *
+     * @param access The access flags of the field.
+     * @param name The name of the field.
+     * @param descriptor The type descriptor of the field.
+     */
+    void addField(int access, String name, String descriptor)
+    {
+        _fields.add(new int[] { access, _pool.utf8(name), _pool.utf8(descriptor) });
+    }
+
+    /**
+     * Adds a method to the class and returns a {@link CodeBuilder} to emit its body.
+     *
+     * @param access The access flags of the method.
+     * @param name The name of the method.
+     * @param descriptor The method descriptor.
+     * @param parameterSlots The number of local slots used by the receiver and the parameters.
+     */
+    CodeBuilder addMethod(int access, String name, String descriptor, int parameterSlots)
+    {
+        CodeBuilder code = new CodeBuilder(_pool, parameterSlots);
+        _methods.add(new Object[] { access, _pool.utf8(name), _pool.utf8(descriptor), code });
+        return code;
+    }
+
+    /**
+     * Returns true if every method of the class is within the limits of the JVM.  See {@link CodeBuilder#fits()}.
+     */
+    boolean fits()
+    {
+        for (Object[] method : _methods) {
+            if (!((CodeBuilder)method[3]).fits()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the class file and returns its bytes.
+     */
+    byte[] toByteArray()
+    {
+        try {
+            // The body must be written first as it may add entries to the constant pool.
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(_thisClass);
+            out.writeShort(_superClass);
+            out.writeShort(_interfaces.length);
+
+            for (int index : _interfaces) {
+                out.writeShort(index);
+            }
+
+            out.writeShort(_fields.size());
+            for (int[] field : _fields) {
+                out.writeShort(field[0]);
+                out.writeShort(field[1]);
+                out.writeShort(field[2]);
+                out.writeShort(0);
+            }
+
+            out.writeShort(_methods.size());
+            for (Object[] method : _methods) {
+                out.writeShort((int)method[0]);
+                out.writeShort((int)method[1]);
+                out.writeShort((int)method[2]);
+                out.writeShort(1);
+                ((CodeBuilder)method[3]).write(out);
+            }
+
+            // Class attributes
+            out.writeShort(0);
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(result);
+            header.writeInt(0xCAFEBABE);
+            header.writeShort(0);
+            header.writeShort(MAJOR_VERSION);
+            header.writeShort(_pool.getCount());
+            header.write(_pool.toByteArray());
+            body.writeTo(result);
+
+            return result.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
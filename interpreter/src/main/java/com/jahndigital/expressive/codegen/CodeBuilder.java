@@ -0,0 +1,474 @@
+package com.jahndigital.expressive.codegen;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jahndigital.expressive.codegen.Opcodes.*;
+
+/**
+ * Emits the bytecode of a single method, tracking the operand stack depth and local variable slots as it goes.
+ */
+final class CodeBuilder
+{
+    /**
+     * The maximum length of a method's bytecode as defined by the JVM specification.
+     */
+    private static final int MAX_CODE_LENGTH = 0xFFFF;
+
+    private final ConstantPool _pool;
+    private final List<Object[]> _exceptionTable = new ArrayList<>();
+    private byte[] _code = new byte[256];
+    private int _length = 0;
+    private int _stack = 0;
+    private int _maxStack = 0;
+    private int _maxLocals;
+    private boolean _reachable = true;
+
+    /**
+     * Set when a branch or local was emitted that's out of the range the JVM allows.  See {@link #fits()}.
+     */
+    private boolean _overflowed = false;
+
+    /**
+     * Init
+     *
+     * @param pool The constant pool of the class that owns the method.
+     * @param parameterSlots The number of local slots taken by the receiver and the method's parameters.
+     */
+    CodeBuilder(ConstantPool pool, int parameterSlots)
+    {
+        _pool = pool;
+        _maxLocals = parameterSlots;
+    }
+
+    /**
+     * Reserves a new local variable slot for a reference and returns its index.
+     */
+    int newLocal()
+    {
+        return _maxLocals++;
+    }
+
+    /**
+     * Returns true if the method is within the limits of the JVM: its bytecode is no longer than 64KB, and every branch
+     * and local it uses can be encoded.  Emitting carries on once a limit is exceeded so that callers only need to check
+     * once they're done, but the method can no longer be written.
+     */
+    boolean fits()
+    {
+        return !_overflowed && _length <= MAX_CODE_LENGTH;
+    }
+
+    /**
+     * Emits an instruction that has no operands.
+     *
+     * @param opcode The instruction.
+     */
+    void op(int opcode)
+    {
+        emitByte(opcode);
+
+        switch (opcode) {
+            case ACONST_NULL:
+            case ICONST_M1:
+            case ICONST_0:
+            case ICONST_1:
+            case DUP:
+            case I2L:
+            case I2D:
+                adjustStack(1);
+                break;
+            case AALOAD:
+            case POP:
+            case IADD:
+            case ISUB:
+            case IMUL:
+            case IXOR:
+                adjustStack(-1);
+                break;
+            case LADD:
+            case LSUB:
+            case LMUL:
+            case DADD:
+            case DSUB:
+            case DMUL:
+            case DDIV:
+                adjustStack(-2);
+                break;
+            case LCMP:
+            case DCMPL:
+            case DCMPG:
+                adjustStack(-3);
+                break;
+            case INEG:
+            case LNEG:
+            case DNEG:
+            case L2D:
+                break;
+            case ARETURN:
+            case ATHROW:
+                adjustStack(-1);
+                _reachable = false;
+                break;
+            case RETURN:
+                _reachable = false;
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported instruction 0x%02x.", opcode));
+        }
+    }
+
+    /**
+     * Pushes an integer constant using the most compact instruction available.
+     *
+     * @param value The value to push.
+     */
+    void pushInt(int value)
+    {
+        if (value >= -1 && value <= 5) {
+            emitByte(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            emitByte(BIPUSH);
+            emitByte(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            emitByte(SIPUSH);
+            emitShort(value);
+        } else {
+            int index = _pool.integer(value);
+
+            if (index <= 0xFF) {
+                emitByte(LDC);
+                emitByte(index);
+            } else {
+                emitByte(LDC_W);
+                emitShort(index);
+            }
+        }
+
+        adjustStack(1);
+    }
+
+    /**
+     * Pushes a long constant using the most compact instruction available.
+     *
+     * @param value The value to push.
+     */
+    void pushLong(long value)
+    {
+        if (value == 0 || value == 1) {
+            emitByte(LCONST_0 + (int)value);
+        } else {
+            emitByte(LDC2_W);
+            emitShort(_pool.longValue(value));
+        }
+
+        adjustStack(2);
+    }
+
+    /**
+     * Pushes a double constant using the most compact instruction available.
+     *
+     * @param value The value to push.
+     */
+    void pushDouble(double value)
+    {
+        // Compare the bits so that -0.0 isn't pushed as 0.0.
+        long bits = Double.doubleToRawLongBits(value);
+
+        if (bits == Double.doubleToRawLongBits(0.0)) {
+            emitByte(DCONST_0);
+        } else if (bits == Double.doubleToRawLongBits(1.0)) {
+            emitByte(DCONST_1);
+        } else {
+            emitByte(LDC2_W);
+            emitShort(_pool.doubleValue(value));
+        }
+
+        adjustStack(2);
+    }
+
+    /**
+     * Loads a reference from a local variable slot.
+     *
+     * @param local The slot to load.
+     */
+    void load(int local)
+    {
+        emitLocal(ALOAD, local);
+        adjustStack(1);
+    }
+
+    /**
+     * Stores a reference into a local variable slot.
+     *
+     * @param local The slot to store.
+     */
+    void store(int local)
+    {
+        emitLocal(ASTORE, local);
+        adjustStack(-1);
+    }
+
+    /**
+     * Emits an instruction that operates on a class, such as NEW or CHECKCAST.
+     *
+     * @param opcode The instruction.
+     * @param internalName The internal name of the class.
+     */
+    void typeInsn(int opcode, String internalName)
+    {
+        emitByte(opcode);
+        emitShort(_pool.classRef(internalName));
+
+        if (opcode == NEW) {
+            adjustStack(1);
+        }
+    }
+
+    /**
+     * Emits an instruction that reads or writes a field.
+     *
+     * @param opcode GETFIELD, PUTFIELD or GETSTATIC.
+     * @param owner The internal name of the class that declares the field.
+     * @param name The name of the field.
+     * @param descriptor The type descriptor of the field.
+     */
+    void fieldInsn(int opcode, String owner, String name, String descriptor)
+    {
+        emitByte(opcode);
+        emitShort(_pool.fieldRef(owner, name, descriptor));
+
+        int size = slotSize(descriptor.charAt(0));
+        switch (opcode) {
+            case GETSTATIC:
+                adjustStack(size);
+                break;
+            case GETFIELD:
+                adjustStack(size - 1);
+                break;
+            case PUTFIELD:
+                adjustStack(-size - 1);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unsupported field instruction 0x%02x.", opcode));
+        }
+    }
+
+    /**
+     * Emits a method invocation.
+     *
+     * @param opcode INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC or INVOKEINTERFACE.
+     * @param owner The internal name of the class or interface that declares the method.
+     * @param name The name of the method.
+     * @param descriptor The method descriptor.
+     */
+    void methodInsn(int opcode, String owner, String name, String descriptor)
+    {
+        int argumentSlots = argumentSlots(descriptor);
+        int returnSlots = slotSize(descriptor.charAt(descriptor.indexOf(')') + 1));
+
+        emitByte(opcode);
+
+        if (opcode == INVOKEINTERFACE) {
+            emitShort(_pool.interfaceMethodRef(owner, name, descriptor));
+            emitByte(argumentSlots + 1);
+            emitByte(0);
+        } else {
+            emitShort(_pool.methodRef(owner, name, descriptor));
+        }
+
+        adjustStack(returnSlots - argumentSlots - (opcode == INVOKESTATIC ? 0 : 1));
+    }
+
+    /**
+     * Emits a conditional or unconditional branch to the provided label.
+     *
+     * @param opcode The branch instruction.
+     * @param target The label to branch to.
+     */
+    void jump(int opcode, Label target)
+    {
+        int instruction = _length;
+        emitByte(opcode);
+
+        if ((opcode >= IFEQ && opcode <= IFLE) || opcode == IFNULL || opcode == IFNONNULL) {
+            adjustStack(-1);
+        } else if (opcode >= IF_ICMPEQ && opcode <= IF_ICMPLE) {
+            adjustStack(-2);
+        } else if (opcode != GOTO) {
+            throw new IllegalArgumentException(String.format("Unsupported branch instruction 0x%02x.", opcode));
+        }
+
+        target._stackDepth = _stack;
+
+        if (target._position >= 0) {
+            emitShort(branchOffset(instruction, target._position));
+        } else {
+            target._references.add(new int[] { instruction, _length });
+            emitShort(0);
+        }
+
+        if (opcode == GOTO) {
+            _reachable = false;
+        }
+    }
+
+    /**
+     * Marks the current position in the bytecode with the provided label and resolves pending branches to it.
+     *
+     * @param label The label to mark.
+     */
+    void mark(Label label)
+    {
+        label._position = _length;
+
+        if (!_reachable) {
+            _stack = label._stackDepth < 0 ? 0 : label._stackDepth;
+        }
+
+        _reachable = true;
+
+        for (int[] reference : label._references) {
+            int offset = branchOffset(reference[0], label._position);
+            _code[reference[1]] = (byte)(offset >> 8);
+            _code[reference[1] + 1] = (byte)offset;
+        }
+
+        label._references.clear();
+    }
+
+    /**
+     * Registers an exception handler for the range between two labels.  The handler label will be entered with the
+     * exception as the only value on the stack.
+     *
+     * @param start The first instruction covered by the handler.
+     * @param end The instruction after the last one covered by the handler.
+     * @param handler The label of the handler code.
+     * @param exceptionType The internal name of the exception class to catch.
+     */
+    void tryCatch(Label start, Label end, Label handler, String exceptionType)
+    {
+        handler._stackDepth = 1;
+        _exceptionTable.add(new Object[] { start, end, handler, _pool.classRef(exceptionType) });
+    }
+
+    /**
+     * Writes the method's Code attribute.
+     *
+     * @param out The stream to write to.
+     */
+    void write(DataOutputStream out) throws IOException
+    {
+        if (!fits()) {
+            throw new IllegalStateException("Expression is too large to be compiled into a single method.");
+        }
+
+        out.writeShort(_pool.utf8("Code"));
+        out.writeInt(12 + _length + 8 * _exceptionTable.size());
+        out.writeShort(_maxStack);
+        out.writeShort(_maxLocals);
+        out.writeInt(_length);
+        out.write(_code, 0, _length);
+        out.writeShort(_exceptionTable.size());
+
+        for (Object[] entry : _exceptionTable) {
+            out.writeShort(((Label)entry[0])._position);
+            out.writeShort(((Label)entry[1])._position);
+            out.writeShort(((Label)entry[2])._position);
+            out.writeShort((int)entry[3]);
+        }
+
+        // Attributes of the Code attribute
+        out.writeShort(0);
+    }
+
+    private void adjustStack(int delta)
+    {
+        _stack += delta;
+
+        if (_stack > _maxStack) {
+            _maxStack = _stack;
+        }
+    }
+
+    private void emitLocal(int opcode, int local)
+    {
+        if (local > 0xFF) {
+            _overflowed = true;
+        }
+
+        emitByte(opcode);
+        emitByte(local);
+    }
+
+    private void emitByte(int value)
+    {
+        if (_length == _code.length) {
+            _code = Arrays.copyOf(_code, _code.length * 2);
+        }
+
+        _code[_length++] = (byte)value;
+    }
+
+    private void emitShort(int value)
+    {
+        emitByte(value >> 8);
+        emitByte(value);
+    }
+
+    private int branchOffset(int instruction, int target)
+    {
+        int offset = target - instruction;
+
+        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+            _overflowed = true;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Gets the number of stack slots used by a value of the provided descriptor type.
+     */
+    private static int slotSize(char descriptor)
+    {
+        switch (descriptor) {
+            case 'V':
+                return 0;
+            case 'J':
+            case 'D':
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Counts the stack slots consumed by the arguments of a method descriptor.
+     */
+    private static int argumentSlots(String descriptor)
+    {
+        int slots = 0;
+        int i = 1;
+
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            slots += slotSize(c);
+
+            while (descriptor.charAt(i) == '[') {
+                i++;
+            }
+
+            if (descriptor.charAt(i) == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+
+            i++;
+        }
+
+        return slots;
+    }
+}
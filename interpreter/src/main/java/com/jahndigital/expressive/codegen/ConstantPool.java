@@ -0,0 +1,222 @@
+package com.jahndigital.expressive.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds the constant pool of a class file, de-duplicating entries as they are added.
+ */
+final class ConstantPool
+{
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Integer = 3;
+    private static final int CONSTANT_Long = 5;
+    private static final int CONSTANT_Double = 6;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_Fieldref = 9;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_InterfaceMethodref = 11;
+    private static final int CONSTANT_NameAndType = 12;
+
+    private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+    private final DataOutputStream _out = new DataOutputStream(_bytes);
+    private final Map<String, Integer> _entries = new HashMap<>();
+    private int _count = 1;
+
+    /**
+     * Gets the index of a UTF-8 entry, adding it if required.
+     *
+     * @param value The string to store.
+     */
+    int utf8(String value)
+    {
+        String key = "U" + value;
+        Integer index = _entries.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            _out.writeByte(CONSTANT_Utf8);
+            _out.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return register(key);
+    }
+
+    /**
+     * Gets the index of an integer entry, adding it if required.
+     *
+     * @param value The integer to store.
+     */
+    int integer(int value)
+    {
+        String key = "I" + value;
+        Integer index = _entries.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            _out.writeByte(CONSTANT_Integer);
+            _out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return register(key);
+    }
+
+    /**
+     * Gets the index of a long entry, adding it if required.  Long entries take up two indexes.
+     *
+     * @param value The long to store.
+     */
+    int longValue(long value)
+    {
+        return wide("J" + value, CONSTANT_Long, value);
+    }
+
+    /**
+     * Gets the index of a double entry, adding it if required.  Double entries take up two indexes.
+     *
+     * @param value The double to store.
+     */
+    int doubleValue(double value)
+    {
+        long bits = Double.doubleToRawLongBits(value);
+        return wide("D" + bits, CONSTANT_Double, bits);
+    }
+
+    /**
+     * Gets the index of a class entry, adding it if required.
+     *
+     * @param internalName The internal name of the class (E.g. java/lang/Object).
+     */
+    int classRef(String internalName)
+    {
+        return reference("C" + internalName, CONSTANT_Class, utf8(internalName), -1);
+    }
+
+    /**
+     * Gets the index of a field reference, adding it if required.
+     */
+    int fieldRef(String owner, String name, String descriptor)
+    {
+        return member(CONSTANT_Fieldref, owner, name, descriptor);
+    }
+
+    /**
+     * Gets the index of a class method reference, adding it if required.
+     */
+    int methodRef(String owner, String name, String descriptor)
+    {
+        return member(CONSTANT_Methodref, owner, name, descriptor);
+    }
+
+    /**
+     * Gets the index of an interface method reference, adding it if required.
+     */
+    int interfaceMethodRef(String owner, String name, String descriptor)
+    {
+        return member(CONSTANT_InterfaceMethodref, owner, name, descriptor);
+    }
+
+    /**
+     * Gets the number of entries in the pool, plus one, as it is written to the class file.
+     */
+    int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * Gets the encoded entries of the pool.
+     */
+    byte[] toByteArray()
+    {
+        return _bytes.toByteArray();
+    }
+
+    private int member(int tag, String owner, String name, String descriptor)
+    {
+        int nameAndType = reference("N" + name + ":" + descriptor, CONSTANT_NameAndType, utf8(name), utf8(descriptor));
+        return reference(tag + owner + "." + name + ":" + descriptor, tag, classRef(owner), nameAndType);
+    }
+
+    /**
+     * Adds an entry that is made up of one or two references to other entries.
+     *
+     * @param key The unique key of the entry.
+     * @param tag The constant pool tag.
+     * @param first The first index.
+     * @param second The second index, or -1 if the entry only has one.
+     */
+    private int reference(String key, int tag, int first, int second)
+    {
+        Integer index = _entries.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            _out.writeByte(tag);
+            _out.writeShort(first);
+
+            if (second >= 0) {
+                _out.writeShort(second);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return register(key);
+    }
+
+    /**
+     * Adds a long or double entry, which is written as eight bytes and takes up two indexes.
+     *
+     * @param key The unique key of the entry.
+     * @param tag The constant pool tag.
+     * @param bits The value, or the raw bits of a double.
+     */
+    private int wide(String key, int tag, long bits)
+    {
+        Integer index = _entries.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            _out.writeByte(tag);
+            _out.writeLong(bits);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        index = register(key);
+        _count++;
+        return index;
+    }
+
+    private int register(String key)
+    {
+        if (_count >= 0xFFFE) {
+            throw new IllegalStateException("Constant pool exceeded the maximum number of entries.");
+        }
+
+        int index = _count++;
+        _entries.put(key, index);
+        return index;
+    }
+}
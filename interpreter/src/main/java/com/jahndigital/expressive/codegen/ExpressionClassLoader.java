@@ -0,0 +1,29 @@
+package com.jahndigital.expressive.codegen;
+
+/**
+ * Defines the classes generated by the {@link BytecodeCompiler}.  Each compiled expression gets its own loader so that
+ * the generated class can be unloaded once the expression is no longer referenced.
+ */
+final class ExpressionClassLoader extends ClassLoader
+{
+    /**
+     * Init
+     *
+     * @param parent The loader that can resolve the interpreter and extensibility classes.
+     */
+    ExpressionClassLoader(ClassLoader parent)
+    {
+        super(parent);
+    }
+
+    /**
+     * Defines a class from the provided class file.
+     *
+     * @param binaryName The binary name of the class (E.g. com.example.Foo).
+     * @param classFile The bytes of the class file.
+     */
+    Class<?> define(String binaryName, byte[] classFile)
+    {
+        return defineClass(binaryName, classFile, 0, classFile.length);
+    }
+}
@@ -0,0 +1,25 @@
+package com.jahndigital.expressive.codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a position in a method's bytecode that may be the target of a branch before it has been marked.
+ */
+final class Label
+{
+    /**
+     * The offset of the label in the bytecode, or -1 if it hasn't been marked yet.
+     */
+    int _position = -1;
+
+    /**
+     * The operand stack depth on entry to the label, or -1 if no branch to it has been emitted yet.
+     */
+    int _stackDepth = -1;
+
+    /**
+     * Pairs of (instruction offset, patch offset) for branches that must be resolved once the label is marked.
+     */
+    final List<int[]> _references = new ArrayList<>();
+}
@@ -0,0 +1,98 @@
+package com.jahndigital.expressive.codegen;
+
+/**
+ * The subset of JVM instructions and access flags used by the {@link BytecodeCompiler}.
+ */
+final class Opcodes
+{
+    // Access flags
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // Constants
+    static final int ACONST_NULL = 0x01;
+    static final int ICONST_M1 = 0x02;
+    static final int ICONST_0 = 0x03;
+    static final int ICONST_1 = 0x04;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC = 0x12;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int LCONST_0 = 0x09;
+    static final int LCONST_1 = 0x0a;
+    static final int DCONST_0 = 0x0e;
+    static final int DCONST_1 = 0x0f;
+
+    // Loads and stores
+    static final int ALOAD = 0x19;
+    static final int AALOAD = 0x32;
+    static final int ASTORE = 0x3a;
+
+    // Stack
+    static final int POP = 0x57;
+    static final int DUP = 0x59;
+
+    // Math
+    static final int IADD = 0x60;
+    static final int LADD = 0x61;
+    static final int DADD = 0x63;
+    static final int ISUB = 0x64;
+    static final int LSUB = 0x65;
+    static final int DSUB = 0x67;
+    static final int IMUL = 0x68;
+    static final int LMUL = 0x69;
+    static final int DMUL = 0x6b;
+    static final int DDIV = 0x6f;
+    static final int INEG = 0x74;
+    static final int LNEG = 0x75;
+    static final int DNEG = 0x77;
+    static final int IXOR = 0x82;
+    static final int I2L = 0x85;
+    static final int I2D = 0x87;
+    static final int L2D = 0x8a;
+
+    // Comparisons
+    static final int LCMP = 0x94;
+    static final int DCMPL = 0x97;
+    static final int DCMPG = 0x98;
+
+    // Branches
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IFLT = 0x9b;
+    static final int IFGE = 0x9c;
+    static final int IFGT = 0x9d;
+    static final int IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f;
+    static final int IF_ICMPNE = 0xa0;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IFNULL = 0xc6;
+    static final int IFNONNULL = 0xc7;
+
+    // Returns
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+
+    // Fields and methods
+    static final int GETSTATIC = 0xb2;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+
+    // Objects
+    static final int NEW = 0xbb;
+    static final int ATHROW = 0xbf;
+    static final int CHECKCAST = 0xc0;
+
+    private Opcodes() { }
+}
@@ -0,0 +1,73 @@
+package com.jahndigital.expressive.syntax;
+
+import com.jahndigital.expressive.extensibility.IFunction;
+
+import java.util.List;
+
+/**
+ * Builds the result of parsing an expression as the parser recognises each part of it.  The parser uses this to build
+ * a tree of {@link ExpressionSyntaxNode}s, but other builders may produce a different form directly (E.g. a bound
+ * tree) without building the syntax tree first.  Operands are always built before the expressions that contain them,
+ * and no method may return null.
+ *
+ * @param <T> The type of node that's built.
+ */
+public interface ExpressionBuilder<T>
+{
+    /**
+     * Builds a literal whose value is held by its token.  (E.g. 1, 2.5)
+     *
+     * @param token The token holding the literal.
+     */
+    T literal(SyntaxToken token);
+
+    /**
+     * Builds a literal with the provided value.  (E.g. true)
+     *
+     * @param token The token holding the literal.
+     * @param value The value of the literal.
+     */
+    T literal(SyntaxToken token, Object value);
+
+    /**
+     * Builds a reference to a variable.
+     *
+     * @param identifier The token holding the name of the variable.
+     */
+    T name(SyntaxToken identifier);
+
+    /**
+     * Builds a call to a function.
+     *
+     * @param name The token holding the name of the function.
+     * @param overloads Every {@link IFunction} registered with the name.  Empty if none were found.
+     * @param arguments The arguments of the call.
+     */
+    T function(SyntaxToken name, List<IFunction> overloads, List<T> arguments);
+
+    /**
+     * Builds a unary operation.  (E.g. -1)
+     *
+     * @param operator The token holding the operator.
+     * @param operand The operand.
+     */
+    T unary(SyntaxToken operator, T operand);
+
+    /**
+     * Builds a binary operation.  (E.g. 1 + 1)
+     *
+     * @param left The left operand.
+     * @param operator The token holding the operator.
+     * @param right The right operand.
+     */
+    T binary(T left, SyntaxToken operator, T right);
+
+    /**
+     * Builds an expression wrapped in parentheses.
+     *
+     * @param open The opening parenthesis.
+     * @param expression The expression between the parentheses.
+     * @param close The closing parenthesis.
+     */
+    T parenthesised(SyntaxToken open, T expression, SyntaxToken close);
+}
@@ -13,7 +13,7 @@ import java.util.List;
 public final class FunctionExpressionSyntaxNode extends ExpressionSyntaxNode
 {
     private final SyntaxToken _functionNameToken;
-    private final IFunction _function;
+    private final List<IFunction> _overloads;
     private final List<ExpressionSyntaxNode> _argumentTokens;
 
     /**
@@ -24,9 +24,21 @@ public final class FunctionExpressionSyntaxNode extends ExpressionSyntaxNode
      * @param argumentTokens A list of {@link ExpressionSyntaxNode} representing the function's arguments.
      */
     public FunctionExpressionSyntaxNode(SyntaxToken functionNameToken, @Nullable IFunction function, List<ExpressionSyntaxNode> argumentTokens)
+    {
+        this(functionNameToken, function == null ? Collections.emptyList() : Collections.singletonList(function), argumentTokens);
+    }
+
+    /**
+     * Init with every overload of the function, so that the binder can pick one by the types of the arguments.
+     *
+     * @param functionNameToken The {@link SyntaxToken} containing the function's name.
+     * @param overloads The {@link IFunction} objects registered with the function's name.  Empty if none were found.
+     * @param argumentTokens A list of {@link ExpressionSyntaxNode} representing the function's arguments.
+     */
+    public FunctionExpressionSyntaxNode(SyntaxToken functionNameToken, List<IFunction> overloads, List<ExpressionSyntaxNode> argumentTokens)
     {
         _functionNameToken = functionNameToken;
-        _function = function;
+        _overloads = overloads;
         _argumentTokens = argumentTokens;
     }
 
@@ -39,11 +51,26 @@ public final class FunctionExpressionSyntaxNode extends ExpressionSyntaxNode
     }
 
     /**
-     * Get the {@link IFunction} object if it was resolved, otherwise null.
+     * Get the {@link IFunction} object if it was resolved, otherwise null.  When the function is overloaded, this is the
+     * first overload that accepts the number of arguments provided, or the first overload if none do.
      */
     public @Nullable IFunction getFunction()
     {
-        return _function;
+        for (IFunction function : _overloads) {
+            if (function.getArguments().size() == _argumentTokens.size()) {
+                return function;
+            }
+        }
+
+        return _overloads.isEmpty() ? null : _overloads.get(0);
+    }
+
+    /**
+     * Get a read only list of every {@link IFunction} registered with the function's name.
+     */
+    public List<IFunction> getOverloads()
+    {
+        return Collections.unmodifiableList(_overloads);
     }
 
     /**
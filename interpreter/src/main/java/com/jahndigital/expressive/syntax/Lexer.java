@@ -2,28 +2,34 @@ package com.jahndigital.expressive.syntax;
 
 import com.jahndigital.expressive.DiagnosticRepository;
 
-import java.math.BigDecimal;
-
 /**
- * Reads the provided text string and converts it into tokens.
+ * Reads the provided text and converts it into tokens.  Works over any {@link CharSequence} without copying it, and
+ * only records the kind, position, and length of each token, so lexing doesn't allocate a string per token.  Wrap a
+ * char[] with {@link java.nio.CharBuffer#wrap(char[])} to lex it in place.
  */
 final class Lexer
 {
+    /**
+     * Up to 18 digits always fit in a long, so only longer numbers need to be parsed from their text.
+     */
+    private static final int MAX_DIGITS = 18;
+
     private final DiagnosticRepository _diagnostics;
-    private final String _text;
-    private int _position = 0;
+    private final CharSequence _text;
+    private final int _end;
+    private int _position;
 
     /**
-     * Look ahead in the token array without changing the current position.
+     * Look ahead in the text without changing the current position.
      *
      * @param offset The number of spaces to look ahead.
-     * @return The token at position + offset, or a null-terminator.
+     * @return The character at position + offset, or a null-terminator.
      */
     private char peek(int offset)
     {
         int index = _position + offset;
 
-        if (index >= _text.length()) {
+        if (index >= _end) {
             return '\0';
         }
 
@@ -39,112 +45,110 @@ final class Lexer
     }
 
     /**
+     * Init
      *
      * @param text The expression to lex.
      * @param diagnostics The repository to use when reporting issues with lexing.
      */
-    public Lexer(String text, DiagnosticRepository diagnostics)
+    public Lexer(CharSequence text, DiagnosticRepository diagnostics)
+    {
+        this(text, 0, text.length(), diagnostics);
+    }
+
+    /**
+     * Init with a range of the provided text.  Token positions are relative to the start of the text, not the range.
+     *
+     * @param text The text containing the expression to lex.
+     * @param start The position of the first character of the expression.
+     * @param end The position after the last character of the expression.
+     * @param diagnostics The repository to use when reporting issues with lexing.
+     */
+    public Lexer(CharSequence text, int start, int end, DiagnosticRepository diagnostics)
     {
         _text = text;
+        _position = start;
+        _end = end;
         _diagnostics = diagnostics;
     }
 
     /**
-     * Increments the position forward by one.
+     * Gets a buffer that lexes tokens as the parser asks for them.
      */
-    private void next()
+    TokenBuffer tokens()
     {
-        _position++;
+        return new TokenBuffer(this, _text);
     }
 
     /**
-     * Get the next token from the text and return it as a SyntaxToken object.
-     *
-     * @return The next token in the text, or an EndOfFileToken.
+     * Lexes the text up to the end of the next token and adds it to the buffer.  Whitespace and bad characters aren't
+     * added, since the parser ignores them; bad characters are reported as they're found.  The EndOfFileToken is added
+     * once the end of the text is reached.
      */
-    SyntaxToken nextToken()
+    void nextToken(TokenBuffer tokens)
     {
-        if (Character.isDigit(getCurrent())) {
-            int start = _position;
-            int numPeriods = 0;
+        char current = getCurrent();
 
-            while (Character.isDigit(getCurrent()) || getCurrent() == '.') {
-                if (getCurrent() == '.')
-                {
-                    numPeriods++;
-                }
-
-                next();
-            }
-
-            String text = _text.substring(start, _position);
-
-            if (numPeriods > 0) {
-                BigDecimal num = null;
-
-                try {
-                    num = new BigDecimal(text);
-                } catch (NumberFormatException e) {
-                    _diagnostics.addInvalidCastToDecimal(_text, _position);
-                }
-
-                return new SyntaxToken(SyntaxKind.NumberToken, start, text, num);
-            }
-
-            Integer num = null;
-            try {
-                num = Integer.parseInt(text);
-            } catch (NumberFormatException e) {
-                _diagnostics.addInvalidCastToInt32(_text, _position);
-            }
-
-            return new SyntaxToken(SyntaxKind.NumberToken, start, text, num);
+        if (Character.isDigit(current)) {
+            lexNumber(tokens);
+            return;
         }
 
-        if (Character.isWhitespace(getCurrent())) {
-            int start = _position;
-
+        if (Character.isWhitespace(current)) {
             while (Character.isWhitespace(getCurrent())) {
-                next();
+                _position++;
             }
 
-            String text = _text.substring(start, _position);
-            return new SyntaxToken(SyntaxKind.WhitespaceToken, start, text, null);
+            return;
         }
 
-        if (Character.isLetter(getCurrent())) {
+        if (Character.isLetter(current)) {
             int start = _position;
 
             while (Character.isLetter(getCurrent()) || Character.isDigit(getCurrent()) || getCurrent() == '_') {
-                next();
+                _position++;
             }
 
-            String text = _text.substring(start, _position);
-            SyntaxKind kind = SyntaxFacts.getKeywordKind(text);
-            return new SyntaxToken(kind, start, text, text);
+            int length = _position - start;
+            tokens.add(SyntaxFacts.getKeywordKind(_text, start, length), start, length);
+            return;
         }
 
-        switch (getCurrent()) {
+        int start = _position;
+
+        switch (current) {
             case '\0':
-                return new SyntaxToken(SyntaxKind.EndOfFileToken, _position, "\0", null);
+                if (_position >= _end) {
+                    tokens.add(SyntaxKind.EndOfFileToken, _position, 0);
+                    return;
+                }
+
+                break;
             case '+':
-                return new SyntaxToken(SyntaxKind.PlusToken, _position++, "+", null);
+                add(tokens, SyntaxKind.PlusToken, 1);
+                return;
             case '-':
-                return new SyntaxToken(SyntaxKind.MinusToken, _position++, "-", null);
+                add(tokens, SyntaxKind.MinusToken, 1);
+                return;
             case '*':
-                return new SyntaxToken(SyntaxKind.StarToken, _position++, "*", null);
+                add(tokens, SyntaxKind.StarToken, 1);
+                return;
             case '/':
-                return new SyntaxToken(SyntaxKind.SlashToken, _position++, "/", null);
+                add(tokens, SyntaxKind.SlashToken, 1);
+                return;
             case '(':
-                return new SyntaxToken(SyntaxKind.OpenParenthesisToken, _position++, "(", null);
+                add(tokens, SyntaxKind.OpenParenthesisToken, 1);
+                return;
             case ')':
-                return new SyntaxToken(SyntaxKind.CloseParenthesisToken, _position++, ")", null);
+                add(tokens, SyntaxKind.CloseParenthesisToken, 1);
+                return;
             case ',':
-                return new SyntaxToken(SyntaxKind.CommaToken, _position++, ",", null);
+                add(tokens, SyntaxKind.CommaToken, 1);
+                return;
             case '&':
             {
                 if (peek(1) == '&') {
-                    return new SyntaxToken(SyntaxKind.AndToken, _position += 2, "&&", null);
+                    add(tokens, SyntaxKind.AndToken, 2);
+                    return;
                 }
 
                 break;
@@ -152,43 +156,104 @@ final class Lexer
             case '|':
             {
                 if (peek(1) == '|') {
-                    return new SyntaxToken(SyntaxKind.OrToken, _position += 2, "||", null);
+                    add(tokens, SyntaxKind.OrToken, 2);
+                    return;
                 }
 
                 break;
             }
             case '=': {
                 if (peek(1) == '=') {
-                    return new SyntaxToken(SyntaxKind.EqualityToken, _position += 2, "==", null);
+                    add(tokens, SyntaxKind.EqualityToken, 2);
+                    return;
                 }
 
-                _diagnostics.addBadCharacterInput(getCurrent(), _position);
+                _diagnostics.addBadCharacterInput(current, _position);
                 break;
             }
             case '!': {
                 if (peek(1) == '=') {
-                    return new SyntaxToken(SyntaxKind.NegatedEqualityToken, _position += 2, "!=", null);
+                    add(tokens, SyntaxKind.NegatedEqualityToken, 2);
                 } else {
-                    return new SyntaxToken(SyntaxKind.ExclamationPointToken, _position++, "!", null);
+                    add(tokens, SyntaxKind.ExclamationPointToken, 1);
                 }
+
+                return;
             }
             case '>': {
                 if (peek(1) == '=') {
-                    return new SyntaxToken(SyntaxKind.GreaterThanEqualToken, _position += 2, ">=", null);
+                    add(tokens, SyntaxKind.GreaterThanEqualToken, 2);
                 } else {
-                    return new SyntaxToken(SyntaxKind.GreaterThanToken, _position++, ">", null);
+                    add(tokens, SyntaxKind.GreaterThanToken, 1);
                 }
+
+                return;
             }
             case '<': {
                 if (peek(1) == '=') {
-                    return new SyntaxToken(SyntaxKind.LessThanEqualToken, _position += 2, "<=", null);
+                    add(tokens, SyntaxKind.LessThanEqualToken, 2);
                 } else {
-                    return new SyntaxToken(SyntaxKind.LessThanToken, _position++, "<", null);
+                    add(tokens, SyntaxKind.LessThanToken, 1);
                 }
+
+                return;
             }
         }
 
-        _diagnostics.addBadCharacterInput(getCurrent(), _position);
-        return new SyntaxToken(SyntaxKind.BadToken, _position++, _text.substring(_position - 1, _position), null);
+        _diagnostics.addBadCharacterInput(current, start);
+        _position++;
+    }
+
+    /**
+     * Adds a token that starts at the current position and moves past it.
+     */
+    private void add(TokenBuffer tokens, SyntaxKind kind, int length)
+    {
+        tokens.add(kind, _position, length);
+        _position += length;
+    }
+
+    /**
+     * Lexes a number, parsing its digits in place as they're read.  Numbers with more digits than fit in a long are
+     * parsed from their text once the parser asks for their value.
+     */
+    private void lexNumber(TokenBuffer tokens)
+    {
+        int start = _position;
+        long unscaled = 0;
+        int digits = 0;
+        int scale = TokenBuffer.INTEGRAL;
+        boolean invalid = false;
+
+        while (true) {
+            char current = getCurrent();
+
+            if (current == '.') {
+                invalid |= scale != TokenBuffer.INTEGRAL;
+                scale = 0;
+            } else if (Character.isDigit(current)) {
+                if (digits < MAX_DIGITS) {
+                    unscaled = unscaled * 10 + Character.digit(current, 10);
+                }
+
+                digits++;
+                if (scale != TokenBuffer.INTEGRAL) {
+                    scale++;
+                }
+            } else {
+                break;
+            }
+
+            _position++;
+        }
+
+        if (invalid) {
+            _diagnostics.addInvalidCastToDecimal(_text.subSequence(start, _position).toString(), start);
+            scale = TokenBuffer.INVALID;
+        } else if (digits > MAX_DIGITS) {
+            scale = scale == TokenBuffer.INTEGRAL ? TokenBuffer.WIDE_INTEGRAL : TokenBuffer.WIDE_DECIMAL;
+        }
+
+        tokens.addNumber(start, _position - start, unscaled, scale);
     }
 }
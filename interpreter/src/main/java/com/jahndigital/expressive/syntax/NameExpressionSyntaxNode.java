@@ -0,0 +1,42 @@
+package com.jahndigital.expressive.syntax;
+
+import java.util.Collections;
+
+/**
+ * Represents a reference to a variable by name, which is resolved against a
+ * {@link com.jahndigital.expressive.extensibility.Schema} during binding.
+ */
+public final class NameExpressionSyntaxNode extends ExpressionSyntaxNode
+{
+    private final SyntaxToken _identifierToken;
+
+    /**
+     * Init
+     *
+     * @param identifierToken The {@link SyntaxToken} containing the name of the variable.
+     */
+    public NameExpressionSyntaxNode(SyntaxToken identifierToken)
+    {
+        _identifierToken = identifierToken;
+    }
+
+    /**
+     * Gets the {@link SyntaxToken} that represents the name of the variable.
+     */
+    public SyntaxToken getIdentifier()
+    {
+        return _identifierToken;
+    }
+
+    @Override
+    public SyntaxKind getKind()
+    {
+        return SyntaxKind.NameExpression;
+    }
+
+    @Override
+    public Iterable<SyntaxNode> getChildren()
+    {
+        return Collections.singletonList(_identifierToken);
+    }
+}
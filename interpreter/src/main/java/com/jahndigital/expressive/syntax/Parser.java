@@ -6,73 +6,63 @@ import com.jahndigital.expressive.TextSpan;
 import com.jahndigital.expressive.extensibility.IFunction;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Parses tokens generated by the lexer into a series of expressions that form an Abstract Syntax Tree (AST)
+ * Parses tokens generated by the lexer into a series of expressions that form an Abstract Syntax Tree (AST), or any
+ * other form produced by an {@link ExpressionBuilder}.
+ *
+ * @param <T> The type of node that's built.
  */
-final class Parser
+final class Parser<T>
 {
     private final DiagnosticRepository _diagnostics;
     private final FunctionRepository _functions;
-    private final ArrayList<SyntaxToken> _tokens = new ArrayList<>();
+    private final ExpressionBuilder<T> _builder;
+    private final TokenBuffer _tokens;
     private int _position = 0;
+    private SyntaxToken _endOfFileToken;
 
     /**
-     * Init with the default {@link DiagnosticRepository} and {@link FunctionRepository}.
-     *
-     * @param text The expression to lex and parse.
+     * The expressions that are being parsed, innermost last.  Frames past {@link #_depth} are kept to be reused.
      */
-    Parser(String text)
-    {
-        this(text, DiagnosticRepository.DefaultDiagnosticRepository);
-    }
+    private final ArrayList<Frame<T>> _frames = new ArrayList<>();
+    private int _depth = 0;
 
     /**
-     * Init with the default {@link FunctionRepository}
+     * Init
      *
      * @param text The expression to lex and parse.
      * @param diagnostics The repository to use when reporting issues with lexing.
+     * @param functions The repository to use when attempting to resolve built-in functions.
+     * @param builder Builds each expression as it's parsed.
      */
-    Parser(String text, DiagnosticRepository diagnostics)
+    Parser(CharSequence text, DiagnosticRepository diagnostics, FunctionRepository functions, ExpressionBuilder<T> builder)
     {
-        this(text, diagnostics, FunctionRepository.DefaultFunctionRepository);
+        _diagnostics = diagnostics;
+        _functions = functions;
+        _builder = builder;
+        _tokens = new Lexer(text, diagnostics).tokens();
     }
 
     /**
-     * Init with a custom {@link FunctionRepository} instead of the default one.
+     * Parse the provided tokens and return the root of the result.
      *
-     * @param text The expression to lex and parse.
-     * @param diagnostics The repository to use when reporting issues with lexing.
-     * @param functions The repository to use when attempting to resolve built-in functions.
+     * @return The root node built by the {@link ExpressionBuilder}.
      */
-    Parser(String text, DiagnosticRepository diagnostics, FunctionRepository functions)
+    T parse()
     {
-        _diagnostics = diagnostics;
-        _functions = functions;
-        Lexer lexer = new Lexer(text, diagnostics);
-
-        SyntaxToken token;
-        do {
-            token = lexer.nextToken();
-
-            if (token.getKind() != SyntaxKind.WhitespaceToken &&
-                token.getKind() != SyntaxKind.BadToken) {
-                _tokens.add(token);
-            }
-        } while (token.getKind() != SyntaxKind.EndOfFileToken);
+        T root = parseExpression();
+        _endOfFileToken = matchToken(SyntaxKind.EndOfFileToken);
+        return root;
     }
 
     /**
-     * Parse the provided tokens into an AST and return it.
-     *
-     * @return The root node of a syntax tree.
+     * Gets the token that ended the text, once it has been parsed.
      */
-    SyntaxTree parse()
+    SyntaxToken getEndOfFileToken()
     {
-        _diagnostics.reset();
-        ExpressionSyntaxNode root = parseExpression();
-        SyntaxToken eof = matchToken(SyntaxKind.EndOfFileToken);
-        return new SyntaxTree(_diagnostics, root, eof);
+        return _endOfFileToken;
     }
 
     /**
@@ -83,13 +73,18 @@ final class Parser
      */
     private SyntaxToken peek(int offset)
     {
-        int index = _position + offset;
-
-        if (index > _tokens.size()) {
-            return _tokens.get(_tokens.size() - 1);
-        }
+        return _tokens.get(offset);
+    }
 
-        return _tokens.get(index);
+    /**
+     * Look ahead in the token list by the provided offset, without creating the token.
+     *
+     * @param offset The offset from the current position to peek ahead.
+     * @return The kind of the token at position + offset, or of the last token.
+     */
+    private SyntaxKind peekKind(int offset)
+    {
+        return _tokens.getKind(offset);
     }
 
     /**
@@ -100,12 +95,21 @@ final class Parser
         return peek(0);
     }
 
+    /**
+     * Get the kind of the token at the current position.
+     */
+    private SyntaxKind getCurrentKind()
+    {
+        return peekKind(0);
+    }
+
     /**
      * Returns the token at the current position and moves the position ahead by one.
      */
     private SyntaxToken nextToken()
     {
         SyntaxToken current = getCurrent();
+        _tokens.advance();
         _position++;
         return current;
     }
@@ -118,7 +122,7 @@ final class Parser
      */
     private SyntaxToken matchToken(SyntaxKind kind)
     {
-        if (getCurrent().getKind() == kind) {
+        if (getCurrentKind() == kind) {
             return nextToken();
         }
 
@@ -128,120 +132,267 @@ final class Parser
 
     /**
      * Parses an expression and returns it.
+     *
+     * Nested expressions are tracked on an explicit stack of {@link Frame}s instead of by recursing, so the depth of the
+     * expression is only limited by memory.  Builder methods are called in the same order as a recursive descent
+     * parser would call them.
      */
-    private ExpressionSyntaxNode parseExpression()
+    private T parseExpression()
     {
-        return parseExpression(0);
+        T result = beginExpression(0);
+
+        while (true) {
+            // A frame was pushed for a nested expression that hasn't been parsed yet.
+            if (result == null) {
+                result = beginExpression(top().pending);
+                continue;
+            }
+
+            if (_depth == 0) {
+                return result;
+            }
+
+            Frame<T> frame = top();
+
+            switch (frame.kind) {
+                case Operand:
+                    frame.left = result;
+                    break;
+                case Unary:
+                    frame.left = _builder.unary(frame.operator, result);
+                    break;
+                case Binary:
+                    frame.left = _builder.binary(frame.left, frame.operator, result);
+                    break;
+                case Parenthesised:
+                {
+                    SyntaxToken right = matchToken(SyntaxKind.CloseParenthesisToken);
+                    _depth--;
+                    result = _builder.parenthesised(frame.operator, result, right);
+                    continue;
+                }
+                case Arguments:
+                    frame.arguments.add(result);
+
+                    if (getCurrentKind() == SyntaxKind.CommaToken) {
+                        matchToken(SyntaxKind.CommaToken);
+                    }
+
+                    result = continueArguments(frame);
+                    continue;
+            }
+
+            // Keep consuming operators that bind tighter than the parent of this expression.
+            int precedence = SyntaxFacts.getBinaryOperatorPrecedence(getCurrentKind());
+
+            if (precedence == 0 || precedence <= frame.precedence) {
+                _depth--;
+                result = frame.left;
+                continue;
+            }
+
+            frame.kind = FrameKind.Binary;
+            frame.operator = nextToken();
+            frame.pending = precedence;
+            result = null;
+        }
     }
 
     /**
-     * Parses an expression, selecting an operator based on its precedence.
+     * Starts parsing an expression, pushing frames until an operand that doesn't contain another expression is found.
      *
      * @param parentPrecedence The weight of the parent.
-     * @return The parsed syntax node (recursive into a tree).
+     * @return The operand, or null if a frame was pushed that's waiting on a nested expression.
      */
-    @SuppressWarnings("InfiniteRecursion")
-    private ExpressionSyntaxNode parseExpression(int parentPrecedence)
+    private T beginExpression(int parentPrecedence)
     {
-        ExpressionSyntaxNode left;
+        Frame<T> frame = push(FrameKind.Operand, parentPrecedence);
 
-        int unaryPrecedence = SyntaxFacts.getUnaryOperatorPrecedence(getCurrent().getKind());
+        int unaryPrecedence = SyntaxFacts.getUnaryOperatorPrecedence(getCurrentKind());
         if (unaryPrecedence != 0 && unaryPrecedence >= parentPrecedence) {
-            SyntaxToken operatorToken = nextToken();
-            ExpressionSyntaxNode operand = parseExpression(unaryPrecedence);
-            left = new UnaryExpressionSyntaxNode(operatorToken, operand);
-        } else {
-            left = parsePrimary();
-        }
-
-        while (true) {
-             int precedence = SyntaxFacts.getBinaryOperatorPrecedence(getCurrent().getKind());
-
-             if (precedence == 0 || precedence <= parentPrecedence) {
-                 break;
-             }
-
-             SyntaxToken operatorToken = nextToken();
-             ExpressionSyntaxNode right = parseExpression(precedence);
-             left = new BinaryExpressionSyntaxNode(left, operatorToken, right);
+            frame.kind = FrameKind.Unary;
+            frame.operator = nextToken();
+            frame.pending = unaryPrecedence;
+            return null;
         }
 
-        return left;
+        return parsePrimary();
     }
 
     /**
-     * Parses a literal or parenthesised expression and returns it.
+     * Parses a literal or the start of a parenthesised expression or function call.
+     *
+     * @return The operand, or null if a frame was pushed that's waiting on a nested expression.
      */
-    private ExpressionSyntaxNode parsePrimary()
+    private T parsePrimary()
     {
-        SyntaxKind kind = getCurrent().getKind();
+        SyntaxKind kind = getCurrentKind();
 
         switch (kind) {
             case OpenParenthesisToken:
             {
-                SyntaxToken left = nextToken();
-                ExpressionSyntaxNode expression = parseExpression();
-                SyntaxToken right = matchToken(SyntaxKind.CloseParenthesisToken);
-                return new ParenthesisedExpressionSyntax(left, expression, right);
+                Frame<T> frame = push(FrameKind.Parenthesised, 0);
+                frame.operator = nextToken();
+                frame.pending = 0;
+                return null;
             }
             case TrueToken:
             case FalseToken:
             {
                 boolean value = kind == SyntaxKind.TrueToken;
-                return new LiteralExpressionSyntaxNode(nextToken(), value);
+                return _builder.literal(nextToken(), value);
             }
             case KeywordToken:
             {
+                if (peekKind(1) != SyntaxKind.OpenParenthesisToken && _functions.find(getCurrent().getText()).isEmpty()) {
+                    return _builder.name(nextToken());
+                }
+
                 return parseFunction();
             }
             default:
             {
                 SyntaxToken numberToken = matchToken(SyntaxKind.NumberToken);
-                return new LiteralExpressionSyntaxNode(numberToken);
+                return _builder.literal(numberToken);
             }
         }
     }
 
     /**
-     * Generate a {@link FunctionExpressionSyntaxNode}, recursively parse arguments, and return it.
+     * Starts a function call.  Arguments are parsed as nested expressions of the frame that's pushed for the call.
+     *
+     * @return The call, or null if a frame was pushed that's waiting on an argument.
      */
-    private FunctionExpressionSyntaxNode parseFunction()
+    private T parseFunction()
     {
         SyntaxToken functionNameToken = nextToken();
 
-        // Attempt to find the function
-        IFunction function = null;
-        for (IFunction x : _functions) {
-            if (x.getName().equalsIgnoreCase(functionNameToken.getText())) {
-                function = x;
-                break;
-            }
-        }
-
-        if (function == null) {
+        List<IFunction> overloads = _functions.find(functionNameToken.getText());
+        if (overloads.isEmpty()) {
             _diagnostics.addUnregisteredFunction(functionNameToken);
         }
 
-        ArrayList<ExpressionSyntaxNode> arguments = new ArrayList<>();
-        if (getCurrent().getKind() == SyntaxKind.OpenParenthesisToken) {
-            SyntaxToken openArguments = matchToken(SyntaxKind.OpenParenthesisToken);
+        ArrayList<T> arguments = new ArrayList<>();
 
-            while(getCurrent().getKind() != SyntaxKind.CloseParenthesisToken) {
-                if (getCurrent().getKind() == SyntaxKind.EndOfFileToken) {
-                    _diagnostics.addMissingClosingParentheses(new TextSpan(openArguments.getPosition(), getCurrent().getPosition()));
-                    break;
-                }
+        if (getCurrentKind() != SyntaxKind.OpenParenthesisToken) {
+            return _builder.function(functionNameToken, overloads, arguments);
+        }
 
-                arguments.add(parseExpression());
+        Frame<T> frame = push(FrameKind.Arguments, 0);
+        frame.name = functionNameToken;
+        frame.overloads = overloads;
+        frame.arguments = arguments;
+        frame.operator = matchToken(SyntaxKind.OpenParenthesisToken);
+        return continueArguments(frame);
+    }
 
-                if (getCurrent().getKind() == SyntaxKind.CommaToken) {
-                    matchToken(SyntaxKind.CommaToken);
-                }
+    /**
+     * Waits for the next argument of a function call, or completes the call once the arguments are closed.
+     *
+     * @return The call, or null if the frame is waiting on an argument.
+     */
+    private T continueArguments(Frame<T> frame)
+    {
+        if (getCurrentKind() != SyntaxKind.CloseParenthesisToken) {
+            if (getCurrentKind() != SyntaxKind.EndOfFileToken) {
+                frame.pending = 0;
+                return null;
             }
 
-            matchToken(SyntaxKind.CloseParenthesisToken);
+            _diagnostics.addMissingClosingParentheses(new TextSpan(frame.operator.getPosition(), getCurrent().getPosition()));
         }
 
-        return new FunctionExpressionSyntaxNode(functionNameToken, function, arguments);
+        matchToken(SyntaxKind.CloseParenthesisToken);
+        _depth--;
+        return _builder.function(frame.name, frame.overloads, frame.arguments);
+    }
+
+    /**
+     * Pushes a frame for an expression, reusing one that was popped if possible.
+     */
+    private Frame<T> push(FrameKind kind, int precedence)
+    {
+        Frame<T> frame;
+
+        if (_depth < _frames.size()) {
+            frame = _frames.get(_depth);
+        } else {
+            frame = new Frame<>();
+            _frames.add(frame);
+        }
+
+        _depth++;
+        frame.kind = kind;
+        frame.precedence = precedence;
+        frame.pending = -1;
+        frame.left = null;
+        frame.arguments = null;
+        return frame;
+    }
+
+    /**
+     * Gets the frame of the innermost expression that's being parsed.
+     */
+    private Frame<T> top()
+    {
+        return _frames.get(_depth - 1);
+    }
+
+    /**
+     * What an expression on the parser's stack is waiting on.
+     */
+    private enum FrameKind
+    {
+        /**
+         * The left operand of the expression.
+         */
+        Operand,
+
+        /**
+         * The operand of a unary operator.
+         */
+        Unary,
+
+        /**
+         * The right operand of a binary operator.
+         */
+        Binary,
+
+        /**
+         * The expression inside a pair of parentheses.
+         */
+        Parenthesised,
+
+        /**
+         * An argument of a function call.
+         */
+        Arguments,
+    }
+
+    /**
+     * An expression that's been partially parsed.
+     */
+    private static final class Frame<T>
+    {
+        private FrameKind kind;
+
+        /**
+         * The weight of the parent of the expression.
+         */
+        private int precedence;
+
+        /**
+         * The precedence of the nested expression that should be parsed next, or -1 if there isn't one.
+         */
+        private int pending = -1;
+
+        /**
+         * The operator, opening parenthesis, or opening parenthesis of the arguments.
+         */
+        private SyntaxToken operator;
+        private T left;
+        private SyntaxToken name;
+        private List<IFunction> overloads;
+        private ArrayList<T> arguments;
     }
 }
@@ -62,19 +62,113 @@ final class SyntaxFacts
      */
     public static SyntaxKind getKeywordKind(String text)
     {
-        switch (text.toLowerCase()) {
-            case "true":
-                return SyntaxKind.TrueToken;
-            case "false":
-                return SyntaxKind.FalseToken;
-            case "not":
-                return SyntaxKind.ExclamationPointToken;
-            case "and":
-                return SyntaxKind.AndToken;
-            case "or":
-                return SyntaxKind.OrToken;
+        return getKeywordKind(text, 0, text.length());
+    }
+
+    /**
+     * Gets the SyntaxKind that represents a range of the text provided, or returns {@link SyntaxKind#KeywordToken}.
+     * Keywords are matched case-insensitively in place, so nothing is allocated.
+     *
+     * @param text The text to analyze.
+     * @param start The position of the first character of the word.
+     * @param length The number of characters in the word.
+     * @return A {@link SyntaxKind} that represents the token provided.
+     */
+    static SyntaxKind getKeywordKind(CharSequence text, int start, int length)
+    {
+        switch (length) {
+            case 2:
+                if (matches(text, start, "or")) {
+                    return SyntaxKind.OrToken;
+                }
+
+                break;
+            case 3:
+                if (matches(text, start, "and")) {
+                    return SyntaxKind.AndToken;
+                }
+
+                if (matches(text, start, "not")) {
+                    return SyntaxKind.ExclamationPointToken;
+                }
+
+                break;
+            case 4:
+                if (matches(text, start, "true")) {
+                    return SyntaxKind.TrueToken;
+                }
+
+                break;
+            case 5:
+                if (matches(text, start, "false")) {
+                    return SyntaxKind.FalseToken;
+                }
+
+                break;
+        }
+
+        return SyntaxKind.KeywordToken;
+    }
+
+    /**
+     * Gets the text of a token that's always spelled the same way, or null if its text varies.
+     *
+     * @param kind The kind of token.
+     * @return The text of the token.
+     */
+    static String getText(SyntaxKind kind)
+    {
+        switch (kind) {
+            case PlusToken:
+                return "+";
+            case MinusToken:
+                return "-";
+            case StarToken:
+                return "*";
+            case SlashToken:
+                return "/";
+            case OpenParenthesisToken:
+                return "(";
+            case CloseParenthesisToken:
+                return ")";
+            case CommaToken:
+                return ",";
+            case ExclamationPointToken:
+                return "!";
+            case AndToken:
+                return "&&";
+            case OrToken:
+                return "||";
+            case EqualityToken:
+                return "==";
+            case NegatedEqualityToken:
+                return "!=";
+            case GreaterThanToken:
+                return ">";
+            case GreaterThanEqualToken:
+                return ">=";
+            case LessThanToken:
+                return "<";
+            case LessThanEqualToken:
+                return "<=";
+            case EndOfFileToken:
+                return "\0";
             default:
-                return SyntaxKind.KeywordToken;
+                return null;
+        }
+    }
+
+    /**
+     * Returns true if a range of the text matches a lower case keyword, ignoring case.
+     */
+    private static boolean matches(CharSequence text, int start, String keyword)
+    {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != keyword.charAt(i)) {
+                return false;
+            }
         }
+
+        return true;
     }
 }
@@ -37,6 +37,7 @@ public enum SyntaxKind
     // SyntaxNodes
     LiteralExpression,
     FunctionExpression,
+    NameExpression,
     BinaryExpression,
     UnaryExpression,
     ParenthesisedExpression
@@ -0,0 +1,60 @@
+package com.jahndigital.expressive.syntax;
+
+import com.jahndigital.expressive.extensibility.IFunction;
+
+import java.util.List;
+
+/**
+ * Builds a tree of {@link ExpressionSyntaxNode}s.
+ */
+final class SyntaxNodeBuilder implements ExpressionBuilder<ExpressionSyntaxNode>
+{
+    /**
+     * Holds no state, so it's shared by every parser.
+     */
+    static final SyntaxNodeBuilder INSTANCE = new SyntaxNodeBuilder();
+
+    private SyntaxNodeBuilder() { }
+
+    @Override
+    public ExpressionSyntaxNode literal(SyntaxToken token)
+    {
+        return new LiteralExpressionSyntaxNode(token);
+    }
+
+    @Override
+    public ExpressionSyntaxNode literal(SyntaxToken token, Object value)
+    {
+        return new LiteralExpressionSyntaxNode(token, value);
+    }
+
+    @Override
+    public ExpressionSyntaxNode name(SyntaxToken identifier)
+    {
+        return new NameExpressionSyntaxNode(identifier);
+    }
+
+    @Override
+    public ExpressionSyntaxNode function(SyntaxToken name, List<IFunction> overloads, List<ExpressionSyntaxNode> arguments)
+    {
+        return new FunctionExpressionSyntaxNode(name, overloads, arguments);
+    }
+
+    @Override
+    public ExpressionSyntaxNode unary(SyntaxToken operator, ExpressionSyntaxNode operand)
+    {
+        return new UnaryExpressionSyntaxNode(operator, operand);
+    }
+
+    @Override
+    public ExpressionSyntaxNode binary(ExpressionSyntaxNode left, SyntaxToken operator, ExpressionSyntaxNode right)
+    {
+        return new BinaryExpressionSyntaxNode(left, operator, right);
+    }
+
+    @Override
+    public ExpressionSyntaxNode parenthesised(SyntaxToken open, ExpressionSyntaxNode expression, SyntaxToken close)
+    {
+        return new ParenthesisedExpressionSyntax(open, expression, close);
+    }
+}
@@ -1,13 +1,12 @@
 package com.jahndigital.expressive.syntax;
 
 import com.jahndigital.expressive.Diagnostic;
-import com.jahndigital.expressive.DiagnosticLevel;
 import com.jahndigital.expressive.DiagnosticRepository;
+import com.jahndigital.expressive.FunctionRepository;
 import com.jahndigital.expressive.binding.BoundExpression;
 import com.jahndigital.expressive.binding.BoundSyntaxTree;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.extensibility.Schema;
 
 /**
  * Represents the root of a syntax tree, including any diagnostic information resulting from the lexing and parsing of
@@ -20,11 +19,56 @@ public final class SyntaxTree
     private final SyntaxToken _eofToken;
 
     /**
-     * Parse the provided syntax string into a syntax tree.
+     * Parse the provided syntax string into a syntax tree, resolving functions from the default
+     * {@link FunctionRepository}.  Diagnostics are reported to a new {@link DiagnosticRepository}, so trees may be parsed
+     * concurrently.
      */
     public static SyntaxTree parse(String text)
     {
-        return new Parser(text).parse();
+        return parse(text, FunctionRepository.DefaultFunctionRepository);
+    }
+
+    /**
+     * Parse the provided syntax string into a syntax tree, resolving functions from the provided repository.  Diagnostics
+     * are reported to a new {@link DiagnosticRepository}, so trees may be parsed concurrently.
+     *
+     * @param text The expression to parse.
+     * @param functions The repository to use when resolving functions.
+     */
+    public static SyntaxTree parse(String text, FunctionRepository functions)
+    {
+        return parse((CharSequence)text, functions);
+    }
+
+    /**
+     * Parse the provided text into a syntax tree without copying it, resolving functions from the provided repository.
+     * The text must not change while it's being parsed.  Wrap a char[] with {@link java.nio.CharBuffer#wrap(char[])}
+     * to parse it in place.
+     *
+     * @param text The expression to parse.
+     * @param functions The repository to use when resolving functions.
+     */
+    public static SyntaxTree parse(CharSequence text, FunctionRepository functions)
+    {
+        DiagnosticRepository diagnostics = new DiagnosticRepository();
+        Parser<ExpressionSyntaxNode> parser = new Parser<>(text, diagnostics, functions, SyntaxNodeBuilder.INSTANCE);
+        ExpressionSyntaxNode root = parser.parse();
+
+        return new SyntaxTree(diagnostics, root, parser.getEndOfFileToken());
+    }
+
+    /**
+     * Parse the provided text straight into the form produced by a builder, without building a syntax tree.
+     *
+     * @param text The expression to parse.
+     * @param functions The repository to use when resolving functions.
+     * @param diagnostics The repository to report lexer and parser issues to.
+     * @param builder Builds each expression as it's parsed.
+     * @return The root node built by the builder.
+     */
+    public static <T> T parse(CharSequence text, FunctionRepository functions, DiagnosticRepository diagnostics, ExpressionBuilder<T> builder)
+    {
+        return new Parser<>(text, diagnostics, functions, builder).parse();
     }
 
     /**
@@ -74,17 +118,40 @@ public final class SyntaxTree
     }
 
     /**
-     * Binds this syntax tree and returns the {@link BoundExpression}.
+     * Binds this syntax tree without any variables and returns the {@link BoundExpression}.
      *
      * @exception Exception If errors exist before the binding process begins.
      */
     public BoundSyntaxTree bind() throws Exception
     {
-        List<Diagnostic> errors = _diagnostics.asReadOnly().stream().filter(x -> x.getLevel() == DiagnosticLevel.ERROR).collect(Collectors.toList());
-        if (!errors.isEmpty()) {
+        return bind(new Schema());
+    }
+
+    /**
+     * Binds this syntax tree, resolving variables against the provided schema, and returns the {@link BoundExpression}.
+     *
+     * @param schema The variables that may be referenced by name.
+     * @exception Exception If errors exist before the binding process begins.
+     */
+    public BoundSyntaxTree bind(Schema schema) throws Exception
+    {
+        return bind(schema, NumericMode.Exact);
+    }
+
+    /**
+     * Binds this syntax tree, resolving variables against the provided schema and typing numbers with the provided
+     * mode, and returns the {@link BoundExpression}.
+     *
+     * @param schema The variables that may be referenced by name.
+     * @param mode How numeric literals and the operations between them are typed.
+     * @exception Exception If errors exist before the binding process begins.
+     */
+    public BoundSyntaxTree bind(Schema schema, NumericMode mode) throws Exception
+    {
+        if (_diagnostics.hasErrors()) {
             throw new Exception("Cannot bind a syntax tree with lexer or parser errors.");
         }
 
-        return BoundSyntaxTree.bind(this, _diagnostics);
+        return BoundSyntaxTree.bind(this, _diagnostics, schema, mode);
     }
 }
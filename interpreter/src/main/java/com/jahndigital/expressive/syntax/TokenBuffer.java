@@ -0,0 +1,228 @@
+package com.jahndigital.expressive.syntax;
+
+import java.math.BigDecimal;
+
+/**
+ * A small window of upcoming tokens that are pulled from the {@link Lexer} as the parser looks ahead, so that memory
+ * doesn't grow with the length of the text and the rest of the text isn't lexed if parsing stops early.  Tokens are
+ * stored as parallel arrays of their kind, position, and length so that lexing doesn't allocate an object per token.
+ * Numbers are parsed in place into an unscaled value and scale.  A {@link SyntaxToken} is only created for the tokens
+ * the parser actually consumes.
+ */
+final class TokenBuffer
+{
+    /**
+     * The number of tokens that may be looked at from the current token, including it.  A power of two.
+     */
+    static final int LOOKAHEAD = 4;
+
+    private static final int MASK = LOOKAHEAD - 1;
+
+    /**
+     * Scale of an integral number that fits in a long.
+     */
+    static final int INTEGRAL = -1;
+
+    /**
+     * Scale of a number that couldn't be parsed.  Its value is null.
+     */
+    static final int INVALID = -2;
+
+    /**
+     * Scale of an integral number with too many digits to parse in place.
+     */
+    static final int WIDE_INTEGRAL = -3;
+
+    /**
+     * Scale of a decimal number with too many digits to parse in place.
+     */
+    static final int WIDE_DECIMAL = -4;
+
+    private static final SyntaxKind[] KINDS = SyntaxKind.values();
+
+    private final Lexer _lexer;
+    private final CharSequence _text;
+    private final byte[] _kinds = new byte[LOOKAHEAD];
+    private final int[] _starts = new int[LOOKAHEAD];
+    private final int[] _lengths = new int[LOOKAHEAD];
+    private final long[] _numbers = new long[LOOKAHEAD];
+    private final int[] _scales = new int[LOOKAHEAD];
+    private final SyntaxToken[] _tokens = new SyntaxToken[LOOKAHEAD];
+
+    /**
+     * The slot of the current token.
+     */
+    private int _first = 0;
+
+    /**
+     * The number of tokens that have been lexed from the current token onwards.
+     */
+    private int _count = 0;
+
+    /**
+     * True once the EndOfFileToken has been lexed.
+     */
+    private boolean _ended = false;
+
+    /**
+     * Init
+     *
+     * @param lexer The lexer to pull tokens from.
+     * @param text The text that's being lexed.
+     */
+    TokenBuffer(Lexer lexer, CharSequence text)
+    {
+        _lexer = lexer;
+        _text = text;
+    }
+
+    /**
+     * Adds a token that doesn't hold a number.
+     */
+    void add(SyntaxKind kind, int start, int length)
+    {
+        addNumber(kind, start, length, 0, 0);
+    }
+
+    /**
+     * Adds a number token.
+     *
+     * @param start The position of the first digit.
+     * @param length The number of characters in the number.
+     * @param unscaled The digits of the number, ignoring the decimal point.
+     * @param scale The number of digits after the decimal point, or one of the constants of this class.
+     */
+    void addNumber(int start, int length, long unscaled, int scale)
+    {
+        addNumber(SyntaxKind.NumberToken, start, length, unscaled, scale);
+    }
+
+    private void addNumber(SyntaxKind kind, int start, int length, long unscaled, int scale)
+    {
+        int slot = (_first + _count) & MASK;
+
+        _kinds[slot] = (byte)kind.ordinal();
+        _starts[slot] = start;
+        _lengths[slot] = length;
+        _numbers[slot] = unscaled;
+        _scales[slot] = scale;
+        _tokens[slot] = null;
+        _count++;
+        _ended = kind == SyntaxKind.EndOfFileToken;
+    }
+
+    /**
+     * Gets the kind of an upcoming token without creating it.
+     *
+     * @param offset The offset from the current token, which must be less than {@link #LOOKAHEAD}.
+     * @return The kind of the token, or EndOfFileToken if the text ends first.
+     */
+    SyntaxKind getKind(int offset)
+    {
+        return KINDS[_kinds[slotOf(offset)]];
+    }
+
+    /**
+     * Gets an upcoming token, creating it the first time it's requested.
+     *
+     * @param offset The offset from the current token, which must be less than {@link #LOOKAHEAD}.
+     * @return The token, or the EndOfFileToken if the text ends first.
+     */
+    SyntaxToken get(int offset)
+    {
+        int slot = slotOf(offset);
+        SyntaxToken token = _tokens[slot];
+
+        if (token == null) {
+            token = _tokens[slot] = create(slot);
+        }
+
+        return token;
+    }
+
+    /**
+     * Moves to the next token.  The EndOfFileToken stays current once it's reached.
+     */
+    void advance()
+    {
+        slotOf(0);
+
+        if (_count > 1 || !_ended) {
+            _first = (_first + 1) & MASK;
+            _count--;
+        }
+    }
+
+    /**
+     * Lexes tokens until the one at the provided offset is available, and returns its slot.
+     */
+    private int slotOf(int offset)
+    {
+        while (_count <= offset && !_ended) {
+            _lexer.nextToken(this);
+        }
+
+        return (_first + Math.min(offset, _count - 1)) & MASK;
+    }
+
+    private SyntaxToken create(int slot)
+    {
+        SyntaxKind kind = KINDS[_kinds[slot]];
+        int start = _starts[slot];
+        String fixed = SyntaxFacts.getText(kind);
+
+        // Words like "and" are lexed into the same kinds as their symbols, but keep their own text.
+        if (fixed != null && (_lengths[slot] == 0 || !Character.isLetter(_text.charAt(start)))) {
+            return new SyntaxToken(kind, start, fixed, null);
+        }
+
+        String text = _text.subSequence(start, start + _lengths[slot]).toString();
+
+        if (kind == SyntaxKind.NumberToken) {
+            return new SyntaxToken(kind, start, text, getNumber(slot, text));
+        }
+
+        return new SyntaxToken(kind, start, text, text);
+    }
+
+    /**
+     * Gets the value of a number token.  Integral numbers are narrowed to the smallest of {@link Integer}, {@link Long},
+     * and {@link BigDecimal} that holds them, so that small numbers stay on the int fast paths.
+     */
+    private Object getNumber(int slot, String text)
+    {
+        long unscaled = _numbers[slot];
+        int scale = _scales[slot];
+
+        switch (scale) {
+            case INTEGRAL:
+                return narrow(unscaled);
+            case INVALID:
+                return null;
+            case WIDE_INTEGRAL:
+            {
+                // Leading zeros can make a small number too long to parse in place.
+                BigDecimal value = new BigDecimal(text);
+
+                if (value.unscaledValue().bitLength() < 64) {
+                    return narrow(value.longValue());
+                }
+
+                return value;
+            }
+            case WIDE_DECIMAL:
+                return new BigDecimal(text);
+            default:
+                return BigDecimal.valueOf(unscaled, scale);
+        }
+    }
+
+    private static Object narrow(long value)
+    {
+        if (value <= Integer.MAX_VALUE) {
+            return (int)value;
+        }
+
+        return value;
+    }
+}
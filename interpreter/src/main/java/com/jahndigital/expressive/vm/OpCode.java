@@ -0,0 +1,148 @@
+package com.jahndigital.expressive.vm;
+
+/**
+ * The instructions understood by a {@link Program}.  Ints and booleans live on an int stack, longs and doubles live on a
+ * long stack (doubles as their raw bits), and every other value lives on a reference stack; the {@link ProgramCompiler}
+ * knows statically which stack each value is on.  Operands follow the opcode in the instruction stream.
+ */
+public final class OpCode
+{
+    // Constants
+    /** Pushes the following int onto the int stack. */
+    public static final int IConst = 0;
+    /** Pushes the constant at the following index onto the reference stack. */
+    public static final int AConst = 1;
+
+    // Integer math, throwing an ArithmeticException on overflow
+    public static final int IAdd = 2;
+    public static final int ISub = 3;
+    public static final int IMul = 4;
+    public static final int IDiv = 5;
+    public static final int INeg = 6;
+
+    // Decimal math
+    public static final int DAdd = 7;
+    public static final int DSub = 8;
+    public static final int DMul = 9;
+    public static final int DDiv = 10;
+    public static final int DNeg = 11;
+
+    // Comparisons of two ints or booleans, pushing 1 or 0
+    public static final int IEq = 12;
+    public static final int INe = 13;
+    public static final int IGt = 14;
+    public static final int IGe = 15;
+    public static final int ILt = 16;
+    public static final int ILe = 17;
+
+    // Comparisons of two decimals, pushing 1 or 0
+    public static final int DEq = 18;
+    public static final int DNe = 19;
+    public static final int DGt = 20;
+    public static final int DGe = 21;
+    public static final int DLt = 22;
+    public static final int DLe = 23;
+
+    // Logic
+    public static final int Not = 24;
+    /** Jumps to the following offset. */
+    public static final int Jump = 25;
+    /** Pops an int and jumps to the following offset if it is 0. */
+    public static final int JumpIfFalse = 26;
+    /** Pops an int and jumps to the following offset if it is 1. */
+    public static final int JumpIfTrue = 27;
+
+    // Conversions between the stacks
+    public static final int IToDecimal = 28;
+    public static final int BoxInt = 29;
+    public static final int BoxBoolean = 30;
+    public static final int UnboxInt = 31;
+    public static final int UnboxBoolean = 32;
+    public static final int CastDecimal = 33;
+
+    /** Calls the function at the following constant index with the following number of arguments. */
+    public static final int Call = 34;
+    /** Pops the result off of the reference stack and returns it. */
+    public static final int Return = 35;
+
+    // Shared calls
+    /**
+     * If the slot at the following index holds a result, pushes it onto the reference stack and jumps to the second
+     * operand.
+     */
+    public static final int LoadShared = 36;
+    /** Copies the top of the reference stack into the slot at the following index. */
+    public static final int StoreShared = 37;
+
+    // Variables
+    /** Pushes the value of the variable whose key is at the following constant index onto the reference stack. */
+    public static final int Load = 38;
+
+    // Long and floating math.  Doubles are prefixed with F, since D is taken by decimals.  Long math throws an
+    // ArithmeticException on overflow.
+    /** Pushes the long whose high and low halves are the following two operands onto the long stack. */
+    public static final int LConst = 39;
+    public static final int LAdd = 40;
+    public static final int LSub = 41;
+    public static final int LMul = 42;
+    public static final int LDiv = 43;
+    public static final int LNeg = 44;
+    public static final int FAdd = 45;
+    public static final int FSub = 46;
+    public static final int FMul = 47;
+    public static final int FDiv = 48;
+    public static final int FNeg = 49;
+
+    // Comparisons of two longs, pushing 1 or 0
+    public static final int LEq = 50;
+    public static final int LNe = 51;
+    public static final int LGt = 52;
+    public static final int LGe = 53;
+    public static final int LLt = 54;
+    public static final int LLe = 55;
+
+    // Comparisons of two doubles, pushing 1 or 0.  Any comparison with NaN is false, except FNe.
+    public static final int FEq = 56;
+    public static final int FNe = 57;
+    public static final int FGt = 58;
+    public static final int FGe = 59;
+    public static final int FLt = 60;
+    public static final int FLe = 61;
+
+    // Conversions to and from the long stack
+    public static final int LToDouble = 62;
+    public static final int BoxLong = 63;
+    public static final int BoxDouble = 64;
+    public static final int UnboxLong = 65;
+    public static final int UnboxDouble = 66;
+    public static final int IToLong = 67;
+    public static final int LToDecimal = 68;
+    public static final int IToDouble = 69;
+
+    private OpCode() { }
+
+    /**
+     * Gets the number of operands that follow the provided opcode in the instruction stream.
+     *
+     * @param opCode The instruction.
+     */
+    public static int getOperandCount(int opCode)
+    {
+        switch (opCode) {
+            case IConst:
+            case AConst:
+            case Jump:
+            case JumpIfFalse:
+            case JumpIfTrue:
+            case StoreShared:
+            case Load:
+                return 1;
+            case Call:
+            case LoadShared:
+            case LConst:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+}
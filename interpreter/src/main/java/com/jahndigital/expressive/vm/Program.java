@@ -0,0 +1,770 @@
+package com.jahndigital.expressive.vm;
+
+import com.jahndigital.expressive.Arithmetic;
+import com.jahndigital.expressive.CompiledExpression;
+import com.jahndigital.expressive.FunctionExecutionFailedException;
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.IFunction;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An expression lowered into a flat instruction stream and a constant pool.  Evaluation runs a single dispatch loop
+ * over the instructions with an operand stack, so it never recurses regardless of how deep the expression is.
+ *
+ * Integer and long math is checked for overflow.  An evaluation that overflows is run again by a second loop over the
+ * same instructions that keeps every value boxed, promoting results that don't fit to a {@link Long} or a
+ * {@link BigDecimal} the way {@link com.jahndigital.expressive.Evaluator#evaluateWidened(Context)} does.  The second
+ * loop only needs the instructions, so programs that were loaded without their tree promote the same way.
+ *
+ * Programs are immutable and may be evaluated from any number of threads at once.
+ */
+public final class Program implements CompiledExpression
+{
+    private final int[] _code;
+    private final Object[] _constants;
+    private final int _maxIntStack;
+    private final int _maxReferenceStack;
+    private final int _maxLongStack;
+    private final int _sharedSlots;
+
+    /**
+     * Init
+     *
+     * @param code The instruction stream.  See {@link OpCode}.
+     * @param constants The literals, {@link IFunction} objects, and {@link ContextKey} objects referenced by the
+     *                  instructions.
+     * @param maxIntStack The maximum depth of the int stack.
+     * @param maxReferenceStack The maximum depth of the reference stack.
+     * @param maxLongStack The maximum depth of the long stack.
+     * @param sharedSlots The number of slots used to hold the results of shared calls.
+     */
+    Program(int[] code, Object[] constants, int maxIntStack, int maxReferenceStack, int maxLongStack, int sharedSlots)
+    {
+        _code = code.clone();
+        _constants = constants.clone();
+        _maxIntStack = maxIntStack;
+        _maxReferenceStack = maxReferenceStack;
+        _maxLongStack = maxLongStack;
+        _sharedSlots = sharedSlots;
+    }
+
+    /**
+     * Gets a copy of the instruction stream.
+     */
+    public int[] getCode()
+    {
+        return _code.clone();
+    }
+
+    /**
+     * Gets a read only list of the constants referenced by the instruction stream.
+     */
+    public List<Object> getConstants()
+    {
+        return Collections.unmodifiableList(Arrays.asList(_constants));
+    }
+
+    /**
+     * Gets the maximum depth of the int stack.
+     */
+    public int getMaxIntStack()
+    {
+        return _maxIntStack;
+    }
+
+    /**
+     * Gets the maximum depth of the reference stack.
+     */
+    public int getMaxReferenceStack()
+    {
+        return _maxReferenceStack;
+    }
+
+    /**
+     * Gets the maximum depth of the long stack.
+     */
+    public int getMaxLongStack()
+    {
+        return _maxLongStack;
+    }
+
+    /**
+     * Gets the number of slots used to hold the results of shared calls.
+     */
+    public int getSharedSlots()
+    {
+        return _sharedSlots;
+    }
+
+    @Override
+    public Object evaluate(Context context) throws Exception
+    {
+        try {
+            return evaluatePrimitive(context);
+        } catch (ArithmeticException e) {
+            return evaluateWidened(context);
+        }
+    }
+
+    /**
+     * Runs the instructions on primitive stacks.
+     *
+     * @throws ArithmeticException If integer or long math overflows.
+     */
+    private Object evaluatePrimitive(Context context) throws Exception
+    {
+        final int[] code = _code;
+        final Object[] constants = _constants;
+        final int[] ints = new int[_maxIntStack];
+        final Object[] references = new Object[_maxReferenceStack];
+        final long[] longs = _maxLongStack == 0 ? null : new long[_maxLongStack];
+        final Object[] shared = _sharedSlots == 0 ? null : new Object[_sharedSlots];
+        int intTop = 0;
+        int referenceTop = 0;
+        int longTop = 0;
+        int pc = 0;
+
+        while (true) {
+            int opCode = code[pc++];
+
+            switch (opCode) {
+                case OpCode.IConst:
+                    ints[intTop++] = code[pc++];
+                    break;
+                case OpCode.AConst:
+                    references[referenceTop++] = constants[code[pc++]];
+                    break;
+
+                // Integer math
+                case OpCode.IAdd:
+                    intTop--;
+                    ints[intTop - 1] = Math.addExact(ints[intTop - 1], ints[intTop]);
+                    break;
+                case OpCode.ISub:
+                    intTop--;
+                    ints[intTop - 1] = Math.subtractExact(ints[intTop - 1], ints[intTop]);
+                    break;
+                case OpCode.IMul:
+                    intTop--;
+                    ints[intTop - 1] = Math.multiplyExact(ints[intTop - 1], ints[intTop]);
+                    break;
+                case OpCode.IDiv:
+                    intTop--;
+                    ints[intTop - 1] = Arithmetic.divide(ints[intTop - 1], ints[intTop]);
+                    break;
+                case OpCode.INeg:
+                    ints[intTop - 1] = Math.negateExact(ints[intTop - 1]);
+                    break;
+
+                // Decimal math
+                case OpCode.DAdd:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).add((BigDecimal)references[referenceTop]);
+                    break;
+                case OpCode.DSub:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).subtract((BigDecimal)references[referenceTop]);
+                    break;
+                case OpCode.DMul:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).multiply((BigDecimal)references[referenceTop]);
+                    break;
+                case OpCode.DDiv:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).divide((BigDecimal)references[referenceTop], RoundingMode.HALF_EVEN);
+                    break;
+                case OpCode.DNeg:
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).negate();
+                    break;
+
+                // Integer comparisons
+                case OpCode.IEq:
+                    intTop--;
+                    ints[intTop - 1] = ints[intTop - 1] == ints[intTop] ? 1 : 0;
+                    break;
+                case OpCode.INe:
+                    intTop--;
+                    ints[intTop - 1] = ints[intTop - 1] != ints[intTop] ? 1 : 0;
+                    break;
+                case OpCode.IGt:
+                    intTop--;
+                    ints[intTop - 1] = ints[intTop - 1] > ints[intTop] ? 1 : 0;
+                    break;
+                case OpCode.IGe:
+                    intTop--;
+                    ints[intTop - 1] = ints[intTop - 1] >= ints[intTop] ? 1 : 0;
+                    break;
+                case OpCode.ILt:
+                    intTop--;
+                    ints[intTop - 1] = ints[intTop - 1] < ints[intTop] ? 1 : 0;
+                    break;
+                case OpCode.ILe:
+                    intTop--;
+                    ints[intTop - 1] = ints[intTop - 1] <= ints[intTop] ? 1 : 0;
+                    break;
+
+                // Decimal comparisons
+                case OpCode.DEq:
+                case OpCode.DNe:
+                case OpCode.DGt:
+                case OpCode.DGe:
+                case OpCode.DLt:
+                case OpCode.DLe: {
+                    referenceTop -= 2;
+                    int check = ((BigDecimal)references[referenceTop]).compareTo((BigDecimal)references[referenceTop + 1]);
+                    references[referenceTop] = null;
+                    references[referenceTop + 1] = null;
+                    ints[intTop++] = _test(opCode, check) ? 1 : 0;
+                    break;
+                }
+
+                // Long math
+                case OpCode.LConst:
+                    longs[longTop++] = ((long)code[pc] << 32) | (code[pc + 1] & 0xFFFFFFFFL);
+                    pc += 2;
+                    break;
+                case OpCode.LAdd:
+                    longTop--;
+                    longs[longTop - 1] = Math.addExact(longs[longTop - 1], longs[longTop]);
+                    break;
+                case OpCode.LSub:
+                    longTop--;
+                    longs[longTop - 1] = Math.subtractExact(longs[longTop - 1], longs[longTop]);
+                    break;
+                case OpCode.LMul:
+                    longTop--;
+                    longs[longTop - 1] = Math.multiplyExact(longs[longTop - 1], longs[longTop]);
+                    break;
+                case OpCode.LDiv:
+                    longTop--;
+                    longs[longTop - 1] = Arithmetic.divide(longs[longTop - 1], longs[longTop]);
+                    break;
+                case OpCode.LNeg:
+                    longs[longTop - 1] = Math.negateExact(longs[longTop - 1]);
+                    break;
+
+                // Double math, on the raw bits of the doubles
+                case OpCode.FAdd:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(Double.longBitsToDouble(longs[longTop - 1]) + Double.longBitsToDouble(longs[longTop]));
+                    break;
+                case OpCode.FSub:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(Double.longBitsToDouble(longs[longTop - 1]) - Double.longBitsToDouble(longs[longTop]));
+                    break;
+                case OpCode.FMul:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(Double.longBitsToDouble(longs[longTop - 1]) * Double.longBitsToDouble(longs[longTop]));
+                    break;
+                case OpCode.FDiv:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(Double.longBitsToDouble(longs[longTop - 1]) / Double.longBitsToDouble(longs[longTop]));
+                    break;
+                case OpCode.FNeg:
+                    longs[longTop - 1] ^= Long.MIN_VALUE;
+                    break;
+
+                // Long comparisons
+                case OpCode.LEq:
+                    longTop -= 2;
+                    ints[intTop++] = longs[longTop] == longs[longTop + 1] ? 1 : 0;
+                    break;
+                case OpCode.LNe:
+                    longTop -= 2;
+                    ints[intTop++] = longs[longTop] != longs[longTop + 1] ? 1 : 0;
+                    break;
+                case OpCode.LGt:
+                    longTop -= 2;
+                    ints[intTop++] = longs[longTop] > longs[longTop + 1] ? 1 : 0;
+                    break;
+                case OpCode.LGe:
+                    longTop -= 2;
+                    ints[intTop++] = longs[longTop] >= longs[longTop + 1] ? 1 : 0;
+                    break;
+                case OpCode.LLt:
+                    longTop -= 2;
+                    ints[intTop++] = longs[longTop] < longs[longTop + 1] ? 1 : 0;
+                    break;
+                case OpCode.LLe:
+                    longTop -= 2;
+                    ints[intTop++] = longs[longTop] <= longs[longTop + 1] ? 1 : 0;
+                    break;
+
+                // Double comparisons
+                case OpCode.FEq:
+                    longTop -= 2;
+                    ints[intTop++] = Double.longBitsToDouble(longs[longTop]) == Double.longBitsToDouble(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FNe:
+                    longTop -= 2;
+                    ints[intTop++] = Double.longBitsToDouble(longs[longTop]) != Double.longBitsToDouble(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FGt:
+                    longTop -= 2;
+                    ints[intTop++] = Double.longBitsToDouble(longs[longTop]) > Double.longBitsToDouble(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FGe:
+                    longTop -= 2;
+                    ints[intTop++] = Double.longBitsToDouble(longs[longTop]) >= Double.longBitsToDouble(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FLt:
+                    longTop -= 2;
+                    ints[intTop++] = Double.longBitsToDouble(longs[longTop]) < Double.longBitsToDouble(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FLe:
+                    longTop -= 2;
+                    ints[intTop++] = Double.longBitsToDouble(longs[longTop]) <= Double.longBitsToDouble(longs[longTop + 1]) ? 1 : 0;
+                    break;
+
+                // Logic
+                case OpCode.Not:
+                    ints[intTop - 1] ^= 1;
+                    break;
+                case OpCode.Jump:
+                    pc = code[pc];
+                    break;
+                case OpCode.JumpIfFalse:
+                    pc = ints[--intTop] == 0 ? code[pc] : pc + 1;
+                    break;
+                case OpCode.JumpIfTrue:
+                    pc = ints[--intTop] != 0 ? code[pc] : pc + 1;
+                    break;
+
+                // Conversions
+                case OpCode.IToDecimal:
+                    references[referenceTop++] = BigDecimal.valueOf(ints[--intTop]);
+                    break;
+                case OpCode.BoxInt:
+                    references[referenceTop++] = ints[--intTop];
+                    break;
+                case OpCode.BoxBoolean:
+                    references[referenceTop++] = ints[--intTop] != 0;
+                    break;
+                case OpCode.UnboxInt:
+                    ints[intTop++] = (int)references[--referenceTop];
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.UnboxBoolean:
+                    ints[intTop++] = (boolean)references[--referenceTop] ? 1 : 0;
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.CastDecimal:
+                    references[referenceTop - 1] = (BigDecimal)references[referenceTop - 1];
+                    break;
+                case OpCode.LToDouble:
+                    longs[longTop - 1] = Double.doubleToRawLongBits(longs[longTop - 1]);
+                    break;
+                case OpCode.BoxLong:
+                    references[referenceTop++] = longs[--longTop];
+                    break;
+                case OpCode.BoxDouble:
+                    references[referenceTop++] = Double.longBitsToDouble(longs[--longTop]);
+                    break;
+                case OpCode.UnboxLong:
+                    longs[longTop++] = (long)references[--referenceTop];
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.UnboxDouble:
+                    longs[longTop++] = Double.doubleToRawLongBits((double)references[--referenceTop]);
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.IToLong:
+                    longs[longTop++] = ints[--intTop];
+                    break;
+                case OpCode.LToDecimal:
+                    references[referenceTop++] = BigDecimal.valueOf(longs[--longTop]);
+                    break;
+                case OpCode.IToDouble:
+                    longs[longTop++] = Double.doubleToRawLongBits(ints[--intTop]);
+                    break;
+
+                case OpCode.Call: {
+                    IFunction function = (IFunction)constants[code[pc++]];
+                    int argumentCount = code[pc++];
+                    referenceTop -= argumentCount;
+
+                    List<Object> args = new ArrayList<>(argumentCount);
+                    for (int i = 0; i < argumentCount; i++) {
+                        args.add(references[referenceTop + i]);
+                        references[referenceTop + i] = null;
+                    }
+
+                    try {
+                        references[referenceTop++] = function.execute(args, context);
+                    } catch (Exception e) {
+                        throw new FunctionExecutionFailedException(e, function, args, context.asMap());
+                    }
+
+                    break;
+                }
+                // A null result is executed again, which is safe because shared calls are deterministic.
+                case OpCode.LoadShared: {
+                    Object result = shared[code[pc++]];
+
+                    if (result != null) {
+                        references[referenceTop++] = result;
+                        pc = code[pc];
+                    } else {
+                        pc++;
+                    }
+
+                    break;
+                }
+                case OpCode.StoreShared:
+                    shared[code[pc++]] = references[referenceTop - 1];
+                    break;
+                case OpCode.Load:
+                    references[referenceTop++] = context.get((ContextKey<?>)constants[code[pc++]]);
+                    break;
+                case OpCode.Return:
+                    return references[--referenceTop];
+                default:
+                    throw new IllegalStateException(String.format("Invalid opcode %d at offset %d.", opCode, pc - 1));
+            }
+        }
+    }
+
+    /**
+     * Runs the instructions on boxed stacks, promoting integer and long results that overflow.  Ints and booleans are
+     * {@link Integer}s unless promoted, longs are {@link Long}s unless promoted, and doubles are the {@link Long} raw
+     * bits of the double, as they are on the primitive stacks.
+     */
+    private Object evaluateWidened(Context context) throws Exception
+    {
+        final int[] code = _code;
+        final Object[] constants = _constants;
+        final Object[] ints = new Object[_maxIntStack];
+        final Object[] references = new Object[_maxReferenceStack];
+        final Object[] longs = new Object[_maxLongStack];
+        final Object[] shared = _sharedSlots == 0 ? null : new Object[_sharedSlots];
+        int intTop = 0;
+        int referenceTop = 0;
+        int longTop = 0;
+        int pc = 0;
+
+        while (true) {
+            int opCode = code[pc++];
+
+            switch (opCode) {
+                case OpCode.IConst:
+                    ints[intTop++] = code[pc++];
+                    break;
+                case OpCode.AConst:
+                    references[referenceTop++] = constants[code[pc++]];
+                    break;
+
+                // Integer math
+                case OpCode.IAdd:
+                    intTop--;
+                    ints[intTop - 1] = Arithmetic.narrow(Arithmetic.add(ints[intTop - 1], ints[intTop]), Integer.class);
+                    break;
+                case OpCode.ISub:
+                    intTop--;
+                    ints[intTop - 1] = Arithmetic.narrow(Arithmetic.subtract(ints[intTop - 1], ints[intTop]), Integer.class);
+                    break;
+                case OpCode.IMul:
+                    intTop--;
+                    ints[intTop - 1] = Arithmetic.narrow(Arithmetic.multiply(ints[intTop - 1], ints[intTop]), Integer.class);
+                    break;
+                case OpCode.IDiv:
+                    intTop--;
+                    ints[intTop - 1] = Arithmetic.narrow(Arithmetic.divide(ints[intTop - 1], ints[intTop]), Integer.class);
+                    break;
+                case OpCode.INeg:
+                    ints[intTop - 1] = Arithmetic.narrow(Arithmetic.negate(ints[intTop - 1]), Integer.class);
+                    break;
+
+                // Decimal math
+                case OpCode.DAdd:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).add((BigDecimal)references[referenceTop]);
+                    break;
+                case OpCode.DSub:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).subtract((BigDecimal)references[referenceTop]);
+                    break;
+                case OpCode.DMul:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).multiply((BigDecimal)references[referenceTop]);
+                    break;
+                case OpCode.DDiv:
+                    referenceTop--;
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).divide((BigDecimal)references[referenceTop], RoundingMode.HALF_EVEN);
+                    break;
+                case OpCode.DNeg:
+                    references[referenceTop - 1] = ((BigDecimal)references[referenceTop - 1]).negate();
+                    break;
+
+                // Integer, decimal, and long comparisons.  Each group is in the same order, so the integer and long
+                // opcodes are mapped onto the decimal ones.
+                case OpCode.IEq:
+                case OpCode.INe:
+                case OpCode.IGt:
+                case OpCode.IGe:
+                case OpCode.ILt:
+                case OpCode.ILe:
+                    intTop--;
+                    ints[intTop - 1] = _test(opCode - OpCode.IEq + OpCode.DEq, Arithmetic.compare(ints[intTop - 1], ints[intTop])) ? 1 : 0;
+                    break;
+                case OpCode.DEq:
+                case OpCode.DNe:
+                case OpCode.DGt:
+                case OpCode.DGe:
+                case OpCode.DLt:
+                case OpCode.DLe: {
+                    referenceTop -= 2;
+                    int check = Arithmetic.compare(references[referenceTop], references[referenceTop + 1]);
+                    references[referenceTop] = null;
+                    references[referenceTop + 1] = null;
+                    ints[intTop++] = _test(opCode, check) ? 1 : 0;
+                    break;
+                }
+                case OpCode.LEq:
+                case OpCode.LNe:
+                case OpCode.LGt:
+                case OpCode.LGe:
+                case OpCode.LLt:
+                case OpCode.LLe:
+                    longTop -= 2;
+                    ints[intTop++] = _test(opCode - OpCode.LEq + OpCode.DEq, Arithmetic.compare(longs[longTop], longs[longTop + 1])) ? 1 : 0;
+                    break;
+
+                // Long math
+                case OpCode.LConst:
+                    longs[longTop++] = ((long)code[pc] << 32) | (code[pc + 1] & 0xFFFFFFFFL);
+                    pc += 2;
+                    break;
+                case OpCode.LAdd:
+                    longTop--;
+                    longs[longTop - 1] = Arithmetic.narrow(Arithmetic.add(longs[longTop - 1], longs[longTop]), Long.class);
+                    break;
+                case OpCode.LSub:
+                    longTop--;
+                    longs[longTop - 1] = Arithmetic.narrow(Arithmetic.subtract(longs[longTop - 1], longs[longTop]), Long.class);
+                    break;
+                case OpCode.LMul:
+                    longTop--;
+                    longs[longTop - 1] = Arithmetic.narrow(Arithmetic.multiply(longs[longTop - 1], longs[longTop]), Long.class);
+                    break;
+                case OpCode.LDiv:
+                    longTop--;
+                    longs[longTop - 1] = Arithmetic.narrow(Arithmetic.divide(longs[longTop - 1], longs[longTop]), Long.class);
+                    break;
+                case OpCode.LNeg:
+                    longs[longTop - 1] = Arithmetic.narrow(Arithmetic.negate(longs[longTop - 1]), Long.class);
+                    break;
+
+                // Double math, on the raw bits of the doubles
+                case OpCode.FAdd:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(_double(longs[longTop - 1]) + _double(longs[longTop]));
+                    break;
+                case OpCode.FSub:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(_double(longs[longTop - 1]) - _double(longs[longTop]));
+                    break;
+                case OpCode.FMul:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(_double(longs[longTop - 1]) * _double(longs[longTop]));
+                    break;
+                case OpCode.FDiv:
+                    longTop--;
+                    longs[longTop - 1] = Double.doubleToRawLongBits(_double(longs[longTop - 1]) / _double(longs[longTop]));
+                    break;
+                case OpCode.FNeg:
+                    longs[longTop - 1] = (long)longs[longTop - 1] ^ Long.MIN_VALUE;
+                    break;
+
+                // Double comparisons
+                case OpCode.FEq:
+                    longTop -= 2;
+                    ints[intTop++] = _double(longs[longTop]) == _double(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FNe:
+                    longTop -= 2;
+                    ints[intTop++] = _double(longs[longTop]) != _double(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FGt:
+                    longTop -= 2;
+                    ints[intTop++] = _double(longs[longTop]) > _double(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FGe:
+                    longTop -= 2;
+                    ints[intTop++] = _double(longs[longTop]) >= _double(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FLt:
+                    longTop -= 2;
+                    ints[intTop++] = _double(longs[longTop]) < _double(longs[longTop + 1]) ? 1 : 0;
+                    break;
+                case OpCode.FLe:
+                    longTop -= 2;
+                    ints[intTop++] = _double(longs[longTop]) <= _double(longs[longTop + 1]) ? 1 : 0;
+                    break;
+
+                // Logic
+                case OpCode.Not:
+                    ints[intTop - 1] = (int)ints[intTop - 1] ^ 1;
+                    break;
+                case OpCode.Jump:
+                    pc = code[pc];
+                    break;
+                case OpCode.JumpIfFalse:
+                    pc = (int)ints[--intTop] == 0 ? code[pc] : pc + 1;
+                    break;
+                case OpCode.JumpIfTrue:
+                    pc = (int)ints[--intTop] != 0 ? code[pc] : pc + 1;
+                    break;
+
+                // Conversions
+                case OpCode.IToDecimal:
+                    references[referenceTop++] = Arithmetic.toDecimal(ints[--intTop]);
+                    break;
+                case OpCode.BoxInt:
+                    references[referenceTop++] = ints[--intTop];
+                    break;
+                case OpCode.BoxBoolean:
+                    references[referenceTop++] = (int)ints[--intTop] != 0;
+                    break;
+                case OpCode.UnboxInt:
+                    ints[intTop++] = references[--referenceTop];
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.UnboxBoolean:
+                    ints[intTop++] = (boolean)references[--referenceTop] ? 1 : 0;
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.CastDecimal:
+                    references[referenceTop - 1] = (BigDecimal)references[referenceTop - 1];
+                    break;
+                case OpCode.LToDouble:
+                    longs[longTop - 1] = Double.doubleToRawLongBits(((Number)longs[longTop - 1]).doubleValue());
+                    break;
+                case OpCode.BoxLong:
+                    references[referenceTop++] = longs[--longTop];
+                    break;
+                case OpCode.BoxDouble:
+                    references[referenceTop++] = _double(longs[--longTop]);
+                    break;
+                case OpCode.UnboxLong:
+                    longs[longTop++] = references[--referenceTop];
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.UnboxDouble:
+                    longs[longTop++] = Double.doubleToRawLongBits((double)references[--referenceTop]);
+                    references[referenceTop] = null;
+                    break;
+                case OpCode.IToLong:
+                    longs[longTop++] = Arithmetic.narrow(ints[--intTop], Long.class);
+                    break;
+                case OpCode.LToDecimal:
+                    references[referenceTop++] = Arithmetic.toDecimal(longs[--longTop]);
+                    break;
+                case OpCode.IToDouble:
+                    longs[longTop++] = Double.doubleToRawLongBits(((Number)ints[--intTop]).doubleValue());
+                    break;
+
+                case OpCode.Call: {
+                    IFunction function = (IFunction)constants[code[pc++]];
+                    int argumentCount = code[pc++];
+                    referenceTop -= argumentCount;
+
+                    List<Object> args = new ArrayList<>(argumentCount);
+                    for (int i = 0; i < argumentCount; i++) {
+                        args.add(_argument(function, i, references[referenceTop + i]));
+                        references[referenceTop + i] = null;
+                    }
+
+                    try {
+                        references[referenceTop++] = function.execute(args, context);
+                    } catch (Exception e) {
+                        throw new FunctionExecutionFailedException(e, function, args, context.asMap());
+                    }
+
+                    break;
+                }
+                case OpCode.LoadShared: {
+                    Object result = shared[code[pc++]];
+
+                    if (result != null) {
+                        references[referenceTop++] = result;
+                        pc = code[pc];
+                    } else {
+                        pc++;
+                    }
+
+                    break;
+                }
+                case OpCode.StoreShared:
+                    shared[code[pc++]] = references[referenceTop - 1];
+                    break;
+                case OpCode.Load:
+                    references[referenceTop++] = context.get((ContextKey<?>)constants[code[pc++]]);
+                    break;
+                case OpCode.Return:
+                    return references[--referenceTop];
+                default:
+                    throw new IllegalStateException(String.format("Invalid opcode %d at offset %d.", opCode, pc - 1));
+            }
+        }
+    }
+
+    /**
+     * Gets the double whose raw bits are on the boxed long stack.
+     */
+    private static double _double(Object bits)
+    {
+        return Double.longBitsToDouble((long)bits);
+    }
+
+    /**
+     * Converts an argument that may have been promoted back to a type its parameter accepts.  Programs don't keep the
+     * bound types of their arguments, so a promoted value is narrowed to the first integral type the parameter
+     * declares.
+     *
+     * @throws ArithmeticException If the value doesn't fit in any type the parameter accepts.
+     */
+    private static Object _argument(IFunction function, int index, Object value)
+    {
+        if (!(value instanceof Long || value instanceof BigDecimal)) {
+            return value;
+        }
+
+        Collection<Type> types = function.getArguments().get(index).getTypes();
+
+        if (types.contains(value.getClass())) {
+            return value;
+        }
+
+        return Arithmetic.exact(value, types.contains(Integer.class) ? Integer.class : Long.class);
+    }
+
+    /**
+     * Applies a decimal comparison opcode to the result of {@link BigDecimal#compareTo(BigDecimal)}.
+     */
+    private static boolean _test(int opCode, int check)
+    {
+        switch (opCode) {
+            case OpCode.DEq:
+                return check == 0;
+            case OpCode.DNe:
+                return check != 0;
+            case OpCode.DGt:
+                return check > 0;
+            case OpCode.DGe:
+                return check >= 0;
+            case OpCode.DLt:
+                return check < 0;
+            default:
+                return check <= 0;
+        }
+    }
+}
@@ -0,0 +1,795 @@
+package com.jahndigital.expressive.vm;
+
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.IFunction;
+import com.jahndigital.expressive.extensibility.Schema;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A file of named {@link Program}s that were compiled ahead of time, so they can be loaded without lexing, parsing, or
+ * binding their source again.
+ *
+ * Opening a catalog memory maps the file and only reads its index.  Each program is decoded the first time it's
+ * requested, at which point its functions are resolved from a {@link FunctionRepository} by name and signature, and
+ * its variables are resolved from a {@link Schema} by name and type.  A catalog may be used from any number of threads
+ * at once; if two threads request the same program at the same time, both may decode it but only one is kept.
+ *
+ * The file starts with a header of the magic number, the version of the format, the number of programs, and the
+ * offset of the index.  The programs follow, and the index of their names and offsets comes last.  Instructions,
+ * lengths, and counts are written as variable length ints, and every other number is big-endian.
+ */
+public final class ProgramCatalog
+{
+    /**
+     * "EXPC"
+     */
+    private static final int MAGIC = 0x45585043;
+
+    /**
+     * Incremented whenever the format changes.  Files with a different version are rejected.
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    // The tags that precede each constant
+    private static final byte NULL = 0;
+    private static final byte INTEGER = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte DECIMAL = 5;
+    private static final byte STRING = 6;
+    private static final byte FUNCTION = 7;
+    private static final byte VARIABLE = 8;
+
+    private final ByteBuffer _buffer;
+    private final FunctionRepository _functions;
+    private final Schema _schema;
+    private final Map<String, Integer> _indexes;
+    private final int[] _offsets;
+    private final AtomicReferenceArray<Program> _programs;
+
+    /**
+     * The functions that were already resolved, keyed by their name and signature hash, since most programs in a
+     * catalog call the same few functions.
+     */
+    private final ConcurrentHashMap<String, IFunction> _resolved = new ConcurrentHashMap<>();
+
+    /**
+     * Init
+     *
+     * @param buffer The contents of the file.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables the programs may reference.
+     */
+    private ProgramCatalog(ByteBuffer buffer, FunctionRepository functions, Schema schema) throws IOException
+    {
+        _buffer = buffer;
+        _functions = functions;
+        _schema = schema;
+
+        try {
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("The file is not a program catalog.");
+            }
+
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException(
+                    String.format("Program catalog version %d is not supported, expected version %d.", version, VERSION)
+                );
+            }
+
+            ByteBuffer index = at(buffer.getInt(12));
+            int count = checkLength(index, buffer.getInt(8), 5);
+
+            _indexes = new HashMap<>(count * 2);
+            _offsets = new int[count];
+            _programs = new AtomicReferenceArray<>(count);
+
+            for (int i = 0; i < count; i++) {
+                String name = readString(index);
+                _offsets[i] = index.getInt();
+
+                if (_offsets[i] < HEADER_SIZE || _offsets[i] >= buffer.limit() || _indexes.put(name, i) != null) {
+                    throw new IOException(String.format("The index entry of program %s is invalid.", name));
+                }
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("The program catalog is truncated or corrupt.", e);
+        }
+    }
+
+    /**
+     * Opens a catalog by memory mapping the provided file.  The file may be closed and the mapping outlives it, but it
+     * must not be modified while the catalog is in use.
+     *
+     * @param path The file written by {@link #write(Path, Map)}.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables the programs may reference.  Every variable must be declared before a program that
+     *               references it is requested.
+     * @throws IOException If the file could not be read or isn't a catalog of a supported version.
+     */
+    public static ProgramCatalog open(Path path, FunctionRepository functions, Schema schema) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), functions, schema);
+        }
+    }
+
+    /**
+     * Opens a catalog that's already in memory.
+     *
+     * @param buffer The contents of a file written by {@link #write(Path, Map)}.  The buffer is read from its start
+     *               to its limit and must not be modified while the catalog is in use.
+     * @param functions The repository to resolve functions from.
+     * @param schema The variables the programs may reference.
+     * @throws IOException If the buffer isn't a catalog of a supported version.
+     */
+    public static ProgramCatalog open(ByteBuffer buffer, FunctionRepository functions, Schema schema) throws IOException
+    {
+        return new ProgramCatalog(buffer.slice(), functions, schema);
+    }
+
+    /**
+     * Writes a catalog of the provided programs, replacing the file if it exists.
+     *
+     * @param path The file to write.
+     * @param programs The programs keyed by the names they're requested with.
+     * @throws IOException If the file could not be written, or a program holds a constant that can't be written.
+     */
+    public static void write(Path path, Map<String, Program> programs) throws IOException
+    {
+        Files.write(path, toBytes(programs));
+    }
+
+    /**
+     * Encodes a catalog of the provided programs.
+     *
+     * @param programs The programs keyed by the names they're requested with.
+     * @return The contents of the file.
+     * @throws IOException If a program holds a constant that can't be written.
+     */
+    public static byte[] toBytes(Map<String, Program> programs) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        LinkedHashMap<String, Integer> offsets = new LinkedHashMap<>();
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(programs.size());
+        // The offset of the index, which is filled in once the programs have been written.
+        out.writeInt(0);
+
+        for (Map.Entry<String, Program> entry : programs.entrySet()) {
+            offsets.put(entry.getKey(), out.size());
+            writeProgram(out, entry.getKey(), entry.getValue());
+        }
+
+        int index = out.size();
+        for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("The program catalog is too large to be written as a single file.");
+        }
+
+        out.flush();
+        byte[] result = bytes.toByteArray();
+        ByteBuffer.wrap(result).putInt(12, index);
+        return result;
+    }
+
+    /**
+     * Gets the number of programs in the catalog.
+     */
+    public int size()
+    {
+        return _offsets.length;
+    }
+
+    /**
+     * Gets a read only set of the names of the programs in the catalog.
+     */
+    public Set<String> getNames()
+    {
+        return Collections.unmodifiableSet(_indexes.keySet());
+    }
+
+    /**
+     * Returns true if the catalog holds a program with the provided name.
+     *
+     * @param name The case-sensitive name of the program.
+     */
+    public boolean contains(String name)
+    {
+        return _indexes.containsKey(name);
+    }
+
+    /**
+     * Gets a program, decoding it the first time it's requested.
+     *
+     * @param name The case-sensitive name of the program.
+     * @return The program, or null if the catalog doesn't hold a program with the name.
+     * @throws Exception If the program is corrupt, or a function or variable it references can't be resolved.
+     */
+    public Program get(String name) throws Exception
+    {
+        Integer index = _indexes.get(name);
+        if (index == null) {
+            return null;
+        }
+
+        Program program = _programs.get(index);
+        if (program != null) {
+            return program;
+        }
+
+        try {
+            program = readProgram(at(_offsets[index]));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException(String.format("Program %s in the catalog is truncated or corrupt.", name), e);
+        }
+
+        return _programs.compareAndSet(index, null, program) ? program : _programs.get(index);
+    }
+
+    /**
+     * Gets a hash of the name, return type, and argument types of a function, used to find the same overload when a
+     * program is loaded.  The hash only depends on the names of the types, so it's the same on every JVM.
+     *
+     * @param function The function to hash.
+     */
+    public static int getSignatureHash(IFunction function)
+    {
+        StringBuilder signature = new StringBuilder();
+        signature.append(function.getName().toUpperCase(Locale.ROOT)).append(':');
+        signature.append(getTypeName(function.getReturnType())).append('(');
+
+        for (ArgumentDefinition argument : function.getArguments()) {
+            TreeSet<String> types = new TreeSet<>();
+            for (Type type : argument.getTypes()) {
+                types.add(getTypeName(type));
+            }
+
+            signature.append(String.join("|", types)).append(argument.isNullable() ? "?" : "").append(',');
+        }
+
+        return signature.append(')').toString().hashCode();
+    }
+
+    private static String getTypeName(Type type)
+    {
+        return type == null ? "null" : type.getTypeName();
+    }
+
+    /**
+     * Gets a view of the catalog that starts at the provided offset.
+     */
+    private ByteBuffer at(int offset)
+    {
+        ByteBuffer buffer = _buffer.duplicate();
+        buffer.position(offset);
+        return buffer;
+    }
+
+    private static void writeProgram(DataOutputStream out, String name, Program program) throws IOException
+    {
+        writeVarInt(out, program.getMaxIntStack());
+        writeVarInt(out, program.getMaxReferenceStack());
+        writeVarInt(out, program.getMaxLongStack());
+        writeVarInt(out, program.getSharedSlots());
+
+        int[] code = program.getCode();
+        writeVarInt(out, code.length);
+        for (int instruction : code) {
+            writeVarInt(out, instruction);
+        }
+
+        List<Object> constants = program.getConstants();
+        writeVarInt(out, constants.size());
+        for (Object constant : constants) {
+            writeConstant(out, name, constant);
+        }
+    }
+
+    private static void writeConstant(DataOutputStream out, String name, Object constant) throws IOException
+    {
+        if (constant == null) {
+            out.writeByte(NULL);
+        } else if (constant instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((int)constant);
+        } else if (constant instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((boolean)constant);
+        } else if (constant instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((long)constant);
+        } else if (constant instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeLong(Double.doubleToRawLongBits((double)constant));
+        } else if (constant instanceof BigDecimal) {
+            BigDecimal decimal = (BigDecimal)constant;
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+
+            out.writeByte(DECIMAL);
+            writeVarInt(out, decimal.scale());
+            writeVarInt(out, unscaled.length);
+            out.write(unscaled);
+        } else if (constant instanceof String) {
+            out.writeByte(STRING);
+            writeString(out, (String)constant);
+        } else if (constant instanceof IFunction) {
+            IFunction function = (IFunction)constant;
+
+            out.writeByte(FUNCTION);
+            writeString(out, function.getName());
+            out.writeInt(getSignatureHash(function));
+        } else if (constant instanceof ContextKey) {
+            ContextKey<?> key = (ContextKey<?>)constant;
+
+            out.writeByte(VARIABLE);
+            writeString(out, key.getName());
+            writeString(out, key.getType().getName());
+        } else {
+            throw new IOException(String.format(
+                "Program %s holds a constant of type %s, which can't be written to a catalog.",
+                name,
+                constant.getClass().getName()
+            ));
+        }
+    }
+
+    /**
+     * Writes the length of the string in bytes followed by the string as UTF-8.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes an int 7 bits at a time, lowest bits first, setting the high bit of every byte but the last.  The
+     * instructions, lengths, and indexes in a program are small, so most take a single byte; negative numbers take 5.
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private Program readProgram(ByteBuffer in) throws Exception
+    {
+        int maxIntStack = readVarInt(in);
+        int maxReferenceStack = readVarInt(in);
+        int maxLongStack = readVarInt(in);
+        int sharedSlots = readVarInt(in);
+
+        int[] code = new int[checkLength(in, readVarInt(in), 1)];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = readVarInt(in);
+        }
+
+        // Every value on a stack and every shared slot is pushed or stored by at least one instruction.
+        int limit = code.length;
+        if ((maxIntStack | maxReferenceStack | maxLongStack | sharedSlots) < 0
+            || Math.max(Math.max(maxIntStack, maxReferenceStack), Math.max(maxLongStack, sharedSlots)) > limit) {
+            throw new IOException("Invalid stack size.");
+        }
+
+        Object[] constants = new Object[checkLength(in, readVarInt(in), 1)];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = readConstant(in);
+        }
+
+        verify(code, constants, maxIntStack, maxReferenceStack, maxLongStack, sharedSlots);
+        return new Program(code, constants, maxIntStack, maxReferenceStack, maxLongStack, sharedSlots);
+    }
+
+    private Object readConstant(ByteBuffer in) throws Exception
+    {
+        byte tag = in.get();
+
+        switch (tag) {
+            case NULL:
+                return null;
+            case INTEGER:
+                return in.getInt();
+            case BOOLEAN:
+                return in.get() != 0;
+            case LONG:
+                return in.getLong();
+            case DOUBLE:
+                return Double.longBitsToDouble(in.getLong());
+            case DECIMAL:
+            {
+                int scale = readVarInt(in);
+                byte[] unscaled = new byte[checkLength(in, readVarInt(in), 1)];
+                in.get(unscaled);
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            }
+            case STRING:
+                return readString(in);
+            case FUNCTION:
+                return resolveFunction(readString(in), in.getInt());
+            case VARIABLE:
+                return resolveVariable(readString(in), readString(in));
+            default:
+                throw new IOException(String.format("Invalid constant tag %d.", tag));
+        }
+    }
+
+    private static String readString(ByteBuffer in) throws IOException
+    {
+        byte[] bytes = new byte[checkLength(in, readVarInt(in), 1)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarInt(DataOutputStream, int)}.
+     */
+    private static int readVarInt(ByteBuffer in) throws IOException
+    {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte next = in.get();
+            value |= (next & 0x7F) << shift;
+
+            if (next >= 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Invalid variable length int.");
+    }
+
+    /**
+     * Checks that a count read from the buffer isn't negative and that its items could fit in the rest of the buffer,
+     * so a corrupt count doesn't allocate a huge array.
+     */
+    private static int checkLength(ByteBuffer in, int count, int itemSize) throws IOException
+    {
+        if (count < 0 || count > in.remaining() / itemSize) {
+            throw new IOException(String.format("Invalid length %d.", count));
+        }
+
+        return count;
+    }
+
+    private IFunction resolveFunction(String name, int signatureHash) throws Exception
+    {
+        String key = name + ':' + signatureHash;
+        IFunction resolved = _resolved.get(key);
+        if (resolved != null) {
+            return resolved;
+        }
+
+        for (IFunction function : _functions.find(name)) {
+            if (getSignatureHash(function) == signatureHash) {
+                _resolved.putIfAbsent(key, function);
+                return function;
+            }
+        }
+
+        throw new Exception(
+            String.format("Function %s with signature %08x is not registered.", name, signatureHash)
+        );
+    }
+
+    private ContextKey<?> resolveVariable(String name, String typeName) throws Exception
+    {
+        ContextKey<?> key = _schema.find(name);
+
+        if (key == null) {
+            throw new Exception(String.format("Variable %s is not declared.", name));
+        }
+
+        if (!key.getType().getName().equals(typeName)) {
+            throw new Exception(String.format(
+                "Variable %s was declared as %s, but the program expects %s.",
+                name,
+                key.getType().getName(),
+                typeName
+            ));
+        }
+
+        return key;
+    }
+
+    /**
+     * Checks that every instruction is known, that jumps only go forward to the start of another instruction, that the
+     * constants and shared slots they reference exist, and that no path through the program underflows a stack or
+     * grows it past its declared size, so a corrupt program fails when it's loaded instead of looping or failing when
+     * it's evaluated.  The {@link ProgramCompiler} never emits a jump backwards, so a single forward pass sees every
+     * jump before its target.
+     */
+    private static void verify(
+        int[] code,
+        Object[] constants,
+        int maxIntStack,
+        int maxReferenceStack,
+        int maxLongStack,
+        int sharedSlots
+    ) throws IOException
+    {
+        BitSet starts = new BitSet(code.length);
+        int pc = 0;
+        int last = -1;
+
+        while (pc < code.length) {
+            int opCode = code[pc];
+            int next = pc + 1 + OpCode.getOperandCount(opCode);
+
+            if (opCode < OpCode.IConst || opCode > OpCode.IToDouble || next > code.length) {
+                throw new IOException(String.format("Invalid opcode %d at offset %d.", opCode, pc));
+            }
+
+            Class<?> expected = null;
+            boolean valid = true;
+
+            switch (opCode) {
+                case OpCode.LoadShared:
+                case OpCode.StoreShared:
+                    valid = code[pc + 1] >= 0 && code[pc + 1] < sharedSlots;
+                    break;
+                case OpCode.AConst:
+                    valid = code[pc + 1] >= 0 && code[pc + 1] < constants.length;
+                    break;
+                case OpCode.Call:
+                    expected = IFunction.class;
+                    valid = code[pc + 2] >= 0;
+                    break;
+                case OpCode.Load:
+                    expected = ContextKey.class;
+                    break;
+            }
+
+            if (expected != null) {
+                int index = code[pc + 1];
+                valid &= index >= 0 && index < constants.length && expected.isInstance(constants[index]);
+            }
+
+            if (!valid) {
+                throw new IOException(String.format("Invalid operand of opcode %d at offset %d.", opCode, pc));
+            }
+
+            starts.set(pc);
+            last = opCode;
+            pc = next;
+        }
+
+        if (last != OpCode.Return) {
+            throw new IOException("The program doesn't end with a return.");
+        }
+
+        // The depths of the int, reference, and long stacks at each jump target, recorded when the jump is reached.
+        int[][] targets = new int[code.length][];
+        int ints = 0;
+        int references = 0;
+        int longs = 0;
+        boolean reachable = true;
+
+        for (pc = 0; pc < code.length; pc += 1 + OpCode.getOperandCount(code[pc])) {
+            int opCode = code[pc];
+            int[] target = targets[pc];
+
+            if (!reachable) {
+                // Only a jump can reach the instruction after an unconditional jump or a return.
+                if (target == null) {
+                    throw new IOException(String.format("Unreachable opcode %d at offset %d.", opCode, pc));
+                }
+
+                ints = target[0];
+                references = target[1];
+                longs = target[2];
+            } else if (target != null && (target[0] != ints || target[1] != references || target[2] != longs)) {
+                throw new IOException(String.format("The stacks differ where branches meet at offset %d.", pc));
+            }
+
+            int popInts = 0;
+            int popReferences = 0;
+            int popLongs = 0;
+            int pushInts = 0;
+            int pushReferences = 0;
+            int pushLongs = 0;
+
+            switch (opCode) {
+                case OpCode.IConst:
+                    pushInts = 1;
+                    break;
+                case OpCode.AConst:
+                case OpCode.Load:
+                    pushReferences = 1;
+                    break;
+                case OpCode.LConst:
+                    pushLongs = 1;
+                    break;
+                case OpCode.IAdd:
+                case OpCode.ISub:
+                case OpCode.IMul:
+                case OpCode.IDiv:
+                case OpCode.IEq:
+                case OpCode.INe:
+                case OpCode.IGt:
+                case OpCode.IGe:
+                case OpCode.ILt:
+                case OpCode.ILe:
+                    popInts = 2;
+                    pushInts = 1;
+                    break;
+                case OpCode.INeg:
+                case OpCode.Not:
+                    popInts = 1;
+                    pushInts = 1;
+                    break;
+                case OpCode.DAdd:
+                case OpCode.DSub:
+                case OpCode.DMul:
+                case OpCode.DDiv:
+                    popReferences = 2;
+                    pushReferences = 1;
+                    break;
+                case OpCode.DNeg:
+                case OpCode.CastDecimal:
+                case OpCode.StoreShared:
+                    popReferences = 1;
+                    pushReferences = 1;
+                    break;
+                case OpCode.DEq:
+                case OpCode.DNe:
+                case OpCode.DGt:
+                case OpCode.DGe:
+                case OpCode.DLt:
+                case OpCode.DLe:
+                    popReferences = 2;
+                    pushInts = 1;
+                    break;
+                case OpCode.LAdd:
+                case OpCode.LSub:
+                case OpCode.LMul:
+                case OpCode.LDiv:
+                case OpCode.FAdd:
+                case OpCode.FSub:
+                case OpCode.FMul:
+                case OpCode.FDiv:
+                    popLongs = 2;
+                    pushLongs = 1;
+                    break;
+                case OpCode.LNeg:
+                case OpCode.FNeg:
+                case OpCode.LToDouble:
+                    popLongs = 1;
+                    pushLongs = 1;
+                    break;
+                case OpCode.LEq:
+                case OpCode.LNe:
+                case OpCode.LGt:
+                case OpCode.LGe:
+                case OpCode.LLt:
+                case OpCode.LLe:
+                case OpCode.FEq:
+                case OpCode.FNe:
+                case OpCode.FGt:
+                case OpCode.FGe:
+                case OpCode.FLt:
+                case OpCode.FLe:
+                    popLongs = 2;
+                    pushInts = 1;
+                    break;
+                case OpCode.JumpIfFalse:
+                case OpCode.JumpIfTrue:
+                    popInts = 1;
+                    break;
+                case OpCode.IToDecimal:
+                case OpCode.BoxInt:
+                case OpCode.BoxBoolean:
+                    popInts = 1;
+                    pushReferences = 1;
+                    break;
+                case OpCode.UnboxInt:
+                case OpCode.UnboxBoolean:
+                    popReferences = 1;
+                    pushInts = 1;
+                    break;
+                case OpCode.BoxLong:
+                case OpCode.BoxDouble:
+                case OpCode.LToDecimal:
+                    popLongs = 1;
+                    pushReferences = 1;
+                    break;
+                case OpCode.UnboxLong:
+                case OpCode.UnboxDouble:
+                    popReferences = 1;
+                    pushLongs = 1;
+                    break;
+                case OpCode.IToLong:
+                case OpCode.IToDouble:
+                    popInts = 1;
+                    pushLongs = 1;
+                    break;
+                case OpCode.Call:
+                    popReferences = code[pc + 2];
+                    pushReferences = 1;
+                    break;
+                case OpCode.Return:
+                    popReferences = 1;
+                    break;
+            }
+
+            if (ints < popInts || references < popReferences || longs < popLongs) {
+                throw new IOException(String.format("Opcode %d at offset %d underflows the stack.", opCode, pc));
+            }
+
+            ints += pushInts - popInts;
+            references += pushReferences - popReferences;
+            longs += pushLongs - popLongs;
+
+            // A shared result that's already stored is pushed before jumping past the call that computes it.
+            boolean pushesOnJump = opCode == OpCode.LoadShared;
+
+            if (ints > maxIntStack || references + (pushesOnJump ? 1 : 0) > maxReferenceStack || longs > maxLongStack) {
+                throw new IOException(
+                    String.format("Opcode %d at offset %d grows the stack past its declared size.", opCode, pc)
+                );
+            }
+
+            switch (opCode) {
+                case OpCode.Jump:
+                case OpCode.JumpIfFalse:
+                case OpCode.JumpIfTrue:
+                case OpCode.LoadShared: {
+                    int offset = code[pc + OpCode.getOperandCount(opCode)];
+
+                    if (offset <= pc || offset >= code.length || !starts.get(offset)) {
+                        throw new IOException(String.format("Invalid jump target %d at offset %d.", offset, pc));
+                    }
+
+                    int[] depths = { ints, references + (pushesOnJump ? 1 : 0), longs };
+
+                    if (targets[offset] == null) {
+                        targets[offset] = depths;
+                    } else if (!Arrays.equals(targets[offset], depths)) {
+                        throw new IOException(
+                            String.format("The stacks differ where branches meet at offset %d.", offset)
+                        );
+                    }
+
+                    break;
+                }
+            }
+
+            reachable = opCode != OpCode.Jump && opCode != OpCode.Return;
+        }
+    }
+}
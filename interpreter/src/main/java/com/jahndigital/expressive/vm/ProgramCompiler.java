@@ -0,0 +1,569 @@
+package com.jahndigital.expressive.vm;
+
+import com.jahndigital.expressive.Diagnostic;
+import com.jahndigital.expressive.binding.*;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Lowers a {@link BoundExpression} tree into a {@link Program}.
+ */
+public final class ProgramCompiler
+{
+    /**
+     * The stack a value lives on and how it is represented there.
+     */
+    private enum ValueKind
+    {
+        Int,
+        Boolean,
+        Decimal,
+        Long,
+        Double,
+        Object,
+    }
+
+    private int[] _code = new int[64];
+    private int _length = 0;
+    private final List<Object> _constants = new ArrayList<>();
+    private final IdentityHashMap<Object, Integer> _constantIndexes = new IdentityHashMap<>();
+    private final IdentityHashMap<BoundFunctionExpression, Integer> _sharedSlots = new IdentityHashMap<>();
+    private int _intStack = 0;
+    private int _maxIntStack = 0;
+    private int _referenceStack = 0;
+    private int _maxReferenceStack = 0;
+    private int _longStack = 0;
+    private int _maxLongStack = 0;
+
+    /**
+     * Compiles the provided {@link BoundSyntaxTree}.
+     *
+     * @param tree The tree to compile.
+     * @return A program that evaluates the expression.
+     * @throws Exception If the tree has errors or could not be compiled.
+     */
+    public static Program compile(BoundSyntaxTree tree) throws Exception
+    {
+        List<Diagnostic> errors = tree.getErrors();
+        if (!errors.isEmpty()) {
+            throw new Exception(
+                String.format("Unable to compile expression: %d errors encountered during parsing.", errors.size())
+            );
+        }
+
+        if (tree.getRoot() == null) {
+            return new Program(new int[] { OpCode.AConst, 0, OpCode.Return }, new Object[] { null }, 0, 1, 0, 0);
+        }
+
+        return compile(tree.getRoot());
+    }
+
+    /**
+     * Compiles the provided {@link BoundExpression}.
+     *
+     * @param root The root of the tree to compile.
+     * @return A program that evaluates the expression.
+     * @throws Exception If the expression could not be compiled.
+     */
+    public static Program compile(BoundExpression root) throws Exception
+    {
+        ProgramCompiler compiler = new ProgramCompiler();
+        compiler.emitExpression(root, ValueKind.Object);
+        compiler.emit(OpCode.Return);
+        compiler.adjust(ValueKind.Object, -1);
+
+        return new Program(
+            Arrays.copyOf(compiler._code, compiler._length),
+            compiler._constants.toArray(),
+            compiler._maxIntStack,
+            compiler._maxReferenceStack,
+            compiler._maxLongStack,
+            compiler._sharedSlots.size()
+        );
+    }
+
+    private ProgramCompiler() { }
+
+    /**
+     * Emits the provided expression, converting the result into the requested representation.
+     *
+     * The tree is walked with an explicit stack of {@link Frame}s instead of by recursing, so the depth of the
+     * expression is only limited by memory.  Each frame is resumed once the operand it's waiting on has been emitted.
+     */
+    private void emitExpression(BoundExpression root, ValueKind target) throws Exception
+    {
+        ArrayList<Frame> frames = new ArrayList<>();
+        frames.add(new Frame(root, target));
+
+        // The representation of the operand that was emitted last.
+        ValueKind emitted = null;
+
+        while (!frames.isEmpty()) {
+            Frame frame = frames.get(frames.size() - 1);
+            Frame operand = emitStep(frame, emitted);
+
+            if (operand != null) {
+                frames.add(operand);
+                continue;
+            }
+
+            frames.remove(frames.size() - 1);
+            emitted = frame.kind;
+
+            if (frame.target != null) {
+                emitConversion(frame.kind, frame.target);
+                emitted = frame.target;
+            }
+        }
+    }
+
+    /**
+     * An expression that's being emitted.
+     */
+    private static final class Frame
+    {
+        private final BoundExpression expression;
+
+        /**
+         * The representation the result is converted into, or null to leave it as is.
+         */
+        private final ValueKind target;
+
+        /**
+         * The number of steps of the expression that have been emitted.
+         */
+        private int step = 0;
+
+        /**
+         * The slot of a shared call, or the offset of the short circuit of a logical operation.
+         */
+        private int slot = -1;
+
+        /**
+         * The offset of a jump that's patched once the expression has been emitted.
+         */
+        private int jump = -1;
+
+        /**
+         * The representation of the value left on the stack, once the expression has been emitted.
+         */
+        private ValueKind kind;
+
+        Frame(BoundExpression expression, ValueKind target)
+        {
+            this.expression = expression;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Emits the next step of an expression based on its type.
+     *
+     * @param frame The expression being emitted.
+     * @param operand The representation of the operand that was emitted by the last frame that was returned.
+     * @return A frame for an operand that must be emitted before the next step, or null once the expression has been
+     *         emitted and {@link Frame#kind} is set.
+     */
+    private Frame emitStep(Frame frame, ValueKind operand) throws Exception
+    {
+        BoundExpression root = frame.expression;
+        int step = frame.step++;
+
+        if (root instanceof BoundLiteralExpression) {
+            frame.kind = emitLiteral(((BoundLiteralExpression)root).getValue());
+            return null;
+        }
+
+        if (root instanceof BoundFunctionExpression) {
+            BoundFunctionExpression function = (BoundFunctionExpression)root;
+            List<BoundExpression> arguments = function.getArguments();
+
+            // The first occurrence of a shared call isn't necessarily executed (E.g. it's behind a short circuit), so
+            // every occurrence checks its slot before calling the function.
+            if (step == 0 && function.isShared()) {
+                frame.slot = _sharedSlots.computeIfAbsent(function, f -> _sharedSlots.size());
+                frame.jump = emit(OpCode.LoadShared, frame.slot, -1);
+            }
+
+            if (step < arguments.size()) {
+                return new Frame(arguments.get(step), ValueKind.Object);
+            }
+
+            emit(OpCode.Call, constant(function.getFunction()), arguments.size());
+            adjust(ValueKind.Object, 1 - arguments.size());
+
+            if (function.isShared()) {
+                emit(OpCode.StoreShared, frame.slot);
+                patch(frame.jump);
+            }
+
+            frame.kind = kindOf(function.getType());
+            emitConversion(ValueKind.Object, frame.kind);
+            return null;
+        }
+
+        if (root instanceof BoundConversionExpression) {
+            frame.kind = kindOf(root.getType());
+
+            if (step == 0) {
+                return new Frame(((BoundConversionExpression)root).getOperand(), frame.kind);
+            }
+
+            return null;
+        }
+
+        if (root instanceof BoundVariableExpression) {
+            BoundVariableExpression variable = (BoundVariableExpression)root;
+            emit(OpCode.Load, constant(variable.getKey()));
+            adjust(ValueKind.Object, 1);
+
+            frame.kind = kindOf(variable.getType());
+            emitConversion(ValueKind.Object, frame.kind);
+            return null;
+        }
+
+        if (root instanceof BoundUnaryExpression) {
+            BoundUnaryExpression u = (BoundUnaryExpression)root;
+
+            if (step == 0) {
+                return new Frame(u.getOperand(), null);
+            }
+
+            frame.kind = emitUnary(u.getOperatorKind(), operand);
+            return null;
+        }
+
+        if (root instanceof BoundBinaryExpression) {
+            return emitBinary(frame, step);
+        }
+
+        // Mirrors the interpreter, which evaluates unknown expressions to zero.
+        emit(OpCode.IConst, 0);
+        adjust(ValueKind.Int, 1);
+        frame.kind = ValueKind.Int;
+        return null;
+    }
+
+    /**
+     * Emits a unary operator whose operand is on the stack.
+     *
+     * @return The representation of the result.
+     */
+    private ValueKind emitUnary(BoundUnaryOperationKind kind, ValueKind operand) throws Exception
+    {
+        switch (kind) {
+            case Identity:
+                return operand;
+            case Negation:
+                if (operand == ValueKind.Int) {
+                    emit(OpCode.INeg);
+                    return ValueKind.Int;
+                }
+
+                if (operand == ValueKind.Long || operand == ValueKind.Double) {
+                    emit(operand == ValueKind.Long ? OpCode.LNeg : OpCode.FNeg);
+                    return operand;
+                }
+
+                emitConversion(operand, ValueKind.Decimal);
+                emit(OpCode.DNeg);
+                return ValueKind.Decimal;
+            case LogicalNegation:
+                emitConversion(operand, ValueKind.Boolean);
+                emit(OpCode.Not);
+                return ValueKind.Boolean;
+            default:
+                throw new Exception(String.format("Unexpected unary operator %s", kind));
+        }
+    }
+
+    private ValueKind emitLiteral(Object value)
+    {
+        if (value instanceof Integer) {
+            emit(OpCode.IConst, (int)value);
+            adjust(ValueKind.Int, 1);
+            return ValueKind.Int;
+        }
+
+        if (value instanceof Boolean) {
+            emit(OpCode.IConst, (boolean)value ? 1 : 0);
+            adjust(ValueKind.Boolean, 1);
+            return ValueKind.Boolean;
+        }
+
+        if (value instanceof Long || value instanceof Double) {
+            ValueKind kind = value instanceof Long ? ValueKind.Long : ValueKind.Double;
+            long bits = kind == ValueKind.Long ? (long)value : Double.doubleToRawLongBits((double)value);
+
+            emit(OpCode.LConst, (int)(bits >>> 32), (int)bits);
+            adjust(kind, 1);
+            return kind;
+        }
+
+        emit(OpCode.AConst, constant(value));
+        adjust(ValueKind.Object, 1);
+        return value instanceof BigDecimal ? ValueKind.Decimal : ValueKind.Object;
+    }
+
+    /**
+     * Emits the next step of a binary operation.
+     *
+     * @see #emitStep(Frame, ValueKind)
+     */
+    private Frame emitBinary(Frame frame, int step) throws Exception
+    {
+        BoundBinaryExpression b = (BoundBinaryExpression)frame.expression;
+        BoundBinaryOperationKind operation = b.getOperatorKind();
+
+        if (operation == BoundBinaryOperationKind.LogicalAnd || operation == BoundBinaryOperationKind.LogicalOr) {
+            boolean isAnd = operation == BoundBinaryOperationKind.LogicalAnd;
+
+            switch (step) {
+                case 0:
+                    return new Frame(b.getLeft(), ValueKind.Boolean);
+                case 1:
+                    frame.slot = emit(isAnd ? OpCode.JumpIfFalse : OpCode.JumpIfTrue, -1);
+                    adjust(ValueKind.Boolean, -1);
+                    return new Frame(b.getRight(), ValueKind.Boolean);
+                default:
+                    frame.jump = emit(OpCode.Jump, -1);
+
+                    // The result of the right operand is on the stack when we jump to done, so drop it for the other
+                    // branch.
+                    adjust(ValueKind.Boolean, -1);
+                    patch(frame.slot);
+                    emit(OpCode.IConst, isAnd ? 0 : 1);
+                    adjust(ValueKind.Boolean, 1);
+                    patch(frame.jump);
+
+                    frame.kind = ValueKind.Boolean;
+                    return null;
+            }
+        }
+
+        // Both operands have the same type, since the binder converts mixed operands.
+        ValueKind operands = kindOf(b.getLeft().getType());
+
+        if (step == 0) {
+            return new Frame(b.getLeft(), operands);
+        }
+
+        if (step == 1) {
+            return new Frame(b.getRight(), operands);
+        }
+
+        frame.kind = emitOperation(operation, operands);
+        return null;
+    }
+
+    /**
+     * Emits a binary operator whose operands are on the stack.
+     *
+     * @return The representation of the result.
+     */
+    private ValueKind emitOperation(BoundBinaryOperationKind operation, ValueKind operands) throws Exception
+    {
+        switch (operation) {
+            case Addition:
+                return emitOperator(select(operands, OpCode.IAdd, OpCode.LAdd, OpCode.FAdd, OpCode.DAdd), operands, operands);
+            case Subtraction:
+                return emitOperator(select(operands, OpCode.ISub, OpCode.LSub, OpCode.FSub, OpCode.DSub), operands, operands);
+            case Multiplication:
+                return emitOperator(select(operands, OpCode.IMul, OpCode.LMul, OpCode.FMul, OpCode.DMul), operands, operands);
+            case Division:
+                return emitOperator(select(operands, OpCode.IDiv, OpCode.LDiv, OpCode.FDiv, OpCode.DDiv), operands, operands);
+            case Equals:
+                return emitOperator(select(operands, OpCode.IEq, OpCode.LEq, OpCode.FEq, OpCode.DEq), operands, ValueKind.Boolean);
+            case NotEquals:
+                return emitOperator(select(operands, OpCode.INe, OpCode.LNe, OpCode.FNe, OpCode.DNe), operands, ValueKind.Boolean);
+            case GreaterThan:
+                return emitOperator(select(operands, OpCode.IGt, OpCode.LGt, OpCode.FGt, OpCode.DGt), operands, ValueKind.Boolean);
+            case GreaterThanOrEqualTo:
+                return emitOperator(select(operands, OpCode.IGe, OpCode.LGe, OpCode.FGe, OpCode.DGe), operands, ValueKind.Boolean);
+            case LessThan:
+                return emitOperator(select(operands, OpCode.ILt, OpCode.LLt, OpCode.FLt, OpCode.DLt), operands, ValueKind.Boolean);
+            case LessThanOrEqualTo:
+                return emitOperator(select(operands, OpCode.ILe, OpCode.LLe, OpCode.FLe, OpCode.DLe), operands, ValueKind.Boolean);
+            default:
+                throw new Exception(String.format("Unexpected binary operator %s", operation));
+        }
+    }
+
+    /**
+     * Picks the variant of an instruction for the representation of its operands.  Booleans use the int variant.
+     */
+    private static int select(ValueKind operands, int intOpCode, int longOpCode, int doubleOpCode, int decimalOpCode)
+    {
+        switch (operands) {
+            case Long:
+                return longOpCode;
+            case Double:
+                return doubleOpCode;
+            case Decimal:
+                return decimalOpCode;
+            default:
+                return intOpCode;
+        }
+    }
+
+    /**
+     * Emits a binary operator that pops two operands and pushes a result.
+     */
+    private ValueKind emitOperator(int opCode, ValueKind operands, ValueKind result)
+    {
+        emit(opCode);
+        adjust(operands, -2);
+        adjust(result, 1);
+        return result;
+    }
+
+    /**
+     * Converts the value on top of the stack from one representation to another.
+     */
+    private void emitConversion(ValueKind from, ValueKind to)
+    {
+        if (from == to) {
+            return;
+        }
+
+        switch (to) {
+            case Object:
+                if (from == ValueKind.Int) {
+                    emit(OpCode.BoxInt);
+                } else if (from == ValueKind.Boolean) {
+                    emit(OpCode.BoxBoolean);
+                } else if (from == ValueKind.Long) {
+                    emit(OpCode.BoxLong);
+                } else if (from == ValueKind.Double) {
+                    emit(OpCode.BoxDouble);
+                } else {
+                    return;
+                }
+                break;
+            case Decimal:
+                if (from == ValueKind.Int) {
+                    emit(OpCode.IToDecimal);
+                } else if (from == ValueKind.Long) {
+                    emit(OpCode.LToDecimal);
+                } else {
+                    emit(OpCode.CastDecimal);
+                }
+                break;
+            case Int:
+                emit(OpCode.UnboxInt);
+                break;
+            case Boolean:
+                emit(OpCode.UnboxBoolean);
+                break;
+            case Long:
+                emit(from == ValueKind.Int ? OpCode.IToLong : OpCode.UnboxLong);
+                break;
+            case Double:
+                if (from == ValueKind.Int) {
+                    emit(OpCode.IToDouble);
+                } else if (from == ValueKind.Long) {
+                    emit(OpCode.LToDouble);
+                } else {
+                    emit(OpCode.UnboxDouble);
+                }
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unsupported conversion from %s to %s.", from, to));
+        }
+
+        adjust(from, -1);
+        adjust(to, 1);
+    }
+
+    /**
+     * Gets the index of a constant in the pool, adding it if required.
+     */
+    private int constant(Object value)
+    {
+        Integer index = _constantIndexes.get(value);
+
+        if (index == null) {
+            index = _constants.size();
+            _constants.add(value);
+            _constantIndexes.put(value, index);
+        }
+
+        return index;
+    }
+
+    /**
+     * Appends an instruction and its operands, returning the offset of the last operand.
+     */
+    private int emit(int opCode, int... operands)
+    {
+        if (_length + operands.length + 1 > _code.length) {
+            _code = Arrays.copyOf(_code, Math.max(_code.length * 2, _length + operands.length + 1));
+        }
+
+        _code[_length++] = opCode;
+
+        for (int operand : operands) {
+            _code[_length++] = operand;
+        }
+
+        return _length - 1;
+    }
+
+    /**
+     * Points the jump whose target operand is at the provided offset to the current end of the program.
+     */
+    private void patch(int operandOffset)
+    {
+        _code[operandOffset] = _length;
+    }
+
+    /**
+     * Tracks the depth of the stack that holds values of the provided kind.
+     */
+    private void adjust(ValueKind kind, int delta)
+    {
+        if (kind == ValueKind.Int || kind == ValueKind.Boolean) {
+            _intStack += delta;
+            _maxIntStack = Math.max(_maxIntStack, _intStack);
+        } else if (kind == ValueKind.Long || kind == ValueKind.Double) {
+            _longStack += delta;
+            _maxLongStack = Math.max(_maxLongStack, _longStack);
+        } else {
+            _referenceStack += delta;
+            _maxReferenceStack = Math.max(_maxReferenceStack, _referenceStack);
+        }
+    }
+
+    /**
+     * Gets the representation used for a bound type.
+     */
+    private static ValueKind kindOf(Type type)
+    {
+        if (type == Integer.class) {
+            return ValueKind.Int;
+        }
+
+        if (type == Boolean.class) {
+            return ValueKind.Boolean;
+        }
+
+        if (type == BigDecimal.class) {
+            return ValueKind.Decimal;
+        }
+
+        if (type == Long.class) {
+            return ValueKind.Long;
+        }
+
+        if (type == Double.class) {
+            return ValueKind.Double;
+        }
+
+        return ValueKind.Object;
+    }
+}
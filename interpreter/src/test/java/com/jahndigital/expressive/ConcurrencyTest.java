@@ -0,0 +1,65 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that a single compiled expression can be evaluated from many threads at once.
+ */
+class ConcurrencyTest
+{
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 10_000;
+
+    private static void assertConcurrent(Callable<Object> evaluation, Object expected) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        assertEquals(expected, evaluation.call());
+                    }
+
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void evaluatorIsShareable() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("COUNT(3) * COUNT(3) + COUNT(4)");
+        Evaluator evaluator = new Evaluator(tree.getRoot());
+
+        assertConcurrent(() -> evaluator.evaluate(new HashMap<>()), 13);
+    }
+
+    @Test
+    void expressionIsShareable() throws Exception
+    {
+        Expression expression = Expression.compile("COUNT(3) * COUNT(3) + COUNT(4) > 12 && 1.5 < 2");
+
+        assertConcurrent(expression::evaluate, true);
+    }
+}
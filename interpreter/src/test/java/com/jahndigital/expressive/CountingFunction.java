@@ -0,0 +1,52 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.FunctionPurity;
+import com.jahndigital.expressive.extensibility.IFunction;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A deterministic function that returns its argument and counts how many times it was executed.
+ */
+public final class CountingFunction implements IFunction
+{
+    public static final AtomicInteger executions = new AtomicInteger();
+
+    @Override
+    public String getName()
+    {
+        return "COUNT";
+    }
+
+    @Override
+    public Type getReturnType()
+    {
+        return Integer.class;
+    }
+
+    @Override
+    public List<ArgumentDefinition> getArguments()
+    {
+        return Collections.singletonList(
+            new ArgumentDefinition("value", "The value to return.", true, Integer.class)
+        );
+    }
+
+    @Override
+    public FunctionPurity getPurity()
+    {
+        return FunctionPurity.Deterministic;
+    }
+
+    @Override
+    public Object execute(List<Object> args, Map<String, Object> ctx)
+    {
+        executions.incrementAndGet();
+        return args.get(0);
+    }
+}
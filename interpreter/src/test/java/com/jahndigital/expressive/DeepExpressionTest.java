@@ -0,0 +1,140 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.batch.Batch;
+import com.jahndigital.expressive.batch.BatchCompiler;
+import com.jahndigital.expressive.batch.BatchExpression;
+import com.jahndigital.expressive.binding.BoundExpression;
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.binding.NumericMode;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that expressions far deeper than {@link BoundExpression#MAX_RECURSION_DEPTH} are parsed, bound, and evaluated
+ * by every engine on a thread whose stack is too small to walk them by recursing.
+ */
+class DeepExpressionTest
+{
+    private static final long STACK_SIZE = 256 * 1024;
+    private static final int TERMS = 100_000;
+    private static final int ROWS = 10;
+
+    @Test
+    void longChains() throws Exception
+    {
+        onSmallStack(() -> assertEveryEngine(repeat("x + ", TERMS - 1) + "x", TERMS * 7));
+    }
+
+    @Test
+    void deeplyNestedParentheses() throws Exception
+    {
+        onSmallStack(() -> {
+            assertEveryEngine(repeat("x + (", TERMS - 1) + "x" + repeat(")", TERMS - 1), TERMS * 7);
+            assertEveryEngine(repeat("(", TERMS) + "x" + repeat(")", TERMS), 7);
+        });
+    }
+
+    @Test
+    void longUnaryChains() throws Exception
+    {
+        onSmallStack(() -> assertEveryEngine(repeat("!", TERMS - 1) + "flag", false));
+    }
+
+    @Test
+    void nestedCalls() throws Exception
+    {
+        onSmallStack(() -> assertEveryEngine(repeat("COUNT(", 10_000) + "x" + repeat(")", 10_000), 7));
+    }
+
+    @Test
+    void deepTreesStillPromoteOverflow() throws Exception
+    {
+        onSmallStack(() -> {
+            String text = repeat("x * 2147483647 + ", 999) + "x * 2147483647";
+            assertEveryEngine(text, 7L * Integer.MAX_VALUE * 1000);
+
+            Evaluator evaluator = new Evaluator(Expressions.bind(text).getRoot());
+            assertEquals(7L * Integer.MAX_VALUE * 1000, evaluator.evaluateLong(Expressions.context()));
+            assertThrows(ArithmeticException.class, () -> evaluator.evaluateInt(Expressions.context()));
+        });
+    }
+
+    /**
+     * Checks that both ways of binding the text, and every engine, evaluate it to the expected value.  The batch engine
+     * is checked against the tree evaluated one row at a time.
+     */
+    private static void assertEveryEngine(String text, Object expected) throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind(text);
+        BoundSyntaxTree compiled = BoundSyntaxTree.compile(
+            text,
+            FunctionRepository.DefaultFunctionRepository,
+            Expressions.SCHEMA,
+            NumericMode.Exact
+        );
+
+        assertEquals(expected, tree.evaluate(Expressions.context()));
+        assertEquals(expected, compiled.evaluate(Expressions.context()));
+
+        for (Map.Entry<String, CompiledExpression> engine : Expressions.engines(tree).entrySet()) {
+            assertEquals(expected, engine.getValue().evaluate(Expressions.context()), engine.getKey());
+        }
+
+        Batch batch = Expressions.batch(ROWS);
+        BatchExpression expression = BatchCompiler.compile(tree);
+        Object[] rows = new Object[ROWS];
+
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = tree.evaluate(Expressions.row(i));
+        }
+
+        Object column = expression.evaluate(batch);
+        Object[] values = new Object[ROWS];
+
+        for (int i = 0; i < ROWS; i++) {
+            values[i] = Arithmetic.narrow(Array.get(column, i), tree.getRoot().getType());
+        }
+
+        assertArrayEquals(rows, values);
+    }
+
+    /**
+     * Runs a check on a new thread with a small stack, failing if it throws, including with a
+     * {@link StackOverflowError}.
+     */
+    private static void onSmallStack(Check check) throws Exception
+    {
+        FutureTask<Object> task = new FutureTask<>((Callable<Object>)() -> {
+            check.run();
+            return null;
+        });
+
+        Thread thread = new Thread(null, task, "deep-expression", STACK_SIZE);
+        thread.start();
+        task.get();
+    }
+
+    private static String repeat(String text, int count)
+    {
+        StringBuilder builder = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+
+        return builder.toString();
+    }
+
+    @FunctionalInterface
+    private interface Check
+    {
+        void run() throws Exception;
+    }
+}
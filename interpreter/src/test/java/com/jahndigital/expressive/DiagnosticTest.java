@@ -0,0 +1,67 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiagnosticTest
+{
+    @Test
+    void messagesAreFormattedWhenRead()
+    {
+        DiagnosticRepository diagnostics = new DiagnosticRepository();
+        diagnostics.addBadCharacterInput('$', 3);
+
+        Diagnostic diagnostic = diagnostics.asReadOnly().get(0);
+
+        assertEquals("Bad character '$' detected during lexing at position 3.", diagnostic.getMessage());
+        assertEquals("ERROR: Bad character '$' detected during lexing at position 3.", diagnostic.toString());
+    }
+
+    @Test
+    void nullMessagesAreAllowed()
+    {
+        Diagnostic diagnostic = new Diagnostic(new TextSpan(0, 0), null, DiagnosticLevel.WARN);
+
+        assertNull(diagnostic.getMessage());
+        assertEquals("WARN: null", diagnostic.toString());
+    }
+
+    @Test
+    void errorsAreCountedAsTheyAreAdded()
+    {
+        DiagnosticRepository diagnostics = new DiagnosticRepository();
+        assertFalse(diagnostics.hasErrors());
+
+        diagnostics.addBadCharacterInput('$', 0);
+        assertTrue(diagnostics.hasErrors());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void resetClearsErrors()
+    {
+        DiagnosticRepository diagnostics = new DiagnosticRepository();
+        diagnostics.addBadCharacterInput('$', 0);
+
+        diagnostics.reset();
+
+        assertFalse(diagnostics.hasErrors());
+        assertTrue(diagnostics.asReadOnly().isEmpty());
+    }
+
+    @Test
+    void eachParseHasItsOwnDiagnostics()
+    {
+        SyntaxTree bad = SyntaxTree.parse("1 $ 2");
+        SyntaxTree good = SyntaxTree.parse("1 + 2");
+
+        assertTrue(bad.getDiagnostics().iterator().hasNext());
+        assertFalse(good.getDiagnostics().iterator().hasNext());
+        assertTrue(bad.getDiagnostics().iterator().hasNext());
+    }
+}
@@ -0,0 +1,58 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.batch.Batch;
+import com.jahndigital.expressive.batch.BatchCompiler;
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.extensibility.Context;
+import com.jahndigital.expressive.binding.NumericMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.reflect.Array;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that every engine agrees with the tree-walking {@link Evaluator} over a fixed corpus.
+ */
+class EngineEquivalenceTest
+{
+    private static final int BATCH_SIZE = 40;
+
+    @ParameterizedTest
+    @EnumSource(NumericMode.class)
+    void enginesMatchEvaluator(NumericMode mode) throws Exception
+    {
+        Context context = Expressions.context();
+
+        for (String text : Expressions.corpus(mode)) {
+            BoundSyntaxTree tree = Expressions.bind(text, mode);
+            Object expected = tree.evaluate(context);
+
+            for (Map.Entry<String, CompiledExpression> engine : Expressions.engines(tree).entrySet()) {
+                assertEquals(expected, engine.getValue().evaluate(context), engine.getKey() + ": " + text);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(NumericMode.class)
+    void batchesMatchEvaluatorRowByRow(NumericMode mode) throws Exception
+    {
+        Batch batch = Expressions.batch(BATCH_SIZE);
+
+        for (String text : Expressions.corpus(mode)) {
+            BoundSyntaxTree tree = Expressions.bind(text, mode);
+            Evaluator evaluator = new Evaluator(tree.getRoot());
+            Object column = BatchCompiler.compile(tree).evaluate(batch);
+
+            for (int row = 0; row < BATCH_SIZE; row++) {
+                // A column that was widened for one row holds every row in the wider type.
+                Object expected = evaluator.evaluate(Expressions.row(row));
+                Object actual = Arithmetic.narrow(Array.get(column, row), tree.getRoot().getType());
+                assertEquals(expected, actual, "Batch row " + row + ": " + text);
+            }
+        }
+    }
+}
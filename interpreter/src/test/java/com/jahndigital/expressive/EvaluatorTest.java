@@ -0,0 +1,84 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.extensibility.Context;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EvaluatorTest
+{
+    private static Evaluator evaluator(String text) throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind(text);
+        return new Evaluator(tree.getRoot());
+    }
+
+    @Test
+    void typedEntryPointsMatchObjectEvaluation() throws Exception
+    {
+        Context context = Expressions.context();
+
+        for (String text : Expressions.CORPUS) {
+            Evaluator evaluator = evaluator(text);
+            Object expected = evaluator.evaluate(context);
+
+            if (expected instanceof Integer) {
+                assertEquals(expected, evaluator.evaluateInt(context), text);
+            } else if (expected instanceof Long) {
+                assertEquals(expected, evaluator.evaluateLong(context), text);
+            } else if (expected instanceof Boolean) {
+                assertEquals(expected, evaluator.evaluateBoolean(context), text);
+            } else {
+                assertEquals(expected, evaluator.evaluateDecimal(context), text);
+            }
+        }
+    }
+
+    @Test
+    void integersWidenToDecimalsWhereTheyMeet() throws Exception
+    {
+        assertEquals(new BigDecimal("4.5"), evaluator("3 * 1.5").evaluateDecimal());
+        assertEquals(new BigDecimal("2"), evaluator("2").evaluateDecimal());
+    }
+
+    @Test
+    void overflowPromotesInsteadOfThrowing() throws Exception
+    {
+        assertEquals(2147483648L, evaluator("2147483647 + 1").evaluate());
+        assertEquals(2147483647, evaluator("(2147483647 + 1) - 1").evaluate());
+        assertEquals(new BigDecimal("18446744073709551614"), evaluator("9223372036854775807 + 9223372036854775807").evaluate());
+    }
+
+    @Test
+    void typedEntryPointsAcceptPromotedResultsThatFit() throws Exception
+    {
+        Evaluator promoted = evaluator("2147483647 + 1");
+
+        assertThrows(ArithmeticException.class, promoted::evaluateInt);
+        assertEquals(2147483648L, promoted.evaluateLong());
+        assertEquals(new BigDecimal("2147483648"), promoted.evaluateDecimal());
+        assertEquals(2147483647, evaluator("(2147483647 + 1) - 1").evaluateInt());
+        assertThrows(ArithmeticException.class, evaluator("9223372036854775807 + 9223372036854775807")::evaluateLong);
+    }
+
+    @Test
+    void divisionByZeroStillThrows() throws Exception
+    {
+        assertThrows(ArithmeticException.class, evaluator("1 / 0")::evaluate);
+        assertThrows(ArithmeticException.class, evaluator("2147483647 * 2 / 0")::evaluate);
+    }
+
+    @Test
+    void logicalOperatorsShortCircuit() throws Exception
+    {
+        // The right hand side would fail with a division by zero if it were evaluated.
+        assertFalse(evaluator("false && 1 / 0 == 0").evaluateBoolean());
+        assertTrue(evaluator("true || 1 / 0 == 0").evaluateBoolean());
+    }
+}
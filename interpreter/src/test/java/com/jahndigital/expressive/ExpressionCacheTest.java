@@ -0,0 +1,114 @@
+package com.jahndigital.expressive;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ExpressionCacheTest
+{
+    @Test
+    void repeatedRequestsAreServedFromTheCache() throws Exception
+    {
+        ExpressionCache cache = new ExpressionCache(10);
+
+        CompiledExpression first = cache.get("1 + 2");
+        CompiledExpression second = cache.get("1 + 2");
+
+        assertSame(first, second);
+        assertEquals(3, second.evaluate());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void expressionsAreKeyedByFunctionRepository() throws Exception
+    {
+        ExpressionCache cache = new ExpressionCache(10);
+
+        assertNotSame(cache.get("1 + 2"), cache.get("1 + 2", new FunctionRepository()));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void newExpressionsMustBeRequestedMoreOftenThanTheOneTheyReplace() throws Exception
+    {
+        ExpressionCache cache = new ExpressionCache(2);
+
+        cache.get("1");
+        cache.get("2");
+        cache.get("1");
+
+        // "2" is least recently used, but has been requested as often as "3", so "3" isn't admitted.
+        cache.get("3");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        long misses = cache.getMissCount();
+        cache.get("2");
+        assertEquals(misses, cache.getMissCount());
+
+        // Once "3" is requested more often than the least recently used entry, it replaces it.
+        cache.get("3");
+        cache.get("3");
+        misses = cache.getMissCount();
+        cache.get("3");
+        assertEquals(misses, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        cache.get("1");
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    @Test
+    void expressionsHeavierThanTheCacheAreNotKept() throws Exception
+    {
+        ExpressionCache cache = new ExpressionCache(100, 1);
+
+        assertEquals(3, cache.get("1 + 2").evaluate());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    void weightBoundsTheCacheWhenTheSizeIsUnbounded() throws Exception
+    {
+        ExpressionCache cache = new ExpressionCache(Integer.MAX_VALUE, 64 << 20);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.get(Integer.toString(i));
+        }
+
+        assertEquals(1000, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    void clearRemovesExpressionsButKeepsStatistics() throws Exception
+    {
+        ExpressionCache cache = new ExpressionCache(10);
+
+        cache.get("1");
+        cache.get("1");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertEquals(1, cache.getHitCount());
+
+        cache.get("1");
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void boundsMustBePositive()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(0));
+        assertThrows(IllegalArgumentException.class, () -> new ExpressionCache(10, 0));
+    }
+}
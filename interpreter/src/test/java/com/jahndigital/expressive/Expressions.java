@@ -0,0 +1,227 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.batch.Batch;
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.codegen.BytecodeCompiler;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.HelloWorldFunction;
+import com.jahndigital.expressive.extensibility.Schema;
+import com.jahndigital.expressive.extensibility.SlotContext;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import com.jahndigital.expressive.vm.ProgramCompiler;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Helpers shared by the tests for parsing and binding expressions.
+ */
+public final class Expressions
+{
+    /**
+     * The variables the corpus may reference.  Their values come from {@link #context()}.
+     */
+    public static final Schema SCHEMA = new Schema();
+    public static final ContextKey<Integer> X = SCHEMA.declare("x", Integer.class);
+    public static final ContextKey<Boolean> FLAG = SCHEMA.declare("flag", Boolean.class);
+    public static final ContextKey<BigDecimal> PRICE = SCHEMA.declare("price", BigDecimal.class);
+    public static final ContextKey<Long> N = SCHEMA.declare("n", Long.class);
+    public static final ContextKey<Double> RATIO = SCHEMA.declare("ratio", Double.class);
+
+    static {
+        FunctionRepository.DefaultFunctionRepository.add(new HelloWorldFunction());
+        FunctionRepository.DefaultFunctionRepository.add(new CountingFunction());
+    }
+
+    /**
+     * A fixed corpus of expressions that every engine must evaluate identically.
+     */
+    public static final String[] CORPUS = {
+        "1",
+        "-42",
+        "1 + 2 * 3",
+        "(1 + 2) * 3",
+        "7 / 2",
+        "-7 / 2",
+        "10 - 4 - 3",
+        "1.5 + 2.25",
+        "10.0 / 4",
+        "3 * 0.5 - 1",
+        "1.25 * 4.5 - 0.75",
+        "10.00 / 3",
+        "-2.5 < 2.50 && 2.5 == 2.50",
+        "99999999999999.99 * 1000000 + 0.01",
+        "true",
+        "!false",
+        "1 < 2 && 2 <= 2",
+        "1 > 2 || 3 >= 3",
+        "1 == 1 && 1 != 2",
+        "true == !false",
+        "HELLO(4)",
+        "HELLO(1 + 2) * 2",
+        "HELLO(HELLO(1)) > 50",
+        "COUNT(3) * 2 + COUNT(3)",
+        "COUNT(COUNT(2) + 1) > COUNT(2) || COUNT(4) == 4",
+        "x * 2 + 1",
+        "-x / 2",
+        "flag && x > 5",
+        "!flag || x == 7",
+        "price * x",
+        "price > x / 3",
+        "COUNT(x) + COUNT(x)",
+        "3 - x * 4",
+        "12 / (x + 9)",
+        "(2 < x) == (10 >= x)",
+        "2147483647 + 1",
+        "(2147483647 + 1) - 1",
+        "x * 2147483647 * 4",
+        "-2147483647 - 2 < x",
+        "HELLO(2147483647 + x - 2147483647)",
+        "9223372036854775807 + 9223372036854775807",
+        "-9223372036854775807 * 2 < 0 && x * 2147483647 != 0",
+        "x + 9223372036854775807",
+        "9223372036854775807 * 2 + 0.5",
+        "x * 3000000000 > price",
+        "-(x + 2147483647) < 9223372036854775807",
+    };
+
+    /**
+     * A fixed corpus of expressions that every engine must evaluate identically in {@link NumericMode#Floating}.
+     */
+    public static final String[] FLOATING_CORPUS = {
+        "1",
+        "-42",
+        "1 + 2 * 3",
+        "7 / 2",
+        "-7 / 2",
+        "1.5 + 2.25",
+        "10.0 / 4",
+        "3 * 0.5 - 1",
+        "1 < 2 && 2.5 >= 2",
+        "HELLO(1)",
+        "HELLO(-3)",
+        "n * 3 - 1",
+        "n / 4",
+        "-n == 0 - n",
+        "ratio * n + 0.5",
+        "ratio < n && flag",
+        "n > 5 || ratio != 0.5",
+        "n * 9223372036854775807",
+        "n * 9223372036854775807 / 3 - n",
+        "9223372036854775807 + n > n",
+        "ratio * (n * 9223372036854775807)",
+        "HELLO(-3) + n",
+        "HELLO(-3) + 1",
+        "x > 5 || n != 40",
+        "x * n - ratio",
+        "COUNT(1) * 2 < n / 8",
+    };
+
+    /**
+     * Creates a context that sets every variable in {@link #SCHEMA}.
+     */
+    public static SlotContext context()
+    {
+        return SCHEMA.newContext()
+            .set(X, 7)
+            .set(FLAG, true)
+            .set(PRICE, new BigDecimal("2.5"))
+            .set(N, 40L)
+            .set(RATIO, 0.75);
+    }
+
+    /**
+     * Creates a context with the values of one row of {@link #batch(int)}.
+     */
+    public static SlotContext row(int row)
+    {
+        return SCHEMA.newContext()
+            .set(X, row - 8)
+            .set(FLAG, row % 3 != 0)
+            .set(PRICE, BigDecimal.valueOf(row * 25, 2))
+            .set(N, row * 3L - 10)
+            .set(RATIO, row / 8.0);
+    }
+
+    /**
+     * Creates a batch that sets every variable in {@link #SCHEMA}, with the same values as {@link #row(int)}.
+     */
+    public static Batch batch(int size)
+    {
+        int[] x = new int[size];
+        boolean[] flag = new boolean[size];
+        BigDecimal[] price = new BigDecimal[size];
+        long[] n = new long[size];
+        double[] ratio = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            SlotContext row = row(i);
+            x[i] = row.get(X);
+            flag[i] = row.get(FLAG);
+            price[i] = row.get(PRICE);
+            n[i] = row.get(N);
+            ratio[i] = row.get(RATIO);
+        }
+
+        return new Batch(SCHEMA, size)
+            .setInts(X, x)
+            .setBooleans(FLAG, flag)
+            .setDecimals(PRICE, price)
+            .setLongs(N, n)
+            .setDoubles(RATIO, ratio);
+    }
+
+    /**
+     * Parses and binds the provided text against {@link #SCHEMA}, failing the current test if there are errors.
+     */
+    public static BoundSyntaxTree bind(String text) throws Exception
+    {
+        return bind(text, NumericMode.Exact);
+    }
+
+    /**
+     * Parses and binds the provided text against {@link #SCHEMA} in the provided mode, failing the current test if
+     * there are errors.
+     */
+    public static BoundSyntaxTree bind(String text, NumericMode mode) throws Exception
+    {
+        BoundSyntaxTree tree = SyntaxTree.parse(text).bind(SCHEMA, mode);
+        assertTrue(tree.getErrors().isEmpty(), () -> text + ": " + tree.getErrors());
+
+        return tree;
+    }
+
+    /**
+     * Gets the corpus for the provided mode.
+     */
+    public static String[] corpus(NumericMode mode)
+    {
+        return mode == NumericMode.Floating ? FLOATING_CORPUS : CORPUS;
+    }
+
+    /**
+     * Compiles the tree with every execution engine, keyed by the name of the engine.
+     */
+    public static Map<String, CompiledExpression> engines(BoundSyntaxTree tree) throws Exception
+    {
+        Map<String, CompiledExpression> engines = new LinkedHashMap<>();
+
+        engines.put("Evaluator", new Evaluator(tree.getRoot())::evaluate);
+        engines.put("Closure", ClosureCompiler.compile(tree));
+        engines.put("Bytecode", BytecodeCompiler.compile(tree));
+        engines.put("Program", ProgramCompiler.compile(tree));
+
+        return engines;
+    }
+
+    /**
+     * Init
+     */
+    private Expressions()
+    {
+    }
+}
@@ -0,0 +1,56 @@
+package com.jahndigital.expressive;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrequencySketchTest
+{
+    @Test
+    void countsAreEstimatedAndSaturate()
+    {
+        FrequencySketch sketch = new FrequencySketch(64);
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("a");
+        }
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("b");
+        }
+
+        assertTrue(sketch.frequency("a") >= 5);
+        assertEquals(15, sketch.frequency("b"));
+    }
+
+    @Test
+    void countersAgeOnceEnoughIncrementsAreRecorded()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("a");
+        }
+
+        // Enough distinct keys to fill the sample, which halves every counter.
+        for (int i = 0; i < 16 * 10; i++) {
+            sketch.increment(i);
+        }
+
+        assertTrue(sketch.frequency("a") < 15);
+    }
+
+    @Test
+    void growingClearsTheCounters()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+        sketch.increment("a");
+
+        sketch.ensureCapacity(16);
+        assertEquals(1, sketch.frequency("a"));
+
+        sketch.ensureCapacity(17);
+        assertEquals(0, sketch.frequency("a"));
+    }
+}
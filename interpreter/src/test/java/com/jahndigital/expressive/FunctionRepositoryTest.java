@@ -0,0 +1,116 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.FunctionPurity;
+import com.jahndigital.expressive.extensibility.IFunction;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FunctionRepositoryTest
+{
+    @Test
+    void functionsAreFoundByCaseInsensitiveName()
+    {
+        IFunction twice = new ConstantFunction("Twice", Integer.class, "int");
+        FunctionRepository functions = new FunctionRepository().add(twice);
+
+        assertEquals(Collections.singletonList(twice), functions.find("TWICE"));
+        assertEquals(Collections.singletonList(twice), functions.find("twice"));
+        assertTrue(functions.find("THRICE").isEmpty());
+    }
+
+    @Test
+    void overloadsAreChosenByArgumentType() throws Exception
+    {
+        FunctionRepository functions = new FunctionRepository()
+            .add(new ConstantFunction("KIND", Integer.class, "int"))
+            .add(new ConstantFunction("KIND", BigDecimal.class, "decimal"));
+
+        assertEquals(2, functions.find("kind").size());
+        assertEquals("int", SyntaxTree.parse("KIND(1 + 2)", functions).bind().evaluate());
+        assertEquals("decimal", SyntaxTree.parse("kind(1.5)", functions).bind().evaluate());
+        assertFalse(SyntaxTree.parse("KIND(true)", functions).bind().getErrors().isEmpty());
+    }
+
+    @Test
+    void sameArgumentsReplaceAndRemoveDropsEveryOverload() throws Exception
+    {
+        FunctionRepository functions = new FunctionRepository()
+            .add(new ConstantFunction("KIND", Integer.class, "old"))
+            .add(new ConstantFunction("KIND", BigDecimal.class, "decimal"));
+
+        // Expressions bound before a replacement keep the function they were bound with.
+        BoundSyntaxTree before = SyntaxTree.parse("KIND(x)", functions).bind(Expressions.SCHEMA);
+        IFunction replacement = new ConstantFunction("kind", Integer.class, "new");
+        functions.add(replacement);
+
+        assertEquals(2, functions.find("KIND").size());
+        assertSame(replacement, functions.find("KIND").get(1));
+        assertEquals("new", SyntaxTree.parse("KIND(1)", functions).bind().evaluate());
+        assertEquals("old", before.evaluate(Expressions.context()));
+
+        assertTrue(functions.remove("Kind"));
+        assertFalse(functions.remove("KIND"));
+        assertTrue(functions.find("KIND").isEmpty());
+        assertFalse(functions.iterator().hasNext());
+    }
+
+    /**
+     * A pure function of one argument that always returns the same string.
+     */
+    private static final class ConstantFunction implements IFunction
+    {
+        private final String _name;
+        private final Type _parameter;
+        private final String _result;
+
+        ConstantFunction(String name, Type parameter, String result)
+        {
+            _name = name;
+            _parameter = parameter;
+            _result = result;
+        }
+
+        @Override
+        public String getName()
+        {
+            return _name;
+        }
+
+        @Override
+        public Type getReturnType()
+        {
+            return String.class;
+        }
+
+        @Override
+        public List<ArgumentDefinition> getArguments()
+        {
+            return Collections.singletonList(new ArgumentDefinition("value", "Any value.", true, _parameter));
+        }
+
+        @Override
+        public FunctionPurity getPurity()
+        {
+            return FunctionPurity.Pure;
+        }
+
+        @Override
+        public Object execute(List<Object> args, Map<String, Object> ctx)
+        {
+            return _result;
+        }
+    }
+}
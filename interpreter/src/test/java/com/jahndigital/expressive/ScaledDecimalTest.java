@@ -0,0 +1,80 @@
+package com.jahndigital.expressive;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ScaledDecimalTest
+{
+    private static final String[] VALUES = {
+        "0", "1", "-1", "7", "2.5", "-2.50", "0.001", "-3.14159", "123456789.12", "99999999999999.99",
+        "0.000000000000000001", "-4611686018427387", "3.000"
+    };
+
+    @Test
+    void operationsMatchBigDecimalOrOverflow()
+    {
+        for (String a : VALUES) {
+            for (String b : VALUES) {
+                BigDecimal left = new BigDecimal(a);
+                BigDecimal right = new BigDecimal(b);
+                long packedLeft = ScaledDecimal.valueOf(left);
+                long packedRight = ScaledDecimal.valueOf(right);
+                String operands = a + ", " + b;
+
+                assertMatches(left.add(right), ScaledDecimal.add(packedLeft, packedRight), "add " + operands);
+                assertMatches(left.subtract(right), ScaledDecimal.subtract(packedLeft, packedRight), "subtract " + operands);
+                assertMatches(left.multiply(right), ScaledDecimal.multiply(packedLeft, packedRight), "multiply " + operands);
+                assertEquals(left.compareTo(right), ScaledDecimal.compare(packedLeft, packedRight), "compare " + operands);
+
+                if (right.signum() == 0) {
+                    assertEquals(ScaledDecimal.OVERFLOW, ScaledDecimal.divide(packedLeft, packedRight), operands);
+                } else {
+                    assertMatches(
+                        left.divide(right, RoundingMode.HALF_EVEN),
+                        ScaledDecimal.divide(packedLeft, packedRight),
+                        "divide " + operands
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    void unrepresentableValuesOverflow()
+    {
+        assertEquals(ScaledDecimal.OVERFLOW, ScaledDecimal.valueOf(new BigDecimal("1E+3")));
+        assertEquals(ScaledDecimal.OVERFLOW, ScaledDecimal.valueOf(new BigDecimal("0.0000000000000000001")));
+        assertEquals(ScaledDecimal.OVERFLOW, ScaledDecimal.valueOf(new BigDecimal("12345678901234567")));
+
+        long big = ScaledDecimal.valueOf(new BigDecimal("99999999999999.99"));
+        assertEquals(ScaledDecimal.OVERFLOW, ScaledDecimal.multiply(big, big));
+    }
+
+    @Test
+    void smallValuesNeverOverflow()
+    {
+        long price = ScaledDecimal.valueOf(new BigDecimal("19.99"));
+        long rate = ScaledDecimal.valueOf(new BigDecimal("0.0825"));
+
+        assertEquals(new BigDecimal("1.649175"), ScaledDecimal.toBigDecimal(ScaledDecimal.multiply(price, rate)));
+        assertEquals(new BigDecimal("20.0725"), ScaledDecimal.toBigDecimal(ScaledDecimal.add(price, rate)));
+        assertEquals(new BigDecimal("242.30"), ScaledDecimal.toBigDecimal(ScaledDecimal.divide(price, rate)));
+    }
+
+    /**
+     * Checks that a packed result either overflowed, leaving the operation to {@link BigDecimal}, or has the same value
+     * and scale as the {@link BigDecimal} result.
+     */
+    private static void assertMatches(BigDecimal expected, long actual, String message)
+    {
+        if (actual == ScaledDecimal.OVERFLOW) {
+            return;
+        }
+
+        assertEquals(expected, ScaledDecimal.toBigDecimal(actual), message);
+    }
+}
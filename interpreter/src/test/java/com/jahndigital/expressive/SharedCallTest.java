@@ -0,0 +1,47 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that every engine executes identical deterministic calls once per evaluation.
+ */
+class SharedCallTest
+{
+    private static void assertExecutions(String text, Object expected, int executions) throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind(text);
+
+        for (Map.Entry<String, CompiledExpression> engine : Expressions.engines(tree).entrySet()) {
+            for (int i = 0; i < 2; i++) {
+                CountingFunction.executions.set(0);
+
+                assertEquals(expected, engine.getValue().evaluate(), engine.getKey());
+                assertEquals(executions, CountingFunction.executions.get(), engine.getKey());
+            }
+        }
+    }
+
+    @Test
+    void identicalCallsExecuteOnce() throws Exception
+    {
+        assertExecutions("COUNT(2) + COUNT(2) * COUNT(2)", 6, 1);
+    }
+
+    @Test
+    void differentArgumentsExecuteSeparately() throws Exception
+    {
+        assertExecutions("COUNT(2) + COUNT(3) * COUNT(2)", 8, 2);
+    }
+
+    @Test
+    void callsSkippedByShortCircuitAreNotExecuted() throws Exception
+    {
+        assertExecutions("COUNT(1) > 5 && COUNT(1) + COUNT(2) > 0", false, 1);
+        assertExecutions("COUNT(1) < 5 || COUNT(2) > 0 && COUNT(2) > 1", true, 1);
+    }
+}
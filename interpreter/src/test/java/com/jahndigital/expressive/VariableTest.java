@@ -0,0 +1,63 @@
+package com.jahndigital.expressive;
+
+import com.jahndigital.expressive.binding.BoundSyntaxTree;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VariableTest
+{
+    @Test
+    void undeclaredNamesAreBindingErrors() throws Exception
+    {
+        BoundSyntaxTree tree = SyntaxTree.parse("y + 1").bind(Expressions.SCHEMA);
+
+        assertFalse(tree.getErrors().isEmpty());
+    }
+
+    @Test
+    void mapContextsAreReadByName() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("price * x");
+        HashMap<String, Object> values = new HashMap<>();
+        values.put("x", 4);
+        values.put("price", new BigDecimal("1.5"));
+
+        for (Map.Entry<String, CompiledExpression> engine : Expressions.engines(tree).entrySet()) {
+            assertEquals(new BigDecimal("6.0"), engine.getValue().evaluate(values), engine.getKey());
+        }
+    }
+
+    @Test
+    void missingValuesNameTheVariable() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("x + 1");
+        Evaluator evaluator = new Evaluator(tree.getRoot());
+
+        IllegalStateException e = assertThrows(
+            IllegalStateException.class,
+            () -> evaluator.evaluateInt(Expressions.SCHEMA.newContext())
+        );
+        assertEquals("No value was provided for variable x.", e.getMessage());
+
+        assertThrows(
+            IllegalStateException.class,
+            () -> ClosureCompiler.compile(tree).evaluate(Expressions.SCHEMA.newContext())
+        );
+    }
+
+    @Test
+    void theSchemaLessBindStillWorks() throws Exception
+    {
+        BoundSyntaxTree tree = BoundSyntaxTree.bind(SyntaxTree.parse("1 + 2"), new DiagnosticRepository());
+
+        assertEquals(3, tree.evaluate());
+    }
+}
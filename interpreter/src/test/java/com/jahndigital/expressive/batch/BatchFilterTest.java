@@ -0,0 +1,60 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.Evaluator;
+import com.jahndigital.expressive.Expressions;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchFilterTest
+{
+    private static final int BATCH_SIZE = 40;
+
+    private static final String[] FILTERS = {
+        "flag",
+        "!flag",
+        "x > 5",
+        "5 > x",
+        "3 - x >= 1 && 2 * x != 8",
+        "x <= -3 || x >= 20",
+        "flag && x > 5",
+        "!flag || x == 7",
+        "!(x < 0 && flag)",
+        "price > x / 3",
+        "COUNT(x) == 4 || x != 0 && 10 / x > 1",
+        "x * 2147483647 * 2 > 0",
+    };
+
+    @Test
+    void selectMatchesEvaluatorRowByRow() throws Exception
+    {
+        Batch batch = Expressions.batch(BATCH_SIZE);
+
+        for (String text : FILTERS) {
+            BatchExpression expression = BatchCompiler.compile(Expressions.bind(text));
+            Evaluator evaluator = new Evaluator(Expressions.bind(text).getRoot());
+            BitSet expected = new BitSet();
+
+            for (int row = 0; row < BATCH_SIZE; row++) {
+                if (evaluator.evaluateBoolean(Expressions.row(row))) {
+                    expected.set(row);
+                }
+            }
+
+            assertArrayEquals(expected.stream().toArray(), expression.select(batch), text);
+            assertEquals(expected, expression.filter(batch), text);
+        }
+    }
+
+    @Test
+    void guardedDivisionSkipsExcludedRows() throws Exception
+    {
+        // Row 8 has x == 0, so the division only succeeds if the guard removes it first.
+        BatchExpression expression = BatchCompiler.compile(Expressions.bind("x != 0 && 16 / x == 16"));
+
+        assertArrayEquals(new int[] {9}, expression.select(Expressions.batch(BATCH_SIZE)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.jahndigital.expressive.batch;
+
+import com.jahndigital.expressive.Expressions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionerTest
+{
+    private static final int[] BOUNDS = {0, 10, 20, 30, 40};
+
+    private ExecutorService _executor;
+
+    @BeforeEach
+    void startExecutor()
+    {
+        _executor = Executors.newFixedThreadPool(BOUNDS.length);
+    }
+
+    @AfterEach
+    void stopExecutor()
+    {
+        _executor.shutdownNow();
+    }
+
+    @Test
+    void boundsCoverEveryRowInOrder()
+    {
+        for (int size : new int[] {0, 1, Partitioner.MINIMUM_RANGE * 3 + 7, 1 << 24}) {
+            int[] bounds = Partitioner.bounds(size);
+
+            assertEquals(0, bounds[0]);
+            assertEquals(size, bounds[bounds.length - 1]);
+
+            for (int n = 1; n < bounds.length; n++) {
+                assertTrue(bounds[n] >= bounds[n - 1], "Bounds must not decrease: " + Arrays.toString(bounds));
+            }
+        }
+    }
+
+    @Test
+    void resultsFollowRangeOrderNotCompletionOrder() throws Exception
+    {
+        Batch batch = Expressions.batch(BOUNDS[BOUNDS.length - 1]);
+
+        // Earlier ranges finish last.
+        List<Integer> results = Partitioner.map(batch, BOUNDS, _executor, (slice, from) -> {
+            Thread.sleep((BOUNDS.length - from / 10) * 20L);
+            assertEquals(10, slice.size());
+            return from;
+        });
+
+        assertEquals(Arrays.asList(0, 10, 20, 30), results);
+    }
+
+    @Test
+    void earliestFailureIsThrown()
+    {
+        Batch batch = Expressions.batch(BOUNDS[BOUNDS.length - 1]);
+
+        // Range 1 fails after range 3, but is still the one reported.
+        Exception e = assertThrows(IllegalStateException.class, () -> Partitioner.map(batch, BOUNDS, _executor, (slice, from) -> {
+            if (from == 10) {
+                Thread.sleep(100);
+            }
+
+            if (from == 10 || from == 30) {
+                throw new IllegalStateException("Range " + from);
+            }
+
+            return from;
+        }));
+
+        assertEquals("Range 10", e.getMessage());
+    }
+
+    @Test
+    void parallelEvaluationMatchesSequential() throws Exception
+    {
+        Batch batch = Expressions.batch(Partitioner.MINIMUM_RANGE * 5 + 123);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        BatchExpression value = BatchCompiler.compile(Expressions.bind("price * x - 3"));
+        assertArrayEquals((BigDecimal[])value.evaluate(batch), (BigDecimal[])value.evaluate(batch, pool));
+        assertArrayEquals((BigDecimal[])value.evaluate(batch), (BigDecimal[])value.evaluate(batch, _executor));
+
+        BatchExpression filter = BatchCompiler.compile(Expressions.bind("flag && x / 7 != 3 || x < 10"));
+        assertArrayEquals(filter.select(batch), filter.select(batch, pool));
+        assertEquals(filter.filter(batch), filter.filter(batch, _executor));
+
+        // Only the later ranges overflow, so the first is widened to match them.
+        BatchExpression promoted = BatchCompiler.compile(Expressions.bind("x * 100000"));
+        assertArrayEquals(promoted.evaluateLongs(batch), (long[])promoted.evaluate(batch, pool));
+        assertThrows(ArithmeticException.class, () -> promoted.evaluateInts(batch));
+    }
+}
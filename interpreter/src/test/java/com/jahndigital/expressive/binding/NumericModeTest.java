@@ -0,0 +1,33 @@
+package com.jahndigital.expressive.binding;
+
+import com.jahndigital.expressive.Expressions;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class NumericModeTest
+{
+    @Test
+    void floatingLiteralsBindToLongAndDouble() throws Exception
+    {
+        assertEquals(Long.class, Expressions.bind("1 + 2", NumericMode.Floating).evaluate().getClass());
+        assertEquals(Double.class, Expressions.bind("1.5 * 2", NumericMode.Floating).evaluate().getClass());
+        assertEquals(Integer.class, Expressions.bind("1 + 2", NumericMode.Exact).evaluate().getClass());
+    }
+
+    @Test
+    void literalArgumentsNarrowToDeclaredParameters() throws Exception
+    {
+        assertEquals(Integer.class, Expressions.bind("HELLO(1)", NumericMode.Floating).getRoot().getType());
+        assertEquals(-30, Expressions.bind("HELLO(-3)", NumericMode.Floating).evaluate());
+    }
+
+    @Test
+    void otherArgumentsAreNotNarrowed() throws Exception
+    {
+        assertFalse(SyntaxTree.parse("HELLO(1 + 1)").bind(Expressions.SCHEMA, NumericMode.Floating).getErrors().isEmpty());
+        assertFalse(SyntaxTree.parse("HELLO(1.5)").bind(Expressions.SCHEMA, NumericMode.Floating).getErrors().isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package com.jahndigital.expressive.binding;
+
+import com.jahndigital.expressive.CompiledExpression;
+import com.jahndigital.expressive.Expressions;
+import com.jahndigital.expressive.extensibility.ArgumentDefinition;
+import com.jahndigital.expressive.extensibility.ContextKey;
+import com.jahndigital.expressive.extensibility.FunctionPurity;
+import com.jahndigital.expressive.extensibility.IFunction;
+import com.jahndigital.expressive.extensibility.Schema;
+import com.jahndigital.expressive.extensibility.SlotContext;
+import com.jahndigital.expressive.syntax.SyntaxKind;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OperatorRegistrationTest
+{
+    private static final Schema SCHEMA = new Schema();
+    private static final ContextKey<Duration> A = SCHEMA.declare("a", Duration.class);
+    private static final ContextKey<Duration> B = SCHEMA.declare("b", Duration.class);
+
+    private static final IFunction PLUS = new DurationFunction("DURATION_PLUS", 2, args -> ((Duration)args.get(0)).plus((Duration)args.get(1)));
+    private static final IFunction NEGATE = new DurationFunction("DURATION_NEGATE", 1, args -> ((Duration)args.get(0)).negated());
+
+    @BeforeAll
+    static void registerOperations()
+    {
+        BoundBinaryOperation.register(SyntaxKind.PlusToken, Duration.class, Duration.class, PLUS);
+        BoundUnaryOperation.register(SyntaxKind.MinusToken, Duration.class, NEGATE);
+    }
+
+    @Test
+    void registeredOperationsBindAsCallsInEveryEngine() throws Exception
+    {
+        BoundSyntaxTree tree = bind("-(a + b)");
+        SlotContext context = SCHEMA.newContext().set(A, Duration.ofSeconds(5)).set(B, Duration.ofSeconds(7));
+
+        assertEquals(Duration.class, tree.getRoot().getType());
+        assertTrue(tree.getRoot() instanceof BoundFunctionExpression);
+        assertEquals(Duration.ofSeconds(-12), tree.evaluate(context));
+
+        for (Map.Entry<String, CompiledExpression> engine : Expressions.engines(tree).entrySet()) {
+            assertEquals(Duration.ofSeconds(-12), engine.getValue().evaluate(context), engine.getKey());
+        }
+    }
+
+    @Test
+    void unregisteredOperationsStillFailToBind() throws Exception
+    {
+        assertFalse(SyntaxTree.parse("a * b").bind(SCHEMA).getErrors().isEmpty());
+    }
+
+    @Test
+    void operationsCannotBeRegisteredTwice()
+    {
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> BoundBinaryOperation.register(SyntaxKind.PlusToken, Duration.class, Duration.class, PLUS)
+        );
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> BoundBinaryOperation.register(SyntaxKind.PlusToken, Integer.class, Integer.class, PLUS)
+        );
+    }
+
+    private static BoundSyntaxTree bind(String text) throws Exception
+    {
+        BoundSyntaxTree tree = SyntaxTree.parse(text).bind(SCHEMA);
+        assertTrue(tree.getErrors().isEmpty(), () -> text + ": " + tree.getErrors());
+        return tree;
+    }
+
+    /**
+     * A deterministic function over durations.
+     */
+    private static final class DurationFunction implements IFunction
+    {
+        private final String _name;
+        private final List<ArgumentDefinition> _arguments;
+        private final Function<List<Object>, Object> _body;
+
+        DurationFunction(String name, int arity, Function<List<Object>, Object> body)
+        {
+            ArgumentDefinition argument = new ArgumentDefinition("value", "A duration.", false, Duration.class);
+
+            _name = name;
+            _arguments = arity == 1 ? Collections.singletonList(argument) : Arrays.asList(argument, argument);
+            _body = body;
+        }
+
+        @Override
+        public String getName()
+        {
+            return _name;
+        }
+
+        @Override
+        public Type getReturnType()
+        {
+            return Duration.class;
+        }
+
+        @Override
+        public List<ArgumentDefinition> getArguments()
+        {
+            return _arguments;
+        }
+
+        @Override
+        public FunctionPurity getPurity()
+        {
+            return FunctionPurity.Deterministic;
+        }
+
+        @Override
+        public Object execute(List<Object> args, Map<String, Object> ctx)
+        {
+            return _body.apply(args);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.jahndigital.expressive.binding;
+
+import com.jahndigital.expressive.Diagnostic;
+import com.jahndigital.expressive.DiagnosticLevel;
+import com.jahndigital.expressive.Expressions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OptimizerTest
+{
+    private static List<String> info(BoundSyntaxTree tree)
+    {
+        return tree.getDiagnostics()
+            .stream()
+            .filter(x -> x.getLevel() == DiagnosticLevel.INFO)
+            .map(Diagnostic::getMessage)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void literalSubtreesFoldToOneLiteral() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("(1 + 2) * 3");
+
+        assertTrue(tree.getRoot() instanceof BoundLiteralExpression);
+        assertEquals(9, ((BoundLiteralExpression)tree.getRoot()).getValue());
+        assertEquals(Arrays.asList("Folded constant expression to 9."), info(tree));
+    }
+
+    @Test
+    void foldsAreReportedInSourceOrder() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("(1 + 2) * COUNT(1) + (4 * 5) * COUNT(2) + (6 - 1)");
+
+        assertEquals(
+            Arrays.asList(
+                "Folded constant expression to 3.",
+                "Folded constant expression to 20.",
+                "Folded constant expression to 5."
+            ),
+            info(tree)
+        );
+    }
+
+    @Test
+    void identitiesAndDecidedBranchesAreRemoved() throws Exception
+    {
+        assertTrue(Expressions.bind("COUNT(1) * 1").getRoot() instanceof BoundFunctionExpression);
+        assertTrue(Expressions.bind("--COUNT(1)").getRoot() instanceof BoundFunctionExpression);
+        assertEquals(true, ((BoundLiteralExpression)Expressions.bind("true || COUNT(1) > 2").getRoot()).getValue());
+    }
+
+    @Test
+    void pureCallsWithLiteralArgumentsAreFolded() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("HELLO(1 + 1) + 1");
+
+        assertTrue(tree.getRoot() instanceof BoundLiteralExpression);
+        assertEquals(21, ((BoundLiteralExpression)tree.getRoot()).getValue());
+    }
+
+    @Test
+    void identicalDeterministicCallsAreMerged() throws Exception
+    {
+        BoundBinaryExpression root = (BoundBinaryExpression)Expressions.bind("COUNT(1) + COUNT(1)").getRoot();
+
+        assertSame(root.getLeft(), root.getRight());
+        assertTrue(((BoundFunctionExpression)root.getLeft()).isShared());
+    }
+
+    @Test
+    void conversionsOfLiteralsAreFolded() throws Exception
+    {
+        BoundBinaryExpression decimal = (BoundBinaryExpression)Expressions.bind("price + 1").getRoot();
+        BoundBinaryExpression mixed = (BoundBinaryExpression)Expressions.bind("x + n").getRoot();
+
+        assertEquals(BigDecimal.ONE, ((BoundLiteralExpression)decimal.getRight()).getValue());
+        assertTrue(mixed.getLeft() instanceof BoundConversionExpression);
+        assertEquals(Long.class, mixed.getLeft().getType());
+    }
+
+    @Test
+    void failingFoldsAreLeftForEvaluation() throws Exception
+    {
+        BoundSyntaxTree tree = Expressions.bind("1 / 0");
+
+        assertTrue(tree.getRoot() instanceof BoundBinaryExpression);
+    }
+}
@@ -0,0 +1,76 @@
+package com.jahndigital.expressive.binding;
+
+import com.jahndigital.expressive.Diagnostic;
+import com.jahndigital.expressive.Expressions;
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.syntax.SyntaxTree;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SinglePassCompileTest
+{
+    /**
+     * Expressions that bind with errors or warnings, but parse cleanly.
+     */
+    private static final String[] DIAGNOSED = {
+        "1 + true",
+        "-flag",
+        "HELLO(true)",
+        "HELLO(1, 2)",
+        "HELLO(price) + missing",
+        "(1 + 2) * 3 + x",
+        "2 * 3 < x && !(1 > 2)",
+    };
+
+    @Test
+    void singlePassMatchesParsingThenBinding() throws Exception
+    {
+        for (NumericMode mode : NumericMode.values()) {
+            List<String> texts = new ArrayList<>();
+            Collections.addAll(texts, Expressions.corpus(mode));
+            Collections.addAll(texts, DIAGNOSED);
+
+            for (String text : texts) {
+                BoundSyntaxTree twoPass = SyntaxTree.parse(text).bind(Expressions.SCHEMA, mode);
+                BoundSyntaxTree onePass = compile(text, mode);
+                String message = mode + ": " + text;
+
+                assertEquals(messages(twoPass.getDiagnostics()), messages(onePass.getDiagnostics()), message);
+
+                if (twoPass.getErrors().isEmpty()) {
+                    assertEquals(twoPass.getRoot().getType(), onePass.getRoot().getType(), message);
+                    assertEquals(twoPass.evaluate(Expressions.context()), onePass.evaluate(Expressions.context()), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parserErrorsStillPreventBinding()
+    {
+        assertThrows(Exception.class, () -> compile("1 +", NumericMode.Exact));
+        assertThrows(Exception.class, () -> compile("1 $ 2", NumericMode.Exact));
+        assertThrows(Exception.class, () -> compile("UNKNOWN(1)", NumericMode.Exact));
+    }
+
+    private static BoundSyntaxTree compile(String text, NumericMode mode) throws Exception
+    {
+        return BoundSyntaxTree.compile(text, FunctionRepository.DefaultFunctionRepository, Expressions.SCHEMA, mode);
+    }
+
+    private static List<String> messages(List<Diagnostic> diagnostics)
+    {
+        List<String> messages = new ArrayList<>();
+        for (Diagnostic diagnostic : diagnostics) {
+            messages.add(diagnostic.toString());
+        }
+
+        return messages;
+    }
+}
@@ -0,0 +1,49 @@
+package com.jahndigital.expressive.codegen;
+
+import com.jahndigital.expressive.CompiledExpression;
+import com.jahndigital.expressive.Expressions;
+import com.jahndigital.expressive.vm.Program;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BytecodeCompilerTest
+{
+    @Test
+    void manyCallsShareTemporaryLocals() throws Exception
+    {
+        StringBuilder text = new StringBuilder("COUNT(0)");
+        for (int i = 1; i < 400; i++) {
+            text.append(" + COUNT(").append(i).append(')');
+        }
+
+        CompiledExpression compiled = BytecodeCompiler.compile(Expressions.bind(text.toString()));
+
+        assertTrue(compiled.getClass().getName().contains("GeneratedExpression"));
+        assertEquals(399 * 400 / 2, compiled.evaluate());
+    }
+
+    @Test
+    void oversizedExpressionFallsBackToProgram() throws Exception
+    {
+        // A balanced tree keeps the parser and binder shallow while the generated method exceeds 64KB.
+        CompiledExpression compiled = BytecodeCompiler.compile(Expressions.bind(balancedSum(0, 12)));
+
+        assertTrue(compiled instanceof Program);
+        assertEquals(4095 * 4096 / 2, compiled.evaluate());
+    }
+
+    /**
+     * Builds a balanced sum of 2^depth calls with distinct arguments, starting at first.
+     */
+    private static String balancedSum(int first, int depth)
+    {
+        if (depth == 0) {
+            return "COUNT(" + first + ")";
+        }
+
+        int half = 1 << (depth - 1);
+        return "(" + balancedSum(first, depth - 1) + " + " + balancedSum(first + half, depth - 1) + ")";
+    }
+}
@@ -0,0 +1,100 @@
+package com.jahndigital.expressive.syntax;
+
+import com.jahndigital.expressive.Diagnostic;
+import com.jahndigital.expressive.DiagnosticRepository;
+import com.jahndigital.expressive.FunctionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LexerTest
+{
+    @Test
+    void numbersAreParsedIntoTheNarrowestType()
+    {
+        assertEquals(2147483647, value("2147483647"));
+        assertEquals(2147483648L, value("2147483648"));
+        assertEquals(9223372036854775807L, value("9223372036854775807"));
+        assertEquals(new BigDecimal("9223372036854775808"), value("9223372036854775808"));
+        assertEquals(7, value("0000000000000000000007"));
+        assertEquals(new BigDecimal("2.50"), value("2.50"));
+        assertEquals(new BigDecimal("1234567890.1234567890"), value("1234567890.1234567890"));
+    }
+
+    @Test
+    void invalidDecimalsReportTheirOwnText()
+    {
+        DiagnosticRepository diagnostics = new DiagnosticRepository();
+        TokenBuffer tokens = new Lexer("1 + 1.2.3", diagnostics).tokens();
+
+        tokens.advance();
+        tokens.advance();
+
+        assertNull(tokens.get(0).getValue());
+        assertTrue(diagnostics.hasErrors());
+        assertTrue(diagnostics.asReadOnly().get(0).getMessage().contains("1.2.3"));
+    }
+
+    @Test
+    void tokensRecordTheirStartAndSkipWhitespace()
+    {
+        TokenBuffer tokens = new Lexer("a  >= TRUE", new DiagnosticRepository()).tokens();
+
+        assertEquals(SyntaxKind.GreaterThanEqualToken, tokens.getKind(1));
+        assertEquals(3, tokens.get(1).getPosition());
+        assertEquals(SyntaxKind.TrueToken, tokens.getKind(2));
+        assertEquals("TRUE", tokens.get(2).getText());
+        assertEquals(SyntaxKind.EndOfFileToken, tokens.getKind(3));
+    }
+
+    @Test
+    void endOfFileStaysCurrent()
+    {
+        TokenBuffer tokens = new Lexer("x", new DiagnosticRepository()).tokens();
+
+        tokens.advance();
+        tokens.advance();
+
+        assertEquals(SyntaxKind.EndOfFileToken, tokens.getKind(0));
+        assertEquals(SyntaxKind.EndOfFileToken, tokens.getKind(TokenBuffer.LOOKAHEAD - 1));
+    }
+
+    @Test
+    void textAfterAParseErrorIsNotLexed()
+    {
+        StringBuilder text = new StringBuilder("1 2");
+        for (int i = 0; i < 100000; i++) {
+            text.append(" @");
+        }
+
+        SyntaxTree tree = SyntaxTree.parse(text, new FunctionRepository());
+        int errors = 0;
+
+        for (Diagnostic diagnostic : tree.getDiagnostics()) {
+            errors++;
+        }
+
+        assertEquals(1, errors);
+    }
+
+    @Test
+    void charArraysAreParsedInPlace() throws Exception
+    {
+        char[] text = "(1 + 2) * 3".toCharArray();
+        SyntaxTree tree = SyntaxTree.parse(CharBuffer.wrap(text), new FunctionRepository());
+
+        assertFalse(tree.getDiagnostics().iterator().hasNext());
+        assertEquals(9, tree.bind().evaluate());
+    }
+
+    private static Object value(String text)
+    {
+        return new Lexer(text, new DiagnosticRepository()).tokens().get(0).getValue();
+    }
+}
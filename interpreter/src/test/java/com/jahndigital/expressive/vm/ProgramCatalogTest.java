@@ -0,0 +1,169 @@
+package com.jahndigital.expressive.vm;
+
+import com.jahndigital.expressive.Expressions;
+import com.jahndigital.expressive.FunctionRepository;
+import com.jahndigital.expressive.binding.NumericMode;
+import com.jahndigital.expressive.extensibility.Schema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProgramCatalogTest
+{
+    /**
+     * IConst 1, JumpIfFalse 8, IConst 2, Jump 10, IConst 3, BoxInt, Return
+     */
+    private static final int[] BRANCH = {
+        OpCode.IConst, 1, OpCode.JumpIfFalse, 8, OpCode.IConst, 2, OpCode.Jump, 10, OpCode.IConst, 3, OpCode.BoxInt,
+        OpCode.Return
+    };
+
+    @Test
+    void corpusRoundTripsThroughAFile(@TempDir Path directory) throws Exception
+    {
+        Map<String, Program> programs = new LinkedHashMap<>();
+
+        for (NumericMode mode : NumericMode.values()) {
+            for (String text : Expressions.corpus(mode)) {
+                programs.put(mode + ": " + text, ProgramCompiler.compile(Expressions.bind(text, mode)));
+            }
+        }
+
+        Path path = directory.resolve("programs.expc");
+        ProgramCatalog.write(path, programs);
+        ProgramCatalog catalog = ProgramCatalog.open(
+            path,
+            FunctionRepository.DefaultFunctionRepository,
+            Expressions.SCHEMA
+        );
+
+        assertEquals(programs.size(), catalog.size());
+        assertEquals(programs.keySet(), catalog.getNames());
+        assertFalse(catalog.contains("missing"));
+        assertNull(catalog.get("missing"));
+
+        for (Map.Entry<String, Program> entry : programs.entrySet()) {
+            Program loaded = catalog.get(entry.getKey());
+
+            assertSame(loaded, catalog.get(entry.getKey()));
+            assertArrayEquals(entry.getValue().getCode(), loaded.getCode(), entry.getKey());
+            assertEquals(entry.getValue().getConstants(), loaded.getConstants(), entry.getKey());
+            assertEquals(
+                entry.getValue().evaluate(Expressions.context()),
+                loaded.evaluate(Expressions.context()),
+                entry.getKey()
+            );
+        }
+    }
+
+    @Test
+    void handWrittenBranchesLoad() throws Exception
+    {
+        assertEquals(2, load(new Program(BRANCH, new Object[0], 1, 1, 0, 0)).evaluate(Expressions.context()));
+    }
+
+    @Test
+    void filesThatAreNotCatalogsAreRejected() throws Exception
+    {
+        Program program = new Program(BRANCH, new Object[0], 1, 1, 0, 0);
+        byte[] bytes = ProgramCatalog.toBytes(Collections.singletonMap("p", program));
+
+        byte[] magic = bytes.clone();
+        magic[0] = 'X';
+        assertThrows(IOException.class, () -> open(magic));
+
+        byte[] version = bytes.clone();
+        ByteBuffer.wrap(version).putInt(4, ProgramCatalog.VERSION + 1);
+        assertThrows(IOException.class, () -> open(version));
+
+        assertThrows(IOException.class, () -> open(Arrays.copyOf(bytes, bytes.length - 3)));
+        assertThrows(IOException.class, () -> open(Arrays.copyOf(bytes, 10)));
+    }
+
+    @Test
+    void programsThatCouldFailWhenEvaluatedAreRejected() throws Exception
+    {
+        // A jump into the operand of an instruction.
+        int[] code = BRANCH.clone();
+        code[3] = 9;
+        assertRejected(new Program(code, new Object[0], 1, 1, 0, 0));
+
+        // A jump backwards.
+        code = BRANCH.clone();
+        code[7] = 0;
+        assertRejected(new Program(code, new Object[0], 1, 1, 0, 0));
+
+        // Branches that meet with different stacks.
+        code = BRANCH.clone();
+        code[7] = 11;
+        assertRejected(new Program(code, new Object[0], 1, 1, 0, 0));
+
+        // Declared stacks that are too small.
+        assertRejected(new Program(BRANCH, new Object[0], 0, 1, 0, 0));
+        assertRejected(new Program(BRANCH, new Object[0], 1, 0, 0, 0));
+
+        // Popping from an empty stack.
+        assertRejected(new Program(Arrays.copyOfRange(BRANCH, 2, BRANCH.length), new Object[0], 1, 1, 0, 0));
+        assertRejected(new Program(new int[] { OpCode.IConst, 1, OpCode.Return }, new Object[0], 1, 1, 0, 0));
+
+        // An instruction no jump reaches.
+        code = new int[] { OpCode.AConst, 0, OpCode.Return, OpCode.AConst, 0, OpCode.Return };
+        assertRejected(new Program(code, new Object[] { 1 }, 0, 1, 0, 0));
+
+        // A call that takes a negative number of arguments.
+        code = new int[] { OpCode.Call, 0, -1, OpCode.Return };
+        Object[] constants = { FunctionRepository.DefaultFunctionRepository.find("COUNT").get(0) };
+        assertRejected(new Program(code, constants, 0, 1, 0, 0));
+    }
+
+    @Test
+    void unresolvedReferencesAreReported() throws Exception
+    {
+        Program program = ProgramCompiler.compile(Expressions.bind("COUNT(x) + 1"));
+        ByteBuffer buffer = ByteBuffer.wrap(ProgramCatalog.toBytes(Collections.singletonMap("p", program)));
+
+        Exception function = assertThrows(
+            Exception.class,
+            () -> ProgramCatalog.open(buffer, new FunctionRepository(), Expressions.SCHEMA).get("p")
+        );
+
+        Exception variable = assertThrows(
+            Exception.class,
+            () -> ProgramCatalog.open(buffer, FunctionRepository.DefaultFunctionRepository, new Schema()).get("p")
+        );
+
+        assertTrue(function.getMessage().contains("COUNT"));
+        assertTrue(variable.getMessage().contains("x"));
+    }
+
+    private static ProgramCatalog open(byte[] bytes) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return ProgramCatalog.open(buffer, FunctionRepository.DefaultFunctionRepository, Expressions.SCHEMA);
+    }
+
+    private static Program load(Program program) throws Exception
+    {
+        return open(ProgramCatalog.toBytes(Collections.singletonMap("p", program))).get("p");
+    }
+
+    private static void assertRejected(Program program)
+    {
+        assertThrows(IOException.class, () -> load(program));
+    }
+}